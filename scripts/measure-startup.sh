@@ -0,0 +1,69 @@
+#!/bin/sh
+# Measures Eventify's cold start on a connected device with and without the baseline profile,
+# and prints the medians as JSON.
+#
+# Cold start has to kill and recompile the app between launches, which an instrumented test
+# running inside the app cannot do, so this drives the device over adb instead. For each mode the
+# app is recompiled, then launched RUNS times from a stopped process with `am start -W`:
+#   - TotalTime: launch until the first frame of the login screen is drawn
+#   - WaitTime:  the same, plus the time the system took to handle the launch
+#
+# Modes:
+#   none      - no profile; the code is only verified and runs interpreted/JIT compiled
+#   baseline  - the shipped baseline profile installed by ProfileInstaller, compiled ahead of time
+#
+# The baseline mode needs a build that includes src/main/baseline-prof.txt, pulled from a device
+# after running BaselineProfileGenerator.
+#
+# Usage: install a release build, then run `scripts/measure-startup.sh` (RUNS=20 to change the count).
+
+set -eu
+
+PACKAGE=com.zybooks.eventtracker
+ACTIVITY=$PACKAGE/.MainActivity
+RUNS=${RUNS:-10}
+
+median() {
+    tr ' ' '\n' | grep -v '^$' | sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'
+}
+
+compile() {
+    adb shell cmd package compile --reset "$PACKAGE" > /dev/null
+    if [ "$1" = baseline ]; then
+        # Ask ProfileInstaller to write the profile shipped in the APK, then compile with it
+        adb shell am broadcast -a androidx.profileinstaller.action.INSTALL_PROFILE \
+            "$PACKAGE/androidx.profileinstaller.ProfileInstallReceiver" > /dev/null
+        sleep 1
+        adb shell am force-stop "$PACKAGE"
+        adb shell cmd package compile -f -m speed-profile "$PACKAGE" > /dev/null
+    else
+        adb shell cmd package compile -f -m verify "$PACKAGE" > /dev/null
+    fi
+}
+
+measure() {
+    compile "$1"
+    total=""
+    wait=""
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        adb shell am force-stop "$PACKAGE"
+        sleep 1
+        result=$(adb shell am start -W -n "$ACTIVITY" | tr -d '\r')
+        total="$total $(echo "$result" | awk -F': ' '/TotalTime/ { print $2 }')"
+        wait="$wait $(echo "$result" | awk -F': ' '/WaitTime/ { print $2 }')"
+        i=$((i + 1))
+    done
+    echo "\"$1\": { \"runs\": $RUNS, \"total_time_ms\": $(echo "$total" | median), \"wait_time_ms\": $(echo "$wait" | median) }"
+}
+
+none=$(measure none)
+baseline=$(measure baseline)
+adb shell am force-stop "$PACKAGE"
+
+echo "{"
+echo "  \"device\": \"$(adb shell getprop ro.product.model | tr -d '\r')\","
+echo "  \"sdk\": $(adb shell getprop ro.build.version.sdk | tr -d '\r'),"
+echo "  $none,"
+echo "  $baseline"
+echo "}"
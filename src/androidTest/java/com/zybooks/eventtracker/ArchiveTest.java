@@ -0,0 +1,241 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks archiving: only events that ended before the horizon move, in batches; archived events are
+ * still found by the calendar ranges, the history pages, the details and the export; writing to one
+ * brings it back; moves leave no sync tombstones; and compaction returns the freed pages.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArchiveTest {
+
+    private static final String TEST_DB = "archive-test.db";
+    private static final int PAST_COUNT = 250;
+    private static final int FUTURE_COUNT = 20;
+    private static final int BATCH_SIZE = 100;
+
+    private Context context;
+    private DatabaseHelper helper;
+    private long userId;
+    private long now;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        helper = new DatabaseHelper(context, TEST_DB);
+        userId = helper.addUser("alice", "unused");
+        for (int i = 0; i < PAST_COUNT; i++) {
+            helper.addEvent(userId, "Past " + i, "Description " + i, "2020-0" + (i % 9 + 1) + "-1" + (i % 10),
+                    (i % 12 + 1) + ":00 PM", false);
+        }
+        for (int i = 0; i < FUTURE_COUNT; i++) {
+            helper.addEvent(userId, "Future " + i, "", "2099-01-1" + (i % 10), "9:00 AM", true);
+        }
+        now = System.currentTimeMillis();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void archiveMovesOnlyEndedEventsInBatches() {
+        helper.addEvent(userId, "No date", "", "someday", "", false);
+
+        List<Integer> batches = new ArrayList<>();
+        int moved;
+        do {
+            moved = helper.archiveEvents(userId, now, BATCH_SIZE);
+            batches.add(moved);
+        } while (moved == BATCH_SIZE);
+
+        assertEquals(Arrays.asList(100, 100, 50), batches);
+        assertEquals(FUTURE_COUNT + 1, count("SELECT COUNT(*) FROM events"));
+        assertEquals(PAST_COUNT, count("SELECT COUNT(*) FROM events_archive"));
+        // The full-text index only covers the live table
+        try (Cursor cursor = helper.searchEvents(userId, "past", false, 0, -1, 10)) {
+            assertEquals(0, cursor.getCount());
+        }
+        assertEquals(0, helper.archiveEvents(userId, now, BATCH_SIZE));
+    }
+
+    @Test
+    public void archivedEventsAreStillFound() throws IOException {
+        int eventId = (int) helper.addEvent(userId, "Old", "Full description", "2020-02-01", "10:00 AM", false);
+        archiveAll();
+
+        TimeZone zone = TimeZone.getDefault();
+        CalendarRange day = CalendarRange.containing(CalendarRange.Kind.DAY, DateTimeCodec.parseDate("2020-02-01"));
+        try (Cursor cursor = helper.getEventsInRange(userId, day.getStartMillis(zone), day.getEndMillis(zone))) {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(eventId, cursor.getInt(cursor.getColumnIndexOrThrow("event_id")));
+        }
+        assertEquals("Full description", helper.getEventDescription(userId, eventId));
+
+        // History pages run newest first without gaps or repeats
+        List<Long> starts = new ArrayList<>();
+        long beforeStartAt = 0;
+        int beforeId = -1;
+        int read;
+        do {
+            read = 0;
+            try (Cursor page = helper.getArchivedEventsPage(userId, beforeStartAt, beforeId, 40)) {
+                while (page.moveToNext()) {
+                    beforeStartAt = page.getLong(page.getColumnIndexOrThrow("start_at"));
+                    beforeId = page.getInt(page.getColumnIndexOrThrow("event_id"));
+                    starts.add(beforeStartAt);
+                    read++;
+                }
+            }
+        } while (read == 40);
+        assertEquals(PAST_COUNT + 1, starts.size());
+        List<Long> sorted = new ArrayList<>(starts);
+        Collections.sort(sorted, Collections.reverseOrder());
+        assertEquals(sorted, starts);
+
+        int[] exported = {0};
+        helper.exportEvents(userId, new EventRecordWriter() {
+            @Override
+            public void write(EventRecord record) {
+                exported[0]++;
+            }
+
+            @Override
+            public void close() {
+            }
+        }, null);
+        assertEquals(PAST_COUNT + 1 + FUTURE_COUNT, exported[0]);
+    }
+
+    @Test
+    public void writesBringArchivedEventsBack() {
+        int eventId = (int) helper.addEvent(userId, "Old", "", "2020-02-01", "10:00 AM", false);
+        int otherId = (int) helper.addEvent(userId, "Also old", "", "2020-02-02", "10:00 AM", false);
+        archiveAll();
+
+        assertEquals(1, helper.updateEvent(userId, eventId, "Renamed", "", "2020-02-01", "10:00 AM", true));
+        assertEquals(1, count("SELECT COUNT(*) FROM events WHERE event_id = " + eventId + " AND title = 'Renamed'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM events_archive WHERE event_id = " + eventId));
+        try (Cursor cursor = helper.searchEvents(userId, "renamed", false, 0, -1, 10)) {
+            assertEquals(1, cursor.getCount());
+        }
+
+        assertArrayEquals(new int[]{otherId}, helper.shiftEvents(userId, new int[]{otherId}, 1));
+        assertEquals(1, count("SELECT COUNT(*) FROM events WHERE event_id = " + otherId));
+
+        archiveAll();
+        assertEquals(1, helper.deleteEvent(userId, eventId));
+        assertEquals(0, count("SELECT COUNT(*) FROM events_archive WHERE event_id = " + eventId));
+        assertNull(helper.getEventDescription(userId, eventId));
+    }
+
+    @Test
+    public void movesLeaveNoTombstonesButDeletionsDo() {
+        // Archived events that were never pushed are still pending
+        archiveAll();
+        List<SyncChange> pending = helper.getPendingChanges(userId, 1000);
+        assertEquals(PAST_COUNT + FUTURE_COUNT, pending.size());
+        helper.markPushed(userId, pending);
+        assertTrue(helper.getPendingChanges(userId, 10).isEmpty());
+
+        int eventId = (int) count("SELECT MIN(event_id) FROM events_archive");
+        helper.setNotificationsEnabled(userId, new int[]{eventId}, true);
+        assertEquals(0, count("SELECT COUNT(*) FROM sync_tombstones"));
+        assertEquals(1, helper.getPendingChanges(userId, 10).size());
+        archiveAll();
+        assertEquals(0, count("SELECT COUNT(*) FROM sync_tombstones"));
+
+        assertEquals(1, helper.deleteEvent(userId, eventId));
+        List<SyncChange> deletion = helper.getPendingChanges(userId, 10);
+        assertEquals(1, deletion.size());
+        assertTrue(deletion.get(0).isDeleted());
+    }
+
+    @Test
+    public void compactReturnsFreedPages() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            text.append("Filler text ");
+        }
+        int[] ids = new int[500];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) helper.addEvent(userId, "Bulky " + i, text.toString(), "2020-05-01", "8:00 AM", false);
+        }
+        // New databases are created with incremental auto-vacuum
+        assertEquals(2, count("PRAGMA auto_vacuum"));
+        assertTrue(helper.isIncrementalVacuum());
+
+        long pagesBefore = count("PRAGMA page_count");
+        helper.deleteEvents(userId, ids);
+        helper.checkpoint();
+        assertTrue(count("PRAGMA freelist_count") > 100);
+
+        assertEquals(100, helper.compact(100));
+        helper.compact(Integer.MAX_VALUE);
+        assertEquals(0, count("PRAGMA freelist_count"));
+        assertTrue(count("PRAGMA page_count") < pagesBefore);
+    }
+
+    @Test
+    public void olderDatabaseIsOnlyCompactedOnceConverted() {
+        // As created by a version of the app that did not turn on auto-vacuum
+        helper.getWritableDatabase().execSQL("PRAGMA auto_vacuum = NONE");
+        helper.getWritableDatabase().execSQL("VACUUM");
+        assertFalse(helper.isIncrementalVacuum());
+        int[] ids = new int[200];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) helper.addEvent(userId, "Event " + i, "Some text", "2020-05-01", "8:00 AM", false);
+        }
+        helper.deleteEvents(userId, ids);
+        helper.checkpoint();
+        long freeBefore = count("PRAGMA freelist_count");
+        assertTrue(freeBefore > 0);
+
+        // Maintenance leaves the file alone rather than rewriting it
+        assertEquals(0, helper.compact(100));
+        assertEquals(0, count("PRAGMA auto_vacuum"));
+        assertEquals(freeBefore, count("PRAGMA freelist_count"));
+
+        // The idle job converts it once, which frees every page
+        assertTrue(helper.convertToIncrementalVacuum());
+        assertTrue(helper.isIncrementalVacuum());
+        assertEquals(0, count("PRAGMA freelist_count"));
+        assertFalse(helper.convertToIncrementalVacuum());
+    }
+
+    private void archiveAll() {
+        while (helper.archiveEvents(userId, now, BATCH_SIZE) == BATCH_SIZE) {
+            // Until a short batch
+        }
+    }
+
+    private long count(String sql) {
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(sql, null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.zybooks.eventtracker;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.KeyEvent;
+import android.view.ViewTreeObserver;
+import android.widget.EditText;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Generates the app's baseline and startup profiles by running the critical user
+ * journeys: launch, log in, load 10k events, scroll, search, and open the add,
+ * details and edit dialogs. ART records which classes and methods ran, and the
+ * recorded profile is dumped twice: once when the first event row is drawn (the
+ * startup profile) and once at the end (the baseline profile). Only rules for the
+ * app's own classes are kept; the AndroidX libraries ship their own profiles.
+ *
+ * Needs API 33 or later, for {@code pm dump-profiles --dump-classes-and-methods}.
+ * The profiles are written to the external files directory. Only profiles
+ * generated this way are checked in; to add or update them:
+ * <pre>
+ * adb pull /sdcard/Android/data/com.zybooks.eventtracker/files/profiles/baseline-prof.txt src/main/baseline-prof.txt
+ * adb pull /sdcard/Android/data/com.zybooks.eventtracker/files/profiles/startup-prof.txt src/main/baselineProfiles/startup-prof.txt
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    private static final String TAG = "BaselineProfileGenerator";
+    private static final String USERNAME = "profile-journey";
+    private static final String PASSWORD = "journey-password";
+    private static final String APP_CLASS_PREFIX = "Lcom/zybooks/eventtracker/";
+    private static final int EVENT_COUNT = 10_000;
+    private static final long TIMEOUT_SECONDS = 20;
+    // Signal that makes ART write its recorded profile to disk straight away
+    private static final int SIGUSR1 = 10;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        assumeTrue("Profile dumps need API 33", Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU);
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        instrumentation.getUiAutomation().grantRuntimePermission(context.getPackageName(),
+                android.Manifest.permission.SEND_SMS);
+
+        helper = DatabaseHelper.getInstance(context);
+        deleteJourneyUser();
+        PasswordHasher hasher = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+        long userId = helper.addUser(USERNAME, hasher.hash(PASSWORD));
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                helper.addEvent(userId, "Event " + i, "Description for event " + i,
+                        String.format("%02d-%02d-2024", i / 28 % 12 + 1, i % 28 + 1), (i % 12 + 1) + ":00 PM", false);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null) {
+            deleteJourneyUser();
+        }
+    }
+
+    @Test
+    public void generate() throws Exception {
+        // Launch and log in through the login screen, which opens the event grid
+        Instrumentation.ActivityMonitor gridMonitor =
+                instrumentation.addMonitor(DataGridActivity.class.getName(), null, false);
+        Activity login = instrumentation.startActivitySync(new Intent(context, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK));
+        instrumentation.runOnMainSync(() -> {
+            ((EditText) login.findViewById(R.id.usernameEditText)).setText(USERNAME);
+            ((EditText) login.findViewById(R.id.passwordEditText)).setText(PASSWORD);
+            login.findViewById(R.id.loginButton).performClick();
+        });
+        DataGridActivity grid = (DataGridActivity) instrumentation.waitForMonitorWithTimeout(gridMonitor,
+                TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        assertNotNull("Login did not open the event grid", grid);
+        RecyclerView recyclerView = grid.findViewById(R.id.eventRecyclerView);
+        awaitFirstRow(recyclerView);
+
+        writeProfile("startup-prof.txt", dumpAppProfile());
+
+        try {
+            // Scroll far enough to load further pages
+            for (int i = 0; i < 4; i++) {
+                instrumentation.runOnMainSync(() -> recyclerView.fling(0, 10_000));
+                SystemClock.sleep(1500);
+            }
+
+            // Search, then clear the search
+            EditText search = grid.findViewById(R.id.searchEditText);
+            instrumentation.runOnMainSync(() -> search.setText("event 12"));
+            SystemClock.sleep(1000);
+            instrumentation.runOnMainSync(() -> search.setText(""));
+            SystemClock.sleep(1000);
+
+            // Add dialog
+            instrumentation.runOnMainSync(() -> grid.findViewById(R.id.addEventButton).performClick());
+            closeDialog();
+
+            // Details dialog for the first row, then the edit dialog for the same event
+            instrumentation.runOnMainSync(() -> recyclerView.getChildAt(0).performClick());
+            closeDialog();
+            instrumentation.runOnMainSync(() -> grid.showEditEventDialog(1, "Event", "Description",
+                    "01-01-2024", "1:00 PM", false));
+            closeDialog();
+
+            writeProfile("baseline-prof.txt", dumpAppProfile());
+        } finally {
+            grid.finish();
+            instrumentation.waitForIdleSync();
+        }
+    }
+
+    private void closeDialog() {
+        SystemClock.sleep(1000);
+        instrumentation.sendKeyDownUpSync(KeyEvent.KEYCODE_BACK);
+        instrumentation.waitForIdleSync();
+    }
+
+    private void awaitFirstRow(RecyclerView recyclerView) throws InterruptedException {
+        CountDownLatch drawn = new CountDownLatch(1);
+        instrumentation.runOnMainSync(() -> {
+            ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+                @Override
+                public void onDraw() {
+                    if (drawn.getCount() > 0 && recyclerView.getChildCount() > 0) {
+                        drawn.countDown();
+                        ViewTreeObserver.OnDrawListener self = this;
+                        recyclerView.post(() -> recyclerView.getViewTreeObserver().removeOnDrawListener(self));
+                    }
+                }
+            };
+            recyclerView.getViewTreeObserver().addOnDrawListener(listener);
+            recyclerView.invalidate();
+        });
+        assertTrue("No event row was drawn", drawn.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    // Flushes the profile ART has recorded for this process and returns its rules for app classes, sorted
+    private List<String> dumpAppProfile() throws IOException {
+        Process.sendSignal(Process.myPid(), SIGUSR1);
+        SystemClock.sleep(2000);
+        String packageName = context.getPackageName();
+        shell("pm dump-profiles --dump-classes-and-methods " + packageName);
+        List<String> lines = shellLines("cat /data/misc/profman/" + packageName + "-primary.prof.txt");
+
+        TreeSet<String> rules = new TreeSet<>();
+        for (String line : lines) {
+            // Method rules start with their flags (H, S, P), class rules with the class descriptor
+            String descriptor = line.replaceFirst("^[HSP]+", "");
+            if (descriptor.startsWith(APP_CLASS_PREFIX)) {
+                rules.add(line.trim());
+            }
+        }
+        assertFalse("The dumped profile has no rules for app classes", rules.isEmpty());
+        return new ArrayList<>(rules);
+    }
+
+    private void writeProfile(String name, List<String> rules) throws IOException {
+        File dir = new File(context.getExternalFilesDir(null), "profiles");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File file = new File(dir, name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (String rule : rules) {
+                out.write((rule + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Log.i(TAG, "Wrote " + rules.size() + " rules to " + file);
+    }
+
+    private void shell(String command) throws IOException {
+        shellLines(command);
+    }
+
+    private List<String> shellLines(String command) throws IOException {
+        ParcelFileDescriptor output = instrumentation.getUiAutomation().executeShellCommand(command);
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(output);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    // Removing the user removes its events too, through the foreign key
+    private void deleteJourneyUser() {
+        helper.getWritableDatabase().execSQL("DELETE FROM users WHERE username = ?", new Object[]{USERNAME});
+    }
+}
@@ -0,0 +1,198 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the batch operations on selected events: deleting and restoring, switching
+ * notifications, and moving events to other days, including their undo.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchOperationsTest {
+
+    private static final String TEST_DB = "batch-test.db";
+    // More than one chunk of IDs per statement
+    private static final int EVENT_COUNT = 1200;
+
+    private Context context;
+    private DatabaseHelper helper;
+    private long userId;
+    private long otherUserId;
+    private int[] eventIds;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        helper = new DatabaseHelper(context, TEST_DB);
+        userId = helper.addUser("alice", "unused");
+        otherUserId = helper.addUser("bob", "unused");
+        eventIds = new int[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            eventIds[i] = (int) helper.addEvent(userId, "Event " + i, "Description " + i, "2024-03-0" + (i % 9 + 1),
+                    "9:30 AM", i % 2 == 0);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void deleteEventsRemovesEveryRowAndRestoreBringsThemBack() {
+        String before = dump(userId);
+
+        List<DeletedEvent> deleted = helper.deleteEvents(userId, eventIds);
+        assertEquals(EVENT_COUNT, deleted.size());
+        assertEquals("", dump(userId));
+        assertEquals(0, searchCount("description"));
+
+        assertEquals(EVENT_COUNT, helper.restoreEvents(userId, deleted));
+        assertEquals(before, dump(userId));
+        // The search index is kept up to date by triggers, so restored events are found again
+        assertEquals(1, searchCount("event 1199"));
+    }
+
+    @Test
+    public void restoreKeepsSyncColumnsAndDropsTombstones() {
+        int[] ids = {eventIds[0], eventIds[1], eventIds[2]};
+        // As if every event had been pushed
+        helper.getWritableDatabase().execSQL("UPDATE events SET synced_version = version");
+        String before = syncDump();
+
+        List<DeletedEvent> deleted = helper.deleteEvents(userId, ids);
+        assertEquals(3, count("SELECT COUNT(*) FROM sync_tombstones"));
+        assertEquals(3, helper.restoreEvents(userId, deleted));
+        // Nothing is left to push: the deletion is undone, not followed by three new events
+        assertEquals(before, syncDump());
+        assertEquals(0, count("SELECT COUNT(*) FROM sync_tombstones"));
+        assertEquals(0, count("SELECT COUNT(*) FROM events WHERE version != synced_version"));
+
+        // Once the tombstones have been pushed, putting the events back is a change to push as well
+        deleted = helper.deleteEvents(userId, ids);
+        helper.getWritableDatabase().execSQL("DELETE FROM sync_tombstones");
+        assertEquals(3, helper.restoreEvents(userId, deleted));
+        assertEquals(3, count("SELECT COUNT(*) FROM events WHERE version = synced_version + 1"));
+        assertEquals(0, count("SELECT COUNT(*) FROM sync_tombstones"));
+    }
+
+    @Test
+    public void batchOperationsIgnoreOtherUsersEvents() {
+        int otherId = (int) helper.addEvent(otherUserId, "Other", "", "2024-03-05", "10:00", false);
+        int[] ids = {eventIds[0], otherId};
+        String otherBefore = dump(otherUserId);
+
+        assertEquals(1, helper.deleteEvents(userId, ids).size());
+        assertEquals(0, helper.setNotificationsEnabled(userId, new int[]{otherId}, true).length);
+        assertEquals(0, helper.shiftEvents(userId, new int[]{otherId}, 1).length);
+        assertEquals(otherBefore, dump(otherUserId));
+    }
+
+    @Test
+    public void setNotificationsReturnsOnlyTheEventsThatChanged() {
+        int[] changed = helper.setNotificationsEnabled(userId, eventIds, true);
+        // Every other event already had notifications on
+        assertEquals(EVENT_COUNT / 2, changed.length);
+        assertEquals(0, helper.setNotificationsEnabled(userId, eventIds, true).length);
+
+        // Undo switches back only those
+        assertEquals(EVENT_COUNT / 2, helper.setNotificationsEnabled(userId, changed, false).length);
+        assertEquals(EVENT_COUNT / 2, count("SELECT COUNT(*) FROM events WHERE notifications_enabled = 1"));
+    }
+
+    @Test
+    public void shiftEventsKeepsTheLocalTimeAcrossDaylightSaving() {
+        TimeZone original = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        try {
+            int eventId = (int) helper.addEvent(userId, "Standup", "", "2024-03-08", "9:30 AM", false);
+            String before = dump(userId);
+
+            int[] moved = helper.shiftEvents(userId, new int[]{eventId}, 7);
+            assertArrayEquals(new int[]{eventId}, moved);
+            try (Cursor cursor = helper.getEvent(userId, eventId)) {
+                assertTrue(cursor.moveToFirst());
+                assertEquals("2024-03-15", cursor.getString(cursor.getColumnIndexOrThrow("date")));
+                long startAt = cursor.getLong(cursor.getColumnIndexOrThrow("start_at"));
+                // Clocks went forward on 2024-03-10, yet the event still starts at 9:30 local time
+                assertEquals(9 * 60 + 30, DateTimeCodec.minuteOfDayOf(startAt, TimeZone.getDefault()));
+                assertEquals(startAt, count("SELECT end_at FROM events WHERE event_id = " + eventId));
+            }
+
+            int[] all = Arrays.copyOf(eventIds, EVENT_COUNT + 1);
+            all[EVENT_COUNT] = eventId;
+            helper.shiftEvents(userId, moved, -7);
+            assertEquals(EVENT_COUNT + 1, helper.shiftEvents(userId, all, 31).length);
+            assertEquals(EVENT_COUNT + 1, helper.shiftEvents(userId, all, -31).length);
+            assertEquals(before, dump(userId));
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+
+    // One line per event of a user, in ID order, with every column the batch operations touch
+    private String dump(long owner) {
+        StringBuilder builder = new StringBuilder();
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT title, date, time, notifications_enabled, start_at, end_at, description FROM events" +
+                        " WHERE user_id = ? ORDER BY event_id", new String[]{String.valueOf(owner)})) {
+            while (cursor.moveToNext()) {
+                builder.append(cursor.getString(0)).append(' ')
+                        .append(cursor.getString(1)).append(' ')
+                        .append(cursor.getString(2)).append(' ')
+                        .append(cursor.getInt(3)).append(' ')
+                        .append(cursor.getLong(4)).append(' ')
+                        .append(cursor.getString(6)).append('\n');
+                // Events have no length yet
+                assertEquals(cursor.getLong(4), cursor.getLong(5));
+            }
+        }
+        return builder.toString();
+    }
+
+    // One line per event of the user, in ID order, with its sync columns
+    private String syncDump() {
+        StringBuilder builder = new StringBuilder();
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT event_id, sync_id, updated_at, version, synced_version FROM events" +
+                        " WHERE user_id = ? ORDER BY event_id", new String[]{String.valueOf(userId)})) {
+            while (cursor.moveToNext()) {
+                builder.append(cursor.getInt(0)).append(' ')
+                        .append(cursor.getString(1)).append(' ')
+                        .append(cursor.getLong(2)).append(' ')
+                        .append(cursor.getLong(3)).append(' ')
+                        .append(cursor.getLong(4)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private long count(String sql) {
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(sql, null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    private int searchCount(String query) {
+        try (Cursor cursor = helper.searchEvents(userId, query, false, 0, -1, 10)) {
+            return cursor.getCount();
+        }
+    }
+}
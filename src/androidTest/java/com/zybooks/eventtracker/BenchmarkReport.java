@@ -0,0 +1,159 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Collects benchmark results for one suite and writes them as JSON to
+ * {@code <external files>/benchmarks/<suite>.json}, where they can be pulled with
+ * {@code adb pull /sdcard/Android/data/com.zybooks.eventtracker/files/benchmarks}.
+ * The file from the previous run is kept as {@code <suite>.previous.json}, and
+ * medians that moved by more than {@link #REGRESSION_THRESHOLD} are logged.
+ */
+final class BenchmarkReport {
+
+    interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    private static final String TAG = "BenchmarkReport";
+    // Relative change in a median that is reported as a regression or an improvement
+    private static final double REGRESSION_THRESHOLD = 0.10;
+
+    private final Context context;
+    private final String suite;
+    private final JSONObject results = new JSONObject();
+
+    BenchmarkReport(Context context, String suite) {
+        this.context = context;
+        this.suite = suite;
+    }
+
+    // Runs the operation `warmup` times untimed, then `iterations` times timed, and records the
+    // timings and allocations per run under the given name. Returns the median in nanoseconds.
+    @SuppressWarnings("deprecation")
+    long measure(String name, int warmup, int iterations, Operation operation) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+        long[] samples = new long[iterations];
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run(warmup + i);
+            samples[i] = System.nanoTime() - start;
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        return record(name, samples, (double) allocations / iterations);
+    }
+
+    // Records timings measured elsewhere, such as frame durations. Returns the median in nanoseconds.
+    long record(String name, long[] samples, double allocationsPerRun) throws JSONException {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long sample : sorted) {
+            sum += sample;
+        }
+        long median = sorted[sorted.length / 2];
+        JSONObject result = new JSONObject();
+        result.put("runs", sorted.length);
+        result.put("min_ns", sorted[0]);
+        result.put("median_ns", median);
+        result.put("p90_ns", sorted[sorted.length * 9 / 10]);
+        result.put("max_ns", sorted[sorted.length - 1]);
+        result.put("mean_ns", sum / sorted.length);
+        if (allocationsPerRun >= 0) {
+            result.put("allocations_per_run", allocationsPerRun);
+        }
+        results.put(name, result);
+        Log.i(TAG, suite + " " + name + ": median=" + median / 1000 + "us p90="
+                + sorted[sorted.length * 9 / 10] / 1000 + "us allocations/run=" + allocationsPerRun);
+        return median;
+    }
+
+    // Adds a plain value, such as a count of janky frames, to the results
+    void put(String name, long value) throws JSONException {
+        results.put(name, value);
+    }
+
+    // Writes the results, keeping the previous file and logging how the medians moved since then
+    void write() throws IOException, JSONException {
+        File dir = new File(context.getExternalFilesDir(null), "benchmarks");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File file = new File(dir, suite + ".json");
+        File previousFile = new File(dir, suite + ".previous.json");
+
+        JSONObject report = new JSONObject();
+        report.put("suite", suite);
+        report.put("timestamp", System.currentTimeMillis());
+        report.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        report.put("sdk", Build.VERSION.SDK_INT);
+        report.put("results", results);
+
+        if (file.exists()) {
+            JSONObject previous = new JSONObject(readText(file)).optJSONObject("results");
+            if (previous != null) {
+                compare(previous);
+            }
+            if (previousFile.exists() && !previousFile.delete() || !file.renameTo(previousFile)) {
+                Log.w(TAG, "Could not keep the previous results in " + previousFile);
+            }
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(report.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+        Log.i(TAG, "Wrote " + file);
+    }
+
+    private void compare(JSONObject previous) throws JSONException {
+        Iterator<String> names = results.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            JSONObject now = results.optJSONObject(name);
+            JSONObject before = previous.optJSONObject(name);
+            if (now == null || before == null || before.optLong("median_ns") <= 0) {
+                continue;
+            }
+            double change = (double) now.getLong("median_ns") / before.getLong("median_ns") - 1;
+            if (Math.abs(change) >= REGRESSION_THRESHOLD) {
+                Log.w(TAG, String.format("%s %s: median %s by %.0f%% since the previous run", suite, name,
+                        change > 0 ? "REGRESSED" : "improved", Math.abs(change) * 100));
+            }
+        }
+    }
+
+    private static String readText(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            return new String(bytes, 0, read, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.zybooks.eventtracker;
+
+import android.Manifest;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the edit dialog of DataGridActivity: an event opened with its stored yyyy-MM-dd date is shown
+ * in the MM-dd-yyyy entry form, and the conflict check that runs when the dialog opens warns about an
+ * event it overlaps without anything being retyped.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConflictWarningTest {
+
+    private static final String USER_PREFIX = "conflict-test-";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private DatabaseHelper helper;
+    private long userId;
+    private DataGridActivity activity;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        // Keep the permission prompt from covering the dialog
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            instrumentation.getUiAutomation().grantRuntimePermission(context.getPackageName(), Manifest.permission.SEND_SMS);
+        }
+        helper = DatabaseHelper.getInstance(context);
+        deleteTestUsers(helper);
+        userId = helper.addUser(USER_PREFIX + "alice", "unused");
+    }
+
+    @After
+    public void tearDown() {
+        if (activity != null) {
+            activity.finish();
+            instrumentation.waitForIdleSync();
+        }
+        deleteTestUsers(helper);
+    }
+
+    @Test
+    public void editDialogWarnsAboutConflictOnOpen() {
+        int eventId = (int) helper.addEvent(userId, "Review", "Notes", "2030-01-16", "9:00 AM", 60, false);
+        helper.addEvent(userId, "Standup", "", "2030-01-16", "9:30 AM", 15, false);
+        helper.addEvent(userId, "Lunch", "", "2030-01-16", "12:00 PM", 60, false);
+        activity = launch(userId);
+
+        AtomicReference<AlertDialog> dialog = new AtomicReference<>();
+        instrumentation.runOnMainSync(() -> dialog.set(activity.showEditEventDialog(eventId, "Review", "Notes",
+                "2030-01-16", "9:00 AM", false)));
+
+        EditText dateEditText = dialog.get().findViewById(R.id.eventDateEditText);
+        TextView warningText = dialog.get().findViewById(R.id.conflictWarningText);
+        AtomicReference<String> date = new AtomicReference<>();
+        instrumentation.runOnMainSync(() -> date.set(dateEditText.getText().toString()));
+        assertEquals("01-16-2030", date.get());
+
+        // The views are only read on the main thread, while the check runs in the background
+        AtomicReference<String> shown = new AtomicReference<>();
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while (shown.get() == null && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(50);
+            instrumentation.runOnMainSync(() -> shown.set(warningText.getVisibility() == View.VISIBLE
+                    ? warningText.getText().toString() : null));
+        }
+        assertNotNull("No conflict warning was shown", shown.get());
+        String warning = shown.get();
+        assertTrue(warning, warning.contains("Standup"));
+        assertFalse(warning, warning.contains("Review"));
+        assertFalse(warning, warning.contains("Lunch"));
+
+        instrumentation.runOnMainSync(() -> dialog.get().dismiss());
+    }
+
+    private DataGridActivity launch(long userId) {
+        Intent intent = new Intent(context, DataGridActivity.class)
+                .putExtra(DataGridActivity.EXTRA_USER_ID, userId)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        return (DataGridActivity) instrumentation.startActivitySync(intent);
+    }
+
+    // Removing the users removes their events too, through the foreign key
+    private static void deleteTestUsers(DatabaseHelper helper) {
+        helper.getWritableDatabase().execSQL("DELETE FROM users WHERE username LIKE '" + USER_PREFIX + "%'");
+    }
+}
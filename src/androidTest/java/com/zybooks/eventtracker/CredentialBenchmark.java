@@ -0,0 +1,79 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Calibrates password hashing on this device and checks that login, for known and unknown
+ * usernames alike, stays inside the latency budget.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CredentialBenchmark {
+
+    private static final String TAG = "CredentialBenchmark";
+    private static final String TEST_DB = "credential-benchmark.db";
+    private static final int RUNS = 20;
+    // Hash target plus generous headroom for the query and scheduling noise
+    private static final long LOGIN_BUDGET_MILLIS = UserRepository.HASH_TARGET_MILLIS * 2 + 50;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        helper = new DatabaseHelper(context, TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void loginStaysWithinBudget() {
+        int iterations = PasswordHasher.calibrate(UserRepository.HASH_TARGET_MILLIS);
+        PasswordHasher hasher = new PasswordHasher(iterations);
+        for (int i = 0; i < 1000; i++) {
+            helper.addUser("user" + i, i == 500 ? hasher.hash("secret") : "pbkdf2-sha1$1$00$00");
+        }
+
+        long[] known = new long[RUNS];
+        long[] unknown = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            assertNotEquals(-1, helper.checkUser("user500", "secret", hasher));
+            known[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            assertEquals(-1, helper.checkUser("nobody" + i, "secret", hasher));
+            unknown[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(known);
+        Arrays.sort(unknown);
+        long knownMedian = known[RUNS / 2] / 1_000_000;
+        long unknownMedian = unknown[RUNS / 2] / 1_000_000;
+        long worst = Math.max(known[RUNS - 1], unknown[RUNS - 1]) / 1_000_000;
+        Log.i(TAG, "iterations=" + iterations + " known median=" + knownMedian + " ms, unknown median="
+                + unknownMedian + " ms, worst=" + worst + " ms");
+
+        assertTrue("Login took " + worst + " ms", worst <= LOGIN_BUDGET_MILLIS);
+        // Unknown usernames cost a hash too, so they cannot be told apart by timing
+        assertTrue("Known " + knownMedian + " ms vs unknown " + unknownMedian + " ms",
+                Math.abs(knownMedian - unknownMedian) <= Math.max(10, knownMedian / 4));
+    }
+}
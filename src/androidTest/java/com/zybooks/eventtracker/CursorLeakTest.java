@@ -0,0 +1,109 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs thousands of logins, registrations and page queries and checks that no cursor or file
+ * handle is left open. Relies on the debug cursor tracking, which test builds turn on.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CursorLeakTest {
+
+    private static final String TEST_DB = "cursor-leak-test.db";
+    private static final int LOGIN_ATTEMPTS = 3000;
+    // Hashing cost is irrelevant here, so keep it minimal to make thousands of logins quick
+    private static final PasswordHasher HASHER = new PasswordHasher(1);
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        helper = new DatabaseHelper(context, TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void detectorTracksOpenCursors() {
+        int before = CursorLeakDetector.getOpenCursorCount();
+
+        Cursor cursor = helper.getAllEvents(1);
+        assertEquals(before + 1, CursorLeakDetector.getOpenCursorCount());
+        String trace = android.util.Log.getStackTraceString(
+                CursorLeakDetector.getOpenCursorTraces().get(CursorLeakDetector.getOpenCursorCount() - 1));
+        assertTrue(trace, trace.contains("detectorTracksOpenCursors"));
+
+        cursor.close();
+        assertEquals(before, CursorLeakDetector.getOpenCursorCount());
+    }
+
+    @Test
+    public void thousandsOfLoginsLeakNoHandles() {
+        long userId = helper.addUser("alice", HASHER.hash("secret"));
+        for (int i = 0; i < 200; i++) {
+            helper.addEvent(userId, "Event " + i, "Description " + i, "03-05-2024", "9:00 AM", i % 2 == 0);
+        }
+        // Open the connection and warm up before taking the baseline
+        helper.checkUser("alice", "secret", HASHER);
+        int cursorsBefore = CursorLeakDetector.getOpenCursorCount();
+        int filesBefore = openFileCount();
+
+        for (int i = 0; i < LOGIN_ATTEMPTS; i++) {
+            switch (i % 4) {
+                case 0:
+                    assertEquals(userId, helper.checkUser("alice", "secret", HASHER));
+                    break;
+                case 1:
+                    assertEquals(-1, helper.checkUser("alice", "wrong", HASHER));
+                    break;
+                case 2:
+                    // No row found: the path that used to leave the cursor open
+                    assertEquals(-1, helper.checkUser("nobody" + i, "secret", HASHER));
+                    break;
+                default:
+                    try {
+                        helper.addUser("alice", HASHER.hash("again"));
+                        fail("Duplicate username was accepted");
+                    } catch (SQLiteConstraintException expected) {
+                        // Taken usernames fail on the unique index
+                    }
+            }
+            try (Cursor cursor = helper.getEventsPage(userId, 0, -1, EventRepository.PAGE_SIZE)) {
+                assertEquals(EventRepository.PAGE_SIZE, cursor.getCount());
+            }
+        }
+
+        CursorLeakDetector.reportOpenCursors();
+        assertEquals(cursorsBefore, CursorLeakDetector.getOpenCursorCount());
+        // Allow a little slack for unrelated threads of the test process
+        int filesAfter = openFileCount();
+        assertTrue("Open files grew from " + filesBefore + " to " + filesAfter, filesAfter <= filesBefore + 5);
+    }
+
+    // Number of file descriptors this process has open
+    private static int openFileCount() {
+        String[] descriptors = new File("/proc/self/fd").list();
+        return descriptors == null ? 0 : descriptors.length;
+    }
+}
@@ -0,0 +1,495 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrades a version 4 database through the step-by-step migrations and checks
+ * that rows survive, dates are converted, and the new indexes are used.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationTest {
+
+    private static final String TEST_DB = "migration-test.db";
+    // Low cost, so the tests run quickly
+    private static final PasswordHasher HASHER = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null) {
+            helper.close();
+        }
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void upgradeFromVersion4KeepsUsersAndEvents() {
+        createVersion4Database();
+
+        helper = new DatabaseHelper(context, TEST_DB);
+        SQLiteDatabase db = helper.getReadableDatabase();
+
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM users"));
+        assertEquals(3, count(db, "SELECT COUNT(*) FROM events"));
+        assertNotEquals(-1, helper.checkUser("alice", "secret", HASHER));
+    }
+
+    @Test
+    public void upgradeFromVersion4ConvertsDatesToEpochMillis() {
+        createVersion4Database();
+
+        helper = new DatabaseHelper(context, TEST_DB);
+        SQLiteDatabase db = helper.getReadableDatabase();
+
+        // Stored in the sortable format with a 12-hour time
+        assertEquals(localMillis(2024, Calendar.MARCH, 5, 14, 30), startAt(db, "Sortable"));
+        // Stored in the entry format with a 24-hour time, and normalized to the sortable format
+        assertEquals(localMillis(2024, Calendar.MARCH, 6, 9, 15), startAt(db, "Entry"));
+        try (Cursor cursor = db.rawQuery("SELECT date FROM events WHERE title = 'Entry'", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("2024-03-06", cursor.getString(0));
+        }
+        // No time means the start of the day
+        assertEquals(localMillis(2024, Calendar.MARCH, 7, 0, 0), startAt(db, "NoTime"));
+    }
+
+    @Test
+    public void upgradeFromVersion4AssignsEventsToFirstUser() {
+        createVersion4Database();
+
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.checkUser("alice", "secret", HASHER);
+
+        try (Cursor cursor = helper.getAllEvents(userId)) {
+            assertEquals(3, cursor.getCount());
+        }
+        try (Cursor cursor = helper.getAllEvents(userId + 1)) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion4WithoutUsersDropsOwnerlessEvents() {
+        createVersion4Database();
+        SQLiteDatabase old = SQLiteDatabase.openDatabase(context.getDatabasePath(TEST_DB).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        old.execSQL("DELETE FROM users");
+        old.close();
+
+        helper = new DatabaseHelper(context, TEST_DB);
+        SQLiteDatabase db = helper.getReadableDatabase();
+
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM events"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM event_stats"));
+        assertEquals(0, helper.countStatMismatches());
+
+        // The first account registered afterwards starts with an empty list
+        long userId = helper.addUser("alice", HASHER.hash("secret"));
+        try (Cursor cursor = helper.getAllEvents(userId)) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void freshInstallMatchesUpgradedSchema() {
+        createVersion4Database();
+        helper = new DatabaseHelper(context, TEST_DB);
+        String upgraded = schema(helper.getReadableDatabase());
+        helper.close();
+
+        context.deleteDatabase(TEST_DB);
+        helper = new DatabaseHelper(context, TEST_DB);
+        String fresh = schema(helper.getReadableDatabase());
+
+        assertEquals(upgraded, fresh);
+    }
+
+    @Test
+    public void eventPageQueryUsesUserStartIndex() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        String plan = queryPlan(helper.getReadableDatabase(),
+                "SELECT event_id, title, date, time, start_at FROM events" +
+                        " WHERE user_id = ? AND start_at >= ? AND (start_at > ? OR event_id > ?)" +
+                        " ORDER BY start_at, event_id LIMIT 50",
+                new String[]{"1", "0", "0", "0"});
+
+        assertTrue(plan, plan.contains("idx_events_user_start"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void loginQueryUsesUsernameIndex() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        String plan = queryPlan(helper.getReadableDatabase(),
+                "SELECT id, password, password_hash FROM users WHERE username=?", new String[]{"alice"});
+
+        assertTrue(plan, plan.contains("idx_users_username"));
+    }
+
+    @Test
+    public void legacyPasswordIsHashedAfterLogin() {
+        createVersion4Database();
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.checkUser("alice", "secret", HASHER);
+
+        assertTrue(helper.upgradePassword(userId, "secret", HASHER));
+        // Already current, so nothing to do the second time
+        assertFalse(helper.upgradePassword(userId, "secret", HASHER));
+
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT password, password_hash FROM users WHERE id = ?", new String[]{String.valueOf(userId)})) {
+            assertTrue(cursor.moveToFirst());
+            assertTrue(cursor.isNull(0));
+            assertTrue(cursor.getString(1).startsWith("pbkdf2-"));
+        }
+        assertEquals(userId, helper.checkUser("alice", "secret", HASHER));
+        assertEquals(-1, helper.checkUser("alice", "wrong", HASHER));
+        assertEquals(-1, helper.checkUser("nobody", "secret", HASHER));
+    }
+
+    @Test
+    public void upgradeRenamesDuplicateUsernamesAndKeepsTheirEvents() {
+        // Version 6 already has an owner for each event; the second alice is someone else
+        SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        old.execSQL("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT, password TEXT);");
+        old.execSQL("CREATE INDEX idx_users_username ON users (username)");
+        old.execSQL("CREATE TABLE events (event_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, description TEXT," +
+                " date TEXT, time TEXT, notifications_enabled INTEGER DEFAULT 0, start_at INTEGER NOT NULL DEFAULT 0," +
+                " user_id INTEGER REFERENCES users(id) ON DELETE CASCADE);");
+        old.execSQL("CREATE INDEX idx_events_user_start ON events (user_id, start_at, event_id)");
+        old.execSQL("INSERT INTO users (id, username, password) VALUES (1, 'alice', 'secret'), (2, 'alice', 'other')," +
+                " (3, 'alice#2', 'taken')");
+        old.execSQL("INSERT INTO events (title, date, time, user_id) VALUES ('First', '2024-03-05', '', 1)," +
+                " ('Private', '2024-03-06', '', 2), ('Third', '2024-03-07', '', 3)");
+        old.setVersion(6);
+        old.close();
+
+        helper = new DatabaseHelper(context, TEST_DB);
+        SQLiteDatabase db = helper.getReadableDatabase();
+
+        assertEquals(3, count(db, "SELECT COUNT(*) FROM users"));
+        assertEquals(1, helper.checkUser("alice", "secret", HASHER));
+        assertEquals(-1, helper.checkUser("alice", "other", HASHER));
+        // The renamed name was taken, so the duplicate is renamed again rather than failing the upgrade
+        assertEquals(2, helper.checkUser("alice#2#2", "other", HASHER));
+        assertEquals(3, helper.checkUser("alice#2", "taken", HASHER));
+
+        // No event changes owner
+        assertEquals(1, count(db, "SELECT user_id FROM events WHERE title = 'First'"));
+        assertEquals(2, count(db, "SELECT user_id FROM events WHERE title = 'Private'"));
+        assertEquals(3, count(db, "SELECT user_id FROM events WHERE title = 'Third'"));
+    }
+
+    @Test
+    public void sessionsResolveToTheirUserUntilTheyExpireOrEnd() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.addUser("dave", HASHER.hash("secret"));
+        String tokenHash = PasswordHasher.hashSessionToken(PasswordHasher.newSessionToken());
+        helper.addSession(userId, tokenHash, 2_000);
+
+        assertEquals(userId, helper.getSessionUser(tokenHash, 1_000));
+        assertEquals(-1, helper.getSessionUser(tokenHash, 2_000));
+        assertEquals(-1, helper.getSessionUser(PasswordHasher.hashSessionToken("guess"), 1_000));
+
+        assertTrue(helper.extendSession(tokenHash, 3_000));
+        assertEquals(userId, helper.getSessionUser(tokenHash, 2_500));
+
+        assertEquals(1, helper.deleteSession(tokenHash));
+        assertEquals(-1, helper.getSessionUser(tokenHash, 1_000));
+        assertFalse(helper.extendSession(tokenHash, 3_000));
+    }
+
+    @Test
+    public void sessionsAreRemovedWithTheirUser() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.addUser("erin", HASHER.hash("secret"));
+        helper.addSession(userId, PasswordHasher.hashSessionToken("token"), Long.MAX_VALUE);
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.delete("users", "id = ?", new String[]{String.valueOf(userId)});
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM sessions"));
+    }
+
+    @Test(expected = SQLiteConstraintException.class)
+    public void addUserRejectsTakenUsername() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        helper.addUser("carol", HASHER.hash("one"));
+        helper.addUser("carol", HASHER.hash("two"));
+    }
+
+    @Test
+    public void upgradeFromVersion4IndexesExistingEventsForSearch() {
+        createVersion4Database();
+
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.checkUser("alice", "secret", HASHER);
+
+        assertEquals(1, searchCount(userId, "sort"));
+        assertEquals(1, searchCount(userId, "b"));
+    }
+
+    @Test
+    public void upgradeFromVersion4CountsExistingEventsInStats() {
+        createVersion4Database();
+
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.checkUser("alice", "secret", HASHER);
+
+        assertEquals(0, helper.countStatMismatches());
+        CalendarRange march = CalendarRange.containing(CalendarRange.Kind.MONTH, DateTimeCodec.parseDate("2024-03-01"));
+        List<EventStats.Bucket> months = helper.getStatBuckets(userId, CalendarRange.Kind.MONTH,
+                march.getStartDate(), march.getEndDate());
+        assertEquals(1, months.size());
+        assertEquals(3, months.get(0).getEventCount());
+    }
+
+    @Test
+    public void searchIndexFollowsInsertsUpdatesAndDeletes() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.addUser("bob", HASHER.hash("pw"));
+        int eventId = (int) helper.addEvent(userId, "Dentist appointment", "Bring insurance card", "03-05-2024", "9:00 AM", false);
+        helper.addEvent(userId, "Team lunch", "Ask the dentist about Friday", "03-06-2024", "12:00 PM", false);
+
+        // Title matches rank ahead of description matches
+        try (Cursor cursor = helper.searchEvents(userId, "dent", false, 0, -1, 10)) {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(eventId, cursor.getInt(cursor.getColumnIndexOrThrow("event_id")));
+        }
+
+        helper.updateEvent(userId, eventId, "Checkup", "Insurance card", "03-05-2024", "9:00 AM", false);
+        assertEquals(1, searchCount(userId, "dent"));
+        assertEquals(1, searchCount(userId, "check insur"));
+
+        helper.deleteEvent(userId, eventId);
+        assertEquals(0, searchCount(userId, "checkup"));
+        // Other users' events and syntax characters in the query are ignored
+        assertEquals(0, searchCount(userId + 1, "lunch"));
+        assertEquals(1, searchCount(userId, "\"lunch\" -TEAM*"));
+        assertEquals(0, searchCount(userId, " * "));
+    }
+
+    @Test
+    public void searchPagesFollowTitleMatchesThenStartTime() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.addUser("ivy", HASHER.hash("pw"));
+        helper.addEvent(userId, "Notes", "Dentist visit follow-up", "03-04-2024", "9:00 AM", false);
+        helper.addEvent(userId, "Dentist visit", "", "03-07-2024", "9:00 AM", false);
+        helper.addEvent(userId, "Lunch", "Visit the dentist after", "03-05-2024", "9:00 AM", false);
+        helper.addEvent(userId, "Visit to the dentist", "", "03-06-2024", "9:00 AM", false);
+        // Only one of the words is in the title, so this is not a title match
+        helper.addEvent(userId, "Dentist", "Plan a visit", "03-01-2024", "9:00 AM", false);
+
+        // Two rows a page, each page starting after the last row of the one before
+        StringBuilder titles = new StringBuilder();
+        boolean afterTitleMatch = false;
+        long afterStartAt = 0;
+        int afterId = -1;
+        int pages = 0;
+        while (true) {
+            try (Cursor cursor = helper.searchEvents(userId, "visit dent", afterTitleMatch, afterStartAt, afterId, 2)) {
+                pages++;
+                if (!cursor.moveToLast()) {
+                    break;
+                }
+                afterTitleMatch = cursor.getInt(cursor.getColumnIndexOrThrow("title_match")) == 1;
+                afterStartAt = cursor.getLong(cursor.getColumnIndexOrThrow("start_at"));
+                afterId = cursor.getInt(cursor.getColumnIndexOrThrow("event_id"));
+                cursor.moveToPosition(-1);
+                while (cursor.moveToNext()) {
+                    titles.append(cursor.getString(cursor.getColumnIndexOrThrow("title"))).append(';');
+                }
+            }
+        }
+        assertEquals("Visit to the dentist;Dentist visit;Dentist;Notes;Lunch;", titles.toString());
+        assertEquals(4, pages);
+    }
+
+    @Test
+    public void searchQueryUsesFullTextIndex() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        String plan = queryPlan(helper.getReadableDatabase(),
+                "SELECT e.event_id FROM events_fts f JOIN events e ON e.event_id = f.docid" +
+                        " WHERE events_fts MATCH ? AND e.user_id = ?",
+                new String[]{"dent*", "1"});
+
+        assertTrue(plan, plan.contains("VIRTUAL TABLE"));
+        assertFalse(plan, plan.contains("SCAN e"));
+        assertFalse(plan, plan.contains("SCAN events"));
+    }
+
+    @Test
+    public void rangeQueryUsesUserStartAndSpanIndexes() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        SQLiteDatabase db = helper.getReadableDatabase();
+        String rangePlan = queryPlan(db,
+                "SELECT event_id, title, date, time, start_at FROM events" +
+                        " WHERE user_id = ? AND start_at >= ? AND start_at < ? AND (start_at >= ? OR end_at > ?)" +
+                        " ORDER BY start_at, event_id",
+                new String[]{"1", "0", "100", "0", "0"});
+        String spanPlan = queryPlan(db,
+                "SELECT end_at - start_at FROM events WHERE user_id = ? ORDER BY end_at - start_at DESC LIMIT 1",
+                new String[]{"1"});
+
+        assertTrue(rangePlan, rangePlan.contains("idx_events_user_start"));
+        assertFalse(rangePlan, rangePlan.contains("TEMP B-TREE"));
+        assertTrue(spanPlan, spanPlan.contains("idx_events_user_span"));
+        assertFalse(spanPlan, spanPlan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void rangeQueryReturnsEventsOverlappingTheRange() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.addUser("carol", HASHER.hash("secret"));
+        long otherUserId = helper.addUser("dave", HASHER.hash("secret"));
+        helper.addEvent(userId, "Before", "", "2024-03-03", "23:00", false);
+        long multiDay = helper.addEvent(userId, "Conference", "", "2024-03-03", "9:00", false);
+        helper.addEvent(userId, "Inside", "", "2024-03-05", "10:00", false);
+        helper.addEvent(userId, "Next week", "", "2024-03-11", "0:00", false);
+        helper.addEvent(otherUserId, "Other user", "", "2024-03-05", "10:00", false);
+        // Events have no end time yet, so stretch one over three days by hand
+        helper.getWritableDatabase().execSQL("UPDATE events SET end_at = start_at + 3 * 86400000 WHERE event_id = ?",
+                new Object[]{multiDay});
+
+        CalendarRange week = CalendarRange.containing(CalendarRange.Kind.WEEK, 20240305);
+        TimeZone zone = TimeZone.getDefault();
+        StringBuilder titles = new StringBuilder();
+        try (Cursor cursor = helper.getEventsInRange(userId, week.getStartMillis(zone), week.getEndMillis(zone))) {
+            while (cursor.moveToNext()) {
+                titles.append(cursor.getString(cursor.getColumnIndexOrThrow("title"))).append(';');
+            }
+        }
+        assertEquals("Conference;Inside;", titles.toString());
+    }
+
+    @Test
+    public void pendingRemindersBelongToOneUser() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.addUser("erin", HASHER.hash("secret"));
+        long otherUserId = helper.addUser("frank", HASHER.hash("secret"));
+        helper.addEvent(userId, "Dentist", "", "2030-03-05", "9:00 AM", true);
+        helper.addEvent(userId, "No reminder", "", "2030-03-05", "10:00 AM", false);
+        helper.addEvent(otherUserId, "Frank's", "", "2030-03-05", "9:30 AM", true);
+
+        StringBuilder titles = new StringBuilder();
+        try (Cursor cursor = helper.getPendingReminders(userId, 0)) {
+            while (cursor.moveToNext()) {
+                titles.append(cursor.getString(cursor.getColumnIndexOrThrow("title"))).append(';');
+            }
+        }
+        assertEquals("Dentist;", titles.toString());
+
+        String plan = queryPlan(helper.getReadableDatabase(),
+                "SELECT event_id, title, time, start_at FROM events" +
+                        " WHERE user_id = ? AND notifications_enabled = 1 AND start_at > ? ORDER BY start_at, event_id",
+                new String[]{String.valueOf(userId), "0"});
+        assertTrue(plan, plan.contains("idx_events_user_reminders"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void reminderPhoneIsKeptPerUser() {
+        helper = new DatabaseHelper(context, TEST_DB);
+        long userId = helper.addUser("gina", HASHER.hash("secret"));
+        long otherUserId = helper.addUser("hank", HASHER.hash("secret"));
+        assertNull(helper.getReminderPhone(userId));
+
+        assertEquals(1, helper.setReminderPhone(userId, "5551234"));
+        assertEquals("5551234", helper.getReminderPhone(userId));
+        assertNull(helper.getReminderPhone(otherUserId));
+
+        helper.setReminderPhone(userId, null);
+        assertNull(helper.getReminderPhone(userId));
+    }
+
+    private int searchCount(long userId, String query) {
+        try (Cursor cursor = helper.searchEvents(userId, query, false, 0, -1, 100)) {
+            return cursor.getCount();
+        }
+    }
+
+    // Writes the schema and a few rows exactly as version 4 of the app did
+    private void createVersion4Database() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        db.execSQL("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT, password TEXT);");
+        db.execSQL("CREATE TABLE events (event_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, description TEXT," +
+                " date TEXT, time TEXT, notifications_enabled INTEGER DEFAULT 0);");
+        db.execSQL("INSERT INTO users (username, password) VALUES ('alice', 'secret')");
+        db.execSQL("INSERT INTO events (title, description, date, time, notifications_enabled)" +
+                " VALUES ('Sortable', 'a', '2024-03-05', '2:30 PM', 1)");
+        db.execSQL("INSERT INTO events (title, description, date, time, notifications_enabled)" +
+                " VALUES ('Entry', 'b', '03-06-2024', '09:15', 0)");
+        db.execSQL("INSERT INTO events (title, description, date, time, notifications_enabled)" +
+                " VALUES ('NoTime', 'c', '2024-03-07', '', 0)");
+        db.setVersion(4);
+        db.close();
+    }
+
+    private static long startAt(SQLiteDatabase db, String title) {
+        try (Cursor cursor = db.rawQuery("SELECT start_at FROM events WHERE title = ?", new String[]{title})) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private static long localMillis(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    private static int count(SQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    private static String schema(SQLiteDatabase db) {
+        StringBuilder builder = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master" +
+                " WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata' ORDER BY type, name", null)) {
+            while (cursor.moveToNext()) {
+                builder.append(cursor.getString(0)).append(' ').append(cursor.getString(1)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String queryPlan(SQLiteDatabase db, String sql, String[] args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailIndex)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
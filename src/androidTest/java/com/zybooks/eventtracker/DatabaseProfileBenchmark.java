@@ -0,0 +1,191 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures mixed read/write throughput with one writer updating events and two
+ * readers paging through them, first with the legacy configuration (rollback
+ * journal and default pragmas) and then with the tuned write-ahead logging profile.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseProfileBenchmark {
+
+    private static final String TAG = "DatabaseProfileBenchmark";
+    private static final String TEST_DB = "profile-benchmark.db";
+    private static final int EVENT_COUNT = 10_000;
+    private static final int READER_COUNT = 2;
+    private static final int PAGE_SIZE = 50;
+    private static final long RUN_MILLIS = 3_000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void mixedReadWriteThroughput() throws Exception {
+        Result legacy = run(DatabaseProfile.LEGACY);
+        context.deleteDatabase(TEST_DB);
+        Result tuned = run(DatabaseProfile.DEFAULT);
+
+        Log.i(TAG, "legacy: " + legacy);
+        Log.i(TAG, "tuned:  " + tuned);
+        Log.i(TAG, "writes x" + ratio(tuned.writes, legacy.writes) + " reads x" + ratio(tuned.reads, legacy.reads));
+
+        assertTrue(legacy.writes > 0 && legacy.reads > 0);
+        assertTrue(tuned.writes > 0 && tuned.reads > 0);
+        // Readers no longer wait for the writer, so the tuned profile must not do fewer reads
+        assertTrue(tuned.toString(), tuned.reads >= legacy.reads);
+    }
+
+    private Result run(DatabaseProfile profile) throws Exception {
+        DatabaseHelper helper = new DatabaseHelper(context, TEST_DB, profile);
+        try {
+            long userId = helper.addUser("bench", "unused");
+            int firstId = seed(helper, userId);
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong writes = new AtomicLong();
+            AtomicLong reads = new AtomicLong();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+
+            Thread writer = new Thread(() -> {
+                Random random = new Random(1);
+                try {
+                    while (running.get()) {
+                        int eventId = firstId + random.nextInt(EVENT_COUNT);
+                        helper.updateEvent(userId, eventId, "Updated " + eventId, "Changed by the benchmark",
+                                dateFor(eventId), "10:30 AM", random.nextBoolean());
+                        writes.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            Thread[] readers = new Thread[READER_COUNT];
+            for (int r = 0; r < READER_COUNT; r++) {
+                int seed = r + 2;
+                readers[r] = new Thread(() -> {
+                    Random random = new Random(seed);
+                    try {
+                        while (running.get()) {
+                            readPage(helper, userId, random.nextInt(EVENT_COUNT));
+                            reads.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                });
+            }
+
+            long start = System.nanoTime();
+            writer.start();
+            for (Thread reader : readers) {
+                reader.start();
+            }
+            Thread.sleep(RUN_MILLIS);
+            running.set(false);
+            writer.join();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            return new Result(writes.get() * 1000 / elapsedMillis, reads.get() * 1000 / elapsedMillis);
+        } finally {
+            helper.close();
+        }
+    }
+
+    // Inserts the events in one transaction and returns the id of the first one
+    private static int seed(DatabaseHelper helper, long userId) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        int firstId = -1;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                int eventId = (int) helper.addEvent(userId, "Event " + i, "Description for event " + i,
+                        dateFor(i), (i % 12 + 1) + ":00 PM", i % 2 == 0);
+                if (firstId < 0) {
+                    firstId = eventId;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return firstId;
+    }
+
+    // Reads one page starting near the given position, the query the event list issues while scrolling
+    private static void readPage(DatabaseHelper helper, long userId, int position) {
+        long afterStartAt = 0;
+        int afterId = -1;
+        try (Cursor cursor = helper.getEventsPage(userId, 0, -1, 1)) {
+            if (cursor.moveToFirst()) {
+                afterStartAt = cursor.getLong(cursor.getColumnIndexOrThrow("start_at")) + position * 3_600_000L;
+                afterId = 0;
+            }
+        }
+        try (Cursor cursor = helper.getEventsPage(userId, afterStartAt, afterId, PAGE_SIZE)) {
+            while (cursor.moveToNext()) {
+                cursor.getString(1);
+            }
+        }
+    }
+
+    // Spreads the events over consecutive days in the entry format
+    private static String dateFor(int index) {
+        int day = index % 28 + 1;
+        int month = index / 28 % 12 + 1;
+        return String.format("%02d-%02d-2024", month, day);
+    }
+
+    private static String ratio(long tuned, long legacy) {
+        return legacy == 0 ? "inf" : String.format("%.2f", (double) tuned / legacy);
+    }
+
+    private static class Result {
+        final long writes;
+        final long reads;
+
+        Result(long writes, long reads) {
+            this.writes = writes;
+            this.reads = reads;
+        }
+
+        @Override
+        public String toString() {
+            return writes + " writes/s, " + reads + " page reads/s";
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Microbenchmarks for the event data path at 1k, 10k and 100k rows: adding,
+ * updating and reading every event, reading the events of one month, deleting
+ * a selection of events and putting it back, reading the first screen of the list
+ * from the database and from its snapshot, the date conversion done on every
+ * write, and the login lookup. Each size has its own database, seeded once and shared
+ * by the tests of that size. Results are written by {@link BenchmarkReport} to
+ * {@code benchmarks/EventDataBenchmark.json}.
+ */
+@RunWith(Parameterized.class)
+public class EventDataBenchmark {
+
+    private static final String SUITE = "EventDataBenchmark";
+    private static final int SEED_BATCH = 5_000;
+
+    private static final Map<Integer, DatabaseHelper> HELPERS = new HashMap<>();
+    private static final Map<Integer, Long> USER_IDS = new HashMap<>();
+    private static BenchmarkReport report;
+
+    @Parameterized.Parameters(name = "{0} rows")
+    public static Collection<Object[]> sizes() {
+        return Arrays.asList(new Object[][]{{1_000}, {10_000}, {100_000}});
+    }
+
+    private final int rows;
+    private Context context;
+    private DatabaseHelper helper;
+    private long userId;
+
+    public EventDataBenchmark(int rows) {
+        this.rows = rows;
+    }
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        if (report == null) {
+            report = new BenchmarkReport(context, SUITE);
+        }
+        helper = HELPERS.get(rows);
+        if (helper == null) {
+            context.deleteDatabase(databaseName(rows));
+            helper = new DatabaseHelper(context, databaseName(rows));
+            USER_IDS.put(rows, seed(helper, rows));
+            HELPERS.put(rows, helper);
+        }
+        userId = USER_IDS.get(rows);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        if (report != null) {
+            report.write();
+            report = null;
+        }
+        for (Map.Entry<Integer, DatabaseHelper> entry : HELPERS.entrySet()) {
+            entry.getValue().close();
+            context.deleteDatabase(databaseName(entry.getKey()));
+        }
+        HELPERS.clear();
+        USER_IDS.clear();
+    }
+
+    @Test
+    public void addEvent() throws Exception {
+        report.measure("addEvent/" + rows, 50, 500, i -> assertNotEquals(-1,
+                helper.addEvent(userId, "Added " + i, "Benchmark event", "06-15-2024", "3:00 PM", i % 2 == 0)));
+    }
+
+    @Test
+    public void updateEvent() throws Exception {
+        Random random = new Random(1);
+        report.measure("updateEvent/" + rows, 50, 500, i -> {
+            int eventId = 1 + random.nextInt(rows);
+            assertEquals(1, helper.updateEvent(userId, eventId, "Updated " + i, "Benchmark event",
+                    dateFor(eventId), "10:30 AM", i % 2 == 0));
+        });
+    }
+
+    @Test
+    public void getAllEvents() throws Exception {
+        // Fewer runs for the larger tables, which take much longer to read
+        int iterations = Math.max(5, 200_000 / rows);
+        report.measure("getAllEvents/" + rows, 2, iterations, i -> {
+            int read = 0;
+            try (Cursor cursor = helper.getAllEvents(userId)) {
+                int titleIndex = cursor.getColumnIndexOrThrow(helper.getColumnTitle());
+                while (cursor.moveToNext()) {
+                    cursor.getString(titleIndex);
+                    read++;
+                }
+            }
+            assertTrue(read >= rows);
+        });
+    }
+
+    @Test
+    public void monthRange() throws Exception {
+        // The seeded events are an hour apart from the start of 2024 UTC, so January holds 744 of them
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        CalendarRange january = CalendarRange.containing(CalendarRange.Kind.MONTH, 20240115);
+        long from = january.getStartMillis(utc);
+        long to = january.getEndMillis(utc);
+        report.measure("monthRange/" + rows, 20, 200, i -> {
+            try (Cursor cursor = helper.getEventsInRange(userId, from, to)) {
+                assertEquals(Math.min(rows, 31 * 24), cursor.getCount());
+            }
+        });
+    }
+
+    @Test
+    public void deleteAndRestoreEvents() throws Exception {
+        // A selection of 1,000 events spread over the table; each run deletes it in one transaction and
+        // restores it in another, which leaves the table as seeded
+        int selected = Math.min(rows, 1000);
+        int[] eventIds = new int[selected];
+        for (int i = 0; i < selected; i++) {
+            eventIds[i] = 1 + (int) ((long) i * rows / selected);
+        }
+        report.measure("deleteAndRestoreEvents/" + selected + " of " + rows, 5, 50, i -> {
+            List<DeletedEvent> deleted = helper.deleteEvents(userId, eventIds);
+            assertEquals(selected, deleted.size());
+            assertEquals(selected, helper.restoreEvents(userId, deleted));
+        });
+    }
+
+    @Test
+    public void firstScreen() throws Exception {
+        // What a cold start needs before it can draw the list: the first page from the database,
+        // against the saved snapshot of it, which does not grow with the table
+        int size = EventRepository.SNAPSHOT_SIZE;
+        List<Event> firstScreen = new ArrayList<>(size);
+        report.measure("firstScreenQuery/" + rows, 20, 200, i -> {
+            firstScreen.clear();
+            try (Cursor cursor = helper.getEventsPage(userId, 0, -1, size)) {
+                while (cursor.moveToNext()) {
+                    firstScreen.add(new Event(cursor.getInt(0), cursor.getString(1), cursor.getString(2),
+                            cursor.getString(3), cursor.getString(4), cursor.getLong(5), cursor.getInt(6) == 1));
+                }
+            }
+            assertEquals(Math.min(rows, size), firstScreen.size());
+        });
+
+        File file = new File(context.getCacheDir(), "benchmark.snapshot");
+        EventSnapshot snapshot = new EventSnapshot(file);
+        snapshot.save(userId, firstScreen);
+        try {
+            report.measure("firstScreenSnapshot/" + rows, 20, 200, i ->
+                    assertEquals(firstScreen.size(), snapshot.load(userId).size()));
+        } finally {
+            snapshot.delete();
+        }
+    }
+
+    @Test
+    public void convertDateToSortableFormat() throws Exception {
+        // One conversion is too quick to time on its own, so each run converts a batch
+        String[] dates = new String[1000];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = dateFor(i);
+        }
+        report.measure("convertDateToSortableFormat/1000 dates", 100, 200, i -> {
+            for (String date : dates) {
+                helper.convertDateToSortableFormat(date);
+            }
+        });
+    }
+
+    @Test
+    public void loginLookup() throws Exception {
+        // The seeded users have legacy plaintext passwords, so no hashing is done and the
+        // timing is the username lookup alone
+        PasswordHasher hasher = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+        Random random = new Random(2);
+        report.measure("loginLookup/" + rows, 50, 500, i -> {
+            int user = random.nextInt(rows);
+            assertNotEquals(-1, helper.checkUser("user" + user, "password" + user, hasher));
+        });
+    }
+
+    // Adds the benchmark user with `rows` events, and `rows` other users, in large transactions.
+    // Returns the benchmark user's ID.
+    private static long seed(DatabaseHelper helper, int rows) {
+        long userId = helper.addUser("bench", "unused");
+        SQLiteDatabase db = helper.getWritableDatabase();
+        try (SQLiteStatement insertEvent = db.compileStatement("INSERT INTO events" +
+                " (user_id, title, description, date, time, start_at, end_at, notifications_enabled)" +
+                " VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?6, ?7)");
+             SQLiteStatement insertUser = db.compileStatement("INSERT INTO users (username, password) VALUES (?, ?)")) {
+            for (int batchStart = 0; batchStart < rows; batchStart += SEED_BATCH) {
+                db.beginTransaction();
+                try {
+                    for (int i = batchStart; i < Math.min(rows, batchStart + SEED_BATCH); i++) {
+                        insertEvent.bindLong(1, userId);
+                        insertEvent.bindString(2, "Event " + i);
+                        insertEvent.bindString(3, "Description for event " + i);
+                        insertEvent.bindString(4, helper.convertDateToSortableFormat(dateFor(i)));
+                        insertEvent.bindString(5, (i % 12 + 1) + ":00 PM");
+                        insertEvent.bindLong(6, 1704067200000L + i * 3_600_000L);
+                        insertEvent.bindLong(7, i % 2);
+                        insertEvent.executeInsert();
+
+                        insertUser.bindString(1, "user" + i);
+                        insertUser.bindString(2, "password" + i);
+                        insertUser.executeInsert();
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        }
+        helper.analyze();
+        return userId;
+    }
+
+    // Spreads the events over the days of one year, in the entry format
+    private static String dateFor(int index) {
+        int day = index % 28 + 1;
+        int month = index / 28 % 12 + 1;
+        return String.format("%02d-%02d-2024", month, day);
+    }
+
+    private static String databaseName(int rows) {
+        return "data-benchmark-" + rows + ".db";
+    }
+}
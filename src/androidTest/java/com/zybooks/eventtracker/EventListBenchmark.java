@@ -0,0 +1,210 @@
+package com.zybooks.eventtracker;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+import android.view.View;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the recycled event list with 10k events: per-frame layout time and
+ * allocations while scrolling, the cost of diffing a single-row edit, and expanding
+ * a year of a daily recurring event for the calendar views.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventListBenchmark {
+
+    private static final String TAG = "EventListBenchmark";
+    private static final int EVENT_COUNT = 10_000;
+    private static final int FRAME_COUNT = 300;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Test
+    public void scrollFrameTimeAndAllocations() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = instrumentation.getTargetContext();
+        List<Event> events = createEvents(EVENT_COUNT);
+
+        instrumentation.runOnMainSync(() -> {
+            RecyclerView recyclerView = createList(context, events);
+
+            long[] frameNanos = new long[FRAME_COUNT];
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                long start = System.nanoTime();
+                // One frame: scroll by roughly a row and lay out the newly visible rows
+                recyclerView.scrollBy(0, 120);
+                layout(recyclerView);
+                frameNanos[i] = System.nanoTime() - start;
+            }
+            int allocations = Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+
+            Arrays.sort(frameNanos);
+            Log.i(TAG, "scroll frame p50=" + frameNanos[FRAME_COUNT / 2] / 1000 + "us"
+                    + " p90=" + frameNanos[FRAME_COUNT * 9 / 10] / 1000 + "us"
+                    + " max=" + frameNanos[FRAME_COUNT - 1] / 1000 + "us"
+                    + " allocations/frame=" + allocations / FRAME_COUNT);
+
+            // Only the visible window of rows is ever inflated, not all 10k
+            assertTrue(recyclerView.getChildCount() < 100);
+        });
+    }
+
+    @Test
+    public void singleEditDiff() {
+        List<Event> oldList = createEvents(EVENT_COUNT);
+        List<Event> newList = new ArrayList<>(oldList);
+        Event edited = oldList.get(EVENT_COUNT / 2);
+        newList.set(EVENT_COUNT / 2, new Event(edited.getId(), "Edited", edited.getDescription(),
+                edited.getDate(), edited.getTime(), edited.getStartAt(), !edited.isNotificationsEnabled()));
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        long start = System.nanoTime();
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new ListDiff(oldList, newList));
+        CountingCallback counts = new CountingCallback();
+        result.dispatchUpdatesTo(counts);
+        long elapsed = System.nanoTime() - start;
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        Log.i(TAG, "single edit diff=" + elapsed / 1000 + "us allocations=" + allocations
+                + " changed=" + counts.changed + " inserted=" + counts.inserted + " removed=" + counts.removed);
+
+        // Exactly one row is rebound, nothing is inserted or removed
+        assertEquals(1, counts.changed);
+        assertEquals(0, counts.inserted);
+        assertEquals(0, counts.removed);
+    }
+
+    @Test
+    public void expandYearOfDailySeries() {
+        EventSeries series = new EventSeries(1, "Series", "Description", 20100101, "9:00 AM",
+                RecurrenceRule.parse("FREQ=DAILY"), true, Collections.emptyList());
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        long from = DateTimeCodec.toEpochMillis(20240101, 0, zone);
+        long to = DateTimeCodec.toEpochMillis(20250101, 0, zone) - 1;
+        long[] samples = new long[50];
+        for (int run = -20; run < samples.length; run++) {
+            List<Event> out = new ArrayList<>(366);
+            long start = System.nanoTime();
+            series.expand(from, to, zone, Integer.MAX_VALUE, out);
+            long elapsed = System.nanoTime() - start;
+            assertEquals(366, out.size());
+            if (run >= 0) {
+                samples[run] = elapsed;
+            }
+        }
+        Arrays.sort(samples);
+        long median = samples[samples.length / 2];
+        Log.i(TAG, "expand 366 daily occurrences p50=" + median / 1000 + "us max=" + samples[samples.length - 1] / 1000 + "us");
+
+        // A 60 Hz frame is 16.7 ms; the expansion must leave nearly all of it for layout and drawing
+        assertTrue("median " + median + " ns", median < 2_000_000L);
+    }
+
+    private static RecyclerView createList(Context context, List<Event> events) {
+        RecyclerView recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setHasFixedSize(true);
+        EventAdapter adapter = new EventAdapter(event -> { });
+        recyclerView.setAdapter(adapter);
+        // Submitting to an empty adapter skips the diff and applies the list immediately
+        adapter.submitList(events);
+        layout(recyclerView);
+        return recyclerView;
+    }
+
+    private static void layout(RecyclerView recyclerView) {
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static List<Event> createEvents(int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(new Event(i + 1, "Event " + i, "Description for event " + i,
+                    "2024-01-" + (10 + i % 18), (i % 12 + 1) + ":00 PM", 1704844800000L + i * 60_000L, i % 2 == 0));
+        }
+        return events;
+    }
+
+    // Same comparison the adapter performs, applied synchronously
+    private static class ListDiff extends DiffUtil.Callback {
+        private final List<Event> oldList;
+        private final List<Event> newList;
+
+        ListDiff(List<Event> oldList, List<Event> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return EventAdapter.DIFF_CALLBACK.areItemsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return EventAdapter.DIFF_CALLBACK.areContentsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+    }
+
+    private static class CountingCallback implements ListUpdateCallback {
+        int inserted;
+        int removed;
+        int changed;
+
+        @Override
+        public void onInserted(int position, int count) {
+            inserted += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            removed += count;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            changed += count;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the event counts kept per day, week and month by triggers: they follow inserts, edits, deletions,
+ * batch operations, archiving and sync, always match a count from scratch, are repaired by a rebuild, and
+ * answer the busiest-days and pending-reminder questions.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventStatsTest {
+
+    private static final String TEST_DB = "stats-test.db";
+
+    private Context context;
+    private DatabaseHelper helper;
+    private long userId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        helper = new DatabaseHelper(context, TEST_DB);
+        userId = helper.addUser("alice", "unused");
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void countsFollowWrites() {
+        // Monday, Sunday of the same week, and the Monday after
+        int first = (int) helper.addEvent(userId, "One", "", "2024-03-04", "9:00 AM", true);
+        helper.addEvent(userId, "Two", "", "2024-03-10", "9:00 AM", false);
+        helper.addEvent(userId, "Three", "", "2024-03-11", "9:00 AM", false);
+        helper.addEvent(userId, "No date", "", "someday", "", true);
+
+        assertEquals(2, eventsIn(CalendarRange.Kind.WEEK, "2024-03-04"));
+        assertEquals(1, eventsIn(CalendarRange.Kind.WEEK, "2024-03-11"));
+        assertEquals(3, eventsIn(CalendarRange.Kind.MONTH, "2024-03-01"));
+        assertEquals(1, remindersIn(CalendarRange.Kind.MONTH, "2024-03-01"));
+
+        helper.updateEvent(userId, first, "One", "", "2024-04-01", "9:00 AM", false);
+        assertEquals(0, eventsIn(CalendarRange.Kind.DAY, "2024-03-04"));
+        assertEquals(2, eventsIn(CalendarRange.Kind.MONTH, "2024-03-01"));
+        assertEquals(1, eventsIn(CalendarRange.Kind.MONTH, "2024-04-01"));
+        assertEquals(0, remindersIn(CalendarRange.Kind.MONTH, "2024-03-01"));
+
+        helper.deleteEvent(userId, first);
+        assertEquals(0, eventsIn(CalendarRange.Kind.MONTH, "2024-04-01"));
+        // Emptied buckets are removed, not left at zero
+        assertEquals(0, count("SELECT COUNT(*) FROM event_stats WHERE event_count = 0"));
+        assertEquals(0, helper.countStatMismatches());
+    }
+
+    @Test
+    public void countsMatchARecountAfterRandomWrites() {
+        Random random = new Random(7);
+        List<Integer> ids = new ArrayList<>();
+        for (int step = 0; step < 600; step++) {
+            String date = "2024-" + pad(random.nextInt(12) + 1) + "-" + pad(random.nextInt(28) + 1);
+            int action = ids.isEmpty() ? 0 : random.nextInt(8);
+            int id = ids.isEmpty() ? -1 : ids.get(random.nextInt(ids.size()));
+            if (action < 4) {
+                ids.add((int) helper.addEvent(userId, "Event " + step, "", date, "10:00 AM", random.nextBoolean()));
+            } else if (action == 4) {
+                helper.updateEvent(userId, id, "Edited", "", date, "11:00 AM", random.nextInt(60), random.nextBoolean());
+            } else if (action == 5) {
+                helper.shiftEvents(userId, new int[]{id}, random.nextInt(15) - 7);
+            } else if (action == 6) {
+                helper.setNotificationsEnabled(userId, new int[]{id}, random.nextBoolean());
+            } else {
+                helper.deleteEvents(userId, new int[]{id});
+                ids.remove(Integer.valueOf(id));
+            }
+        }
+        assertEquals(0, helper.countStatMismatches());
+
+        // Moving events to the archive and back leaves the counts as they were
+        long before = count("SELECT SUM(event_count) FROM event_stats");
+        helper.archiveEvents(userId, System.currentTimeMillis(), 1000);
+        assertEquals(0, count("SELECT COUNT(*) FROM events WHERE user_id = " + userId + " AND start_at > 0"));
+        assertEquals(before, count("SELECT SUM(event_count) FROM event_stats"));
+        helper.setNotificationsEnabled(userId, toArray(ids.subList(0, ids.size() / 2)), true);
+        assertEquals(0, helper.countStatMismatches());
+    }
+
+    @Test
+    public void rebuildRepairsDrift() {
+        for (int i = 0; i < 20; i++) {
+            helper.addEvent(userId, "Event " + i, "", "2024-05-" + pad(i % 7 + 1), "8:00 AM", i % 3 == 0);
+        }
+        helper.getWritableDatabase().execSQL("UPDATE event_stats SET event_count = event_count + 1 WHERE kind = 1");
+        helper.getWritableDatabase().execSQL("DELETE FROM event_stats WHERE kind = 0 AND bucket = '2024-05-01'");
+        assertTrue(helper.countStatMismatches() > 0);
+
+        // 7 days, 2 weeks and 1 month
+        assertEquals(10, helper.rebuildStats());
+        assertEquals(0, helper.countStatMismatches());
+        assertEquals(3, eventsIn(CalendarRange.Kind.DAY, "2024-05-01"));
+    }
+
+    @Test
+    public void busiestDaysComeFirstLatestAmongEquals() {
+        String[] dates = {"2024-06-01", "2024-06-02", "2024-06-02", "2024-06-03", "2024-06-03", "2024-06-03",
+                "2024-06-04", "2024-06-04"};
+        for (String date : dates) {
+            helper.addEvent(userId, "Event", "", date, "9:00 AM", false);
+        }
+        long otherUserId = helper.addUser("bob", "unused");
+        for (int i = 0; i < 5; i++) {
+            helper.addEvent(otherUserId, "Not alice's", "", "2024-06-05", "9:00 AM", false);
+        }
+
+        List<EventStats.Bucket> busiest = helper.getBusiestDays(userId, 3);
+        assertEquals(3, busiest.size());
+        assertEquals(DateTimeCodec.parseDate("2024-06-03"), busiest.get(0).getStartDate());
+        assertEquals(3, busiest.get(0).getEventCount());
+        assertEquals(DateTimeCodec.parseDate("2024-06-04"), busiest.get(1).getStartDate());
+        assertEquals(DateTimeCodec.parseDate("2024-06-02"), busiest.get(2).getStartDate());
+    }
+
+    @Test
+    public void pendingRemindersCountOnlyLaterEventsWithNotifications() {
+        TimeZone zone = TimeZone.getDefault();
+        int today = DateTimeCodec.packedDateOf(System.currentTimeMillis(), zone);
+        CalendarRange day = CalendarRange.containing(CalendarRange.Kind.DAY, today);
+        String yesterday = DateTimeCodec.formatStoredDate(day.previous().getStartDate());
+        String tomorrow = DateTimeCodec.formatStoredDate(day.next().getStartDate());
+        String todayText = DateTimeCodec.formatStoredDate(today);
+
+        helper.addEvent(userId, "Yesterday", "", yesterday, "9:00 AM", true);
+        helper.addEvent(userId, "Tomorrow", "", tomorrow, "9:00 AM", true);
+        helper.addEvent(userId, "Tomorrow, quiet", "", tomorrow, "10:00 AM", false);
+        helper.addEvent(userId, "Early today", "", todayText, "12:00 AM", true);
+        helper.addEvent(userId, "Late today", "", todayText, "11:59 PM", true);
+
+        // At noon, the late event today and the one tomorrow are still to come
+        long noon = DateTimeCodec.toEpochMillis(today, 12 * 60, zone);
+        assertEquals(2, helper.countPendingReminders(userId, noon));
+    }
+
+    private int eventsIn(CalendarRange.Kind kind, String startDate) {
+        EventStats.Bucket bucket = bucket(kind, startDate);
+        return bucket != null ? bucket.getEventCount() : 0;
+    }
+
+    private int remindersIn(CalendarRange.Kind kind, String startDate) {
+        EventStats.Bucket bucket = bucket(kind, startDate);
+        return bucket != null ? bucket.getReminderCount() : 0;
+    }
+
+    private EventStats.Bucket bucket(CalendarRange.Kind kind, String startDate) {
+        CalendarRange range = CalendarRange.containing(kind, DateTimeCodec.parseDate(startDate));
+        List<EventStats.Bucket> buckets = helper.getStatBuckets(userId, kind, range.getStartDate(), range.getEndDate());
+        assertTrue(buckets.size() <= 1);
+        return buckets.isEmpty() ? null : buckets.get(0);
+    }
+
+    private long count(String sql) {
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(sql, null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    private static String pad(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        int[] array = new int[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,154 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.BaseColumns;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the upcoming-events provider: it lists only events that have not ended, in start order, with
+ * no more rows than the cap and only the columns it offers; and single-event writes notify the URI of
+ * the user whose events changed, and only when something changed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventsProviderTest {
+
+    private static final String TEST_DB = "provider-test.db";
+
+    private Context context;
+    private DatabaseHelper helper;
+    private long userId;
+    private long now;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        helper = new DatabaseHelper(context, TEST_DB);
+        userId = helper.addUser("alice", "unused");
+        now = DateTimeCodec.toEpochMillis(DateTimeCodec.parseDate("2030-01-15"), 12 * 60, TimeZone.getDefault());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void listsEventsNotEndedInStartOrder() {
+        helper.addEvent(userId, "Tomorrow", "", "2030-01-16", "9:00 AM", false);
+        helper.addEvent(userId, "Ended", "", "2030-01-15", "9:00 AM", 60, false);
+        helper.addEvent(userId, "Under way", "", "2030-01-15", "11:00 AM", 120, false);
+        helper.addEvent(userId, "This afternoon", "", "2030-01-15", "1:00 PM", false);
+        helper.addEvent(userId, "No date", "", "someday", "", false);
+        long otherUserId = helper.addUser("bob", "unused");
+        helper.addEvent(otherUserId, "Not alice's", "", "2030-01-15", "3:00 PM", false);
+
+        try (Cursor cursor = query(EventsProvider.upcomingUri(userId, 10), null)) {
+            assertEquals(Arrays.asList(BaseColumns._ID, EventsProvider.COLUMN_TITLE, EventsProvider.COLUMN_DATE,
+                    EventsProvider.COLUMN_TIME, EventsProvider.COLUMN_START_AT, EventsProvider.COLUMN_END_AT),
+                    Arrays.asList(cursor.getColumnNames()));
+            assertEquals(Arrays.asList("Under way", "This afternoon", "Tomorrow"), titles(cursor));
+        }
+    }
+
+    @Test
+    public void rowsAreCappedAndColumnsNarrow() {
+        for (int i = 0; i < 30; i++) {
+            helper.addEvent(userId, "Event " + i, "Long description", "2030-02-" + (10 + i % 10), "9:00 AM", false);
+        }
+
+        try (Cursor cursor = query(EventsProvider.upcomingUri(userId, 1000), new String[]{EventsProvider.COLUMN_TITLE})) {
+            assertEquals(EventsProvider.MAX_LIMIT, cursor.getCount());
+            assertEquals(1, cursor.getColumnCount());
+        }
+        Uri withoutLimit = EventsProvider.userUri(userId).buildUpon().appendPath("upcoming").build();
+        try (Cursor cursor = query(withoutLimit, null)) {
+            assertEquals(EventsProvider.DEFAULT_LIMIT, cursor.getCount());
+        }
+
+        // The description, the owner and the sync columns are not offered
+        for (String column : new String[]{"description", "user_id", "sync_id", "event_id"}) {
+            try {
+                query(EventsProvider.upcomingUri(userId, 5), new String[]{column}).close();
+                fail("Expected " + column + " to be rejected");
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        }
+        try {
+            query(EventsProvider.userUri(userId), null).close();
+            fail("Expected the user URI to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void writesNotifyTheUsersUri() throws InterruptedException {
+        long otherUserId = helper.addUser("bob", "unused");
+        HandlerThread thread = new HandlerThread("observer");
+        thread.start();
+        Semaphore changes = new Semaphore(0);
+        ContentObserver observer = new ContentObserver(new Handler(thread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes.release();
+            }
+        };
+        // Registered on the upcoming list, which is below the URI the writes are reported on
+        Uri upcoming = EventsProvider.userUri(userId).buildUpon().appendPath("upcoming").build();
+        context.getContentResolver().registerContentObserver(upcoming, false, observer);
+        try {
+            int eventId = (int) helper.addEvent(userId, "Event", "", "2030-01-16", "9:00 AM", false);
+            assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+            helper.updateEvent(userId, eventId, "Renamed", "", "2030-01-16", "10:00 AM", 30, false);
+            assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+            helper.deleteEvent(userId, eventId);
+            assertTrue(changes.tryAcquire(5, TimeUnit.SECONDS));
+
+            // Writes that change nothing, and writes to another user's events, are not reported here
+            helper.deleteEvent(userId, eventId);
+            helper.updateEvent(userId, eventId, "Gone", "", "2030-01-16", "10:00 AM", false);
+            helper.addEvent(otherUserId, "Bob's", "", "2030-01-16", "9:00 AM", false);
+            assertFalse(changes.tryAcquire(1, TimeUnit.SECONDS));
+        } finally {
+            context.getContentResolver().unregisterContentObserver(observer);
+            thread.quitSafely();
+        }
+    }
+
+    private Cursor query(Uri uri, String[] projection) {
+        return EventsProvider.queryUpcoming(helper, uri, projection, now);
+    }
+
+    private static List<String> titles(Cursor cursor) {
+        List<String> titles = new ArrayList<>();
+        int titleIndex = cursor.getColumnIndexOrThrow(EventsProvider.COLUMN_TITLE);
+        while (cursor.moveToNext()) {
+            titles.add(cursor.getString(titleIndex));
+        }
+        return titles;
+    }
+}
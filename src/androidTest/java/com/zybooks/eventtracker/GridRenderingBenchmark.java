@@ -0,0 +1,221 @@
+package com.zybooks.eventtracker;
+
+import android.Manifest;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.FrameMetrics;
+import android.view.ViewTreeObserver;
+import android.view.Window;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * End-to-end benchmarks for the event grid with 10k events: the time from
+ * launching DataGridActivity to the first event row being drawn, and frame
+ * durations while flinging through the list.
+ *
+ * These run inside the app process, so "start" means a new activity with an empty
+ * event cache on a warm process; process start itself is not included. Launches
+ * alternate between two users, which forces a fresh repository and cache each time.
+ * Results are written by {@link BenchmarkReport} to {@code benchmarks/GridRenderingBenchmark.json}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GridRenderingBenchmark {
+
+    private static final String SUITE = "GridRenderingBenchmark";
+    private static final String USER_PREFIX = "grid-benchmark-";
+    private static final int EVENT_COUNT = 10_000;
+    private static final int LAUNCHES = 10;
+    private static final int FLINGS = 6;
+    // Frames longer than this miss a 60 Hz display refresh
+    private static final long JANK_NANOS = 16_666_667L;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static BenchmarkReport report;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private DatabaseHelper helper;
+    private final long[] userIds = new long[2];
+    private DataGridActivity activity;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        if (report == null) {
+            report = new BenchmarkReport(context, SUITE);
+        }
+        // Keep the permission prompt from covering the grid
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            instrumentation.getUiAutomation().grantRuntimePermission(context.getPackageName(), Manifest.permission.SEND_SMS);
+        }
+        helper = DatabaseHelper.getInstance(context);
+        deleteBenchmarkUsers(helper);
+        for (int u = 0; u < userIds.length; u++) {
+            userIds[u] = helper.addUser(USER_PREFIX + u, "unused");
+            seedEvents(helper, userIds[u]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (activity != null) {
+            activity.finish();
+            instrumentation.waitForIdleSync();
+        }
+        deleteBenchmarkUsers(helper);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (report != null) {
+            report.write();
+            report = null;
+        }
+    }
+
+    @Test
+    public void startToFirstDrawnRow() throws Exception {
+        long[] samples = new long[LAUNCHES];
+        for (int i = 0; i < LAUNCHES; i++) {
+            long start = System.nanoTime();
+            activity = launch(userIds[i % 2]);
+            samples[i] = awaitFirstRow(activity) - start;
+            activity.finish();
+            instrumentation.waitForIdleSync();
+            activity = null;
+        }
+        report.record("startToFirstDrawnRow", samples, -1);
+    }
+
+    @Test
+    public void scrollGrid() throws Exception {
+        activity = launch(userIds[0]);
+        awaitFirstRow(activity);
+        RecyclerView recyclerView = activity.findViewById(R.id.eventRecyclerView);
+
+        // Frame durations are reported on a separate thread, so they do not add to the frames measured
+        List<Long> frames = new ArrayList<>();
+        HandlerThread metricsThread = new HandlerThread("frame-metrics");
+        metricsThread.start();
+        Window.OnFrameMetricsAvailableListener listener = (window, frameMetrics, dropCount) -> {
+            synchronized (frames) {
+                frames.add(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+            }
+        };
+        instrumentation.runOnMainSync(() -> activity.getWindow()
+                .addOnFrameMetricsAvailableListener(listener, new Handler(metricsThread.getLooper())));
+        try {
+            for (int i = 0; i < FLINGS; i++) {
+                CountDownLatch settled = new CountDownLatch(1);
+                RecyclerView.OnScrollListener idle = new RecyclerView.OnScrollListener() {
+                    @Override
+                    public void onScrollStateChanged(RecyclerView view, int newState) {
+                        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                            settled.countDown();
+                        }
+                    }
+                };
+                instrumentation.runOnMainSync(() -> {
+                    recyclerView.addOnScrollListener(idle);
+                    recyclerView.fling(0, 8000);
+                });
+                assertTrue("Fling did not settle", settled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+                instrumentation.runOnMainSync(() -> recyclerView.removeOnScrollListener(idle));
+            }
+        } finally {
+            instrumentation.runOnMainSync(() -> activity.getWindow().removeOnFrameMetricsAvailableListener(listener));
+            metricsThread.quitSafely();
+        }
+
+        long[] samples;
+        synchronized (frames) {
+            samples = new long[frames.size()];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = frames.get(i);
+            }
+        }
+        assertTrue("No frames were reported", samples.length > 0);
+        int janky = 0;
+        for (long frame : samples) {
+            if (frame > JANK_NANOS) {
+                janky++;
+            }
+        }
+        report.record("scrollFrame", samples, -1);
+        report.put("scrollFrameCount", samples.length);
+        report.put("scrollJankyFrames", janky);
+    }
+
+    private DataGridActivity launch(long userId) {
+        Intent intent = new Intent(context, DataGridActivity.class)
+                .putExtra(DataGridActivity.EXTRA_USER_ID, userId)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        return (DataGridActivity) instrumentation.startActivitySync(intent);
+    }
+
+    // Waits until the grid has drawn at least one row and returns System.nanoTime() at that draw
+    private long awaitFirstRow(DataGridActivity activity) throws InterruptedException {
+        CountDownLatch drawn = new CountDownLatch(1);
+        AtomicLong drawnAt = new AtomicLong();
+        instrumentation.runOnMainSync(() -> {
+            RecyclerView recyclerView = activity.findViewById(R.id.eventRecyclerView);
+            ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+                @Override
+                public void onDraw() {
+                    if (drawn.getCount() > 0 && recyclerView.getChildCount() > 0) {
+                        drawnAt.set(System.nanoTime());
+                        drawn.countDown();
+                        ViewTreeObserver.OnDrawListener self = this;
+                        recyclerView.post(() -> recyclerView.getViewTreeObserver().removeOnDrawListener(self));
+                    }
+                }
+            };
+            recyclerView.getViewTreeObserver().addOnDrawListener(listener);
+            recyclerView.invalidate();
+        });
+        assertTrue("No event row was drawn", drawn.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return drawnAt.get();
+    }
+
+    private static void seedEvents(DatabaseHelper helper, long userId) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                helper.addEvent(userId, "Event " + i, "Description for event " + i,
+                        String.format("%02d-%02d-2024", i / 28 % 12 + 1, i % 28 + 1), (i % 12 + 1) + ":00 PM", false);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Removing the users removes their events too, through the foreign key
+    private static void deleteBenchmarkUsers(DatabaseHelper helper) {
+        helper.getWritableDatabase().execSQL("DELETE FROM users WHERE username LIKE '" + USER_PREFIX + "%'");
+    }
+}
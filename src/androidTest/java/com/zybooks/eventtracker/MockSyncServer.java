@@ -0,0 +1,276 @@
+package com.zybooks.eventtracker;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sync server for the tests, listening on 127.0.0.1. Keeps each account's changes in memory as a log
+ * ordered by arrival, accepts a pushed change only if it is later than the one it has, and serves the
+ * log after a cursor. Answers one request per connection and can be told to fail the next requests.
+ */
+final class MockSyncServer implements Closeable {
+
+    private static final class Entry {
+        final long sequence;
+        final JSONObject change;
+
+        Entry(long sequence, JSONObject change) {
+            this.sequence = sequence;
+            this.change = change;
+        }
+    }
+
+    private final ServerSocket socket;
+    private final Thread thread;
+
+    // Guarded by this
+    private final Map<String, List<Entry>> logs = new HashMap<>();
+    private final Map<String, Map<String, JSONObject>> latest = new HashMap<>();
+    private long nextSequence = 1;
+    private int failuresLeft;
+    private int failureStatus;
+    private int pushCount;
+    private int pushedChangeCount;
+    private String lastPushEncoding;
+    private int lastPushBodyLength;
+
+    MockSyncServer() throws IOException {
+        socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        thread = new Thread(this::serve, "mock-sync-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + socket.getLocalPort();
+    }
+
+    // Makes the next `count` requests fail with `status`
+    synchronized void failNext(int count, int status) {
+        failuresLeft = count;
+        failureStatus = status;
+    }
+
+    synchronized int getPushCount() {
+        return pushCount;
+    }
+
+    // Number of changes received over all pushes, accepted or not
+    synchronized int getPushedChangeCount() {
+        return pushedChangeCount;
+    }
+
+    synchronized String getLastPushEncoding() {
+        return lastPushEncoding;
+    }
+
+    synchronized int getLastPushBodyLength() {
+        return lastPushBodyLength;
+    }
+
+    // Current state of an event on the server, or null if it never arrived
+    synchronized JSONObject get(String account, String syncId) {
+        Map<String, JSONObject> changes = latest.get(account);
+        return changes != null ? changes.get(syncId) : null;
+    }
+
+    // Stores a change as if another device had pushed it
+    synchronized void put(String account, JSONObject change) throws JSONException {
+        accept(account, change);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve() {
+        while (!socket.isClosed()) {
+            try (Socket connection = socket.accept()) {
+                handle(connection);
+            } catch (IOException | JSONException e) {
+                // Closed, or a client went away mid-request; keep serving the others
+            }
+        }
+    }
+
+    private void handle(Socket connection) throws IOException, JSONException {
+        InputStream in = connection.getInputStream();
+        String[] requestLine = readLine(in).split(" ");
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+        }
+        byte[] body = new byte[headers.containsKey("content-length") ? Integer.parseInt(headers.get("content-length")) : 0];
+        for (int read = 0; read < body.length; ) {
+            int n = in.read(body, read, body.length - read);
+            if (n == -1) {
+                throw new IOException("Body cut short");
+            }
+            read += n;
+        }
+
+        int status;
+        String answer;
+        synchronized (this) {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                respond(connection, failureStatus, "{}", false);
+                return;
+            }
+        }
+        String path = requestLine[1];
+        String query = "";
+        int questionMark = path.indexOf('?');
+        if (questionMark != -1) {
+            query = path.substring(questionMark + 1);
+            path = path.substring(0, questionMark);
+        }
+        String[] segments = path.split("/");
+        // "", "accounts", account, "events", action
+        if (segments.length != 5 || !segments[1].equals("accounts") || !segments[3].equals("events")) {
+            status = 404;
+            answer = "{}";
+        } else if (requestLine[0].equals("POST") && segments[4].equals("push")) {
+            String encoding = headers.get("content-encoding");
+            InputStream raw = new ByteArrayInputStream(body);
+            JSONObject json = new JSONObject(new String(readAll("gzip".equals(encoding) ? new GZIPInputStream(raw) : raw),
+                    StandardCharsets.UTF_8));
+            JSONArray changes = json.getJSONArray("changes");
+            synchronized (this) {
+                pushCount++;
+                pushedChangeCount += changes.length();
+                lastPushEncoding = encoding;
+                lastPushBodyLength = body.length;
+                for (int i = 0; i < changes.length(); i++) {
+                    accept(decode(segments[2]), changes.getJSONObject(i));
+                }
+            }
+            status = 200;
+            answer = "{}";
+        } else if (requestLine[0].equals("GET") && segments[4].equals("changes")) {
+            Map<String, String> parameters = new HashMap<>();
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals != -1) {
+                    parameters.put(parameter.substring(0, equals), decode(parameter.substring(equals + 1)));
+                }
+            }
+            long since = parameters.containsKey("since") ? Long.parseLong(parameters.get("since")) : 0;
+            int limit = Integer.parseInt(parameters.get("limit"));
+            answer = changesAfter(decode(segments[2]), since, limit).toString();
+            status = 200;
+        } else {
+            status = 405;
+            answer = "{}";
+        }
+        String acceptEncoding = headers.get("accept-encoding");
+        respond(connection, status, answer, acceptEncoding != null && acceptEncoding.contains("gzip"));
+    }
+
+    // Keeps a change if it is later than what the server has for the event
+    private void accept(String account, JSONObject change) throws JSONException {
+        Map<String, JSONObject> current = latest.computeIfAbsent(account, key -> new HashMap<>());
+        JSONObject existing = current.get(change.getString("id"));
+        if (existing != null && existing.getLong("updatedAt") >= change.getLong("updatedAt")) {
+            return;
+        }
+        current.put(change.getString("id"), change);
+        logs.computeIfAbsent(account, key -> new ArrayList<>()).add(new Entry(nextSequence++, change));
+    }
+
+    private synchronized JSONObject changesAfter(String account, long since, int limit) throws JSONException {
+        List<Entry> log = logs.containsKey(account) ? logs.get(account) : new ArrayList<>();
+        JSONArray changes = new JSONArray();
+        long cursor = since;
+        boolean hasMore = false;
+        for (Entry entry : log) {
+            if (entry.sequence <= since) {
+                continue;
+            }
+            if (changes.length() == limit) {
+                hasMore = true;
+                break;
+            }
+            changes.put(entry.change);
+            cursor = entry.sequence;
+        }
+        return new JSONObject()
+                .put("changes", changes)
+                .put("cursor", String.valueOf(cursor))
+                .put("hasMore", hasMore);
+    }
+
+    private static void respond(Socket connection, int status, String answer, boolean gzip) throws IOException {
+        byte[] body = answer.getBytes(StandardCharsets.UTF_8);
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+        }
+        String head = "HTTP/1.1 " + status + " Status\r\n" +
+                "Content-Type: application/json; charset=utf-8\r\n" +
+                (gzip ? "Content-Encoding: gzip\r\n" : "") +
+                (status == 503 ? "Retry-After: 1\r\n" : "") +
+                "Content-Length: " + body.length + "\r\n" +
+                "Connection: close\r\n\r\n";
+        OutputStream out = connection.getOutputStream();
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static String decode(String text) throws IOException {
+        return URLDecoder.decode(text, "UTF-8");
+    }
+}
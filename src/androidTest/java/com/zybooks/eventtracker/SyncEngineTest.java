@@ -0,0 +1,227 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Syncs two device databases through a MockSyncServer: only changed events are pushed, compressed;
+ * changes and deletions reach the other device; the later of two conflicting edits wins on both; and
+ * failed passes leave their changes pending for the next one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncEngineTest {
+
+    private static final String PHONE_DB = "sync-phone-test.db";
+    private static final String TABLET_DB = "sync-tablet-test.db";
+    // More than one push batch and one pull page
+    private static final int EVENT_COUNT = 450;
+
+    private Context context;
+    private MockSyncServer server;
+    private DatabaseHelper phone;
+    private DatabaseHelper tablet;
+    private long phoneUserId;
+    private long tabletUserId;
+    private SyncEngine phoneSync;
+    private SyncEngine tabletSync;
+
+    @Before
+    public void setUp() throws IOException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(PHONE_DB);
+        context.deleteDatabase(TABLET_DB);
+        server = new MockSyncServer();
+        phone = new DatabaseHelper(context, PHONE_DB);
+        tablet = new DatabaseHelper(context, TABLET_DB);
+        // The same account on both devices, under different local user IDs
+        tablet.addUser("someone", "unused");
+        phoneUserId = phone.addUser("alice", "unused");
+        tabletUserId = tablet.addUser("alice", "unused");
+        phoneSync = new SyncEngine(phone, new SyncClient(server.getUrl()));
+        tabletSync = new SyncEngine(tablet, new SyncClient(server.getUrl()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        phone.close();
+        tablet.close();
+        server.close();
+        context.deleteDatabase(PHONE_DB);
+        context.deleteDatabase(TABLET_DB);
+    }
+
+    @Test
+    public void pushSendsOnlyChangedEventsCompressed() throws IOException {
+        addEvents(phone, phoneUserId, EVENT_COUNT);
+
+        assertEquals(EVENT_COUNT, phoneSync.sync(phoneUserId).getPushed());
+        assertEquals(EVENT_COUNT, server.getPushedChangeCount());
+        assertEquals((EVENT_COUNT + SyncEngine.PUSH_BATCH_SIZE - 1) / SyncEngine.PUSH_BATCH_SIZE, server.getPushCount());
+        assertEquals("gzip", server.getLastPushEncoding());
+        assertTrue(phone.getPendingChanges(phoneUserId, 10).isEmpty());
+
+        // Nothing changed, nothing sent
+        int pushes = server.getPushCount();
+        assertEquals(0, phoneSync.sync(phoneUserId).getPushed());
+        assertEquals(pushes, server.getPushCount());
+
+        int eventId = firstEventId(phone, phoneUserId);
+        phone.updateEvent(phoneUserId, eventId, "Renamed", "", "2024-05-01", "9:00 AM", false);
+        assertEquals(1, phoneSync.sync(phoneUserId).getPushed());
+        assertEquals(EVENT_COUNT + 1, server.getPushedChangeCount());
+    }
+
+    @Test
+    public void eventsAndEditsReachTheOtherDevice() throws IOException {
+        addEvents(phone, phoneUserId, EVENT_COUNT);
+        phoneSync.sync(phoneUserId);
+
+        SyncEngine.Result result = tabletSync.sync(tabletUserId);
+        assertEquals(0, result.getPushed());
+        assertEquals(EVENT_COUNT, result.getApplied());
+        assertEquals(dump(phone, phoneUserId), dump(tablet, tabletUserId));
+        // Pulled events are not pushed back
+        assertTrue(tablet.getPendingChanges(tabletUserId, 10).isEmpty());
+
+        int eventId = firstEventId(tablet, tabletUserId);
+        tablet.updateEvent(tabletUserId, eventId, "Moved", "Changed on the tablet", "2024-06-15", "3:00 PM", true);
+        tabletSync.sync(tabletUserId);
+        assertEquals(1, phoneSync.sync(phoneUserId).getApplied());
+        assertEquals(dump(tablet, tabletUserId), dump(phone, phoneUserId));
+        // Both devices have each other's latest changes, so another pass moves nothing
+        assertEquals(0, phoneSync.sync(phoneUserId).getApplied());
+        assertEquals(0, tabletSync.sync(tabletUserId).getApplied());
+    }
+
+    @Test
+    public void deletionsReachTheOtherDevice() throws IOException {
+        addEvents(phone, phoneUserId, 3);
+        phoneSync.sync(phoneUserId);
+        tabletSync.sync(tabletUserId);
+
+        assertEquals(1, phone.deleteEvent(phoneUserId, firstEventId(phone, phoneUserId)));
+        assertEquals(1, phone.getPendingChanges(phoneUserId, 10).size());
+        assertEquals(1, phoneSync.sync(phoneUserId).getPushed());
+        // The tombstone is dropped once the server has it
+        assertTrue(phone.getPendingChanges(phoneUserId, 10).isEmpty());
+
+        assertEquals(1, tabletSync.sync(tabletUserId).getApplied());
+        assertEquals(2, count(tablet, tabletUserId));
+        assertEquals(dump(phone, phoneUserId), dump(tablet, tabletUserId));
+        // Applying the deletion leaves nothing to push back
+        assertTrue(tablet.getPendingChanges(tabletUserId, 10).isEmpty());
+    }
+
+    @Test
+    public void durationsReachTheOtherDevice() throws IOException {
+        addEvents(phone, phoneUserId, 1);
+        phoneSync.sync(phoneUserId);
+        tabletSync.sync(tabletUserId);
+
+        phone.updateEvent(phoneUserId, firstEventId(phone, phoneUserId), "Workshop", "", "2024-05-01", "9:00 AM", 90, false);
+        phoneSync.sync(phoneUserId);
+        assertEquals(90, server.get("alice", syncIdOf(phone, phoneUserId)).getInt("duration"));
+        assertEquals(1, tabletSync.sync(tabletUserId).getApplied());
+        assertEquals(dump(phone, phoneUserId), dump(tablet, tabletUserId));
+    }
+
+    @Test
+    public void laterEditWinsOnBothDevices() throws Exception {
+        addEvents(phone, phoneUserId, 1);
+        phoneSync.sync(phoneUserId);
+        tabletSync.sync(tabletUserId);
+
+        phone.updateEvent(phoneUserId, firstEventId(phone, phoneUserId), "Phone edit", "", "2024-05-01", "9:00 AM", false);
+        Thread.sleep(20);
+        tablet.updateEvent(tabletUserId, firstEventId(tablet, tabletUserId), "Tablet edit", "", "2024-05-02", "9:00 AM", false);
+
+        // The phone pushes first, but the tablet's edit is later, so it replaces the phone's everywhere
+        phoneSync.sync(phoneUserId);
+        tabletSync.sync(tabletUserId);
+        phoneSync.sync(phoneUserId);
+        assertEquals("Tablet edit", server.get("alice", syncIdOf(phone, phoneUserId)).getString("title"));
+        assertEquals(dump(tablet, tabletUserId), dump(phone, phoneUserId));
+        assertTrue(dump(phone, phoneUserId).contains("Tablet edit|"));
+    }
+
+    @Test
+    public void failedPassLeavesChangesPending() throws IOException {
+        addEvents(phone, phoneUserId, 3);
+        server.failNext(1, 503);
+
+        try {
+            phoneSync.sync(phoneUserId);
+            fail("Expected the pass to fail");
+        } catch (SyncClient.HttpException e) {
+            assertEquals(503, e.getStatus());
+            assertTrue(e.isRetryable());
+            assertEquals(1000, e.getRetryAfterMillis());
+        }
+        assertEquals(3, phone.getPendingChanges(phoneUserId, 10).size());
+        assertEquals(0, server.getPushedChangeCount());
+
+        assertEquals(3, phoneSync.sync(phoneUserId).getPushed());
+        assertTrue(phone.getPendingChanges(phoneUserId, 10).isEmpty());
+    }
+
+    private static void addEvents(DatabaseHelper helper, long userId, int count) {
+        for (int i = 0; i < count; i++) {
+            helper.addEvent(userId, "Event " + i, "Description " + i, "2024-03-" + (10 + i % 18),
+                    (i % 12 + 1) + ":15 PM", i % 2 == 0);
+        }
+    }
+
+    private static int firstEventId(DatabaseHelper helper, long userId) {
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT event_id FROM events WHERE user_id = ? ORDER BY event_id LIMIT 1",
+                new String[]{String.valueOf(userId)})) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        }
+    }
+
+    private static String syncIdOf(DatabaseHelper helper, long userId) {
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT sync_id FROM events WHERE user_id = ? ORDER BY event_id LIMIT 1",
+                new String[]{String.valueOf(userId)})) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        }
+    }
+
+    private static int count(DatabaseHelper helper, long userId) {
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT COUNT(*) FROM events WHERE user_id = ?", new String[]{String.valueOf(userId)})) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    // Every synced field of the user's events, ordered by sync ID so both devices list them alike
+    private static String dump(DatabaseHelper helper, long userId) {
+        StringBuilder dump = new StringBuilder();
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT sync_id, title, description, date, time, start_at, end_at, notifications_enabled, updated_at" +
+                        " FROM events WHERE user_id = ? ORDER BY sync_id", new String[]{String.valueOf(userId)})) {
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    dump.append(cursor.getString(i)).append(i == 1 ? "|" : " ");
+                }
+                dump.append('\n');
+            }
+        }
+        return dump.toString();
+    }
+}
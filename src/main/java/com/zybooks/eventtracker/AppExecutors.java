@@ -0,0 +1,111 @@
+package com.zybooks.eventtracker;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Process-wide executors for database work. Reads run on a small bounded pool,
+// writes run one at a time in submission order, and results are posted back to the UI thread.
+public final class AppExecutors {
+
+    private static final int READ_THREADS = 2;
+    private static final int QUEUE_CAPACITY = 128;
+
+    private static volatile AppExecutors instance;
+
+    private final ThreadPoolExecutor diskRead;
+    private final ThreadPoolExecutor diskWrite;
+    private final Executor mainThread;
+
+    private AppExecutors() {
+        diskRead = newBoundedExecutor(READ_THREADS, "db-read");
+        diskWrite = newBoundedExecutor(1, "db-write");
+        mainThread = new MainThreadExecutor();
+    }
+
+    public static AppExecutors getInstance() {
+        if (instance == null) {
+            synchronized (AppExecutors.class) {
+                if (instance == null) {
+                    instance = new AppExecutors();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public Executor diskRead() {
+        return diskRead;
+    }
+
+    public Executor diskWrite() {
+        return diskWrite;
+    }
+
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    // Runs work on the given background executor and delivers its result or error on the UI thread
+    public <T> void execute(Executor background, Callable<T> work, RepositoryCallback<T> callback) {
+        try {
+            background.execute(() -> {
+                try {
+                    T result = work.call();
+                    mainThread.execute(() -> callback.onSuccess(result));
+                } catch (Exception e) {
+                    mainThread.execute(() -> callback.onError(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The bounded queue is full; report it rather than blocking the caller
+            mainThread.execute(() -> callback.onError(e));
+        }
+    }
+
+    // Creates a fixed-size pool with a bounded queue; a full queue rejects the task instead of growing without limit
+    private static ThreadPoolExecutor newBoundedExecutor(int threads, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), new NamedThreadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class MainThreadExecutor implements Executor {
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mainHandler.post(command);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.zybooks.eventtracker;
+
+import java.util.Random;
+
+// Exponential backoff with "equal jitter": the n-th consecutive failure waits between half and all of
+// min(max, base * 2^n), so retries from many devices spread out instead of hitting the server together,
+// while each still waits at least half the exponential delay. Not thread-safe.
+public final class Backoff {
+
+    private final long baseMillis;
+    private final long maxMillis;
+    private final Random random;
+    private int failures;
+
+    public Backoff(long baseMillis, long maxMillis, Random random) {
+        if (baseMillis <= 0 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("Need 0 < base <= max, got " + baseMillis + " and " + maxMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+        this.random = random;
+    }
+
+    // Records a failure and returns how long to wait before the next attempt
+    public long nextDelayMillis() {
+        // Past 62 doublings the shift would overflow; the cap is reached long before that anyway
+        long ceiling = failures >= 62 || baseMillis > maxMillis >> failures
+                ? maxMillis
+                : Math.min(maxMillis, baseMillis << failures);
+        failures++;
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half + 1));
+    }
+
+    // Records a success, so the next failure starts again from the base delay
+    public void reset() {
+        failures = 0;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,118 @@
+package com.zybooks.eventtracker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.TimeZone;
+
+// Immutable day, week or month of the calendar, the unit the calendar views page through. Weeks run from
+// Monday to Sunday. A range covers local days in a time zone, from the start of its first day up to the
+// start of the next range, so consecutive ranges neither overlap nor leave gaps, even across daylight
+// saving changes. Usable as a map key.
+public final class CalendarRange {
+
+    public enum Kind {
+        DAY, WEEK, MONTH
+    }
+
+    private static final String[] MONTH_NAMES = {
+            "January", "February", "March", "April", "May", "June",
+            "July", "August", "September", "October", "November", "December"
+    };
+
+    private final Kind kind;
+    private final int startDate;
+
+    private CalendarRange(Kind kind, int startDate) {
+        this.kind = kind;
+        this.startDate = startDate;
+    }
+
+    // Returns the range of the given kind that contains a packed date
+    public static CalendarRange containing(Kind kind, int packedDate) {
+        switch (kind) {
+            case DAY:
+                return new CalendarRange(kind, packedDate);
+            case WEEK:
+                long day = DateTimeCodec.toEpochDay(packedDate);
+                return new CalendarRange(kind, DateTimeCodec.fromEpochDay(day - DateTimeCodec.dayOfWeek(day)));
+            default:
+                return new CalendarRange(kind, packedDate / 100 * 100 + 1);
+        }
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // Packed date of the first day
+    public int getStartDate() {
+        return startDate;
+    }
+
+    // Packed date of the first day of the following range
+    public int getEndDate() {
+        return next().startDate;
+    }
+
+    public CalendarRange next() {
+        return shift(1);
+    }
+
+    public CalendarRange previous() {
+        return shift(-1);
+    }
+
+    // Start of the first day, in epoch milliseconds
+    public long getStartMillis(TimeZone zone) {
+        return DateTimeCodec.toEpochMillis(startDate, 0, zone);
+    }
+
+    // Start of the following range, in epoch milliseconds; the range ends just before it
+    public long getEndMillis(TimeZone zone) {
+        return DateTimeCodec.toEpochMillis(getEndDate(), 0, zone);
+    }
+
+    // Heading for the range, such as "March 2024", "Week of 2024-03-04" or "2024-03-05"
+    public String getTitle() {
+        switch (kind) {
+            case DAY:
+                return DateTimeCodec.formatStoredDate(startDate);
+            case WEEK:
+                return "Week of " + DateTimeCodec.formatStoredDate(startDate);
+            default:
+                return MONTH_NAMES[startDate / 100 % 100 - 1] + " " + startDate / 10000;
+        }
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CalendarRange)) return false;
+        CalendarRange other = (CalendarRange) o;
+        return kind == other.kind && startDate == other.startDate;
+    }
+
+    @Override
+    public int hashCode() {
+        return kind.hashCode() * 31 + startDate;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return kind + " " + DateTimeCodec.formatStoredDate(startDate);
+    }
+
+    private CalendarRange shift(int steps) {
+        switch (kind) {
+            case DAY:
+                return new CalendarRange(kind, DateTimeCodec.fromEpochDay(DateTimeCodec.toEpochDay(startDate) + steps));
+            case WEEK:
+                return new CalendarRange(kind, DateTimeCodec.fromEpochDay(DateTimeCodec.toEpochDay(startDate) + 7L * steps));
+            default:
+                int month = startDate / 10000 * 12 + startDate / 100 % 100 - 1 + steps;
+                return new CalendarRange(kind, (month / 12) * 10000 + (month % 12 + 1) * 100 + 1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.zybooks.eventtracker;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.List;
+
+// Spans of one user's live events with a date, kept in an IntervalTree for the overlap checks of the
+// event dialogs. The tree is read from the database on the first check, kept up to date by single-event
+// writes, and dropped by bulk writes so the next check builds it again. Safe to call from any thread.
+final class ConflictIndex {
+
+    static final Metrics.Timer TIMER_FIND_CONFLICTS = Metrics.timer("conflicts.find");
+
+    private final DatabaseHelper dbHelper;
+    private final long userId;
+    // Null until the next check builds it; guarded by this
+    private IntervalTree tree;
+
+    ConflictIndex(DatabaseHelper dbHelper, long userId) {
+        this.dbHelper = dbHelper;
+        this.userId = userId;
+    }
+
+    // Returns the IDs of up to `limit` events overlapping [startAt, endAt), in start order, leaving out
+    // `excludeEventId`; builds the tree first if needed, so runs on a background thread
+    synchronized List<Integer> findOverlapping(long startAt, long endAt, int excludeEventId, int limit) {
+        long start = TIMER_FIND_CONFLICTS.start();
+        List<Integer> ids = Collections.emptyList();
+        try {
+            if (tree == null) {
+                tree = build();
+            }
+            ids = tree.findOverlapping(startAt, endAt, excludeEventId, limit);
+            return ids;
+        } finally {
+            TIMER_FIND_CONFLICTS.stop(start, ids.size());
+        }
+    }
+
+    // Records the span of an event just written, or removes it if the event is gone or has no date
+    synchronized void update(int eventId, Event event) {
+        if (tree == null) {
+            return;
+        }
+        if (event != null && event.getStartAt() > 0) {
+            tree.put(eventId, event.getStartAt(), event.getEndAt());
+        } else {
+            tree.remove(eventId);
+        }
+    }
+
+    synchronized void remove(int eventId) {
+        if (tree != null) {
+            tree.remove(eventId);
+        }
+    }
+
+    // Drops the tree after a bulk write; the next check rebuilds it
+    synchronized void invalidate() {
+        tree = null;
+    }
+
+    // Reads the spans of every live event with a date; called with the lock held, so writes finishing
+    // meanwhile update the tree after it is built
+    private IntervalTree build() {
+        IntervalTree index = new IntervalTree();
+        try (Cursor cursor = dbHelper.getEventSpans(userId)) {
+            while (cursor.moveToNext()) {
+                index.put(cursor.getInt(0), cursor.getLong(1), cursor.getLong(2));
+            }
+        }
+        Log.d("ConflictIndex", "Indexed " + index.size() + " events for conflict checks.");
+        return index;
+    }
+}
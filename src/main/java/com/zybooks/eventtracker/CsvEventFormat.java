@@ -0,0 +1,188 @@
+package com.zybooks.eventtracker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming CSV import and export. Columns are title, description, date, time, notifications and
+// duration in minutes, with an optional header row. Files without the duration column import as
+// events with no duration. Fields follow RFC 4180 quoting, so quoted fields may contain
+// commas, quotes and line breaks.
+public final class CsvEventFormat {
+
+    static final String HEADER = "title,description,date,time,notifications,duration";
+
+    private CsvEventFormat() {
+    }
+
+    public static EventRecordReader newReader(InputStream in) {
+        return new RecordReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
+
+    public static EventRecordWriter newWriter(OutputStream out) throws IOException {
+        return new RecordWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    private static class RecordReader implements EventRecordReader {
+        private final Reader in;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private boolean firstRecord = true;
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public EventRecord read() throws IOException {
+            while (readFields()) {
+                // Skip blank lines and the optional header row
+                if (fields.size() == 1 && fields.get(0).trim().isEmpty()) {
+                    continue;
+                }
+                boolean header = firstRecord && "title".equalsIgnoreCase(fields.get(0).trim());
+                firstRecord = false;
+                if (header) {
+                    continue;
+                }
+                return new EventRecord(
+                        field(0),
+                        field(1),
+                        field(2),
+                        field(3),
+                        parseFlag(field(4)),
+                        parseMinutes(field(5)));
+            }
+            return null;
+        }
+
+        // Reads one record into `fields`; returns false at the end of the input
+        private boolean readFields() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean sawAny = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                sawAny = true;
+                if (quoted) {
+                    if (c == '"') {
+                        in.mark(1);
+                        int next = in.read();
+                        if (next == '"') {
+                            field.append('"'); // Escaped quote
+                        } else {
+                            quoted = false;
+                            if (next != -1) {
+                                in.reset();
+                            }
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (!sawAny) {
+                return false;
+            }
+            fields.add(field.toString());
+            return true;
+        }
+
+        private String field(int index) {
+            return index < fields.size() ? fields.get(index).trim() : "";
+        }
+
+        private static boolean parseFlag(String value) {
+            return value.equals("1") || value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes");
+        }
+
+        // Reads a whole number of minutes; anything else counts as no duration
+        private static int parseMinutes(String value) {
+            try {
+                return Math.max(Integer.parseInt(value), 0);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static class RecordWriter implements EventRecordWriter {
+        private final Writer out;
+
+        RecordWriter(Writer out) throws IOException {
+            this.out = out;
+            out.write(HEADER);
+            out.write("\r\n");
+        }
+
+        @Override
+        public void write(EventRecord record) throws IOException {
+            writeField(record.getTitle());
+            out.write(',');
+            writeField(record.getDescription());
+            out.write(',');
+            writeField(record.getDate());
+            out.write(',');
+            writeField(record.getTime());
+            out.write(',');
+            out.write(record.isNotificationsEnabled() ? '1' : '0');
+            out.write(',');
+            out.write(Integer.toString(record.getDurationMinutes()));
+            out.write("\r\n");
+        }
+
+        // Quotes the field only when it contains a character that needs it
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean needsQuotes = false;
+            for (int i = 0; i < value.length() && !needsQuotes; i++) {
+                char c = value.charAt(i);
+                needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!needsQuotes) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    out.write('"');
+                }
+                out.write(c);
+            }
+            out.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
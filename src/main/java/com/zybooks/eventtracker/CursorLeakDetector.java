@@ -0,0 +1,77 @@
+package com.zybooks.eventtracker;
+
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Debug-only cursor factory that remembers where every open cursor was created. Cursors that are
+// garbage collected without being closed are logged with that stack trace, and tests can check
+// that no cursor is left open. Release builds do not install it, so they pay nothing for it.
+public final class CursorLeakDetector implements SQLiteDatabase.CursorFactory {
+
+    private static final String TAG = "CursorLeakDetector";
+
+    // Stack trace of the query that created each open cursor, by cursor number. Keyed by number rather
+    // than by cursor so that a leaked cursor can still be garbage collected and reported.
+    private static final Map<Long, Throwable> OPEN_CURSORS = new ConcurrentHashMap<>();
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    @Override
+    public SQLiteCursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+        long id = NEXT_ID.incrementAndGet();
+        OPEN_CURSORS.put(id, new Throwable("Cursor opened here: " + query));
+        return new TrackedCursor(id, driver, editTable, query);
+    }
+
+    // Number of cursors created through a detector that have not been closed yet
+    public static int getOpenCursorCount() {
+        return OPEN_CURSORS.size();
+    }
+
+    // Stack traces of where the cursors that are still open were created
+    public static List<Throwable> getOpenCursorTraces() {
+        return new ArrayList<>(OPEN_CURSORS.values());
+    }
+
+    // Logs every cursor that is still open, with the place it was created
+    public static void reportOpenCursors() {
+        for (Throwable openedAt : OPEN_CURSORS.values()) {
+            Log.w(TAG, "Cursor still open", openedAt);
+        }
+    }
+
+    private static class TrackedCursor extends SQLiteCursor {
+        private final long id;
+
+        TrackedCursor(long id, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+            super(driver, editTable, query);
+            this.id = id;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            OPEN_CURSORS.remove(id);
+        }
+
+        @Override
+        protected void finalize() {
+            try {
+                Throwable openedAt = OPEN_CURSORS.remove(id);
+                if (openedAt != null) {
+                    Log.e(TAG, "Cursor finalized without close()", openedAt);
+                }
+            } finally {
+                super.finalize();
+            }
+        }
+    }
+}
@@ -1,74 +1,374 @@
 package com.zybooks.eventtracker;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.snackbar.Snackbar;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
 import android.graphics.Typeface;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.EditText;
-import android.widget.TableLayout;
-import android.widget.TableRow;
+import android.widget.HorizontalScrollView;
+import android.widget.ScrollView;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 import android.util.Log;
+import android.util.Patterns;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
 
 public class DataGridActivity extends AppCompatActivity {
 
+    // Intent extra carrying the ID of the logged-in user whose events are shown
+    public static final String EXTRA_USER_ID = "com.zybooks.eventtracker.USER_ID";
+    // Set when the user comes from a saved session rather than the login screen; the session is checked
+    // in the background before anything but the snapshot is shown
+    public static final String EXTRA_RESUMED_SESSION = "com.zybooks.eventtracker.RESUMED_SESSION";
+
     private static final int SMS_PERMISSION_CODE = 123;
-    private TableLayout eventTable;
-    private DatabaseHelper dbHelper;
+    // Start fetching the next page when this many rows remain below the last visible one
+    private static final int PREFETCH_DISTANCE = 15;
+    // Wait this long after the last keystroke before searching
+    private static final long SEARCH_DEBOUNCE_MILLIS = 250;
+    // Wait this long after the last change to a dialog's date, time or duration before checking for conflicts
+    private static final long CONFLICT_CHECK_DELAY_MILLIS = 300;
+    // Conflicting events named in the warning; any more are counted
+    private static final int MAX_CONFLICTS_SHOWN = 3;
+    // Repeat choices of the add dialog, in the order of the repeat_options array; null for a one-off event
+    private static final RecurrenceRule.Frequency[] REPEAT_FREQUENCIES = {
+            null, RecurrenceRule.Frequency.DAILY, RecurrenceRule.Frequency.WEEKLY, RecurrenceRule.Frequency.MONTHLY};
+    // View choices, in the order of the view_modes array; null for the full list. History is the choice after these.
+    private static final CalendarRange.Kind[] VIEW_MODES = {
+            null, CalendarRange.Kind.DAY, CalendarRange.Kind.WEEK, CalendarRange.Kind.MONTH};
+    // Days to move selected events by, in the order of the shift_options array
+    private static final int[] SHIFT_DAYS = {-7, -1, 1, 7};
+
+    // Timing metrics: the whole list load, the part on the UI thread, and each dialog from open to first draw
+    private static final Metrics.Timer TIMER_LOAD_TOTAL = Metrics.timer("loadEvents.total");
+    private static final Metrics.Timer TIMER_VIEW_BUILD = Metrics.timer("loadEvents.viewBuild");
+    private static final Metrics.Timer TIMER_LOAD_RANGE = Metrics.timer("loadRange.total");
+    private static final Metrics.Timer TIMER_DIALOG_ADD = Metrics.timer("dialog.addEvent");
+    private static final Metrics.Timer TIMER_DIALOG_EDIT = Metrics.timer("dialog.editEvent");
+    private static final Metrics.Timer TIMER_DIALOG_DETAILS = Metrics.timer("dialog.eventDetails");
+
+    private RecyclerView eventRecyclerView;
+    private EventAdapter eventAdapter;
+    private boolean pageLoading;
+    private boolean endReached;
+
+    // Day, week or month shown by the calendar views; null while the full list is shown
+    private CalendarRange currentRange;
+    // Range whose events the list holds, which decides whether a reload scrolls back to the top
+    private CalendarRange shownRange;
+    // Set while the archived events are shown instead of the list
+    private boolean historyShown;
+    private TextView rangeTitleText;
+    private EditText searchEditText;
+
+    // Contextual action bar shown while events are selected for a batch operation; null otherwise
+    private ActionMode selectionMode;
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_event_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            int itemId = item.getItemId();
+            if (itemId == R.id.action_select_all) {
+                eventAdapter.selectAll();
+                updateSelectionTitle();
+            } else if (itemId == R.id.action_delete_selected) {
+                deleteSelectedEvents();
+            } else if (itemId == R.id.action_shift_date) {
+                showShiftDialog();
+            } else if (itemId == R.id.action_notifications_on) {
+                setSelectedNotificationsEnabled(true);
+            } else if (itemId == R.id.action_notifications_off) {
+                setSelectedNotificationsEnabled(false);
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            eventAdapter.clearSelection();
+        }
+    };
+
+    // Current search text; empty when the full list is shown
+    private String searchQuery = "";
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    // A new search starts again from one page of results
+    private final Runnable searchRunnable = () -> loadEvents(EventRepository.PAGE_SIZE);
+
+    // Applies each saved or deleted event to the list without reloading it
+    private final EventCache.Listener eventChangeListener = new EventCache.Listener() {
+        @Override
+        public void onEventChanged(int eventId, Event event) {
+            applyEventChange(eventId, event);
+        }
+
+        @Override
+        public void onInvalidated() {
+            loadEvents();
+        }
+    };
+
+    // File pickers for bulk import and export
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importEvents);
+    private final ActivityResultLauncher<String> exportCsvLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument(EventFileFormat.CSV.getMimeType()),
+                    uri -> exportEvents(uri, EventFileFormat.CSV));
+    private final ActivityResultLauncher<String> exportIcsLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument(EventFileFormat.ICS.getMimeType()),
+                    uri -> exportEvents(uri, EventFileFormat.ICS));
+    private EventRepository eventRepository;
+    // The logged-in user whose events are shown
+    private long userId;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        Metrics.init(this);
         setContentView(R.layout.activity_data_grid);
 
-        try {
-            dbHelper = new DatabaseHelper(this);
-        } catch (Exception e) {
-            Toast.makeText(this, "Error initializing database: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        // Only the logged-in user's events are shown; without a user, go back to the login screen
+        userId = getIntent().getLongExtra(EXTRA_USER_ID, -1);
+        if (userId == -1) {
+            startActivity(new Intent(this, MainActivity.class));
+            finish();
+            return;
         }
 
-        eventTable = findViewById(R.id.eventTable);
+        // Database access goes through the repository, which runs every query off the UI thread
+        eventRepository = EventRepository.getInstance(this, userId);
+        eventRepository.addChangeListener(eventChangeListener);
+
+        // Set up the recycled event list
+        eventRecyclerView = findViewById(R.id.eventRecyclerView);
+        eventRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        eventRecyclerView.setHasFixedSize(true);
+        eventAdapter = new EventAdapter(this::onEventClick, this::onEventLongClick);
+        eventRecyclerView.setAdapter(eventAdapter);
+
+        // On a cold start, draw the first screen as last saved straight away; the live query replaces it
+        boolean snapshotShown = false;
+        if (savedInstanceState == null) {
+            List<Event> snapshot = eventRepository.loadSnapshot();
+            if (snapshot != null) {
+                // Its rows may be stale, so no page is loaded after them until the live list arrives
+                endReached = true;
+                eventAdapter.submitList(snapshot);
+                snapshotShown = true;
+            }
+        }
+
+        // Prefetch the next page once the user scrolls near the end of what is loaded
+        LinearLayoutManager layoutManager = (LinearLayoutManager) eventRecyclerView.getLayoutManager();
+        eventRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= eventAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        // Search as the user types, once typing pauses
+        searchEditText = findViewById(R.id.searchEditText);
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                String query = s.toString().trim();
+                if (query.equals(searchQuery)) {
+                    return;
+                }
+                searchQuery = query;
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MILLIS);
+            }
+        });
+
+        // Switch between the full list and the day, week and month views, and page through the calendar
+        rangeTitleText = findViewById(R.id.rangeTitleText);
+        Button previousRangeButton = findViewById(R.id.previousRangeButton);
+        Button nextRangeButton = findViewById(R.id.nextRangeButton);
+        Spinner viewModeSpinner = findViewById(R.id.viewModeSpinner);
+        viewModeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                if (position < VIEW_MODES.length) {
+                    setViewMode(VIEW_MODES[position]);
+                } else {
+                    showHistory();
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        previousRangeButton.setOnClickListener(v -> showRange(currentRange.previous()));
+        nextRangeButton.setOnClickListener(v -> showRange(currentRange.next()));
+
+        // Long-press the list title for the timing metrics report
+        findViewById(R.id.eventListText).setOnLongClickListener(v -> {
+            showMetricsDialog();
+            return true;
+        });
 
         // Initialize Buttons
         Button addEventButton = findViewById(R.id.addEventButton);
         Button logoutButton = findViewById(R.id.logoutButton);
+        Button importButton = findViewById(R.id.importButton);
+        Button exportButton = findViewById(R.id.exportButton);
+        Button statsButton = findViewById(R.id.statsButton);
+        Button reminderPhoneButton = findViewById(R.id.reminderPhoneButton);
 
         // Set onClick listener for the add event button
         addEventButton.setOnClickListener(v -> showAddEventDialog());
 
+        // Set onClick listeners for bulk import and export
+        importButton.setOnClickListener(v -> importLauncher.launch(new String[]{
+                "text/csv", "text/comma-separated-values", "text/calendar", "text/plain"}));
+        exportButton.setOnClickListener(v -> showExportFormatDialog());
+        statsButton.setOnClickListener(v -> showStatsDialog());
+
+        // Set onClick listener for the number reminders are texted to
+        reminderPhoneButton.setOnClickListener(v -> showReminderPhoneDialog());
+
         // Set onClick listener for the logout button
-        logoutButton.setOnClickListener(v -> {
-            Intent intent = new Intent(DataGridActivity.this, MainActivity.class);
-            startActivity(intent);
-            finish();
-        });
+        logoutButton.setOnClickListener(v -> logout());
 
+        if (getIntent().getBooleanExtra(EXTRA_RESUMED_SESSION, false)) {
+            // Check the saved session while the snapshot is on screen
+            boolean saveSnapshot = !snapshotShown;
+            UserRepository.getInstance(this).resumeSession(userId, new RepositoryCallback<Boolean>() {
+                @Override
+                public void onSuccess(Boolean valid) {
+                    if (isFinishing()) {
+                        return;
+                    }
+                    if (valid) {
+                        startLiveData(saveSnapshot);
+                    } else {
+                        Toast.makeText(DataGridActivity.this, "Session expired, please log in again", Toast.LENGTH_SHORT).show();
+                        logout();
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    Log.e("DataGridActivity", "Error checking session", e);
+                    Toast.makeText(DataGridActivity.this, "Please log in again", Toast.LENGTH_SHORT).show();
+                    logout();
+                }
+            });
+        } else {
+            startLiveData(!snapshotShown);
+        }
+    }
+
+    // Loads the events from the database and starts the background work for a verified user. Saves a
+    // snapshot if none was shown, so the next cold start has one.
+    private void startLiveData(boolean saveSnapshot) {
         // Load events from the database
         loadEvents();
+        if (saveSnapshot) {
+            eventRepository.saveSnapshot();
+        }
+
+        // Archive past events and reclaim space in the background, if not done today
+        eventRepository.runMaintenance();
 
         // Request SMS permission
         requestSmsPermission();
+
+        // Make sure pending reminders are scheduled
+        ReminderScheduler.getInstance(this).start();
+
+        // Sync with the server, if one is configured, in the background
+        eventRepository.startSync();
+    }
+
+    // Ends the session and returns to the login screen. The snapshot is removed so the next user of
+    // the device does not see this user's events before logging in.
+    private void logout() {
+        eventRepository.stopSync();
+        eventRepository.deleteSnapshot();
+        UserRepository.getInstance(this).endSession();
+        Intent intent = new Intent(DataGridActivity.this, MainActivity.class);
+        startActivity(intent);
+        finish();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchHandler.removeCallbacks(searchRunnable);
+        if (eventRepository != null) {
+            eventRepository.removeChangeListener(eventChangeListener);
+        }
     }
     // Displays a dialog window for adding a new event
     private void showAddEventDialog() {
+        long openStart = TIMER_DIALOG_ADD.startAsync();
+
         // Inflate the dialog layout
         LayoutInflater inflater = LayoutInflater.from(this);
         View dialogView = inflater.inflate(R.layout.dialog_add_event, null);
@@ -82,13 +382,29 @@ public class DataGridActivity extends AppCompatActivity {
         EditText descriptionEditText = dialogView.findViewById(R.id.eventDescriptionEditText);
         EditText dateEditText = dialogView.findViewById(R.id.eventDateEditText);
         EditText timeEditText = dialogView.findViewById(R.id.eventTimeEditText);
+        EditText durationEditText = dialogView.findViewById(R.id.eventDurationEditText);
         CheckBox notificationCheckBox = dialogView.findViewById(R.id.notificationCheckBox);
+        Spinner repeatSpinner = dialogView.findViewById(R.id.repeatSpinner);
         Button addEventButton = dialogView.findViewById(R.id.addEventButton);
         Button cancelButton = dialogView.findViewById(R.id.cancelButton);
 
+        // Recurring events have no duration
+        repeatSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                durationEditText.setVisibility(REPEAT_FREQUENCIES[position] == null ? View.VISIBLE : View.GONE);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        watchConflicts(dialogView, -1);
+
         // Create and show the dialog
         AlertDialog alertDialog = dialogBuilder.create();
         alertDialog.show();
+        Metrics.stopOnNextDraw(alertDialog.getWindow().getDecorView(), TIMER_DIALOG_ADD, openStart, 0);
 
         // Set onClick listener for the add event button in the dialog
         addEventButton.setOnClickListener(v -> {
@@ -96,7 +412,9 @@ public class DataGridActivity extends AppCompatActivity {
             String description = descriptionEditText.getText().toString().trim();
             String date = dateEditText.getText().toString().trim();
             String time = timeEditText.getText().toString().trim();
+            int durationMinutes = parseDuration(durationEditText);
             boolean enableNotifications = notificationCheckBox.isChecked();
+            RecurrenceRule.Frequency frequency = REPEAT_FREQUENCIES[repeatSpinner.getSelectedItemPosition()];
 
             // Validate the input
             if (title.isEmpty() || date.isEmpty()) {
@@ -105,21 +423,42 @@ public class DataGridActivity extends AppCompatActivity {
             }
 
             // Validate date format
-            if (isValidDate(date)) {
+            if (!isValidDate(date)) {
                 Toast.makeText(DataGridActivity.this, "Invalid date format. Use MM-DD-YYYY.", Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            // Add the event to the database
-            long eventId = dbHelper.addEvent(title, description, date, time, enableNotifications);
-            if (eventId != -1) {
-                Toast.makeText(DataGridActivity.this, "Event Added", Toast.LENGTH_SHORT).show();
-                loadEvents();
-                if (enableNotifications) {
-                    requestSmsPermission();
+            if (durationMinutes < 0 && frequency == null) {
+                Toast.makeText(DataGridActivity.this, "Invalid duration. Enter a number of minutes.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            // Add the event to the database; a repeating event is stored once as a series
+            RepositoryCallback<Long> addedCallback = new RepositoryCallback<Long>() {
+                @Override
+                public void onSuccess(Long eventId) {
+                    if (eventId != -1) {
+                        Toast.makeText(DataGridActivity.this, "Event Added", Toast.LENGTH_SHORT).show();
+                        if (enableNotifications) {
+                            requestSmsPermission();
+                        }
+                    } else {
+                        Toast.makeText(DataGridActivity.this, "Error Adding Event", Toast.LENGTH_SHORT).show();
+                    }
                 }
+
+                @Override
+                public void onError(Exception e) {
+                    Toast.makeText(DataGridActivity.this, "Error Adding Event", Toast.LENGTH_SHORT).show();
+                    Log.e("DataGridActivity", "Error adding event", e);
+                }
+            };
+            if (frequency == null) {
+                eventRepository.addEvent(title, description, date, time, durationMinutes, enableNotifications,
+                        addedCallback);
             } else {
-                Toast.makeText(DataGridActivity.this, "Error Adding Event", Toast.LENGTH_SHORT).show();
+                eventRepository.addSeries(title, description, date, time, RecurrenceRule.every(frequency),
+                        enableNotifications, addedCallback);
             }
 
             // Dismiss the dialog
@@ -132,101 +471,560 @@ public class DataGridActivity extends AppCompatActivity {
 
     // Method to validate the date format
     private boolean isValidDate(String date) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd-yyyy", Locale.US);
-        dateFormat.setLenient(false);
+        return DateTimeCodec.isValidEntryDate(date);
+    }
+
+    // Method to read the duration field: 0 when empty, -1 when it is not a number of minutes
+    private static int parseDuration(EditText durationEditText) {
+        String text = durationEditText.getText().toString().trim();
+        if (text.isEmpty()) {
+            return 0;
+        }
         try {
-            dateFormat.parse(date);
-            return false;
-        } catch (ParseException e) {
-            return true;
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return -1;
         }
     }
 
-    // Method to load events from the database
+    // Method to warn in an add or edit dialog about events that overlap the date, time and duration entered,
+    // checked once typing pauses and when the dialog opens. `eventId` is the event being edited, which does
+    // not conflict with itself, or -1. A result that arrives after a newer check started is dropped.
+    private void watchConflicts(View dialogView, int eventId) {
+        EditText dateEditText = dialogView.findViewById(R.id.eventDateEditText);
+        EditText timeEditText = dialogView.findViewById(R.id.eventTimeEditText);
+        EditText durationEditText = dialogView.findViewById(R.id.eventDurationEditText);
+        TextView warningText = dialogView.findViewById(R.id.conflictWarningText);
+        int[] generation = {0};
+
+        Runnable check = () -> {
+            int checked = ++generation[0];
+            String date = dateEditText.getText().toString().trim();
+            int durationMinutes = durationEditText.getVisibility() == View.VISIBLE ? parseDuration(durationEditText) : 0;
+            if (!isValidDate(date) || durationMinutes < 0) {
+                warningText.setVisibility(View.GONE);
+                return;
+            }
+            eventRepository.findConflicts(eventId, date, timeEditText.getText().toString().trim(), durationMinutes,
+                    MAX_CONFLICTS_SHOWN + 1, conflicts -> {
+                        if (checked == generation[0]) {
+                            showConflicts(warningText, conflicts);
+                        }
+                    });
+        };
+        TextWatcher watcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                dialogView.removeCallbacks(check);
+                dialogView.postDelayed(check, CONFLICT_CHECK_DELAY_MILLIS);
+            }
+        };
+        dateEditText.addTextChangedListener(watcher);
+        timeEditText.addTextChangedListener(watcher);
+        durationEditText.addTextChangedListener(watcher);
+        dialogView.post(check);
+    }
+
+    // Method to show the events found by a conflict check, or hide the warning if there are none
+    private void showConflicts(TextView warningText, List<Event> conflicts) {
+        if (conflicts.isEmpty()) {
+            warningText.setVisibility(View.GONE);
+            return;
+        }
+        StringBuilder warning = new StringBuilder("Overlaps with ");
+        for (int i = 0; i < Math.min(conflicts.size(), MAX_CONFLICTS_SHOWN); i++) {
+            Event conflict = conflicts.get(i);
+            if (i > 0) {
+                warning.append(", ");
+            }
+            warning.append(conflict.getTitle()).append(" (").append(conflict.getTime()).append(')');
+        }
+        if (conflicts.size() > MAX_CONFLICTS_SHOWN) {
+            warning.append(" and more");
+        }
+        warningText.setText(warning);
+        warningText.setVisibility(View.VISIBLE);
+    }
+
+    // Method to load events from the database. Reloads the pages that are already on screen
+    // (at least one page); reloads requested while one is already running are coalesced by the
+    // repository into a single follow-up query. While a search is entered, loads its results instead,
+    // in the calendar views, the events of the day, week or month on screen, and in the history, the
+    // archived events.
     private void loadEvents() {
-        // Clear the table before loading new data
-        eventTable.removeAllViews();
-
-        // Add the header row first
-        TableRow headerRow = new TableRow(this);
-        headerRow.setLayoutParams(new TableRow.LayoutParams(TableRow.LayoutParams.MATCH_PARENT, TableRow.LayoutParams.WRAP_CONTENT));
-
-        String[] headers = {"Title", "Description", "Date", "Time"};
-        float[] columnWeights = {1.4f, 2.0f, 1.2f, 1.5f};
-
-        for (int i = 0; i < headers.length; i++) {
-            TextView headerTextView = new TextView(this);
-            headerTextView.setText(headers[i]);
-            headerTextView.setPadding(5, 10, 5, 10);
-            TableRow.LayoutParams params = new TableRow.LayoutParams(0, TableRow.LayoutParams.WRAP_CONTENT, columnWeights[i]);
-            headerTextView.setLayoutParams(params);
-            headerTextView.setTypeface(Typeface.DEFAULT_BOLD);
-            headerRow.addView(headerTextView);
-        }
-        // Adjust the Time header to better align with the time entries
-        TextView timeHeader = (TextView) headerRow.getChildAt(3);
-        timeHeader.setPadding(40, 10, 5, 10);
-        eventTable.addView(headerRow);
-
-        try (Cursor cursor = dbHelper.getAllEvents()) {
-            Log.d("DataGridActivity", "Loaded " + cursor.getCount() + " events.");
-            // Iterate through each event in the cursor
-            while (cursor.moveToNext()) {
-                // Retrieve event details from the cursor
-                int eventId = cursor.getInt(cursor.getColumnIndexOrThrow(dbHelper.getColumnEventId()));
-                String title = cursor.getString(cursor.getColumnIndexOrThrow(dbHelper.getColumnTitle()));
-                String description = cursor.getString(cursor.getColumnIndexOrThrow(dbHelper.getColumnDescription()));
-                String date = cursor.getString(cursor.getColumnIndexOrThrow(dbHelper.getColumnDate()));
-                String time = cursor.getString(cursor.getColumnIndexOrThrow(dbHelper.getColumnTime()));
-                boolean notificationsEnabled = cursor.getInt(cursor.getColumnIndexOrThrow(dbHelper.getColumnNotificationsEnabled())) == 1;
-
-                // Add the event row to the table layout
-                addEventRow(eventId, title, description, date, time, notificationsEnabled);
-            }
-        } catch (Exception e) {
-            Toast.makeText(this, "Error loading events: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            Log.e("DataGridActivity", "Error loading events", e);
-        }
-    }
-
-    // Method to dynamically add a row to the table
-    private void addEventRow(int eventId, String title, String description, String date, String time, Boolean notificationsEnabled) {
-        TableRow row = new TableRow(this);
-        row.setLayoutParams(new TableRow.LayoutParams(TableRow.LayoutParams.MATCH_PARENT, TableRow.LayoutParams.WRAP_CONTENT));
-        // Make entries clickable
-        row.setClickable(true);
-        // Set the background selector
-        row.setBackgroundResource(R.drawable.row_selector);
-
-        float[] columnWeights = {1.3f, 1.4f, 1.6f, 1.2f};
-
-        TextView titleTextView = createColumnTextView(title, columnWeights[0]);
-        row.addView(titleTextView);
-
-        TextView descriptionTextView = createColumnTextView(description, columnWeights[1]);
-        row.addView(descriptionTextView);
-
-        TextView dateTextView = createColumnTextView(date, columnWeights[2]);
-        row.addView(dateTextView);
-
-        TextView timeTextView = createColumnTextView(time, columnWeights[3]);
-        row.addView(timeTextView);
-        eventTable.addView(row);
-
-        // Make row clickable to show details
-        row.setOnClickListener(v -> showEventDetailsDialog(eventId, title, description, date, time, notificationsEnabled));
-    }
-
-    // Creates a TextView for a column in the event table
-    private TextView createColumnTextView(String text, float weight) {
-        TextView textView = new TextView(this);
-        textView.setText(text);
-        textView.setPadding(5, 10, 5, 10);
-        TableRow.LayoutParams params = new TableRow.LayoutParams(0, TableRow.LayoutParams.WRAP_CONTENT, weight);
-        textView.setLayoutParams(params);
-        textView.setSingleLine(true);
-        textView.setEllipsize(android.text.TextUtils.TruncateAt.END);
-        return textView;
+        if (currentRange != null) {
+            loadRange();
+            return;
+        }
+        loadEvents(Math.max(EventRepository.PAGE_SIZE, eventAdapter.getItemCount()));
+    }
+
+    private void loadEvents(int count) {
+        searchHandler.removeCallbacks(searchRunnable);
+        String query = searchQuery;
+        boolean history = historyShown;
+        long loadStart = TIMER_LOAD_TOTAL.startAsync();
+        RepositoryCallback<List<Event>> callback = new RepositoryCallback<List<Event>>() {
+            @Override
+            public void onSuccess(List<Event> events) {
+                // Drop results for a search the user has already changed, or for a view the user has left
+                if (!query.equals(searchQuery) || currentRange != null || history != historyShown) {
+                    TIMER_LOAD_TOTAL.stopAsync(loadStart, 0);
+                    return;
+                }
+                endReached = events.size() < count;
+                // Hand the new list to the adapter, which diffs it against the current one
+                // and only rebinds the rows that were inserted, changed or removed. The load
+                // is timed until the list has drawn the result.
+                long buildStart = TIMER_VIEW_BUILD.startAsync();
+                eventAdapter.submitList(events, () -> {
+                    Metrics.stopOnNextDraw(eventRecyclerView, TIMER_VIEW_BUILD, buildStart, events.size());
+                    Metrics.stopOnNextDraw(eventRecyclerView, TIMER_LOAD_TOTAL, loadStart, events.size());
+                });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                TIMER_LOAD_TOTAL.stopAsync(loadStart, 0);
+                Toast.makeText(DataGridActivity.this, "Error loading events: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e("DataGridActivity", "Error loading events", e);
+            }
+        };
+        if (history) {
+            eventRepository.loadHistoryPage(null, count, callback);
+        } else if (query.isEmpty()) {
+            eventRepository.refreshEvents(count, callback);
+        } else {
+            eventRepository.searchEvents(query, null, count, callback);
+        }
+    }
+
+    // Method to move, add, or remove one row after an event was saved or deleted. Search results
+    // are ranked by the database, and an archived event that was saved is back in the live list, so
+    // search results and the history are reloaded instead.
+    private void applyEventChange(int eventId, Event event) {
+        if (currentRange != null) {
+            loadRange();
+            return;
+        }
+        if (!searchQuery.isEmpty() || historyShown) {
+            loadEvents();
+            return;
+        }
+        List<Event> updated = new ArrayList<>(eventAdapter.getCurrentList());
+        for (int i = 0; i < updated.size(); i++) {
+            if (updated.get(i).getId() == eventId) {
+                updated.remove(i);
+                break;
+            }
+        }
+        if (event != null) {
+            int position = EventCache.insertionPoint(updated, event);
+            // Events past the last loaded row appear when their page is loaded
+            if (position < updated.size() || endReached) {
+                updated.add(position, event);
+            }
+        }
+        eventAdapter.submitList(updated);
+    }
+
+    // Method to append the page of events that follows the last loaded row
+    private void loadNextPage() {
+        List<Event> current = eventAdapter.getCurrentList();
+        if (pageLoading || endReached || current.isEmpty() || currentRange != null) {
+            return;
+        }
+        pageLoading = true;
+        String query = searchQuery;
+        boolean history = historyShown;
+        Event last = current.get(current.size() - 1);
+        int offset = current.size();
+        RepositoryCallback<List<Event>> callback = new RepositoryCallback<List<Event>>() {
+            @Override
+            public void onSuccess(List<Event> page) {
+                pageLoading = false;
+                List<Event> latest = eventAdapter.getCurrentList();
+                // Drop the page if a refresh, a new search or another view replaced the list while it was loading
+                if (!query.equals(searchQuery) || currentRange != null || history != historyShown || latest.size() != offset
+                        || latest.get(latest.size() - 1).getId() != last.getId()) {
+                    return;
+                }
+                endReached = page.size() < EventRepository.PAGE_SIZE;
+                List<Event> combined = new ArrayList<>(latest.size() + page.size());
+                combined.addAll(latest);
+                combined.addAll(page);
+                eventAdapter.submitList(combined);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                pageLoading = false;
+                Log.e("DataGridActivity", "Error loading page of events", e);
+            }
+        };
+        if (history) {
+            eventRepository.loadHistoryPage(last, EventRepository.PAGE_SIZE, callback);
+        } else if (query.isEmpty()) {
+            eventRepository.loadEventsPage(last, EventRepository.PAGE_SIZE, callback);
+        } else {
+            eventRepository.searchEvents(query, last, EventRepository.PAGE_SIZE, callback);
+        }
+    }
+
+    // Method to switch to the full list, or to the day, week or month view of the range that holds the
+    // day shown so far, or today
+    private void setViewMode(@Nullable CalendarRange.Kind kind) {
+        if (kind == null) {
+            if (currentRange == null && !historyShown) {
+                return;
+            }
+            currentRange = null;
+            historyShown = false;
+            rangeNavigation(View.GONE);
+            searchEditText.setVisibility(View.VISIBLE);
+            loadEvents(EventRepository.PAGE_SIZE);
+            return;
+        }
+        historyShown = false;
+        int anchor = currentRange != null
+                ? currentRange.getStartDate()
+                : DateTimeCodec.packedDateOf(System.currentTimeMillis(), TimeZone.getDefault());
+        rangeNavigation(View.VISIBLE);
+        // Searches cover the full list only
+        searchEditText.setVisibility(View.GONE);
+        showRange(CalendarRange.containing(kind, anchor));
+    }
+
+    // Method to switch to the archived events, newest first, paged in as the user scrolls like the list
+    private void showHistory() {
+        if (historyShown) {
+            return;
+        }
+        historyShown = true;
+        currentRange = null;
+        rangeNavigation(View.GONE);
+        // Searches cover the live list only
+        searchEditText.setVisibility(View.GONE);
+        loadEvents(EventRepository.PAGE_SIZE);
+    }
+
+    private void rangeNavigation(int visibility) {
+        findViewById(R.id.previousRangeButton).setVisibility(visibility);
+        findViewById(R.id.nextRangeButton).setVisibility(visibility);
+        rangeTitleText.setVisibility(visibility);
+    }
+
+    private void showRange(CalendarRange range) {
+        currentRange = range;
+        rangeTitleText.setText(range.getTitle());
+        loadRange();
+    }
+
+    // Method to load the events of the day, week or month on screen. Each range is one indexed query,
+    // and ranges next to it are prefetched and cached by the repository, so paging is usually served
+    // from memory.
+    private void loadRange() {
+        CalendarRange range = currentRange;
+        long loadStart = TIMER_LOAD_RANGE.startAsync();
+        eventRepository.loadRange(range, new RepositoryCallback<List<Event>>() {
+            @Override
+            public void onSuccess(List<Event> events) {
+                // Drop results for a range the user has already paged away from
+                if (!range.equals(currentRange)) {
+                    TIMER_LOAD_RANGE.stopAsync(loadStart, 0);
+                    return;
+                }
+                endReached = true;
+                boolean newRange = eventAdapter.getCurrentList().isEmpty() || !range.equals(shownRange);
+                shownRange = range;
+                eventAdapter.submitList(events, () -> {
+                    if (newRange) {
+                        eventRecyclerView.scrollToPosition(0);
+                    }
+                    Metrics.stopOnNextDraw(eventRecyclerView, TIMER_LOAD_RANGE, loadStart, events.size());
+                });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                TIMER_LOAD_RANGE.stopAsync(loadStart, 0);
+                Toast.makeText(DataGridActivity.this, "Error loading events: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e("DataGridActivity", "Error loading events", e);
+            }
+        });
+    }
+
+    // Imports the events in a chosen CSV or iCalendar file, showing progress while it runs
+    private void importEvents(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        EventFileFormat format = EventFileFormat.detect(getContentResolver().getType(uri), uri.getLastPathSegment());
+        InputStream in;
+        try {
+            in = getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            Toast.makeText(this, "Error opening file: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (in == null) {
+            Toast.makeText(this, "Error opening file", Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        AlertDialog progressDialog = showProgressDialog("Importing events...");
+        eventRepository.importEvents(in, format,
+                processed -> progressDialog.setMessage("Imported " + processed + " events..."),
+                new RepositoryCallback<Integer>() {
+                    @Override
+                    public void onSuccess(Integer imported) {
+                        progressDialog.dismiss();
+                        Toast.makeText(DataGridActivity.this, "Imported " + imported + " events", Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        progressDialog.dismiss();
+                        Toast.makeText(DataGridActivity.this, "Error importing events: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                        Log.e("DataGridActivity", "Error importing events", e);
+                    }
+                });
+    }
+
+    // Displays the event statistics: counts for today, this week and this month, pending reminders, a bar
+    // for each recent month and the busiest days
+    private void showStatsDialog() {
+        eventRepository.loadStats(new RepositoryCallback<EventStats>() {
+            @Override
+            public void onSuccess(EventStats stats) {
+                // The activity may have closed while the statistics loaded; a dialog would have no window then
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                int busiestMonth = 1;
+                for (EventStats.Bucket month : stats.getRecentMonths()) {
+                    busiestMonth = Math.max(busiestMonth, month.getEventCount());
+                }
+                StringBuilder report = new StringBuilder()
+                        .append("Today:             ").append(stats.getEventsToday()).append('\n')
+                        .append("This week:         ").append(stats.getEventsThisWeek()).append('\n')
+                        .append("This month:        ").append(stats.getEventsThisMonth()).append('\n')
+                        .append("Pending reminders: ").append(stats.getPendingReminders()).append("\n\n")
+                        .append("Events per month\n");
+                for (EventStats.Bucket month : stats.getRecentMonths()) {
+                    int bar = (month.getEventCount() * 20 + busiestMonth - 1) / busiestMonth;
+                    report.append(DateTimeCodec.formatStoredDate(month.getStartDate()), 0, 7).append("  ");
+                    for (int i = 0; i < bar; i++) {
+                        report.append('#');
+                    }
+                    report.append(' ').append(month.getEventCount()).append('\n');
+                }
+                report.append("\nBusiest days\n");
+                if (stats.getBusiestDays().isEmpty()) {
+                    report.append("No events yet\n");
+                }
+                for (EventStats.Bucket day : stats.getBusiestDays()) {
+                    report.append(DateTimeCodec.formatStoredDate(day.getStartDate())).append("  ")
+                            .append(day.getEventCount()).append(day.getEventCount() == 1 ? " event\n" : " events\n");
+                }
+
+                TextView reportText = new TextView(DataGridActivity.this);
+                reportText.setTypeface(Typeface.MONOSPACE);
+                reportText.setPadding(24, 24, 24, 24);
+                reportText.setText(report);
+                ScrollView scroll = new ScrollView(DataGridActivity.this);
+                scroll.addView(reportText);
+                new AlertDialog.Builder(DataGridActivity.this)
+                        .setTitle("Statistics")
+                        .setView(scroll)
+                        .setPositiveButton("Close", (dialog, which) -> dialog.dismiss())
+                        .show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(DataGridActivity.this, "Error loading statistics", Toast.LENGTH_SHORT).show();
+                Log.e("DataGridActivity", "Error loading statistics", e);
+            }
+        });
+    }
+
+    // Asks for the number reminders are texted to, showing the current one. An empty number turns the
+    // texts off; until a number is set no reminder is scheduled.
+    private void showReminderPhoneDialog() {
+        UserRepository userRepository = UserRepository.getInstance(this);
+        userRepository.loadReminderPhone(userId, new RepositoryCallback<String>() {
+            @Override
+            public void onSuccess(String phone) {
+                // The activity may have closed while the number loaded; a dialog would have no window then
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                EditText phoneEditText = new EditText(DataGridActivity.this);
+                phoneEditText.setInputType(InputType.TYPE_CLASS_PHONE);
+                phoneEditText.setHint(R.string.phone_number);
+                phoneEditText.setText(phone);
+
+                new AlertDialog.Builder(DataGridActivity.this)
+                        .setTitle(R.string.reminder_texts)
+                        .setMessage("Event reminders are texted to this number. Leave it empty to turn them off.")
+                        .setView(phoneEditText)
+                        .setPositiveButton("Save", (dialog, which) ->
+                                saveReminderPhone(phoneEditText.getText().toString().trim()))
+                        .setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss())
+                        .show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(DataGridActivity.this, "Error loading reminder number", Toast.LENGTH_SHORT).show();
+                Log.e("DataGridActivity", "Error loading reminder number", e);
+            }
+        });
+    }
+
+    // Stores the number reminders are texted to, or turns the texts off if it is empty
+    private void saveReminderPhone(String phone) {
+        if (!phone.isEmpty() && !Patterns.PHONE.matcher(phone).matches()) {
+            Toast.makeText(this, "Invalid phone number", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String saved = phone.isEmpty() ? null : phone;
+        UserRepository.getInstance(this).saveReminderPhone(userId, saved, new RepositoryCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean result) {
+                if (!result) {
+                    Toast.makeText(DataGridActivity.this, "Error saving reminder number", Toast.LENGTH_SHORT).show();
+                } else if (saved == null) {
+                    Toast.makeText(DataGridActivity.this, "Reminder texts turned off", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(DataGridActivity.this, "Reminders will be texted to " + saved, Toast.LENGTH_SHORT).show();
+                    requestSmsPermission();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(DataGridActivity.this, "Error saving reminder number", Toast.LENGTH_SHORT).show();
+                Log.e("DataGridActivity", "Error saving reminder number", e);
+            }
+        });
+    }
+
+    // Asks which format to export to, then lets the user pick where to save the file
+    private void showExportFormatDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle("Export Events")
+                .setItems(new String[]{"CSV", "iCalendar (.ics)"}, (dialog, which) -> {
+                    if (which == 0) {
+                        exportCsvLauncher.launch(EventFileFormat.CSV.getDefaultFileName());
+                    } else {
+                        exportIcsLauncher.launch(EventFileFormat.ICS.getDefaultFileName());
+                    }
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss())
+                .show();
+    }
+
+    // Exports every event to the chosen file, showing progress while it runs
+    private void exportEvents(Uri uri, EventFileFormat format) {
+        if (uri == null) {
+            return;
+        }
+        OutputStream out;
+        try {
+            out = getContentResolver().openOutputStream(uri);
+        } catch (FileNotFoundException e) {
+            Toast.makeText(this, "Error opening file: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (out == null) {
+            Toast.makeText(this, "Error opening file", Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        AlertDialog progressDialog = showProgressDialog("Exporting events...");
+        eventRepository.exportEvents(out, format,
+                processed -> progressDialog.setMessage("Exported " + processed + " events..."),
+                new RepositoryCallback<Integer>() {
+                    @Override
+                    public void onSuccess(Integer exported) {
+                        progressDialog.dismiss();
+                        Toast.makeText(DataGridActivity.this, "Exported " + exported + " events", Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        progressDialog.dismiss();
+                        Toast.makeText(DataGridActivity.this, "Error exporting events: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                        Log.e("DataGridActivity", "Error exporting events", e);
+                    }
+                });
+    }
+
+    // Shows a dialog that stays up until a bulk operation finishes
+    private AlertDialog showProgressDialog(String message) {
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setMessage(message)
+                .setCancelable(false)
+                .create();
+        dialog.show();
+        return dialog;
+    }
+
+    // Shows the timing metrics report, with buttons to clear it and to turn recording on or off
+    private void showMetricsDialog() {
+        TextView reportText = new TextView(this);
+        reportText.setTypeface(Typeface.MONOSPACE);
+        reportText.setTextSize(11);
+        reportText.setPadding(24, 24, 24, 24);
+        reportText.setText(Metrics.report());
+        HorizontalScrollView horizontalScroll = new HorizontalScrollView(this);
+        horizontalScroll.addView(reportText);
+        ScrollView scroll = new ScrollView(this);
+        scroll.addView(horizontalScroll);
+
+        new AlertDialog.Builder(this)
+                .setTitle("Metrics")
+                .setView(scroll)
+                .setPositiveButton("Reset", (dialog, which) -> Metrics.reset())
+                .setNeutralButton(Metrics.isEnabled() ? "Stop Recording" : "Start Recording",
+                        (dialog, which) -> Metrics.setEnabled(!Metrics.isEnabled()))
+                .setNegativeButton("Close", (dialog, which) -> dialog.dismiss())
+                .show();
+    }
+
+    // Prints the metrics report for `adb shell dumpsys activity <this activity> metrics [enable|disable|reset]`
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer, @Nullable String[] args) {
+        if (args == null || args.length == 0 || !args[0].equals("metrics")) {
+            super.dump(prefix, fd, writer, args);
+            return;
+        }
+        if (args.length > 1) {
+            switch (args[1]) {
+                case "enable":
+                    Metrics.setEnabled(true);
+                    break;
+                case "disable":
+                    Metrics.setEnabled(false);
+                    break;
+                case "reset":
+                    Metrics.reset();
+                    break;
+                default:
+                    writer.println("Unknown metrics command: " + args[1]);
+            }
+        }
+        Metrics.dump(writer);
     }
 
     // Request SMS permission
@@ -249,9 +1047,21 @@ public class DataGridActivity extends AppCompatActivity {
         }
     }
 
-    // Displays a dialog window for editing an existing event
+    // Displays a dialog window for editing an existing event and returns it. Package-private so the
+    // baseline profile generator and tests can open it directly.
+    @VisibleForTesting
+    AlertDialog showEditEventDialog(int eventId, String title, String description, String date, String time,
+                                    boolean notificationsEnabled) {
+        return showEditEventDialog(eventId, title, description, date, time, 0, notificationsEnabled, null);
+    }
+
+    // Displays the edit dialog for a stored event, or for one occurrence of a recurring event, in which
+    // case only that occurrence is changed
     @SuppressLint("SetTextI18n")
-    private void showEditEventDialog(int eventId, String title, String description, String date, String time, boolean notificationsEnabled) {
+    private AlertDialog showEditEventDialog(int eventId, String title, String description, String date, String time,
+                                     int durationMinutes, boolean notificationsEnabled, @Nullable Event occurrence) {
+        long openStart = TIMER_DIALOG_EDIT.startAsync();
+
         // Inflate the dialog layout
         LayoutInflater inflater = LayoutInflater.from(this);
         View dialogView = inflater.inflate(R.layout.dialog_add_event, null);
@@ -265,21 +1075,36 @@ public class DataGridActivity extends AppCompatActivity {
         EditText descriptionEditText = dialogView.findViewById(R.id.eventDescriptionEditText);
         EditText dateEditText = dialogView.findViewById(R.id.eventDateEditText);
         EditText timeEditText = dialogView.findViewById(R.id.eventTimeEditText);
+        EditText durationEditText = dialogView.findViewById(R.id.eventDurationEditText);
         CheckBox notificationCheckBox = dialogView.findViewById(R.id.notificationCheckBox);
         Button addEventButton = dialogView.findViewById(R.id.addEventButton);
         Button cancelButton = dialogView.findViewById(R.id.cancelButton);
 
+        // The repeat rule is chosen when an event is added; notifications are set for a whole series
+        dialogView.findViewById(R.id.repeatSpinner).setVisibility(View.GONE);
+        if (occurrence != null) {
+            notificationCheckBox.setVisibility(View.GONE);
+            durationEditText.setVisibility(View.GONE);
+        }
+
         // Set existing values
         titleEditText.setText(title);
         descriptionEditText.setText(description);
-        dateEditText.setText(date);
+        // Stored dates are shown in the MM-dd-yyyy form the dialog asks for, so they validate unchanged
+        int day = DateTimeCodec.parseDate(date);
+        dateEditText.setText(day != DateTimeCodec.INVALID ? DateTimeCodec.formatEntryDate(day) : date);
         timeEditText.setText(time);
+        if (durationMinutes > 0) {
+            durationEditText.setText(String.valueOf(durationMinutes));
+        }
         notificationCheckBox.setChecked(notificationsEnabled);
         addEventButton.setText("Update Event");
+        watchConflicts(dialogView, eventId);
 
         // Create and show the dialog
         AlertDialog alertDialog = dialogBuilder.create();
         alertDialog.show();
+        Metrics.stopOnNextDraw(alertDialog.getWindow().getDecorView(), TIMER_DIALOG_EDIT, openStart, 0);
 
         // Set onClick listener for the add/update event button in the dialog
         addEventButton.setOnClickListener(v -> {
@@ -287,6 +1112,7 @@ public class DataGridActivity extends AppCompatActivity {
             String newDescription = descriptionEditText.getText().toString().trim();
             String newDate = dateEditText.getText().toString().trim();
             String newTime = timeEditText.getText().toString().trim();
+            int newDurationMinutes = parseDuration(durationEditText);
             boolean enableNotifications = notificationCheckBox.isChecked();
 
             // Validate the input
@@ -296,17 +1122,37 @@ public class DataGridActivity extends AppCompatActivity {
             }
 
             // Validate date format
-            if (isValidDate(newDate)) {
+            if (!isValidDate(newDate)) {
                 Toast.makeText(DataGridActivity.this, "Invalid date format. Use MM-DD-YYYY.", Toast.LENGTH_SHORT).show();
                 return;
             }
 
+            if (newDurationMinutes < 0 && occurrence == null) {
+                Toast.makeText(DataGridActivity.this, "Invalid duration. Enter a number of minutes.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
             // Update the event in the database
-            dbHelper.updateEvent(eventId, newTitle, newDescription, newDate, newTime, enableNotifications);
-            Toast.makeText(DataGridActivity.this, "Event Updated", Toast.LENGTH_SHORT).show();
-            loadEvents();
-            if (enableNotifications) {
-                requestSmsPermission();
+            RepositoryCallback<Integer> updatedCallback = new RepositoryCallback<Integer>() {
+                @Override
+                public void onSuccess(Integer rowsUpdated) {
+                    Toast.makeText(DataGridActivity.this, "Event Updated", Toast.LENGTH_SHORT).show();
+                    if (enableNotifications) {
+                        requestSmsPermission();
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    Toast.makeText(DataGridActivity.this, "Error updating event: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    Log.e("DataGridActivity", "Error updating event", e);
+                }
+            };
+            if (occurrence != null) {
+                eventRepository.updateOccurrence(occurrence, newTitle, newDescription, newDate, newTime, updatedCallback);
+            } else {
+                eventRepository.updateEvent(eventId, newTitle, newDescription, newDate, newTime, newDurationMinutes,
+                        enableNotifications, updatedCallback);
             }
 
             // Dismiss the dialog
@@ -315,10 +1161,179 @@ public class DataGridActivity extends AppCompatActivity {
 
         // Set onClick listener for the cancel button in the dialog
         cancelButton.setOnClickListener(v -> alertDialog.dismiss());
+        return alertDialog;
+    }
+
+    // A press opens the event, or adds it to or removes it from the selection while one is being made
+    private void onEventClick(Event event) {
+        if (selectionMode != null) {
+            toggleSelection(event);
+        } else {
+            openEventDetails(event);
+        }
+    }
+
+    // A long press starts selecting events for a batch operation
+    private void onEventLongClick(Event event) {
+        if (selectionMode == null && !event.isOccurrence()) {
+            selectionMode = startSupportActionMode(selectionCallback);
+        }
+        toggleSelection(event);
+    }
+
+    private void toggleSelection(Event event) {
+        if (event.isOccurrence()) {
+            Toast.makeText(this, "Recurring events can only be changed one at a time", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        eventAdapter.toggleSelection(event);
+        updateSelectionTitle();
+    }
+
+    // Shows how many events are selected, and ends the selection once none are
+    private void updateSelectionTitle() {
+        int count = eventAdapter.getSelectedCount();
+        if (count == 0) {
+            selectionMode.finish();
+        } else {
+            selectionMode.setTitle(count + " selected");
+        }
+    }
+
+    // Deletes the selected events in one transaction, then offers to put them back
+    private void deleteSelectedEvents() {
+        int[] eventIds = eventAdapter.getSelectedIds();
+        selectionMode.finish();
+        eventRepository.deleteEvents(eventIds, new RepositoryCallback<List<DeletedEvent>>() {
+            @Override
+            public void onSuccess(List<DeletedEvent> deleted) {
+                showUndo(countOf(deleted.size()) + " deleted",
+                        () -> eventRepository.restoreEvents(deleted, undoCallback()));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(DataGridActivity.this, "Error deleting events: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e("DataGridActivity", "Error deleting events", e);
+            }
+        });
     }
 
-    // Displays a dialog window showing the details of an event
-    private void showEventDetailsDialog(int eventId, String title, String description, String date, String time, boolean notificationsEnabled) {
+    // Turns notifications on or off for the selected events in one transaction, then offers to switch
+    // back the ones that changed
+    private void setSelectedNotificationsEnabled(boolean enabled) {
+        int[] eventIds = eventAdapter.getSelectedIds();
+        selectionMode.finish();
+        eventRepository.setNotificationsEnabled(eventIds, enabled, new RepositoryCallback<int[]>() {
+            @Override
+            public void onSuccess(int[] changed) {
+                showUndo("Notifications turned " + (enabled ? "on" : "off") + " for " + countOf(changed.length),
+                        () -> eventRepository.setNotificationsEnabled(changed, !enabled, undoCallback()));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(DataGridActivity.this, "Error updating events: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e("DataGridActivity", "Error updating events", e);
+            }
+        });
+    }
+
+    // Asks how far to move the selected events
+    private void showShiftDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle("Move Events")
+                .setItems(R.array.shift_options, (dialog, which) -> shiftSelectedEvents(SHIFT_DAYS[which]))
+                .setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss())
+                .show();
+    }
+
+    // Moves the selected events by a number of days in one transaction, then offers to move them back
+    private void shiftSelectedEvents(int days) {
+        if (selectionMode == null) {
+            return;
+        }
+        int[] eventIds = eventAdapter.getSelectedIds();
+        selectionMode.finish();
+        eventRepository.shiftEvents(eventIds, days, new RepositoryCallback<int[]>() {
+            @Override
+            public void onSuccess(int[] moved) {
+                showUndo(countOf(moved.length) + " moved",
+                        () -> eventRepository.shiftEvents(moved, -days, undoCallback()));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(DataGridActivity.this, "Error moving events: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e("DataGridActivity", "Error moving events", e);
+            }
+        });
+    }
+
+    // Shows the outcome of a batch operation with a button that reverses it
+    private void showUndo(String message, Runnable undo) {
+        Snackbar.make(eventRecyclerView, message, Snackbar.LENGTH_LONG)
+                .setAction("Undo", v -> undo.run())
+                .show();
+    }
+
+    // Callback for reversing a batch operation; the list reloads by itself, so only failures are shown
+    private <T> RepositoryCallback<T> undoCallback() {
+        return new RepositoryCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(DataGridActivity.this, "Error undoing change: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e("DataGridActivity", "Error undoing change", e);
+            }
+        };
+    }
+
+    private static String countOf(int events) {
+        return events == 1 ? "1 event" : events + " events";
+    }
+
+    // Loads the full description of a pressed row, then shows its details
+    private void openEventDetails(Event event) {
+        // Timed from the press, so the description query is included
+        long openStart = TIMER_DIALOG_DETAILS.startAsync();
+        if (event.isOccurrence()) {
+            // Occurrences are expanded with their full description and have no row to query
+            showEventDetailsDialog(event, event.getDescription() != null ? event.getDescription() : "", openStart);
+            return;
+        }
+        eventRepository.loadEventDescription(event.getId(), new RepositoryCallback<String>() {
+            @Override
+            public void onSuccess(String description) {
+                if (isFinishing()) {
+                    TIMER_DIALOG_DETAILS.stopAsync(openStart, 0);
+                    return;
+                }
+                showEventDetailsDialog(event, description != null ? description : "", openStart);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                TIMER_DIALOG_DETAILS.stopAsync(openStart, 0);
+                Toast.makeText(DataGridActivity.this, "Error loading event: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e("DataGridActivity", "Error loading event", e);
+            }
+        });
+    }
+
+    // Displays a dialog window showing the details of an event; `openStart` is from TIMER_DIALOG_DETAILS.startAsync()
+    private void showEventDetailsDialog(Event event, String description, long openStart) {
+        int eventId = event.getId();
+        String title = event.getTitle();
+        String date = event.getDate();
+        String time = event.getTime();
+        int durationMinutes = event.getDurationMinutes();
+        boolean notificationsEnabled = event.isNotificationsEnabled();
+        Event occurrence = event.isOccurrence() ? event : null;
+
         // Create the dialog
         AlertDialog.Builder dialogBuilder = new AlertDialog.Builder(this);
         dialogBuilder.setTitle("Event Details");
@@ -328,27 +1343,37 @@ public class DataGridActivity extends AppCompatActivity {
                 "\n\nDescription: " + description +
                 "\n\nDate: " + date +
                 "\n\nTime: " + time +
-                "\n\nNotifications: " + (notificationsEnabled ? "Enabled" : "Disabled");
+                (durationMinutes > 0 ? "\n\nDuration: " + durationMinutes + " minutes" : "") +
+                "\n\nNotifications: " + (notificationsEnabled ? "Enabled" : "Disabled") +
+                (occurrence != null ? "\n\nRepeats: Yes" : "");
         dialogBuilder.setMessage(message);
 
         // Add Delete and Edit buttons
         dialogBuilder.setNegativeButton("Edit", (dialog, which) -> {
-            showEditEventDialog(eventId, title, description, date, time, notificationsEnabled);
+            showEditEventDialog(eventId, title, description, date, time, durationMinutes, notificationsEnabled, occurrence);
         });
 
         dialogBuilder.setPositiveButton("Delete", (dialog, which) -> {
+            if (occurrence != null) {
+                showDeleteOccurrenceDialog(occurrence);
+                return;
+            }
             new AlertDialog.Builder(this)
                     .setTitle("Delete Event")
                     .setMessage("Are you sure you want to delete this event?")
                     .setPositiveButton("Yes", (confirmDialog, confirmWhich) -> {
-                        try {
-                            dbHelper.deleteEvent(eventId);
-                            loadEvents();
-                            Toast.makeText(DataGridActivity.this, "Event Deleted", Toast.LENGTH_SHORT).show();
-                        } catch (Exception e) {
-                            Toast.makeText(DataGridActivity.this, "Error deleting event: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                            Log.e("DataGridActivity", "Error deleting event", e);
-                        }
+                        eventRepository.deleteEvent(eventId, new RepositoryCallback<Integer>() {
+                            @Override
+                            public void onSuccess(Integer rowsDeleted) {
+                                Toast.makeText(DataGridActivity.this, "Event Deleted", Toast.LENGTH_SHORT).show();
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                Toast.makeText(DataGridActivity.this, "Error deleting event: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                                Log.e("DataGridActivity", "Error deleting event", e);
+                            }
+                        });
                         confirmDialog.dismiss();
                     })
                     .setNegativeButton("No", (confirmDialog, confirmWhich) -> confirmDialog.dismiss())
@@ -360,8 +1385,36 @@ public class DataGridActivity extends AppCompatActivity {
         // Create and show the dialog
         AlertDialog alertDialog = dialogBuilder.create();
         alertDialog.show();
+        Metrics.stopOnNextDraw(alertDialog.getWindow().getDecorView(), TIMER_DIALOG_DETAILS, openStart, 0);
 
         // Make the Delete button red
         alertDialog.getButton(AlertDialog.BUTTON_POSITIVE).setTextColor(ContextCompat.getColor(this, R.color.delete_red));
     }
+
+    // Asks whether to delete one occurrence of a recurring event or the whole series
+    private void showDeleteOccurrenceDialog(Event occurrence) {
+        RepositoryCallback<Integer> deletedCallback = new RepositoryCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer rowsDeleted) {
+                Toast.makeText(DataGridActivity.this, "Event Deleted", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(DataGridActivity.this, "Error deleting event: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                Log.e("DataGridActivity", "Error deleting event", e);
+            }
+        };
+        new AlertDialog.Builder(this)
+                .setTitle("Delete Recurring Event")
+                .setItems(new String[]{"This occurrence", "All occurrences"}, (dialog, which) -> {
+                    if (which == 0) {
+                        eventRepository.cancelOccurrence(occurrence, deletedCallback);
+                    } else {
+                        eventRepository.deleteSeries(occurrence.getSeriesId(), deletedCallback);
+                    }
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss())
+                .show();
+    }
 }
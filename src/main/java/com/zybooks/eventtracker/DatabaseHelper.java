@@ -1,27 +1,42 @@
 package com.zybooks.eventtracker;
 
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 import android.util.Log;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     // Database name and version
     private static final String DATABASE_NAME = "event_tracker.db";
-    private static final int DATABASE_VERSION = 4;
+    private static final int DATABASE_VERSION = 15;
+
+    // Oldest version that can be migrated in place; anything older is rebuilt from scratch
+    private static final int BASELINE_VERSION = 4;
 
     // Table for user credentials
     private static final String TABLE_USERS = "users";
     private static final String COLUMN_ID = "id";
     private static final String COLUMN_USERNAME = "username";
-    private static final String COLUMN_PASSWORD = "password";
+    private static final String COLUMN_PASSWORD = "password"; // Legacy plaintext, cleared once hashed
+    private static final String COLUMN_PASSWORD_HASH = "password_hash"; // Salted PasswordHasher hash
+    private static final String COLUMN_REMINDER_PHONE = "reminder_phone"; // Number the user's reminders are texted to
 
     // Table for event details
     private static final String TABLE_EVENTS = "events";
@@ -31,15 +46,148 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_DATE = "date";
     private static final String COLUMN_TIME = "time";
     private static final String COLUMN_NOTIFICATIONS_ENABLED = "notifications_enabled";
+    private static final String COLUMN_START_AT = "start_at"; // Event instant in epoch milliseconds
+    private static final String COLUMN_END_AT = "end_at"; // End instant in epoch milliseconds, at or after start_at
+    private static final String COLUMN_USER_ID = "user_id"; // Owner, references users.id
+    private static final String COLUMN_SYNC_ID = "sync_id"; // ID shared with the sync server and other devices
+    private static final String COLUMN_UPDATED_AT = "updated_at"; // Last change in epoch milliseconds, for last-writer-wins
+    private static final String COLUMN_VERSION = "version"; // Bumped by every local change
+    private static final String COLUMN_SYNCED_VERSION = "synced_version"; // Version last pushed or pulled
+
+    // Table for recurring events, one row per series; occurrences are expanded from the rule, not stored
+    private static final String TABLE_SERIES = "event_series";
+    private static final String COLUMN_SERIES_ID = "series_id";
+    private static final String COLUMN_RULE = "rule"; // RecurrenceRule as RRULE text
+
+    // Table for changed and cancelled occurrences of a series, keyed by the date each was originally due
+    private static final String TABLE_SERIES_CHANGES = "series_changes";
+    private static final String COLUMN_OCCURRENCE_DATE = "occurrence_date";
+    private static final String COLUMN_CANCELLED = "cancelled";
+
+    // Sync tables: deleted events not yet pushed, and the pull position of each user
+    private static final String TABLE_SYNC_TOMBSTONES = "sync_tombstones";
+    private static final String COLUMN_DELETED_AT = "deleted_at";
+    private static final String TABLE_SYNC_STATE = "sync_state";
+    private static final String COLUMN_PULL_CURSOR = "pull_cursor";
+
+    // Login sessions that let the app skip the login screen; only a hash of each token is stored
+    private static final String TABLE_SESSIONS = "sessions";
+    private static final String COLUMN_TOKEN_HASH = "token_hash";
+    private static final String COLUMN_EXPIRES_AT = "expires_at"; // Epoch milliseconds
+
+    // Events that ended before the archive horizon, moved out of the events table so it and its indexes
+    // hold only the live window. Same columns and event IDs as the events table, but no full-text index.
+    private static final String TABLE_EVENTS_ARCHIVE = "events_archive";
+
+    // Number of events of each user per day, week and month, live and archived, kept up to date by triggers
+    // on both event tables. A bucket is keyed by the stored date of its first day; weeks start on Monday, as
+    // in CalendarRange. Events without a valid date are not counted, and empty buckets are removed.
+    private static final String TABLE_EVENT_STATS = "event_stats";
+    private static final String COLUMN_KIND = "kind"; // STATS_DAY, STATS_WEEK or STATS_MONTH
+    private static final String COLUMN_BUCKET = "bucket";
+    private static final String COLUMN_EVENT_COUNT = "event_count";
+    private static final String COLUMN_REMINDER_COUNT = "reminder_count"; // Events with notifications enabled
+    private static final int STATS_DAY = 0;
+    private static final int STATS_WEEK = 1;
+    private static final int STATS_MONTH = 2;
+
+    // Indexes
+    private static final String INDEX_EVENTS_START = "idx_events_start";
+    private static final String INDEX_EVENTS_USER_START = "idx_events_user_start";
+    private static final String INDEX_USERS_USERNAME = "idx_users_username";
+    private static final String INDEX_SERIES_USER = "idx_series_user";
+    // Index on the length of each event, which finds a user's longest event without a scan
+    private static final String INDEX_EVENTS_USER_SPAN = "idx_events_user_span";
+    private static final String EXPRESSION_SPAN = COLUMN_END_AT + " - " + COLUMN_START_AT;
+    private static final String INDEX_EVENTS_SYNC_ID = "idx_events_sync_id";
+    // Partial index holding only the events with changes that have not been pushed
+    private static final String INDEX_EVENTS_UNSYNCED = "idx_events_unsynced";
+    private static final String CONDITION_UNSYNCED = COLUMN_VERSION + " != " + COLUMN_SYNCED_VERSION;
+    // The same indexes on the archive table
+    private static final String INDEX_ARCHIVE_USER_START = "idx_archive_user_start";
+    private static final String INDEX_ARCHIVE_USER_SPAN = "idx_archive_user_span";
+    private static final String INDEX_ARCHIVE_SYNC_ID = "idx_archive_sync_id";
+    private static final String INDEX_ARCHIVE_UNSYNCED = "idx_archive_unsynced";
+    // Partial index holding only the events with notifications enabled, in start order for each user
+    private static final String INDEX_EVENTS_USER_REMINDERS = "idx_events_user_reminders";
+    // Index on the size of each bucket, which lists the busiest days without sorting them
+    private static final String INDEX_EVENT_STATS_COUNT = "idx_event_stats_count";
+    // The current time in epoch milliseconds, in SQL
+    private static final String EXPRESSION_NOW = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    // Full-text index over event titles and descriptions, kept in step with the events table by triggers.
+    // It stores no copy of the text; its rowid (docid) is the event ID.
+    private static final String TABLE_EVENTS_FTS = "events_fts";
+    // Column of search results that is 1 when every word of the query is in the title, which ranks them
+    private static final String COLUMN_TITLE_MATCH = "title_match";
+
+    // Number of exported rows between progress reports
+    private static final int EXPORT_PROGRESS_INTERVAL = 1000;
+
+    // Number of description characters read for the grid preview
+    private static final int DESCRIPTION_PREVIEW_LENGTH = 80;
 
-    // SQL statement to create the users table
+    // Columns the grid shows, with the description cut to a preview
+    private static final String[] GRID_COLUMNS = {
+            COLUMN_EVENT_ID,
+            COLUMN_TITLE,
+            "substr(" + COLUMN_DESCRIPTION + ", 1, " + DESCRIPTION_PREVIEW_LENGTH + ") AS " + COLUMN_DESCRIPTION,
+            COLUMN_DATE,
+            COLUMN_TIME,
+            COLUMN_START_AT,
+            COLUMN_END_AT,
+            COLUMN_NOTIFICATIONS_ENABLED
+    };
+
+    // Every column of an event the app keeps in memory, with the full description
+    private static final String[] EVENT_COLUMNS = {
+            COLUMN_EVENT_ID,
+            COLUMN_TITLE,
+            COLUMN_DESCRIPTION,
+            COLUMN_DATE,
+            COLUMN_TIME,
+            COLUMN_START_AT,
+            COLUMN_END_AT,
+            COLUMN_NOTIFICATIONS_ENABLED
+    };
+
+    // EVENT_COLUMNS and the sync columns, which deleteEvents() keeps so restoreEvents() can put them back
+    private static final String[] DELETED_EVENT_COLUMNS = {
+            COLUMN_EVENT_ID,
+            COLUMN_TITLE,
+            COLUMN_DESCRIPTION,
+            COLUMN_DATE,
+            COLUMN_TIME,
+            COLUMN_START_AT,
+            COLUMN_END_AT,
+            COLUMN_NOTIFICATIONS_ENABLED,
+            COLUMN_SYNC_ID,
+            COLUMN_UPDATED_AT,
+            COLUMN_VERSION,
+            COLUMN_SYNCED_VERSION
+    };
+
+    // Every stored column of an event, for moving rows between the events and archive tables
+    private static final String STORED_COLUMNS = COLUMN_EVENT_ID + ", " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " +
+            COLUMN_DATE + ", " + COLUMN_TIME + ", " + COLUMN_NOTIFICATIONS_ENABLED + ", " + COLUMN_USER_ID + ", " +
+            COLUMN_START_AT + ", " + COLUMN_END_AT + ", " + COLUMN_SYNC_ID + ", " + COLUMN_UPDATED_AT + ", " +
+            COLUMN_VERSION + ", " + COLUMN_SYNCED_VERSION;
+
+    // Value of PRAGMA auto_vacuum once free pages are returned on request
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    // Batch operations bind their event IDs in chunks of this size; before SQLite 3.32 a statement
+    // can have at most 999 parameters
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+
+    // SQL statement to create the users table (version 4 baseline, later versions are applied as migrations)
     private static final String TABLE_CREATE_USERS =
             "CREATE TABLE " + TABLE_USERS + " (" +
                     COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                     COLUMN_USERNAME + " TEXT, " +
                     COLUMN_PASSWORD + " TEXT);";
 
-    // SQL statement to create the events table
+    // SQL statement to create the events table (version 4 baseline, later versions are applied as migrations)
     private static final String TABLE_CREATE_EVENTS =
             "CREATE TABLE " + TABLE_EVENTS + " (" +
                     COLUMN_EVENT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -49,12 +197,144 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     COLUMN_TIME + " TEXT, " +
                     COLUMN_NOTIFICATIONS_ENABLED + " INTEGER DEFAULT 0);";
 
-    public DatabaseHelper(Context context) {
-        // DatabaseHelper Constructor
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Compiled write statements, reused through the statement pool
+    // The length of an event is bound in milliseconds, 0 for an event that ends when it starts
+    private static final String SQL_INSERT_EVENT = "INSERT INTO " + TABLE_EVENTS + " (" +
+            COLUMN_USER_ID + ", " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_DATE + ", " +
+            COLUMN_TIME + ", " + COLUMN_START_AT + ", " + COLUMN_END_AT + ", " + COLUMN_NOTIFICATIONS_ENABLED +
+            ") VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?6 + ?8, ?7)";
+    private static final String SQL_UPDATE_EVENT = "UPDATE " + TABLE_EVENTS + " SET " +
+            COLUMN_TITLE + " = ?1, " + COLUMN_DESCRIPTION + " = ?2, " + COLUMN_DATE + " = ?3, " + COLUMN_TIME + " = ?4, " +
+            COLUMN_START_AT + " = ?5, " + COLUMN_END_AT + " = ?5 + ?9, " + COLUMN_NOTIFICATIONS_ENABLED + " = ?6" +
+            " WHERE " + COLUMN_EVENT_ID + " = ?7 AND " + COLUMN_USER_ID + " = ?8";
+    private static final String SQL_DELETE_EVENT = "DELETE FROM " + TABLE_EVENTS +
+            " WHERE " + COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?";
+    // Puts a deleted event back under its original ID
+    private static final String SQL_RESTORE_EVENT = "INSERT INTO " + TABLE_EVENTS + " (" +
+            COLUMN_EVENT_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " +
+            COLUMN_DATE + ", " + COLUMN_TIME + ", " + COLUMN_START_AT + ", " + COLUMN_END_AT + ", " +
+            COLUMN_NOTIFICATIONS_ENABLED + ", " + COLUMN_SYNC_ID + ", " + COLUMN_UPDATED_AT + ", " + COLUMN_VERSION + ", " +
+            COLUMN_SYNCED_VERSION + ") VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10, ?11, ?12, ?13)";
+    // Removes the tombstone a deletion left for the next push
+    private static final String SQL_DROP_TOMBSTONE = "DELETE FROM " + TABLE_SYNC_TOMBSTONES +
+            " WHERE " + COLUMN_SYNC_ID + " = ?1 AND " + COLUMN_USER_ID + " = ?2";
+    // Moves one event to another day, keeping its time of day and length
+    private static final String SQL_SHIFT_EVENT = "UPDATE " + TABLE_EVENTS + " SET " +
+            COLUMN_DATE + " = ?1, " + COLUMN_START_AT + " = ?2, " + COLUMN_END_AT + " = ?2 + (" + EXPRESSION_SPAN + ")" +
+            " WHERE " + COLUMN_EVENT_ID + " = ?3";
+    // Inserts or replaces the change to one occurrence, only if the series belongs to the user
+    private static final String SQL_PUT_OCCURRENCE_CHANGE = "INSERT OR REPLACE INTO " + TABLE_SERIES_CHANGES + " (" +
+            COLUMN_SERIES_ID + ", " + COLUMN_OCCURRENCE_DATE + ", " + COLUMN_CANCELLED + ", " + COLUMN_TITLE + ", " +
+            COLUMN_DESCRIPTION + ", " + COLUMN_DATE + ", " + COLUMN_TIME + ") SELECT " + COLUMN_SERIES_ID +
+            ", ?, ?, ?, ?, ?, ? FROM " + TABLE_SERIES + " WHERE " + COLUMN_SERIES_ID + " = ? AND " + COLUMN_USER_ID + " = ?";
+
+    // Trigger statement that records the deletion of the old row for the next push
+    private static final String INSERT_TOMBSTONE = "INSERT OR REPLACE INTO " + TABLE_SYNC_TOMBSTONES +
+            " (" + COLUMN_SYNC_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_DELETED_AT + ") VALUES (old." +
+            COLUMN_SYNC_ID + ", old." + COLUMN_USER_ID + ", " + EXPRESSION_NOW + ");";
+
+    // Timing metrics for every database operation
+    private static final Metrics.Timer TIMER_ADD_EVENT = Metrics.timer("db.addEvent");
+    private static final Metrics.Timer TIMER_UPDATE_EVENT = Metrics.timer("db.updateEvent");
+    private static final Metrics.Timer TIMER_DELETE_EVENT = Metrics.timer("db.deleteEvent");
+    private static final Metrics.Timer TIMER_DELETE_EVENTS = Metrics.timer("db.deleteEvents");
+    private static final Metrics.Timer TIMER_RESTORE_EVENTS = Metrics.timer("db.restoreEvents");
+    private static final Metrics.Timer TIMER_SET_NOTIFICATIONS = Metrics.timer("db.setNotificationsEnabled");
+    private static final Metrics.Timer TIMER_SHIFT_EVENTS = Metrics.timer("db.shiftEvents");
+    private static final Metrics.Timer TIMER_INSERT_EVENTS = Metrics.timer("db.insertEvents");
+    private static final Metrics.Timer TIMER_EXPORT_EVENTS = Metrics.timer("db.exportEvents");
+    private static final Metrics.Timer TIMER_GET_ALL_EVENTS = Metrics.timer("db.getAllEvents");
+    private static final Metrics.Timer TIMER_GET_EVENTS_PAGE = Metrics.timer("db.getEventsPage");
+    private static final Metrics.Timer TIMER_GET_EVENTS_IN_RANGE = Metrics.timer("db.getEventsInRange");
+    private static final Metrics.Timer TIMER_GET_EVENT = Metrics.timer("db.getEvent");
+    private static final Metrics.Timer TIMER_GET_EVENT_SPANS = Metrics.timer("db.getEventSpans");
+    private static final Metrics.Timer TIMER_GET_UPCOMING_EVENTS = Metrics.timer("db.getUpcomingEvents");
+    private static final Metrics.Timer TIMER_GET_EVENT_DESCRIPTION = Metrics.timer("db.getEventDescription");
+    private static final Metrics.Timer TIMER_SEARCH_EVENTS = Metrics.timer("db.searchEvents");
+    private static final Metrics.Timer TIMER_GET_PENDING_REMINDERS = Metrics.timer("db.getPendingReminders");
+    private static final Metrics.Timer TIMER_CHECK_USER = Metrics.timer("db.checkUser");
+    private static final Metrics.Timer TIMER_UPGRADE_PASSWORD = Metrics.timer("db.upgradePassword");
+    private static final Metrics.Timer TIMER_ADD_USER = Metrics.timer("db.addUser");
+    private static final Metrics.Timer TIMER_CHECKPOINT = Metrics.timer("db.checkpoint");
+    private static final Metrics.Timer TIMER_ANALYZE = Metrics.timer("db.analyze");
+    private static final Metrics.Timer TIMER_ADD_SERIES = Metrics.timer("db.addSeries");
+    private static final Metrics.Timer TIMER_DELETE_SERIES = Metrics.timer("db.deleteSeries");
+    private static final Metrics.Timer TIMER_PUT_OCCURRENCE_CHANGE = Metrics.timer("db.putOccurrenceChange");
+    private static final Metrics.Timer TIMER_GET_SERIES = Metrics.timer("db.getSeries");
+    private static final Metrics.Timer TIMER_GET_PENDING_CHANGES = Metrics.timer("db.getPendingChanges");
+    private static final Metrics.Timer TIMER_MARK_PUSHED = Metrics.timer("db.markPushed");
+    private static final Metrics.Timer TIMER_APPLY_REMOTE_CHANGES = Metrics.timer("db.applyRemoteChanges");
+    private static final Metrics.Timer TIMER_GET_SESSION_USER = Metrics.timer("db.getSessionUser");
+    private static final Metrics.Timer TIMER_ARCHIVE_EVENTS = Metrics.timer("db.archiveEvents");
+    private static final Metrics.Timer TIMER_GET_ARCHIVED_EVENTS_PAGE = Metrics.timer("db.getArchivedEventsPage");
+    private static final Metrics.Timer TIMER_COMPACT = Metrics.timer("db.compact");
+    private static final Metrics.Timer TIMER_CONVERT_VACUUM = Metrics.timer("db.convertToIncrementalVacuum");
+    private static final Metrics.Timer TIMER_GET_STAT_BUCKETS = Metrics.timer("db.getStatBuckets");
+    private static final Metrics.Timer TIMER_GET_BUSIEST_DAYS = Metrics.timer("db.getBusiestDays");
+    private static final Metrics.Timer TIMER_COUNT_PENDING_REMINDERS = Metrics.timer("db.countPendingReminders");
+    private static final Metrics.Timer TIMER_REBUILD_STATS = Metrics.timer("db.rebuildStats");
+
+    private static volatile DatabaseHelper instance;
+
+    private final DatabaseProfile profile;
+    private final StatementPool statements = new StatementPool();
+    // Told of every write to a user's events, for the observers of EventsProvider
+    private final ContentResolver resolver;
+    // Rows written through this helper, used to schedule checkpoints and ANALYZE
+    private final AtomicLong writeCount = new AtomicLong();
+    // Set by onCreate() for onOpen(), which runs after the creating transaction has ended
+    private boolean created;
+
+    // Returns the process-wide helper. It keeps one connection open for the life of the process, so
+    // it is never closed; repositories share it instead of each opening their own.
+    public static DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DatabaseHelper.class) {
+                if (instance == null) {
+                    instance = new DatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Enforce the events.user_id foreign key so deleting a user also deletes their events
+        db.setForeignKeyConstraintsEnabled(true);
+
+        // Profile settings for the primary connection, which does all the writing
+        if (profile.getSynchronousMode() != null) {
+            db.execSQL("PRAGMA synchronous = " + profile.getSynchronousMode());
+        }
+        if (profile.getCacheSizeKib() > 0) {
+            // A negative cache size is in KiB rather than pages
+            db.execSQL("PRAGMA cache_size = -" + profile.getCacheSizeKib());
+        }
+    }
+
+    // Opens a database file other than the default one, used by tests. Debuggable builds track
+    // every cursor so leaks are reported with the place they were opened.
+    DatabaseHelper(Context context, String name) {
+        this(context, name, DatabaseProfile.DEFAULT);
+    }
+
+    // Opens a database with the given performance profile, used by benchmarks
+    DatabaseHelper(Context context, String name, DatabaseProfile profile) {
+        super(context, name, isDebuggable(context) ? new CursorLeakDetector() : null, DATABASE_VERSION);
+        this.profile = profile;
+        resolver = context.getContentResolver();
+        // With write-ahead logging, readers use their own connections and do not wait for writes
+        setWriteAheadLoggingEnabled(profile.isWriteAheadLogging());
         Log.d("DatabaseHelper", "DatabaseHelper constructor called");
     }
 
+    @Override
+    public synchronized void close() {
+        statements.closeAll();
+        super.close();
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         // Create the users and events tables
@@ -62,69 +342,1963 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(TABLE_CREATE_USERS);
         Log.d("DatabaseHelper", "Creating events table: " + TABLE_CREATE_EVENTS);
         db.execSQL(TABLE_CREATE_EVENTS);
+
+        // Bring the baseline schema up to date through the same steps an existing install takes
+        migrate(db, BASELINE_VERSION, DATABASE_VERSION);
+        created = true;
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        // A new database starts out with incremental auto-vacuum. The setting only takes effect before the
+        // first table exists or through a VACUUM, and the framework has created android_metadata before any
+        // callback runs, so the new, still empty file is vacuumed once here, which takes next to nothing.
+        // Older installs are converted by VacuumJob instead.
+        if (created) {
+            created = false;
+            if (!db.isReadOnly() && pragmaValue(db, "auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                db.execSQL("VACUUM");
+            }
+        }
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop the old tables if they exist and create new ones
         Log.d("DatabaseHelper", "Upgrading database from version " + oldVersion + " to " + newVersion);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
-        onCreate(db);
+        if (oldVersion < BASELINE_VERSION) {
+            // No migration path exists for pre-baseline schemas, so drop the old tables and create new ones
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
+            onCreate(db);
+            return;
+        }
+        migrate(db, oldVersion, newVersion);
+    }
+
+    // Applies each schema step in order. Runs inside the transaction SQLiteOpenHelper opens for
+    // onCreate/onUpgrade, so a failure part way through leaves the previous version intact.
+    private void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            Log.d("DatabaseHelper", "Migrating database to version " + version);
+            switch (version) {
+                case 5:
+                    migrateToVersion5(db);
+                    break;
+                case 6:
+                    migrateToVersion6(db);
+                    break;
+                case 7:
+                    migrateToVersion7(db);
+                    break;
+                case 8:
+                    migrateToVersion8(db);
+                    break;
+                case 9:
+                    migrateToVersion9(db);
+                    break;
+                case 10:
+                    migrateToVersion10(db);
+                    break;
+                case 11:
+                    migrateToVersion11(db);
+                    break;
+                case 12:
+                    migrateToVersion12(db);
+                    break;
+                case 13:
+                    migrateToVersion13(db);
+                    break;
+                case 14:
+                    migrateToVersion14(db);
+                    break;
+                case 15:
+                    migrateToVersion15(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration to database version " + version);
+            }
+        }
+    }
+
+    // Version 5: typed start instant, normalized dates, and indexes for ordering and login lookups
+    private void migrateToVersion5(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_START_AT + " INTEGER NOT NULL DEFAULT 0");
+
+        // Convert the free-form date and time text of every row, reusing one compiled statement
+        TimeZone zone = TimeZone.getDefault();
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_EVENTS + " SET " +
+                COLUMN_DATE + " = ?, " + COLUMN_START_AT + " = ? WHERE " + COLUMN_EVENT_ID + " = ?");
+        try (Cursor cursor = db.query(TABLE_EVENTS, new String[]{COLUMN_EVENT_ID, COLUMN_DATE, COLUMN_TIME},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                int day = DateTimeCodec.parseDate(cursor.getString(1));
+                update.clearBindings();
+                if (day != DateTimeCodec.INVALID) {
+                    update.bindString(1, DateTimeCodec.formatStoredDate(day));
+                    update.bindLong(2, DateTimeCodec.toEpochMillis(day, DateTimeCodec.parseTime(cursor.getString(2)), zone));
+                } else {
+                    // Leave unparseable dates as they are; they sort first
+                    bindStringOrNull(update, 1, cursor.getString(1));
+                    update.bindLong(2, 0);
+                }
+                update.bindLong(3, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            update.close();
+        }
+
+        db.execSQL("CREATE INDEX " + INDEX_EVENTS_START + " ON " + TABLE_EVENTS +
+                " (" + COLUMN_START_AT + ", " + COLUMN_EVENT_ID + ")");
+        db.execSQL("CREATE INDEX " + INDEX_USERS_USERNAME + " ON " + TABLE_USERS + " (" + COLUMN_USERNAME + ")");
+    }
+
+    // Version 6: every event belongs to a user, and ordering is indexed per user
+    private void migrateToVersion6(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_USER_ID + " INTEGER REFERENCES " +
+                TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE");
+
+        // Earlier versions kept one shared list, so existing events go to the first registered account
+        db.execSQL("UPDATE " + TABLE_EVENTS + " SET " + COLUMN_USER_ID +
+                " = (SELECT MIN(" + COLUMN_ID + ") FROM " + TABLE_USERS + ")");
+        // Without any account there is nobody to give them to, and rows without an owner would never be
+        // read again, so they are dropped
+        db.execSQL("DELETE FROM " + TABLE_EVENTS + " WHERE " + COLUMN_USER_ID + " IS NULL");
+
+        // The per-user index serves every event query, so the global one is no longer needed
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_EVENTS_START);
+        db.execSQL("CREATE INDEX " + INDEX_EVENTS_USER_START + " ON " + TABLE_EVENTS +
+                " (" + COLUMN_USER_ID + ", " + COLUMN_START_AT + ", " + COLUMN_EVENT_ID + ")");
+    }
+
+    // Version 7: a phone number per user for reminders, and an index that finds a user's pending reminders
+    // in start order without reading events that have none
+    private void migrateToVersion7(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_USERS + " ADD COLUMN " + COLUMN_REMINDER_PHONE + " TEXT");
+        db.execSQL("CREATE INDEX " + INDEX_EVENTS_USER_REMINDERS + " ON " + TABLE_EVENTS + " (" +
+                COLUMN_USER_ID + ", " + COLUMN_START_AT + ") WHERE " + COLUMN_NOTIFICATIONS_ENABLED + " = 1");
+    }
+
+    // Version 8: full-text search over titles and descriptions
+    private void migrateToVersion8(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_EVENTS_FTS + " USING fts4(content=\"" + TABLE_EVENTS + "\", " +
+                COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", tokenize=unicode61)");
+
+        // An external-content index must be told the old text before it changes, and the new text after
+        String deleteOld = "DELETE FROM " + TABLE_EVENTS_FTS + " WHERE docid = old." + COLUMN_EVENT_ID + ";";
+        String insertNew = "INSERT INTO " + TABLE_EVENTS_FTS + " (docid, " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION +
+                ") VALUES (new." + COLUMN_EVENT_ID + ", new." + COLUMN_TITLE + ", new." + COLUMN_DESCRIPTION + ");";
+        String textChanged = " OF " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION;
+        db.execSQL("CREATE TRIGGER events_fts_before_update BEFORE UPDATE" + textChanged + " ON " + TABLE_EVENTS +
+                " BEGIN " + deleteOld + " END");
+        db.execSQL("CREATE TRIGGER events_fts_before_delete BEFORE DELETE ON " + TABLE_EVENTS +
+                " BEGIN " + deleteOld + " END");
+        db.execSQL("CREATE TRIGGER events_fts_after_update AFTER UPDATE" + textChanged + " ON " + TABLE_EVENTS +
+                " BEGIN " + insertNew + " END");
+        db.execSQL("CREATE TRIGGER events_fts_after_insert AFTER INSERT ON " + TABLE_EVENTS +
+                " BEGIN " + insertNew + " END");
+
+        // Index the events that already exist
+        db.execSQL("INSERT INTO " + TABLE_EVENTS_FTS + " (" + TABLE_EVENTS_FTS + ") VALUES ('rebuild')");
+    }
+
+
+    // Version 9: password hashes and unique usernames. Plaintext passwords are hashed when each user next
+    // logs in. Accounts that share a username are different people, so every one is kept with its own
+    // events: the oldest keeps the name and the others are renamed to name#id to log in with.
+    private void migrateToVersion9(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_USERS + " ADD COLUMN " + COLUMN_PASSWORD_HASH + " TEXT");
+
+        // Read first, since the renames change the rows the query walks
+        List<String[]> duplicates = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT dup." + COLUMN_ID + ", dup." + COLUMN_USERNAME + " FROM " +
+                TABLE_USERS + " dup WHERE EXISTS (SELECT 1 FROM " + TABLE_USERS + " older WHERE older." +
+                COLUMN_USERNAME + " = dup." + COLUMN_USERNAME + " AND older." + COLUMN_ID + " < dup." + COLUMN_ID + ")",
+                null)) {
+            while (cursor.moveToNext()) {
+                duplicates.add(new String[]{cursor.getString(0), cursor.getString(1)});
+            }
+        }
+        for (String[] duplicate : duplicates) {
+            String id = duplicate[0];
+            String username = duplicate[1] + "#" + id;
+            // Only the renamed account moves again if someone already uses the new name
+            while (DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + TABLE_USERS + " WHERE " +
+                    COLUMN_USERNAME + " = ?", new String[]{username}) > 0) {
+                username += "#" + id;
+            }
+            db.execSQL("UPDATE " + TABLE_USERS + " SET " + COLUMN_USERNAME + " = ? WHERE " + COLUMN_ID + " = ?",
+                    new Object[]{username, id});
+        }
+
+        // Replace the plain lookup index with a unique one, which makes registration a single atomic insert
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_USERS_USERNAME);
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_USERS_USERNAME + " ON " + TABLE_USERS + " (" + COLUMN_USERNAME + ")");
+    }
+
+    // Version 10: recurring events. Each series is one row with its repeat rule, and only the occurrences
+    // that were changed or cancelled get rows of their own; deleting a user or a series removes the rest.
+    private void migrateToVersion10(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SERIES + " (" +
+                COLUMN_SERIES_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_USER_ID + " INTEGER NOT NULL REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                COLUMN_TITLE + " TEXT, " +
+                COLUMN_DESCRIPTION + " TEXT, " +
+                COLUMN_DATE + " TEXT NOT NULL, " +
+                COLUMN_TIME + " TEXT, " +
+                COLUMN_RULE + " TEXT NOT NULL, " +
+                COLUMN_NOTIFICATIONS_ENABLED + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX " + INDEX_SERIES_USER + " ON " + TABLE_SERIES + " (" + COLUMN_USER_ID + ")");
+
+        // Null columns keep the value of the series
+        db.execSQL("CREATE TABLE " + TABLE_SERIES_CHANGES + " (" +
+                COLUMN_SERIES_ID + " INTEGER NOT NULL REFERENCES " + TABLE_SERIES + "(" + COLUMN_SERIES_ID + ") ON DELETE CASCADE, " +
+                COLUMN_OCCURRENCE_DATE + " TEXT NOT NULL, " +
+                COLUMN_CANCELLED + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_TITLE + " TEXT, " +
+                COLUMN_DESCRIPTION + " TEXT, " +
+                COLUMN_DATE + " TEXT, " +
+                COLUMN_TIME + " TEXT, " +
+                "PRIMARY KEY (" + COLUMN_SERIES_ID + ", " + COLUMN_OCCURRENCE_DATE + "))");
+    }
+
+    // Version 11: an end instant for range lookups by the calendar views. Existing events end when they
+    // start. The index on end_at - start_at needs SQLite 3.9, which API 24 and later ship.
+    private void migrateToVersion11(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_END_AT + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("UPDATE " + TABLE_EVENTS + " SET " + COLUMN_END_AT + " = " + COLUMN_START_AT);
+        db.execSQL("CREATE INDEX " + INDEX_EVENTS_USER_SPAN + " ON " + TABLE_EVENTS +
+                " (" + COLUMN_USER_ID + ", " + EXPRESSION_SPAN + ")");
+    }
+
+    // Version 12: change tracking for sync. Triggers give every new event a sync ID, bump the version and
+    // change time of every local change, and leave a tombstone for deleted events the server knows about.
+    // Writes that set version or synced_version themselves, like applying pulled changes or marking pushed
+    // ones, are left alone. Existing events all count as changed, so the first sync pushes them.
+    private void migrateToVersion12(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_SYNC_ID + " TEXT");
+        db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_VERSION + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_SYNCED_VERSION + " INTEGER NOT NULL DEFAULT 0");
+        String newSyncId = "lower(hex(randomblob(16)))";
+        db.execSQL("UPDATE " + TABLE_EVENTS + " SET " + COLUMN_SYNC_ID + " = " + newSyncId + ", " +
+                COLUMN_UPDATED_AT + " = " + EXPRESSION_NOW + ", " + COLUMN_VERSION + " = 1");
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_EVENTS_SYNC_ID + " ON " + TABLE_EVENTS + " (" + COLUMN_SYNC_ID + ")");
+        db.execSQL("CREATE INDEX " + INDEX_EVENTS_UNSYNCED + " ON " + TABLE_EVENTS + " (" + COLUMN_USER_ID + ")" +
+                " WHERE " + CONDITION_UNSYNCED);
+
+        // No foreign key on the user: deleting a user deletes their events, which adds tombstones for them
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_TOMBSTONES + " (" +
+                COLUMN_SYNC_ID + " TEXT PRIMARY KEY, " +
+                COLUMN_USER_ID + " INTEGER NOT NULL, " +
+                COLUMN_DELETED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " (" +
+                COLUMN_USER_ID + " INTEGER PRIMARY KEY REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                COLUMN_PULL_CURSOR + " TEXT)");
+
+        String byId = " WHERE " + COLUMN_EVENT_ID + " = new." + COLUMN_EVENT_ID + ";";
+        db.execSQL("CREATE TRIGGER events_sync_after_insert AFTER INSERT ON " + TABLE_EVENTS +
+                " WHEN new." + COLUMN_SYNC_ID + " IS NULL BEGIN UPDATE " + TABLE_EVENTS + " SET " +
+                COLUMN_SYNC_ID + " = " + newSyncId + ", " + COLUMN_UPDATED_AT + " = " + EXPRESSION_NOW + ", " +
+                COLUMN_VERSION + " = 1" + byId + " END");
+        db.execSQL("CREATE TRIGGER events_sync_after_update AFTER UPDATE ON " + TABLE_EVENTS +
+                " WHEN new." + COLUMN_VERSION + " = old." + COLUMN_VERSION +
+                " AND new." + COLUMN_SYNCED_VERSION + " = old." + COLUMN_SYNCED_VERSION + " BEGIN UPDATE " + TABLE_EVENTS +
+                " SET " + COLUMN_VERSION + " = old." + COLUMN_VERSION + " + 1, " +
+                COLUMN_UPDATED_AT + " = " + EXPRESSION_NOW + byId + " END");
+        db.execSQL("CREATE TRIGGER events_sync_before_delete BEFORE DELETE ON " + TABLE_EVENTS +
+                " WHEN old." + COLUMN_SYNCED_VERSION + " > 0 BEGIN " + INSERT_TOMBSTONE + " END");
+    }
+
+    // Version 13: login sessions, looked up by token hash and removed with their user
+    private void migrateToVersion13(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SESSIONS + " (" +
+                COLUMN_TOKEN_HASH + " TEXT PRIMARY KEY, " +
+                COLUMN_USER_ID + " INTEGER NOT NULL REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                COLUMN_EXPIRES_AT + " INTEGER NOT NULL) WITHOUT ROWID");
+    }
+
+    // Version 14: an archive table for events that ended long ago, so the events table, its indexes and the
+    // full-text index hold only the live window. Rows move between the two tables with their IDs and sync
+    // columns; IDs are never reused, so they cannot collide. Deleting an archived event leaves a tombstone
+    // as for a live one, but moving a row to the other table does not.
+    private void migrateToVersion14(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_EVENTS_ARCHIVE + " (" +
+                COLUMN_EVENT_ID + " INTEGER PRIMARY KEY, " +
+                COLUMN_TITLE + " TEXT, " +
+                COLUMN_DESCRIPTION + " TEXT, " +
+                COLUMN_DATE + " TEXT, " +
+                COLUMN_TIME + " TEXT, " +
+                COLUMN_NOTIFICATIONS_ENABLED + " INTEGER DEFAULT 0, " +
+                COLUMN_USER_ID + " INTEGER REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE, " +
+                COLUMN_START_AT + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_END_AT + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_SYNC_ID + " TEXT, " +
+                COLUMN_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_VERSION + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_SYNCED_VERSION + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX " + INDEX_ARCHIVE_USER_START + " ON " + TABLE_EVENTS_ARCHIVE +
+                " (" + COLUMN_USER_ID + ", " + COLUMN_START_AT + ", " + COLUMN_EVENT_ID + ")");
+        db.execSQL("CREATE INDEX " + INDEX_ARCHIVE_USER_SPAN + " ON " + TABLE_EVENTS_ARCHIVE +
+                " (" + COLUMN_USER_ID + ", " + EXPRESSION_SPAN + ")");
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_ARCHIVE_SYNC_ID + " ON " + TABLE_EVENTS_ARCHIVE + " (" + COLUMN_SYNC_ID + ")");
+        db.execSQL("CREATE INDEX " + INDEX_ARCHIVE_UNSYNCED + " ON " + TABLE_EVENTS_ARCHIVE + " (" + COLUMN_USER_ID + ")" +
+                " WHERE " + CONDITION_UNSYNCED);
+
+        // A row deleted from one table while the other holds its ID was moved, not deleted
+        db.execSQL("DROP TRIGGER events_sync_before_delete");
+        db.execSQL("CREATE TRIGGER events_sync_before_delete BEFORE DELETE ON " + TABLE_EVENTS +
+                " WHEN old." + COLUMN_SYNCED_VERSION + " > 0 AND NOT EXISTS (SELECT 1 FROM " + TABLE_EVENTS_ARCHIVE +
+                " WHERE " + COLUMN_EVENT_ID + " = old." + COLUMN_EVENT_ID + ") BEGIN " + INSERT_TOMBSTONE + " END");
+        db.execSQL("CREATE TRIGGER events_archive_sync_before_delete BEFORE DELETE ON " + TABLE_EVENTS_ARCHIVE +
+                " WHEN old." + COLUMN_SYNCED_VERSION + " > 0 AND NOT EXISTS (SELECT 1 FROM " + TABLE_EVENTS +
+                " WHERE " + COLUMN_EVENT_ID + " = old." + COLUMN_EVENT_ID + ") BEGIN " + INSERT_TOMBSTONE + " END");
+    }
+
+    // Version 15: event counts per day, week and month, so the statistics read a few buckets instead of
+    // grouping every event. Triggers on both event tables add each row to its buckets and take it out
+    // again, so moving a row to the archive and back leaves the counts alone. An update only touches the
+    // counts when it writes a column they depend on. No foreign key on the user: deleting a user deletes
+    // their events, which empties and removes their buckets. Existing events are counted once here.
+    private void migrateToVersion15(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_EVENT_STATS + " (" +
+                COLUMN_USER_ID + " INTEGER NOT NULL, " +
+                COLUMN_KIND + " INTEGER NOT NULL, " +
+                COLUMN_BUCKET + " TEXT NOT NULL, " +
+                COLUMN_EVENT_COUNT + " INTEGER NOT NULL, " +
+                COLUMN_REMINDER_COUNT + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COLUMN_USER_ID + ", " + COLUMN_KIND + ", " + COLUMN_BUCKET + ")) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX " + INDEX_EVENT_STATS_COUNT + " ON " + TABLE_EVENT_STATS +
+                " (" + COLUMN_USER_ID + ", " + COLUMN_KIND + ", " + COLUMN_EVENT_COUNT + ")");
+
+        for (String table : new String[]{TABLE_EVENTS, TABLE_EVENTS_ARCHIVE}) {
+            db.execSQL("CREATE TRIGGER " + table + "_stats_after_insert AFTER INSERT ON " + table +
+                    " WHEN new." + COLUMN_START_AT + " > 0 BEGIN " + countInStats("new", 1) + " END");
+            db.execSQL("CREATE TRIGGER " + table + "_stats_after_delete AFTER DELETE ON " + table +
+                    " WHEN old." + COLUMN_START_AT + " > 0 BEGIN " + countInStats("old", -1) + " END");
+            db.execSQL("CREATE TRIGGER " + table + "_stats_after_update AFTER UPDATE OF " + COLUMN_DATE + ", " +
+                    COLUMN_START_AT + ", " + COLUMN_NOTIFICATIONS_ENABLED + ", " + COLUMN_USER_ID + " ON " + table +
+                    " WHEN old." + COLUMN_START_AT + " > 0 OR new." + COLUMN_START_AT + " > 0 BEGIN " +
+                    countInStats("old", -1) + " " + countInStats("new", 1) + " END");
+        }
+        rebuildStats(db);
+    }
+
+    // Trigger statements that add the `row` ("new" or "old") to its day, week and month buckets, or take it
+    // out for a `delta` of -1; rows without a valid date are skipped. SQLite before 3.24 has no upsert, so
+    // a missing bucket is inserted empty first, and buckets emptied by taking rows out are removed.
+    private static String countInStats(String row, int delta) {
+        StringBuilder sql = new StringBuilder();
+        String valid = row + "." + COLUMN_START_AT + " > 0";
+        String sign = delta > 0 ? " + " : " - ";
+        for (int kind : new int[]{STATS_DAY, STATS_WEEK, STATS_MONTH}) {
+            String bucket = bucketExpression(kind, row + "." + COLUMN_DATE);
+            if (delta > 0) {
+                sql.append("INSERT OR IGNORE INTO ").append(TABLE_EVENT_STATS).append(" (").append(COLUMN_USER_ID)
+                        .append(", ").append(COLUMN_KIND).append(", ").append(COLUMN_BUCKET).append(", ")
+                        .append(COLUMN_EVENT_COUNT).append(", ").append(COLUMN_REMINDER_COUNT).append(") SELECT ")
+                        .append(row).append('.').append(COLUMN_USER_ID).append(", ").append(kind).append(", ")
+                        .append(bucket).append(", 0, 0 WHERE ").append(valid).append(";");
+            }
+            sql.append("UPDATE ").append(TABLE_EVENT_STATS).append(" SET ")
+                    .append(COLUMN_EVENT_COUNT).append(" = ").append(COLUMN_EVENT_COUNT).append(sign).append("1, ")
+                    .append(COLUMN_REMINDER_COUNT).append(" = ").append(COLUMN_REMINDER_COUNT).append(sign)
+                    .append("(").append(row).append('.').append(COLUMN_NOTIFICATIONS_ENABLED).append(" = 1)")
+                    .append(" WHERE ").append(COLUMN_USER_ID).append(" = ").append(row).append('.').append(COLUMN_USER_ID)
+                    .append(" AND ").append(COLUMN_KIND).append(" = ").append(kind)
+                    .append(" AND ").append(COLUMN_BUCKET).append(" = ").append(bucket)
+                    .append(" AND ").append(valid).append(";");
+        }
+        if (delta < 0) {
+            sql.append("DELETE FROM ").append(TABLE_EVENT_STATS).append(" WHERE ").append(COLUMN_USER_ID).append(" = ")
+                    .append(row).append('.').append(COLUMN_USER_ID).append(" AND ").append(COLUMN_KIND).append(" IN (")
+                    .append(STATS_DAY).append(", ").append(STATS_WEEK).append(", ").append(STATS_MONTH).append(") AND ")
+                    .append(COLUMN_EVENT_COUNT).append(" = 0;");
+        }
+        return sql.toString();
+    }
+
+    // SQL for the stored date of the first day of the bucket of a stored date
+    private static String bucketExpression(int kind, String date) {
+        switch (kind) {
+            case STATS_DAY:
+                return date;
+            case STATS_WEEK:
+                return "date(" + date + ", '-6 days', 'weekday 1')";
+            default:
+                return "substr(" + date + ", 1, 8) || '01'";
+        }
+    }
+
+    // Query counting every event into its buckets from scratch, with the columns of the stats table
+    private static String recountStats() {
+        StringBuilder rows = new StringBuilder();
+        for (String table : new String[]{TABLE_EVENTS, TABLE_EVENTS_ARCHIVE}) {
+            for (int kind : new int[]{STATS_DAY, STATS_WEEK, STATS_MONTH}) {
+                if (rows.length() > 0) {
+                    rows.append(" UNION ALL ");
+                }
+                rows.append("SELECT ").append(COLUMN_USER_ID).append(", ").append(kind).append(" AS ").append(COLUMN_KIND)
+                        .append(", ").append(bucketExpression(kind, COLUMN_DATE)).append(" AS ").append(COLUMN_BUCKET)
+                        .append(", ").append(COLUMN_NOTIFICATIONS_ENABLED).append(" FROM ").append(table)
+                        .append(" WHERE ").append(COLUMN_START_AT).append(" > 0");
+            }
+        }
+        return "SELECT " + COLUMN_USER_ID + ", " + COLUMN_KIND + ", " + COLUMN_BUCKET + ", COUNT(*), SUM(" +
+                COLUMN_NOTIFICATIONS_ENABLED + " = 1) FROM (" + rows + ") GROUP BY " + COLUMN_USER_ID + ", " +
+                COLUMN_KIND + ", " + COLUMN_BUCKET;
+    }
+
+    private static void rebuildStats(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_EVENT_STATS);
+        db.execSQL("INSERT INTO " + TABLE_EVENT_STATS + " " + recountStats());
+    }
+
+    // Method to add an event without a duration
+    public long addEvent(long userId, String title, String description, String date, String time, boolean enableNotifications) {
+        return addEvent(userId, title, description, date, time, 0, enableNotifications);
+    }
+
+    // Method to add an event that lasts `durationMinutes`
+    public long addEvent(long userId, String title, String description, String date, String time, int durationMinutes,
+                         boolean enableNotifications) {
+        long start = TIMER_ADD_EVENT.start();
+        try {
+            SQLiteStatement insert = statements.get(this.getWritableDatabase(), SQL_INSERT_EVENT);
+            long eventId;
+            synchronized (insert) {
+                insert.clearBindings();
+                insert.bindLong(1, userId);
+                bindStringOrNull(insert, 2, title);
+                bindStringOrNull(insert, 3, description);
+                bindStringOrNull(insert, 4, convertDateToSortableFormat(date)); // Convert date to YYYY-MM-DD format
+                bindStringOrNull(insert, 5, time);
+                insert.bindLong(6, convertToStartAt(date, time));
+                insert.bindLong(7, enableNotifications ? 1 : 0);
+                insert.bindLong(8, durationMinutes * 60000L);
+                eventId = insert.executeInsert();
+            }
+            afterEventWrites(userId, 1);
+            return eventId;
+        } finally {
+            TIMER_ADD_EVENT.stop(start, 1);
+        }
+    }
+    // Method to update an event, leaving it without a duration
+    public int updateEvent(long userId, int eventId, String title, String description, String date, String time, boolean enableNotifications) {
+        return updateEvent(userId, eventId, title, description, date, time, 0, enableNotifications);
+    }
+
+    // Method to update an event. An archived event moves back to the events table first.
+    public int updateEvent(long userId, int eventId, String title, String description, String date, String time,
+                           int durationMinutes, boolean enableNotifications) {
+        long start = TIMER_UPDATE_EVENT.start();
+        int updated = 0;
+        try {
+            SQLiteStatement update = statements.get(this.getWritableDatabase(), SQL_UPDATE_EVENT);
+            synchronized (update) {
+                update.clearBindings();
+                bindStringOrNull(update, 1, title);
+                bindStringOrNull(update, 2, description);
+                bindStringOrNull(update, 3, convertDateToSortableFormat(date));
+                bindStringOrNull(update, 4, time);
+                update.bindLong(5, convertToStartAt(date, time));
+                update.bindLong(6, enableNotifications ? 1 : 0);
+                update.bindLong(7, eventId);
+                update.bindLong(8, userId);
+                update.bindLong(9, durationMinutes * 60000L);
+                updated = update.executeUpdateDelete();
+                if (updated == 0 && unarchiveEvent(userId, eventId)) {
+                    updated = update.executeUpdateDelete();
+                }
+            }
+            afterEventWrites(userId, updated);
+            return updated;
+        } finally {
+            TIMER_UPDATE_EVENT.stop(start, updated);
+        }
+    }
+
+    // Method to insert a stream of events for a user in chunked transactions. One compiled statement
+    // is reused for every row, and each chunk is committed (and progress reported) before the next
+    // one is read, so memory use does not depend on the size of the input. Events without a valid
+    // date are skipped. If reading fails, chunks already committed are kept. Returns the number inserted.
+    public int insertEvents(long userId, EventRecordReader reader, int chunkSize, ProgressListener listener) throws IOException {
+        long start = TIMER_INSERT_EVENTS.start();
+        int inserted = 0;
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            TimeZone zone = TimeZone.getDefault();
+            boolean more = true;
+
+            SQLiteStatement insert = statements.get(db, SQL_INSERT_EVENT);
+            synchronized (insert) {
+                while (more) {
+                    int chunkInserted = 0;
+                    db.beginTransaction();
+                    try {
+                        while (chunkInserted < chunkSize) {
+                            EventRecord record = reader.read();
+                            if (record == null) {
+                                more = false;
+                                break;
+                            }
+                            int day = DateTimeCodec.parseDate(record.getDate());
+                            if (day == DateTimeCodec.INVALID) {
+                                continue;
+                            }
+                            insert.clearBindings();
+                            insert.bindLong(1, userId);
+                            bindStringOrNull(insert, 2, record.getTitle());
+                            bindStringOrNull(insert, 3, record.getDescription());
+                            insert.bindString(4, DateTimeCodec.formatStoredDate(day));
+                            bindStringOrNull(insert, 5, record.getTime());
+                            insert.bindLong(6, DateTimeCodec.toEpochMillis(day, DateTimeCodec.parseTime(record.getTime()), zone));
+                            insert.bindLong(7, record.isNotificationsEnabled() ? 1 : 0);
+                            insert.bindLong(8, record.getDurationMinutes() * 60000L);
+                            insert.executeInsert();
+                            chunkInserted++;
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                    inserted += chunkInserted;
+                    afterWrites(chunkInserted);
+                    if (listener != null) {
+                        listener.onProgress(inserted);
+                    }
+                }
+            }
+            return inserted;
+        } finally {
+            // Once for the whole stream, including the chunks committed before a read failed
+            if (inserted > 0) {
+                notifyEventsChanged(userId);
+            }
+            TIMER_INSERT_EVENTS.stop(start, inserted);
+        }
+    }
+
+    // Method to write every event of a user to an export file, archived ones first, streaming from the cursors
+    public int exportEvents(long userId, EventRecordWriter writer, ProgressListener listener) throws IOException {
+        long start = TIMER_EXPORT_EVENTS.start();
+        int written = 0;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            for (String table : new String[]{TABLE_EVENTS_ARCHIVE, TABLE_EVENTS}) {
+                try (Cursor cursor = db.query(table, EVENT_COLUMNS, COLUMN_USER_ID + " = ?",
+                        new String[]{String.valueOf(userId)}, null, null, COLUMN_START_AT + ", " + COLUMN_EVENT_ID)) {
+                    int titleIndex = cursor.getColumnIndexOrThrow(COLUMN_TITLE);
+                    int descriptionIndex = cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION);
+                    int dateIndex = cursor.getColumnIndexOrThrow(COLUMN_DATE);
+                    int timeIndex = cursor.getColumnIndexOrThrow(COLUMN_TIME);
+                    int notificationsIndex = cursor.getColumnIndexOrThrow(COLUMN_NOTIFICATIONS_ENABLED);
+                    int startAtIndex = cursor.getColumnIndexOrThrow(COLUMN_START_AT);
+                    int endAtIndex = cursor.getColumnIndexOrThrow(COLUMN_END_AT);
+                    while (cursor.moveToNext()) {
+                        writer.write(new EventRecord(
+                                cursor.getString(titleIndex),
+                                cursor.getString(descriptionIndex),
+                                cursor.getString(dateIndex),
+                                cursor.getString(timeIndex),
+                                cursor.getInt(notificationsIndex) == 1,
+                                (int) ((cursor.getLong(endAtIndex) - cursor.getLong(startAtIndex)) / 60000L)));
+                        written++;
+                        if (listener != null && written % EXPORT_PROGRESS_INTERVAL == 0) {
+                            listener.onProgress(written);
+                        }
+                    }
+                }
+            }
+            if (listener != null) {
+                listener.onProgress(written);
+            }
+            return written;
+        } finally {
+            TIMER_EXPORT_EVENTS.stop(start, written);
+        }
+    }
+
+    // Method to delete an event, live or archived
+    public int deleteEvent(long userId, int eventId) {
+        long start = TIMER_DELETE_EVENT.start();
+        int deleted = 0;
+        try {
+            SQLiteStatement delete = statements.get(this.getWritableDatabase(), SQL_DELETE_EVENT);
+            synchronized (delete) {
+                delete.clearBindings();
+                delete.bindLong(1, eventId);
+                delete.bindLong(2, userId);
+                deleted = delete.executeUpdateDelete();
+            }
+            if (deleted == 0) {
+                deleted = this.getWritableDatabase().delete(TABLE_EVENTS_ARCHIVE,
+                        COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?",
+                        new String[]{String.valueOf(eventId), String.valueOf(userId)});
+            }
+            afterEventWrites(userId, deleted);
+            return deleted;
+        } finally {
+            TIMER_DELETE_EVENT.stop(start, deleted);
+        }
+    }
+
+    // Method to delete several events of a user in one transaction. Returns the deleted events, with
+    // their full descriptions and sync columns, so restoreEvents() can put them back; IDs that are not the
+    // user's are ignored. Archived events are moved back first, so they are restored to the events table.
+    public List<DeletedEvent> deleteEvents(long userId, int[] eventIds) {
+        long start = TIMER_DELETE_EVENTS.start();
+        List<DeletedEvent> deleted = new ArrayList<>();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (int from = 0; from < eventIds.length; from += MAX_IDS_PER_STATEMENT) {
+                    int to = Math.min(eventIds.length, from + MAX_IDS_PER_STATEMENT);
+                    String selection = selectionForIds(to - from);
+                    String[] selectionArgs = argsForIds(userId, eventIds, from, to);
+                    unarchiveEvents(db, selection, selectionArgs);
+                    try (Cursor cursor = db.query(TABLE_EVENTS, DELETED_EVENT_COLUMNS, selection, selectionArgs,
+                            null, null, null)) {
+                        int idIndex = cursor.getColumnIndexOrThrow(COLUMN_EVENT_ID);
+                        int titleIndex = cursor.getColumnIndexOrThrow(COLUMN_TITLE);
+                        int descriptionIndex = cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION);
+                        int dateIndex = cursor.getColumnIndexOrThrow(COLUMN_DATE);
+                        int timeIndex = cursor.getColumnIndexOrThrow(COLUMN_TIME);
+                        int startAtIndex = cursor.getColumnIndexOrThrow(COLUMN_START_AT);
+                        int endAtIndex = cursor.getColumnIndexOrThrow(COLUMN_END_AT);
+                        int notificationsIndex = cursor.getColumnIndexOrThrow(COLUMN_NOTIFICATIONS_ENABLED);
+                        int syncIdIndex = cursor.getColumnIndexOrThrow(COLUMN_SYNC_ID);
+                        int updatedAtIndex = cursor.getColumnIndexOrThrow(COLUMN_UPDATED_AT);
+                        int versionIndex = cursor.getColumnIndexOrThrow(COLUMN_VERSION);
+                        int syncedVersionIndex = cursor.getColumnIndexOrThrow(COLUMN_SYNCED_VERSION);
+                        while (cursor.moveToNext()) {
+                            Event event = new Event(
+                                    cursor.getInt(idIndex),
+                                    cursor.getString(titleIndex),
+                                    cursor.getString(descriptionIndex),
+                                    cursor.getString(dateIndex),
+                                    cursor.getString(timeIndex),
+                                    cursor.getLong(startAtIndex),
+                                    cursor.getLong(endAtIndex),
+                                    cursor.getInt(notificationsIndex) == 1);
+                            deleted.add(new DeletedEvent(event, cursor.getString(syncIdIndex),
+                                    cursor.getLong(updatedAtIndex), cursor.getLong(versionIndex),
+                                    cursor.getLong(syncedVersionIndex)));
+                        }
+                    }
+                    db.delete(TABLE_EVENTS, selection, selectionArgs);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            afterEventWrites(userId, deleted.size());
+            return deleted;
+        } finally {
+            TIMER_DELETE_EVENTS.stop(start, deleted.size());
+        }
+    }
+
+    // Method to put events returned by deleteEvents() back, under their original IDs and sync IDs, in one
+    // transaction. The tombstones the deletion left are removed with them, so a deletion that was never
+    // pushed is as if it never happened. If the tombstone was pushed already, the event is restored as a
+    // new change, later than the deletion, so it is sent to the server again. Returns the number restored.
+    public int restoreEvents(long userId, List<DeletedEvent> events) {
+        long start = TIMER_RESTORE_EVENTS.start();
+        int restored = 0;
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            SQLiteStatement insert = statements.get(db, SQL_RESTORE_EVENT);
+            SQLiteStatement dropTombstone = statements.get(db, SQL_DROP_TOMBSTONE);
+            synchronized (insert) {
+                db.beginTransaction();
+                try {
+                    long now = System.currentTimeMillis();
+                    for (DeletedEvent deleted : events) {
+                        Event event = deleted.getEvent();
+                        long updatedAt = deleted.getUpdatedAt();
+                        long version = deleted.getVersion();
+                        if (deleted.getSyncId() != null) {
+                            dropTombstone.bindString(1, deleted.getSyncId());
+                            dropTombstone.bindLong(2, userId);
+                            if (dropTombstone.executeUpdateDelete() == 0 && deleted.getSyncedVersion() > 0) {
+                                // The server has seen the deletion; restoring is a newer change
+                                updatedAt = Math.max(now, updatedAt + 1);
+                                version++;
+                            }
+                        }
+                        insert.clearBindings();
+                        insert.bindLong(1, event.getId());
+                        insert.bindLong(2, userId);
+                        bindStringOrNull(insert, 3, event.getTitle());
+                        bindStringOrNull(insert, 4, event.getDescription());
+                        bindStringOrNull(insert, 5, event.getDate());
+                        bindStringOrNull(insert, 6, event.getTime());
+                        insert.bindLong(7, event.getStartAt());
+                        insert.bindLong(8, event.getEndAt());
+                        insert.bindLong(9, event.isNotificationsEnabled() ? 1 : 0);
+                        // A row without a sync ID gets a new one from the insert trigger
+                        bindStringOrNull(insert, 10, deleted.getSyncId());
+                        insert.bindLong(11, updatedAt);
+                        insert.bindLong(12, version);
+                        insert.bindLong(13, deleted.getSyncedVersion());
+                        insert.executeInsert();
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            restored = events.size();
+            afterEventWrites(userId, restored);
+            return restored;
+        } finally {
+            TIMER_RESTORE_EVENTS.stop(start, restored);
+        }
+    }
+
+    // Method to turn notifications on or off for several events of a user in one transaction. Returns the
+    // IDs of the events that changed, which are the ones to switch back to undo it. Archived events move back
+    // to the events table first.
+    public int[] setNotificationsEnabled(long userId, int[] eventIds, boolean enabled) {
+        long start = TIMER_SET_NOTIFICATIONS.start();
+        List<Integer> changed = new ArrayList<>();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_NOTIFICATIONS_ENABLED, enabled ? 1 : 0);
+            db.beginTransaction();
+            try {
+                for (int from = 0; from < eventIds.length; from += MAX_IDS_PER_STATEMENT) {
+                    int to = Math.min(eventIds.length, from + MAX_IDS_PER_STATEMENT);
+                    unarchiveEvents(db, selectionForIds(to - from), argsForIds(userId, eventIds, from, to));
+                    String selection = selectionForIds(to - from) + " AND " + COLUMN_NOTIFICATIONS_ENABLED + " != ?";
+                    String[] selectionArgs = argsForIds(userId, eventIds, from, to, enabled ? "1" : "0");
+                    try (Cursor cursor = db.query(TABLE_EVENTS, new String[]{COLUMN_EVENT_ID}, selection, selectionArgs,
+                            null, null, null)) {
+                        while (cursor.moveToNext()) {
+                            changed.add(cursor.getInt(0));
+                        }
+                    }
+                    db.update(TABLE_EVENTS, values, selection, selectionArgs);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            afterEventWrites(userId, changed.size());
+            return toIntArray(changed);
+        } finally {
+            TIMER_SET_NOTIFICATIONS.stop(start, changed.size());
+        }
+    }
+
+    // Method to move several events of a user by a number of days in one transaction, keeping their times
+    // of day and lengths. Each start is worked out again from the new date, so an event keeps its local
+    // time when a daylight saving change lies in between. Returns the IDs of the events moved; events
+    // without a valid date are left where they are. Archived events move back to the events table first.
+    public int[] shiftEvents(long userId, int[] eventIds, int days) {
+        long start = TIMER_SHIFT_EVENTS.start();
+        List<Integer> moved = new ArrayList<>();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            TimeZone zone = TimeZone.getDefault();
+            SQLiteStatement shift = statements.get(db, SQL_SHIFT_EVENT);
+            synchronized (shift) {
+                db.beginTransaction();
+                try {
+                    for (int from = 0; from < eventIds.length; from += MAX_IDS_PER_STATEMENT) {
+                        int to = Math.min(eventIds.length, from + MAX_IDS_PER_STATEMENT);
+                        unarchiveEvents(db, selectionForIds(to - from), argsForIds(userId, eventIds, from, to));
+                        // Read the chunk before writing to it, so the cursor never sees its own changes
+                        List<Integer> ids = new ArrayList<>(to - from);
+                        List<String> dates = new ArrayList<>(to - from);
+                        List<String> times = new ArrayList<>(to - from);
+                        try (Cursor cursor = db.query(TABLE_EVENTS, new String[]{COLUMN_EVENT_ID, COLUMN_DATE, COLUMN_TIME},
+                                selectionForIds(to - from), argsForIds(userId, eventIds, from, to), null, null, null)) {
+                            while (cursor.moveToNext()) {
+                                ids.add(cursor.getInt(0));
+                                dates.add(cursor.getString(1));
+                                times.add(cursor.getString(2));
+                            }
+                        }
+                        for (int i = 0; i < ids.size(); i++) {
+                            int day = DateTimeCodec.parseDate(dates.get(i));
+                            if (day == DateTimeCodec.INVALID) {
+                                continue;
+                            }
+                            int newDay = DateTimeCodec.fromEpochDay(DateTimeCodec.toEpochDay(day) + days);
+                            shift.clearBindings();
+                            shift.bindString(1, DateTimeCodec.formatStoredDate(newDay));
+                            shift.bindLong(2, DateTimeCodec.toEpochMillis(newDay, DateTimeCodec.parseTime(times.get(i)), zone));
+                            shift.bindLong(3, ids.get(i));
+                            shift.executeUpdateDelete();
+                            moved.add(ids.get(i));
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            afterEventWrites(userId, moved.size());
+            return toIntArray(moved);
+        } finally {
+            TIMER_SHIFT_EVENTS.stop(start, moved.size());
+        }
+    }
+
+    // Method to add a recurring event whose first occurrence is on the given date. Returns the series ID,
+    // or -1 if the date is not valid. Throws IllegalStateException once series IDs run past what
+    // occurrence IDs can hold.
+    public long addSeries(long userId, String title, String description, String date, String time, RecurrenceRule rule,
+                          boolean enableNotifications) {
+        long start = TIMER_ADD_SERIES.start();
+        try {
+            int day = DateTimeCodec.parseDate(date);
+            if (day == DateTimeCodec.INVALID) {
+                return -1;
+            }
+            SQLiteDatabase db = this.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_USER_ID, userId);
+            values.put(COLUMN_TITLE, title);
+            values.put(COLUMN_DESCRIPTION, description);
+            values.put(COLUMN_DATE, DateTimeCodec.formatStoredDate(day));
+            values.put(COLUMN_TIME, time);
+            values.put(COLUMN_RULE, rule.toString());
+            values.put(COLUMN_NOTIFICATIONS_ENABLED, enableNotifications ? 1 : 0);
+            long seriesId = db.insert(TABLE_SERIES, null, values);
+            if (seriesId > EventSeries.MAX_SERIES_ID) {
+                db.delete(TABLE_SERIES, COLUMN_SERIES_ID + " = ?", new String[]{String.valueOf(seriesId)});
+                throw new IllegalStateException("No more recurring events can be added");
+            }
+            afterWrites(1);
+            return seriesId;
+        } finally {
+            TIMER_ADD_SERIES.stop(start, 1);
+        }
+    }
+
+    // Method to delete a recurring event with all of its occurrences
+    public int deleteSeries(long userId, long seriesId) {
+        long start = TIMER_DELETE_SERIES.start();
+        int deleted = 0;
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            deleted = db.delete(TABLE_SERIES, COLUMN_SERIES_ID + " = ? AND " + COLUMN_USER_ID + " = ?",
+                    new String[]{String.valueOf(seriesId), String.valueOf(userId)});
+            afterWrites(deleted);
+            return deleted;
+        } finally {
+            TIMER_DELETE_SERIES.stop(start, deleted);
+        }
+    }
+
+    // Method to change or cancel one occurrence of a recurring event, identified by the packed date it
+    // was originally due. Null values keep those of the series. Replaces any earlier change to the same
+    // occurrence. Returns the number of rows written, 0 if the series is not the user's.
+    public int putOccurrenceChange(long userId, long seriesId, int occurrenceDate, boolean cancelled, String title,
+                                   String description, String date, String time) {
+        long start = TIMER_PUT_OCCURRENCE_CHANGE.start();
+        int written = 0;
+        try {
+            SQLiteStatement put = statements.get(this.getWritableDatabase(), SQL_PUT_OCCURRENCE_CHANGE);
+            synchronized (put) {
+                put.clearBindings();
+                put.bindString(1, DateTimeCodec.formatStoredDate(occurrenceDate));
+                put.bindLong(2, cancelled ? 1 : 0);
+                bindStringOrNull(put, 3, title);
+                bindStringOrNull(put, 4, description);
+                bindStringOrNull(put, 5, date != null ? convertDateToSortableFormat(date) : null);
+                bindStringOrNull(put, 6, time);
+                put.bindLong(7, seriesId);
+                put.bindLong(8, userId);
+                written = put.executeUpdateDelete();
+            }
+            afterWrites(written);
+            return written;
+        } finally {
+            TIMER_PUT_OCCURRENCE_CHANGE.stop(start, written);
+        }
+    }
+
+    // Method to copy the write-ahead log back into the database without blocking readers or the writer,
+    // which keeps the log short and reads fast
+    public void checkpoint() {
+        long start = TIMER_CHECKPOINT.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            if (!profile.isWriteAheadLogging() || db.inTransaction()) {
+                return;
+            }
+            try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null)) {
+                cursor.moveToFirst();
+            }
+        } finally {
+            TIMER_CHECKPOINT.stop(start);
+        }
+    }
+
+    // Method to refresh the statistics the query planner uses to choose indexes
+    public void analyze() {
+        long start = TIMER_ANALYZE.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            if (!db.inTransaction()) {
+                db.execSQL("ANALYZE");
+            }
+        } finally {
+            TIMER_ANALYZE.stop(start);
+        }
+    }
+
+    // Counts written rows and runs a checkpoint or ANALYZE whenever the profile's interval is crossed
+    private void afterWrites(int rows) {
+        if (rows <= 0) {
+            return;
+        }
+        long after = writeCount.addAndGet(rows);
+        long before = after - rows;
+        if (crossedInterval(before, after, profile.getCheckpointInterval())) {
+            checkpoint();
+        }
+        if (crossedInterval(before, after, profile.getAnalyzeInterval())) {
+            analyze();
+        }
+    }
+
+    // Counts written rows of a user's events, as afterWrites(), and tells the observers of the user's
+    // EventsProvider URIs that they changed
+    private void afterEventWrites(long userId, int rows) {
+        afterWrites(rows);
+        if (rows > 0) {
+            notifyEventsChanged(userId);
+        }
+    }
+
+    private void notifyEventsChanged(long userId) {
+        resolver.notifyChange(EventsProvider.userUri(userId), null, false);
+    }
+
+    private static boolean crossedInterval(long before, long after, int interval) {
+        return interval > 0 && before / interval != after / interval;
+    }
+
+    // Method to move up to `limit` of a user's events that ended before `beforeMillis` to the archive table,
+    // oldest first, in one transaction. Events without a valid date stay. Returns the number moved; fewer
+    // than `limit` means none are left. The transaction holds up other writes, so keep batches small.
+    public int archiveEvents(long userId, long beforeMillis, int limit) {
+        long start = TIMER_ARCHIVE_EVENTS.start();
+        int moved = 0;
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            // Found through idx_events_user_start; the same rows both times, as nothing else writes meanwhile
+            String batch = "SELECT " + COLUMN_EVENT_ID + " FROM " + TABLE_EVENTS + " WHERE " + COLUMN_USER_ID + " = ?1" +
+                    " AND " + COLUMN_START_AT + " > 0 AND " + COLUMN_START_AT + " < ?2 AND " + COLUMN_END_AT + " < ?2" +
+                    " ORDER BY " + COLUMN_START_AT + " LIMIT ?3";
+            db.beginTransaction();
+            try (SQLiteStatement copy = db.compileStatement("INSERT INTO " + TABLE_EVENTS_ARCHIVE + " (" + STORED_COLUMNS +
+                    ") SELECT " + STORED_COLUMNS + " FROM " + TABLE_EVENTS + " WHERE " + COLUMN_EVENT_ID + " IN (" + batch + ")");
+                 SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE_EVENTS +
+                         " WHERE " + COLUMN_EVENT_ID + " IN (" + batch + ")")) {
+                for (SQLiteStatement statement : new SQLiteStatement[]{copy, delete}) {
+                    statement.bindLong(1, userId);
+                    statement.bindLong(2, beforeMillis);
+                    statement.bindLong(3, limit);
+                }
+                copy.executeUpdateDelete();
+                moved = delete.executeUpdateDelete();
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            // Only events that have ended move, and EventsProvider lists none of those, so there is nothing to notify
+            afterWrites(moved);
+            return moved;
+        } finally {
+            TIMER_ARCHIVE_EVENTS.stop(start, moved);
+        }
     }
-    // Method to add or update an event
-    public long addEvent(String title, String description, String date, String time, boolean enableNotifications) {
+
+    // Moves one archived event of a user back to the events table, before a write to it. Returns false if
+    // the event is not archived.
+    private boolean unarchiveEvent(long userId, int eventId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_TITLE, title);
-        values.put(COLUMN_DESCRIPTION, description);
-        values.put(COLUMN_DATE, convertDateToSortableFormat(date)); // Convert date to YYYY-MM-DD format
-        values.put(COLUMN_TIME, time);
-        values.put(COLUMN_NOTIFICATIONS_ENABLED, enableNotifications ? 1 : 0);
+        db.beginTransaction();
+        try {
+            int moved = unarchiveEvents(db, COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?",
+                    new String[]{String.valueOf(eventId), String.valueOf(userId)});
+            db.setTransactionSuccessful();
+            return moved > 0;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Moves the archived events matching a selection back to the events table; call inside a transaction.
+    // Two primary key lookups per ID, which find nothing for live events. Returns the number moved.
+    private static int unarchiveEvents(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        db.execSQL("INSERT INTO " + TABLE_EVENTS + " (" + STORED_COLUMNS + ") SELECT " + STORED_COLUMNS +
+                " FROM " + TABLE_EVENTS_ARCHIVE + " WHERE " + selection, selectionArgs);
+        return db.delete(TABLE_EVENTS_ARCHIVE, selection, selectionArgs);
+    }
+
+    // Method to return pages freed by deletes and archiving to the file system, at most `maxPages` at a time,
+    // so the file shrinks as the live table does. Short, as it only moves the pages it frees. Does nothing
+    // until the database uses incremental auto-vacuum (see convertToIncrementalVacuum()). Returns the number
+    // of pages freed.
+    public int compact(int maxPages) {
+        long start = TIMER_COMPACT.start();
+        int freed = 0;
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            if (db.inTransaction()) {
+                return 0;
+            }
+            long freeBefore = pragmaValue(db, "freelist_count");
+            if (freeBefore > 0 && pragmaValue(db, "auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+                try (Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + maxPages + ")", null)) {
+                    // Each freed page is one step of the statement, so read it to the end
+                    cursor.getCount();
+                }
+            }
+            freed = (int) (freeBefore - pragmaValue(db, "freelist_count"));
+            return freed;
+        } finally {
+            TIMER_COMPACT.stop(start, freed);
+        }
+    }
+
+    // Method to tell whether compact() can return free pages, which a database created by an older version
+    // of the app cannot until it is converted
+    public boolean isIncrementalVacuum() {
+        return pragmaValue(this.getWritableDatabase(), "auto_vacuum") == AUTO_VACUUM_INCREMENTAL;
+    }
+
+    // Method to switch a database created by an older version of the app to incremental auto-vacuum. The
+    // setting only takes effect through a full VACUUM, which rewrites the whole file and holds the write
+    // lock throughout, so this is only called from VacuumJob while the device is idle and charging.
+    // Returns true if the database was converted, false if it already was.
+    public boolean convertToIncrementalVacuum() {
+        long start = TIMER_CONVERT_VACUUM.start();
+        boolean converted = false;
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            if (pragmaValue(db, "auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+                return false;
+            }
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            converted = true;
+            return true;
+        } finally {
+            TIMER_CONVERT_VACUUM.stop(start, converted ? 1 : 0);
+        }
+    }
+
+    private static long pragmaValue(SQLiteDatabase db, String pragma) {
+        try (Cursor cursor = db.rawQuery("PRAGMA " + pragma, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Method to get a user's day, week or month buckets that start from `fromDate` up to `toDate`
+    // (exclusive), both packed dates, in date order. Days, weeks or months without events are left out.
+    public List<EventStats.Bucket> getStatBuckets(long userId, CalendarRange.Kind kind, int fromDate, int toDate) {
+        long start = TIMER_GET_STAT_BUCKETS.start();
+        List<EventStats.Bucket> buckets = new ArrayList<>();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            try (Cursor cursor = db.query(TABLE_EVENT_STATS,
+                    new String[]{COLUMN_BUCKET, COLUMN_EVENT_COUNT, COLUMN_REMINDER_COUNT},
+                    COLUMN_USER_ID + " = ? AND " + COLUMN_KIND + " = ? AND " + COLUMN_BUCKET + " >= ? AND " +
+                            COLUMN_BUCKET + " < ?",
+                    new String[]{String.valueOf(userId), String.valueOf(statsKind(kind)),
+                            DateTimeCodec.formatStoredDate(fromDate), DateTimeCodec.formatStoredDate(toDate)},
+                    null, null, COLUMN_BUCKET)) {
+                readBuckets(cursor, buckets);
+            }
+            return buckets;
+        } finally {
+            TIMER_GET_STAT_BUCKETS.stop(start, buckets.size());
+        }
+    }
+
+    // Method to get the `limit` days with the most events of a user, busiest first and the latest first among
+    // days with as many. Read in index order, without looking at the other days.
+    public List<EventStats.Bucket> getBusiestDays(long userId, int limit) {
+        long start = TIMER_GET_BUSIEST_DAYS.start();
+        List<EventStats.Bucket> buckets = new ArrayList<>();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            try (Cursor cursor = db.query(TABLE_EVENT_STATS,
+                    new String[]{COLUMN_BUCKET, COLUMN_EVENT_COUNT, COLUMN_REMINDER_COUNT},
+                    COLUMN_USER_ID + " = ? AND " + COLUMN_KIND + " = " + STATS_DAY, new String[]{String.valueOf(userId)},
+                    null, null, COLUMN_EVENT_COUNT + " DESC, " + COLUMN_BUCKET + " DESC", String.valueOf(limit))) {
+                readBuckets(cursor, buckets);
+            }
+            return buckets;
+        } finally {
+            TIMER_GET_BUSIEST_DAYS.stop(start, buckets.size());
+        }
+    }
+
+    // Method to count a user's events with notifications enabled that start at or after `now`: the day
+    // buckets after today, plus today's events read through the (user_id, start_at) index
+    public int countPendingReminders(long userId, long now) {
+        long start = TIMER_COUNT_PENDING_REMINDERS.start();
+        int pending = 0;
+        try {
+            TimeZone zone = TimeZone.getDefault();
+            CalendarRange today = CalendarRange.containing(CalendarRange.Kind.DAY, DateTimeCodec.packedDateOf(now, zone));
+            SQLiteDatabase db = this.getReadableDatabase();
+            try (Cursor cursor = db.rawQuery("SELECT (SELECT IFNULL(SUM(" + COLUMN_REMINDER_COUNT + "), 0) FROM " +
+                            TABLE_EVENT_STATS + " WHERE " + COLUMN_USER_ID + " = ?1 AND " + COLUMN_KIND + " = " + STATS_DAY +
+                            " AND " + COLUMN_BUCKET + " >= ?2) + (SELECT COUNT(*) FROM " + TABLE_EVENTS +
+                            " WHERE " + COLUMN_USER_ID + " = ?1 AND " + COLUMN_START_AT + " >= ?3 AND " +
+                            COLUMN_START_AT + " < ?4 AND " + COLUMN_NOTIFICATIONS_ENABLED + " = 1)",
+                    new String[]{String.valueOf(userId), DateTimeCodec.formatStoredDate(today.getEndDate()),
+                            String.valueOf(now), String.valueOf(today.getEndMillis(zone))})) {
+                pending = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+            }
+            return pending;
+        } finally {
+            TIMER_COUNT_PENDING_REMINDERS.stop(start, 1);
+        }
+    }
+
+    // Method to count every event into the statistics again, in one transaction, repairing any drift.
+    // Returns the number of buckets.
+    public int rebuildStats() {
+        long start = TIMER_REBUILD_STATS.start();
+        int buckets = 0;
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                rebuildStats(db);
+                buckets = (int) DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + TABLE_EVENT_STATS, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return buckets;
+        } finally {
+            TIMER_REBUILD_STATS.stop(start, buckets);
+        }
+    }
+
+    // Method to compare the statistics with a count from scratch, returning the number of buckets that are
+    // missing, extra or different. Package-private for the tests.
+    int countStatMismatches() {
+        String recount = recountStats();
+        String stored = "SELECT * FROM " + TABLE_EVENT_STATS;
+        return (int) DatabaseUtils.longForQuery(this.getReadableDatabase(),
+                "SELECT (SELECT COUNT(*) FROM (" + stored + " EXCEPT " + recount + ")) + " +
+                        "(SELECT COUNT(*) FROM (" + recount + " EXCEPT " + stored + "))", null);
+    }
+
+    private static int statsKind(CalendarRange.Kind kind) {
+        switch (kind) {
+            case DAY:
+                return STATS_DAY;
+            case WEEK:
+                return STATS_WEEK;
+            default:
+                return STATS_MONTH;
+        }
+    }
+
+    private static void readBuckets(Cursor cursor, List<EventStats.Bucket> buckets) {
+        while (cursor.moveToNext()) {
+            buckets.add(new EventStats.Bucket(DateTimeCodec.parseStoredDate(cursor.getString(0)),
+                    cursor.getInt(1), cursor.getInt(2)));
+        }
+    }
+
+    // Method to get all live events of a user; archived ones are read with getArchivedEventsPage()
+    public Cursor getAllEvents(long userId) {
+        long start = TIMER_GET_ALL_EVENTS.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            cursor = db.query(
+                    TABLE_EVENTS,
+                    null,
+                    COLUMN_USER_ID + " = ?",
+                    new String[]{String.valueOf(userId)},
+                    null,
+                    null,
+                    COLUMN_START_AT + ", " + COLUMN_EVENT_ID
+            );
+            return cursor;
+        } finally {
+            TIMER_GET_ALL_EVENTS.stop(start, cursor);
+        }
+    }
+
+    // Method to check a username and password, returning the user's ID or -1 if there is no match.
+    // The row is found through the unique username index and the password is checked in Java against
+    // the stored hash, or the legacy plaintext. Unknown usernames cost one hash too, so the time taken
+    // does not reveal which usernames exist.
+    public long checkUser(String username, String password, PasswordHasher hasher) {
+        long start = TIMER_CHECK_USER.start();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_ID + ", " + COLUMN_PASSWORD + ", " + COLUMN_PASSWORD_HASH +
+                    " FROM " + TABLE_USERS + " WHERE " + COLUMN_USERNAME + "=?", new String[]{username})) {
+                if (!cursor.moveToFirst()) {
+                    hasher.verifyUnknownUser(password);
+                    return -1;
+                }
+                boolean matches = cursor.isNull(2)
+                        ? PasswordHasher.plaintextEquals(password, cursor.getString(1))
+                        : PasswordHasher.verify(password, cursor.getString(2));
+                return matches ? cursor.getLong(0) : -1;
+            }
+        } finally {
+            TIMER_CHECK_USER.stop(start);
+        }
+    }
+
+    // Method to replace a user's legacy plaintext password, or a hash made with older settings, with a
+    // hash from the given hasher. Call only after the password was verified. Returns false if the
+    // stored value is already current, or if it changed in the meantime.
+    public boolean upgradePassword(long userId, String password, PasswordHasher hasher) {
+        long start = TIMER_UPGRADE_PASSWORD.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            String storedPassword;
+            String storedHash;
+            try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_PASSWORD + ", " + COLUMN_PASSWORD_HASH +
+                    " FROM " + TABLE_USERS + " WHERE " + COLUMN_ID + "=?", new String[]{String.valueOf(userId)})) {
+                if (!cursor.moveToFirst()) {
+                    return false;
+                }
+                storedPassword = cursor.getString(0);
+                storedHash = cursor.getString(1);
+            }
+            if (storedHash != null && !hasher.needsRehash(storedHash)) {
+                return false;
+            }
 
-        return db.insert(TABLE_EVENTS, null, values);
+            ContentValues values = new ContentValues();
+            values.putNull(COLUMN_PASSWORD);
+            values.put(COLUMN_PASSWORD_HASH, hasher.hash(password));
+            // Only replace the exact value that was read, in case the password changed meanwhile
+            String selection = COLUMN_ID + "=? AND " + (storedHash != null
+                    ? COLUMN_PASSWORD_HASH + "=?"
+                    : COLUMN_PASSWORD_HASH + " IS NULL AND " + COLUMN_PASSWORD + "=?");
+            String[] selectionArgs = {String.valueOf(userId), storedHash != null ? storedHash : storedPassword};
+            return db.update(TABLE_USERS, values, selection, selectionArgs) == 1;
+        } finally {
+            TIMER_UPGRADE_PASSWORD.stop(start);
+        }
     }
-    // Method to update an event
-    public void updateEvent(int eventId, String title, String description, String date, String time, boolean enableNotifications) {
+
+    // Method to add a new user with an already hashed password. The unique username index makes this
+    // a single atomic check-and-insert: a taken username throws SQLiteConstraintException.
+    public long addUser(String username, String passwordHash) {
+        long start = TIMER_ADD_USER.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_USERNAME, username);
+            values.put(COLUMN_PASSWORD_HASH, passwordHash);
+
+            return db.insertOrThrow(TABLE_USERS, null, values);
+        } finally {
+            TIMER_ADD_USER.stop(start, 1);
+        }
+    }
+
+    // Method to store a new login session by the hash of its token, dropping the user's expired ones
+    public void addSession(long userId, String tokenHash, long expiresAt) {
         SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_SESSIONS, COLUMN_USER_ID + " = ? AND " + COLUMN_EXPIRES_AT + " <= ?",
+                    new String[]{String.valueOf(userId), String.valueOf(System.currentTimeMillis())});
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_TOKEN_HASH, tokenHash);
+            values.put(COLUMN_USER_ID, userId);
+            values.put(COLUMN_EXPIRES_AT, expiresAt);
+            db.insertOrThrow(TABLE_SESSIONS, null, values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Method to get the user of a session that has not expired at `now`, or -1. One primary key lookup.
+    public long getSessionUser(String tokenHash, long now) {
+        long start = TIMER_GET_SESSION_USER.start();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            try (Cursor cursor = db.query(TABLE_SESSIONS, new String[]{COLUMN_USER_ID},
+                    COLUMN_TOKEN_HASH + " = ? AND " + COLUMN_EXPIRES_AT + " > ?",
+                    new String[]{tokenHash, String.valueOf(now)}, null, null, null)) {
+                return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+            }
+        } finally {
+            TIMER_GET_SESSION_USER.stop(start);
+        }
+    }
+
+    // Method to move the expiry of a session, returning false if it no longer exists
+    public boolean extendSession(String tokenHash, long expiresAt) {
         ContentValues values = new ContentValues();
-        values.put(COLUMN_TITLE, title);
-        values.put(COLUMN_DESCRIPTION, description);
-        values.put(COLUMN_DATE, convertDateToSortableFormat(date));
-        values.put(COLUMN_TIME, time);
-        values.put(COLUMN_NOTIFICATIONS_ENABLED, enableNotifications ? 1 : 0);
+        values.put(COLUMN_EXPIRES_AT, expiresAt);
+        return this.getWritableDatabase().update(TABLE_SESSIONS, values, COLUMN_TOKEN_HASH + " = ?",
+                new String[]{tokenHash}) == 1;
+    }
 
-        db.update(TABLE_EVENTS, values, COLUMN_EVENT_ID + " = ?", new String[]{String.valueOf(eventId)});
+    // Method to end a session, on logout
+    public int deleteSession(String tokenHash) {
+        return this.getWritableDatabase().delete(TABLE_SESSIONS, COLUMN_TOKEN_HASH + " = ?", new String[]{tokenHash});
     }
 
-    // Method to delete an event
-    public void deleteEvent(int eventId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_EVENTS, COLUMN_EVENT_ID + "=?", new String[]{String.valueOf(eventId)});
+    // Method to get one page of a user's events in (start_at, event_id) order, starting after the given key.
+    // Pass a negative afterId for the first page. Only the columns the grid shows are read, and the
+    // description is cut to a short preview; the full text is loaded on demand with getEventDescription().
+    public Cursor getEventsPage(long userId, long afterStartAt, int afterId, int limit) {
+        long start = TIMER_GET_EVENTS_PAGE.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            String orderBy = COLUMN_START_AT + ", " + COLUMN_EVENT_ID;
+
+            if (afterId < 0) {
+                cursor = db.query(TABLE_EVENTS, GRID_COLUMNS, COLUMN_USER_ID + " = ?", new String[]{String.valueOf(userId)},
+                        null, null, orderBy, String.valueOf(limit));
+                return cursor;
+            }
+
+            // Keyset condition (start_at, event_id) > (?, ?), written so the leading start_at bound
+            // becomes a range search on idx_events_user_start
+            String selection = COLUMN_USER_ID + " = ? AND " + COLUMN_START_AT + " >= ? AND (" +
+                    COLUMN_START_AT + " > ? OR " + COLUMN_EVENT_ID + " > ?)";
+            String[] selectionArgs = {String.valueOf(userId), String.valueOf(afterStartAt),
+                    String.valueOf(afterStartAt), String.valueOf(afterId)};
+            cursor = db.query(TABLE_EVENTS, GRID_COLUMNS, selection, selectionArgs, null, null, orderBy, String.valueOf(limit));
+            return cursor;
+        } finally {
+            TIMER_GET_EVENTS_PAGE.stop(start, cursor);
+        }
+    }
+
+    // Method to get a user's events, live and archived, that overlap the range from `fromMillis` (inclusive)
+    // to `toMillis` (exclusive), in (start_at, event_id) order, with the same columns as getEventsPage().
+    // Events that start in the range, or started earlier and end after its start, overlap it. The earliest
+    // start worth reading in each table is the range start less the user's longest event there, found with
+    // one lookup on its span index, which makes each half of the query a bounded range search on its start
+    // index: the cost follows the number of events near the range, not the number the user has.
+    public Cursor getEventsInRange(long userId, long fromMillis, long toMillis) {
+        long start = TIMER_GET_EVENTS_IN_RANGE.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            String user = String.valueOf(userId);
+            String from = String.valueOf(fromMillis);
+            String selection = COLUMN_USER_ID + " = ? AND " + COLUMN_START_AT + " >= ? AND " + COLUMN_START_AT + " < ?" +
+                    " AND (" + COLUMN_START_AT + " >= ? OR " + COLUMN_END_AT + " > ?)";
+            String columns = TextUtils.join(", ", GRID_COLUMNS);
+            cursor = db.rawQuery("SELECT " + columns + " FROM " + TABLE_EVENTS + " WHERE " + selection +
+                            " UNION ALL SELECT " + columns + " FROM " + TABLE_EVENTS_ARCHIVE + " WHERE " + selection +
+                            " ORDER BY " + COLUMN_START_AT + ", " + COLUMN_EVENT_ID,
+                    new String[]{
+                            user, String.valueOf(fromMillis - longestEvent(db, TABLE_EVENTS, user)), String.valueOf(toMillis), from, from,
+                            user, String.valueOf(fromMillis - longestEvent(db, TABLE_EVENTS_ARCHIVE, user)), String.valueOf(toMillis), from, from});
+            return cursor;
+        } finally {
+            TIMER_GET_EVENTS_IN_RANGE.stop(start, cursor);
+        }
+    }
+
+    // Length of a user's longest event in the events or archive table, from its span index
+    private static long longestEvent(SQLiteDatabase db, String table, String user) {
+        try (Cursor span = db.rawQuery("SELECT " + EXPRESSION_SPAN + " FROM " + table +
+                " WHERE " + COLUMN_USER_ID + " = ? ORDER BY " + EXPRESSION_SPAN + " DESC LIMIT 1", new String[]{user})) {
+            return span.moveToFirst() ? Math.max(0, span.getLong(0)) : 0;
+        }
+    }
+
+    // Method to get one page of a user's archived events, newest first, starting before the given key.
+    // Pass a negative beforeId for the first page. Same columns as getEventsPage(), read backwards along
+    // idx_archive_user_start.
+    public Cursor getArchivedEventsPage(long userId, long beforeStartAt, int beforeId, int limit) {
+        long start = TIMER_GET_ARCHIVED_EVENTS_PAGE.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            String orderBy = COLUMN_START_AT + " DESC, " + COLUMN_EVENT_ID + " DESC";
+            if (beforeId < 0) {
+                cursor = db.query(TABLE_EVENTS_ARCHIVE, GRID_COLUMNS, COLUMN_USER_ID + " = ?",
+                        new String[]{String.valueOf(userId)}, null, null, orderBy, String.valueOf(limit));
+                return cursor;
+            }
+            // Keyset condition (start_at, event_id) < (?, ?), as in getEventsPage()
+            String selection = COLUMN_USER_ID + " = ? AND " + COLUMN_START_AT + " <= ? AND (" +
+                    COLUMN_START_AT + " < ? OR " + COLUMN_EVENT_ID + " < ?)";
+            String[] selectionArgs = {String.valueOf(userId), String.valueOf(beforeStartAt),
+                    String.valueOf(beforeStartAt), String.valueOf(beforeId)};
+            cursor = db.query(TABLE_EVENTS_ARCHIVE, GRID_COLUMNS, selection, selectionArgs, null, null, orderBy,
+                    String.valueOf(limit));
+            return cursor;
+        } finally {
+            TIMER_GET_ARCHIVED_EVENTS_PAGE.stop(start, cursor);
+        }
+    }
+
+    // Method to get one of a user's events with the same columns as getEventsPage(), used to update
+    // the cached list after a write
+    public Cursor getEvent(long userId, int eventId) {
+        long start = TIMER_GET_EVENT.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            cursor = db.query(TABLE_EVENTS, GRID_COLUMNS, COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?",
+                    new String[]{String.valueOf(eventId), String.valueOf(userId)}, null, null, null);
+            return cursor;
+        } finally {
+            TIMER_GET_EVENT.stop(start, cursor);
+        }
+    }
+
+    // Method to get the ID, start and end of every live event of a user that has a date, in start order,
+    // to build the conflict index from. Reads only the (user_id, start_at) index and the rows' ends.
+    public Cursor getEventSpans(long userId) {
+        long start = TIMER_GET_EVENT_SPANS.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            cursor = db.query(TABLE_EVENTS, new String[]{COLUMN_EVENT_ID, COLUMN_START_AT, COLUMN_END_AT},
+                    COLUMN_USER_ID + " = ? AND " + COLUMN_START_AT + " > 0", new String[]{String.valueOf(userId)},
+                    null, null, COLUMN_START_AT);
+            return cursor;
+        } finally {
+            TIMER_GET_EVENT_SPANS.stop(start, cursor);
+        }
+    }
+
+    // Method to get up to `limit` of a user's events that have not ended by `now`, in (start_at, event_id)
+    // order, with the given columns; events already under way come first. As in getEventsInRange(), the
+    // search of idx_events_user_start starts at `now` less the user's longest event, so only the events near
+    // the head of the list are read however many the user has. Archived events have all ended and are not read.
+    public Cursor getUpcomingEvents(long userId, long now, String[] columns, int limit) {
+        long start = TIMER_GET_UPCOMING_EVENTS.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            String user = String.valueOf(userId);
+            // Events without a valid date have a start of 0 and never match
+            long from = Math.max(1, now - longestEvent(db, TABLE_EVENTS, user));
+            cursor = db.query(TABLE_EVENTS, columns,
+                    COLUMN_USER_ID + " = ? AND " + COLUMN_START_AT + " >= ? AND " + COLUMN_END_AT + " > ?",
+                    new String[]{user, String.valueOf(from), String.valueOf(now)},
+                    null, null, COLUMN_START_AT + ", " + COLUMN_EVENT_ID, String.valueOf(limit));
+            return cursor;
+        } finally {
+            TIMER_GET_UPCOMING_EVENTS.stop(start, cursor);
+        }
+    }
+
+    // Method to get the full description of one of a user's events, live or archived
+    public String getEventDescription(long userId, int eventId) {
+        long start = TIMER_GET_EVENT_DESCRIPTION.start();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            String[] selectionArgs = {String.valueOf(eventId), String.valueOf(userId)};
+            for (String table : new String[]{TABLE_EVENTS, TABLE_EVENTS_ARCHIVE}) {
+                try (Cursor cursor = db.query(table, new String[]{COLUMN_DESCRIPTION},
+                        COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?", selectionArgs, null, null, null)) {
+                    if (cursor.moveToFirst()) {
+                        return cursor.getString(0);
+                    }
+                }
+            }
+            return null;
+        } finally {
+            TIMER_GET_EVENT_DESCRIPTION.stop(start, 1);
+        }
+    }
+
+    // Method to search a user's events by title and description. Every word of the query is matched as a
+    // prefix, so results update while the user types. Events whose title holds every word rank first, then
+    // by start time. Pages follow the (title match, start_at, event_id) of the last row shown, like
+    // getEventsPage(); an afterId below 0 asks for the first page. Uses the full-text index instead of
+    // scanning with LIKE, with one MATCH: whether the title matched is read from matchinfo() of the same
+    // row. Returns no rows for a blank query.
+    public Cursor searchEvents(long userId, String query, boolean afterTitleMatch, long afterStartAt, int afterId,
+                               int limit) {
+        long start = TIMER_SEARCH_EVENTS.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            String match = toPrefixMatch(query);
+            String columns = "e." + COLUMN_EVENT_ID + ", e." + COLUMN_TITLE + ", " +
+                    "substr(e." + COLUMN_DESCRIPTION + ", 1, " + DESCRIPTION_PREVIEW_LENGTH + ") AS " + COLUMN_DESCRIPTION + ", " +
+                    "e." + COLUMN_DATE + ", e." + COLUMN_TIME + ", e." + COLUMN_START_AT + ", e." + COLUMN_END_AT + ", " +
+                    "e." + COLUMN_NOTIFICATIONS_ENABLED;
+            if (match == null) {
+                cursor = db.rawQuery("SELECT " + columns + ", 0 AS " + COLUMN_TITLE_MATCH +
+                        " FROM " + TABLE_EVENTS + " e WHERE 0", null);
+                return cursor;
+            }
+
+            String selection = TABLE_EVENTS_FTS + " MATCH ? AND e." + COLUMN_USER_ID + " = ?";
+            List<String> selectionArgs = new ArrayList<>();
+            selectionArgs.add(match);
+            selectionArgs.add(String.valueOf(userId));
+            if (afterId >= 0) {
+                // Keyset condition (title_match DESC, start_at, event_id) > (?, ?, ?): after a title match,
+                // the later title matches and then every other match; after any other match, only the
+                // later ones of those
+                String later = "e." + COLUMN_START_AT + " > ? OR (e." + COLUMN_START_AT + " = ? AND e." +
+                        COLUMN_EVENT_ID + " > ?)";
+                selection += afterTitleMatch
+                        ? " AND (" + COLUMN_TITLE_MATCH + " = 0 OR " + later + ")"
+                        : " AND " + COLUMN_TITLE_MATCH + " = 0 AND (" + later + ")";
+                selectionArgs.add(String.valueOf(afterStartAt));
+                selectionArgs.add(String.valueOf(afterStartAt));
+                selectionArgs.add(String.valueOf(afterId));
+            }
+            selectionArgs.add(String.valueOf(limit));
+            cursor = db.rawQuery("SELECT " + columns + ", " + titleMatchExpression(match) + " AS " + COLUMN_TITLE_MATCH +
+                            " FROM " + TABLE_EVENTS_FTS + " f" +
+                            " JOIN " + TABLE_EVENTS + " e ON e." + COLUMN_EVENT_ID + " = f.docid" +
+                            " WHERE " + selection +
+                            " ORDER BY " + COLUMN_TITLE_MATCH + " DESC, e." + COLUMN_START_AT + ", e." + COLUMN_EVENT_ID +
+                            " LIMIT ?",
+                    selectionArgs.toArray(new String[0]));
+            return cursor;
+        } finally {
+            TIMER_SEARCH_EVENTS.stop(start, cursor);
+        }
+    }
+
+    // SQL that is 1 when the title holds every word of a toPrefixMatch() query. matchinfo 'y' gives, for each
+    // word in turn, one 32-bit hit count per column, title first; each count is 8 hex digits, and it is zero
+    // only when all of them are 0 in either byte order.
+    private static String titleMatchExpression(String match) {
+        int words = match.split(" ").length;
+        StringBuilder expression = new StringBuilder("(");
+        for (int word = 0; word < words; word++) {
+            if (word > 0) {
+                expression.append(" AND ");
+            }
+            // Two columns per word, so the title count of word n starts at hex digit 16n
+            expression.append("substr(hex(matchinfo(" + TABLE_EVENTS_FTS + ", 'y')), ").append(16 * word + 1)
+                    .append(", 8) != '00000000'");
+        }
+        return expression.append(")").toString();
+    }
+
+    // Turns free text into an FTS query that matches every word as a prefix. Anything other than letters and
+    // digits separates words, as it does for the tokenizer, which also keeps characters with a meaning in the
+    // query syntax out of the query. Returns null if no words remain.
+    static String toPrefixMatch(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                // Lower case, so words such as OR and NOT are not read as operators
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(word).append('*');
+                word.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    // Method to get every event of a user with notifications enabled that starts after the given instant, in
+    // start order. Read along idx_events_user_reminders, which holds only events with notifications enabled.
+    // Archived events have ended and have no reminders left.
+    public Cursor getPendingReminders(long userId, long afterStartAt) {
+        long start = TIMER_GET_PENDING_REMINDERS.start();
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            cursor = db.query(TABLE_EVENTS, new String[]{COLUMN_EVENT_ID, COLUMN_TITLE, COLUMN_TIME, COLUMN_START_AT},
+                    COLUMN_USER_ID + " = ? AND " + COLUMN_NOTIFICATIONS_ENABLED + " = 1 AND " + COLUMN_START_AT + " > ?",
+                    new String[]{String.valueOf(userId), String.valueOf(afterStartAt)}, null, null,
+                    COLUMN_START_AT + ", " + COLUMN_EVENT_ID);
+            return cursor;
+        } finally {
+            TIMER_GET_PENDING_REMINDERS.stop(start, cursor);
+        }
+    }
+
+    // Method to get every recurring event of a user, with its changed and cancelled occurrences
+    public List<EventSeries> getSeries(long userId) {
+        return readSeries(COLUMN_USER_ID + " = ?", new String[]{String.valueOf(userId)});
+    }
+
+    // Method to get every recurring event of a user with notifications enabled
+    public List<EventSeries> getNotifiedSeries(long userId) {
+        return readSeries(COLUMN_USER_ID + " = ? AND " + COLUMN_NOTIFICATIONS_ENABLED + " = 1",
+                new String[]{String.valueOf(userId)});
+    }
+
+    // Reads the series matching a selection on the series table, and their changes. Series whose rule
+    // cannot be read are skipped.
+    private List<EventSeries> readSeries(String selection, String[] selectionArgs) {
+        long start = TIMER_GET_SERIES.start();
+        List<EventSeries> series = new ArrayList<>();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            Map<Long, List<EventSeries.OccurrenceChange>> changes = new HashMap<>();
+            try (Cursor cursor = db.rawQuery("SELECT c." + COLUMN_SERIES_ID + ", c." + COLUMN_OCCURRENCE_DATE + ", c." +
+                    COLUMN_CANCELLED + ", c." + COLUMN_TITLE + ", c." + COLUMN_DESCRIPTION + ", c." + COLUMN_DATE + ", c." +
+                    COLUMN_TIME + " FROM " + TABLE_SERIES_CHANGES + " c JOIN " + TABLE_SERIES + " s ON s." +
+                    COLUMN_SERIES_ID + " = c." + COLUMN_SERIES_ID + " WHERE s." + selection, selectionArgs)) {
+                while (cursor.moveToNext()) {
+                    List<EventSeries.OccurrenceChange> list = changes.get(cursor.getLong(0));
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        changes.put(cursor.getLong(0), list);
+                    }
+                    list.add(new EventSeries.OccurrenceChange(
+                            DateTimeCodec.parseStoredDate(cursor.getString(1)),
+                            cursor.getInt(2) == 1,
+                            cursor.getString(3),
+                            cursor.getString(4),
+                            cursor.isNull(5) ? DateTimeCodec.INVALID : DateTimeCodec.parseStoredDate(cursor.getString(5)),
+                            cursor.getString(6)));
+                }
+            }
+            try (Cursor cursor = db.query(TABLE_SERIES, new String[]{COLUMN_SERIES_ID, COLUMN_TITLE, COLUMN_DESCRIPTION,
+                    COLUMN_DATE, COLUMN_TIME, COLUMN_RULE, COLUMN_NOTIFICATIONS_ENABLED}, selection, selectionArgs,
+                    null, null, COLUMN_SERIES_ID)) {
+                while (cursor.moveToNext()) {
+                    long seriesId = cursor.getLong(0);
+                    List<EventSeries.OccurrenceChange> seriesChanges = changes.get(seriesId);
+                    try {
+                        series.add(new EventSeries(seriesId, cursor.getString(1), cursor.getString(2),
+                                DateTimeCodec.parseStoredDate(cursor.getString(3)), cursor.getString(4),
+                                RecurrenceRule.parse(cursor.getString(5)), cursor.getInt(6) == 1,
+                                seriesChanges != null ? seriesChanges : Collections.emptyList()));
+                    } catch (IllegalArgumentException e) {
+                        Log.w("DatabaseHelper", "Skipping series " + seriesId + ": " + e.getMessage());
+                    }
+                }
+            }
+            return series;
+        } finally {
+            TIMER_GET_SERIES.stop(start, series.size());
+        }
+    }
+
+    // Method to get the username of a user, or null if there is no such user
+    public String getUsername(long userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_USERS, new String[]{COLUMN_USERNAME}, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(userId)}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    // Method to get the number a user's reminders are texted to, or null if they have not set one
+    public String getReminderPhone(long userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_USERS, new String[]{COLUMN_REMINDER_PHONE}, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(userId)}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    // Method to set the number a user's reminders are texted to; null turns the texts off
+    public int setReminderPhone(long userId, String phone) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_REMINDER_PHONE, phone);
+        return this.getWritableDatabase().update(TABLE_USERS, values, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(userId)});
+    }
+
+    // Method to get up to `limit` local changes of a user that have not been pushed to the sync server:
+    // changed events first, live then archived, then tombstones of deleted ones. Changed events are found
+    // through partial indexes that hold only them, so the cost does not grow with the number of events
+    // already in sync.
+    public List<SyncChange> getPendingChanges(long userId, int limit) {
+        long start = TIMER_GET_PENDING_CHANGES.start();
+        List<SyncChange> changes = new ArrayList<>();
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            String[] selectionArgs = {String.valueOf(userId)};
+            for (String table : new String[]{TABLE_EVENTS, TABLE_EVENTS_ARCHIVE}) {
+                if (changes.size() == limit) {
+                    break;
+                }
+                try (Cursor cursor = db.query(table, new String[]{COLUMN_SYNC_ID, COLUMN_TITLE, COLUMN_DESCRIPTION,
+                                COLUMN_DATE, COLUMN_TIME, COLUMN_NOTIFICATIONS_ENABLED, "(" + EXPRESSION_SPAN + ") / 60000",
+                                COLUMN_UPDATED_AT, COLUMN_VERSION},
+                        COLUMN_USER_ID + " = ? AND " + CONDITION_UNSYNCED, selectionArgs, null, null, COLUMN_EVENT_ID,
+                        String.valueOf(limit - changes.size()))) {
+                    while (cursor.moveToNext()) {
+                        changes.add(new SyncChange(cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                                cursor.getString(3), cursor.getString(4), cursor.getInt(5) == 1, cursor.getInt(6),
+                                cursor.getLong(7), cursor.getLong(8)));
+                    }
+                }
+            }
+            if (changes.size() < limit) {
+                try (Cursor cursor = db.query(TABLE_SYNC_TOMBSTONES, new String[]{COLUMN_SYNC_ID, COLUMN_DELETED_AT},
+                        COLUMN_USER_ID + " = ?", selectionArgs, null, null, null, String.valueOf(limit - changes.size()))) {
+                    while (cursor.moveToNext()) {
+                        changes.add(SyncChange.deletion(cursor.getString(0), cursor.getLong(1)));
+                    }
+                }
+            }
+            return changes;
+        } finally {
+            TIMER_GET_PENDING_CHANGES.stop(start, changes.size());
+        }
+    }
+
+    // Method to record that changes read by getPendingChanges() reached the server, in one transaction.
+    // Events changed again since they were read stay pending, as do tombstones of events deleted again.
+    // Each event is marked in whichever of the events and archive tables holds it.
+    public void markPushed(long userId, List<SyncChange> changes) {
+        long start = TIMER_MARK_PUSHED.start();
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            db.beginTransaction();
+            String markSql = " SET " + COLUMN_SYNCED_VERSION + " = ?1 WHERE " + COLUMN_SYNC_ID + " = ?2 AND " +
+                    COLUMN_USER_ID + " = ?3 AND " + COLUMN_VERSION + " = ?1";
+            try (SQLiteStatement markEvent = db.compileStatement("UPDATE " + TABLE_EVENTS + markSql);
+                 SQLiteStatement markArchived = db.compileStatement("UPDATE " + TABLE_EVENTS_ARCHIVE + markSql);
+                 SQLiteStatement dropTombstone = db.compileStatement("DELETE FROM " + TABLE_SYNC_TOMBSTONES +
+                         " WHERE " + COLUMN_SYNC_ID + " = ?1 AND " + COLUMN_USER_ID + " = ?2 AND " + COLUMN_DELETED_AT + " = ?3")) {
+                for (SyncChange change : changes) {
+                    if (change.isDeleted()) {
+                        dropTombstone.bindString(1, change.getSyncId());
+                        dropTombstone.bindLong(2, userId);
+                        dropTombstone.bindLong(3, change.getUpdatedAt());
+                        dropTombstone.executeUpdateDelete();
+                    } else {
+                        for (SQLiteStatement mark : new SQLiteStatement[]{markEvent, markArchived}) {
+                            mark.bindLong(1, change.getLocalVersion());
+                            mark.bindString(2, change.getSyncId());
+                            mark.bindLong(3, userId);
+                            if (mark.executeUpdateDelete() > 0) {
+                                break;
+                            }
+                        }
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            TIMER_MARK_PUSHED.stop(start, changes.size());
+        }
     }
 
-    // Method to get all events
-    public Cursor getAllEvents() {
+    // Method to get the position to pull the next changes from, as returned by the server, or null
+    // if the user has never pulled
+    public String getPullCursor(long userId) {
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.query(
-                TABLE_EVENTS,
-                null,
-                null,
-                null,
-                null,
-                null,
-                COLUMN_DATE
-        );
+        try (Cursor cursor = db.query(TABLE_SYNC_STATE, new String[]{COLUMN_PULL_CURSOR}, COLUMN_USER_ID + " = ?",
+                new String[]{String.valueOf(userId)}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
     }
 
-    // Convert date from MM-DD-YYYY to YYYY-MM-DD for proper sorting
-    private String convertDateToSortableFormat(String date) {
+    // Method to apply a page of changes pulled from the sync server and save the pull position after it,
+    // in one transaction, so a page is never applied twice or skipped. The later change wins: a pulled
+    // change is skipped when the event has a local change or deletion at the same time or later, which is
+    // pushed next. An archived event a pulled change applies to moves back to the events table first.
+    // Returns the number of events added, changed or deleted.
+    public int applyRemoteChanges(long userId, List<SyncChange> changes, String cursor) {
+        long start = TIMER_APPLY_REMOTE_CHANGES.start();
+        int applied = 0;
         try {
-            SimpleDateFormat sdfSource = new SimpleDateFormat("MM-dd-yyyy", Locale.US);
-            SimpleDateFormat sdfTarget = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
-            return sdfTarget.format(sdfSource.parse(date));
-        } catch (ParseException e) {
-            return date; // If parsing fails, return the original date
+            SQLiteDatabase db = this.getWritableDatabase();
+            TimeZone zone = TimeZone.getDefault();
+            db.beginTransaction();
+            // Setting version and synced_version together keeps the sync triggers from counting these
+            // writes as local changes
+            try (SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_EVENTS + " (" +
+                    COLUMN_SYNC_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " +
+                    COLUMN_DATE + ", " + COLUMN_TIME + ", " + COLUMN_START_AT + ", " + COLUMN_END_AT + ", " +
+                    COLUMN_NOTIFICATIONS_ENABLED + ", " + COLUMN_UPDATED_AT + ", " + COLUMN_VERSION + ", " +
+                    COLUMN_SYNCED_VERSION + ") VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?7 + ?10, ?8, ?9, 1, 1)");
+                 SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_EVENTS + " SET " +
+                         COLUMN_TITLE + " = ?1, " + COLUMN_DESCRIPTION + " = ?2, " + COLUMN_DATE + " = ?3, " +
+                         COLUMN_TIME + " = ?4, " + COLUMN_START_AT + " = ?5, " + COLUMN_END_AT + " = ?5 + (CASE WHEN ?9 < 0" +
+                         " THEN " + EXPRESSION_SPAN + " ELSE ?9 END), " + COLUMN_NOTIFICATIONS_ENABLED + " = ?6, " + COLUMN_UPDATED_AT + " = ?7, " +
+                         COLUMN_VERSION + " = " + COLUMN_VERSION + " + 1, " + COLUMN_SYNCED_VERSION + " = " + COLUMN_VERSION +
+                         " + 1 WHERE " + COLUMN_EVENT_ID + " = ?8");
+                 SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE_EVENTS +
+                         " WHERE " + COLUMN_EVENT_ID + " = ?");
+                 SQLiteStatement dropTombstone = db.compileStatement("DELETE FROM " + TABLE_SYNC_TOMBSTONES +
+                         " WHERE " + COLUMN_SYNC_ID + " = ?")) {
+                for (SyncChange change : changes) {
+                    String[] syncIdArg = {change.getSyncId()};
+                    long eventId = -1;
+                    long localUpdatedAt = Long.MIN_VALUE;
+                    boolean archived = false;
+                    boolean otherUser = false;
+                    for (String table : new String[]{TABLE_EVENTS, TABLE_EVENTS_ARCHIVE}) {
+                        try (Cursor local = db.query(table, new String[]{COLUMN_EVENT_ID, COLUMN_USER_ID, COLUMN_UPDATED_AT},
+                                COLUMN_SYNC_ID + " = ?", syncIdArg, null, null, null)) {
+                            if (local.moveToFirst()) {
+                                // Only possible if two local accounts sync the same server account
+                                otherUser = local.getLong(1) != userId;
+                                eventId = local.getLong(0);
+                                localUpdatedAt = local.getLong(2);
+                                archived = table.equals(TABLE_EVENTS_ARCHIVE);
+                                break;
+                            }
+                        }
+                    }
+                    if (otherUser) {
+                        continue;
+                    }
+                    if (eventId == -1) {
+                        try (Cursor tombstone = db.query(TABLE_SYNC_TOMBSTONES, new String[]{COLUMN_DELETED_AT},
+                                COLUMN_SYNC_ID + " = ?", syncIdArg, null, null, null)) {
+                            if (tombstone.moveToFirst()) {
+                                localUpdatedAt = tombstone.getLong(0);
+                            }
+                        }
+                    }
+                    if (localUpdatedAt >= change.getUpdatedAt()) {
+                        continue;
+                    }
+                    if (archived) {
+                        unarchiveEvents(db, COLUMN_EVENT_ID + " = ?", new String[]{String.valueOf(eventId)});
+                    }
+
+                    // The server already has this change, so no tombstone is needed for the event any more
+                    dropTombstone.bindString(1, change.getSyncId());
+                    dropTombstone.executeUpdateDelete();
+                    if (change.isDeleted()) {
+                        if (eventId != -1) {
+                            delete.bindLong(1, eventId);
+                            delete.executeUpdateDelete();
+                            // Drop the tombstone the delete trigger just left
+                            dropTombstone.executeUpdateDelete();
+                            applied++;
+                        }
+                        continue;
+                    }
+                    int day = DateTimeCodec.parseDate(change.getDate());
+                    String date = day != DateTimeCodec.INVALID ? DateTimeCodec.formatStoredDate(day) : change.getDate();
+                    long startAt = day != DateTimeCodec.INVALID
+                            ? DateTimeCodec.toEpochMillis(day, DateTimeCodec.parseTime(change.getTime()), zone)
+                            : 0;
+                    // A change without a duration keeps the length the event has here
+                    long span = change.getDurationMinutes() * 60000L;
+                    SQLiteStatement write = eventId == -1 ? insert : update;
+                    write.clearBindings();
+                    if (eventId == -1) {
+                        insert.bindString(1, change.getSyncId());
+                        insert.bindLong(2, userId);
+                        bindStringOrNull(insert, 3, change.getTitle());
+                        bindStringOrNull(insert, 4, change.getDescription());
+                        bindStringOrNull(insert, 5, date);
+                        bindStringOrNull(insert, 6, change.getTime());
+                        insert.bindLong(7, startAt);
+                        insert.bindLong(8, change.isNotificationsEnabled() ? 1 : 0);
+                        insert.bindLong(9, change.getUpdatedAt());
+                        insert.bindLong(10, Math.max(span, 0));
+                        insert.executeInsert();
+                    } else {
+                        bindStringOrNull(update, 1, change.getTitle());
+                        bindStringOrNull(update, 2, change.getDescription());
+                        bindStringOrNull(update, 3, date);
+                        bindStringOrNull(update, 4, change.getTime());
+                        update.bindLong(5, startAt);
+                        update.bindLong(6, change.isNotificationsEnabled() ? 1 : 0);
+                        update.bindLong(7, change.getUpdatedAt());
+                        update.bindLong(8, eventId);
+                        update.bindLong(9, span);
+                        update.executeUpdateDelete();
+                    }
+                    applied++;
+                }
+                ContentValues state = new ContentValues();
+                state.put(COLUMN_USER_ID, userId);
+                state.put(COLUMN_PULL_CURSOR, cursor);
+                db.insertWithOnConflict(TABLE_SYNC_STATE, null, state, SQLiteDatabase.CONFLICT_REPLACE);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            afterEventWrites(userId, applied);
+            return applied;
+        } finally {
+            TIMER_APPLY_REMOTE_CHANGES.stop(start, applied);
+        }
+    }
+
+    // Convert date from MM-DD-YYYY to YYYY-MM-DD for proper sorting. Package-private for the benchmarks.
+    String convertDateToSortableFormat(String date) {
+        int day = DateTimeCodec.parseEntryDate(date);
+        // If parsing fails, return the original date
+        return day != DateTimeCodec.INVALID ? DateTimeCodec.formatStoredDate(day) : date;
+    }
+
+    // Convert a date and time entered in the dialog to the event instant in epoch milliseconds;
+    // a missing or unparseable time means the start of the day
+    private long convertToStartAt(String date, String time) {
+        int day = DateTimeCodec.parseDate(date);
+        return day != DateTimeCodec.INVALID
+                ? DateTimeCodec.toEpochMillis(day, DateTimeCodec.parseTime(time), TimeZone.getDefault())
+                : 0;
+    }
+
+    // Selection of a user's events by ID, for the given number of IDs
+    private static String selectionForIds(int count) {
+        StringBuilder selection = new StringBuilder(COLUMN_USER_ID + " = ? AND " + COLUMN_EVENT_ID + " IN (");
+        for (int i = 0; i < count; i++) {
+            selection.append(i == 0 ? "?" : ", ?");
+        }
+        return selection.append(')').toString();
+    }
+
+    // Arguments for selectionForIds(): the user, IDs `from` up to `to`, then any extra arguments
+    private static String[] argsForIds(long userId, int[] eventIds, int from, int to, String... extra) {
+        String[] args = new String[1 + to - from + extra.length];
+        args[0] = String.valueOf(userId);
+        for (int i = from; i < to; i++) {
+            args[1 + i - from] = String.valueOf(eventIds[i]);
+        }
+        System.arraycopy(extra, 0, args, 1 + to - from, extra.length);
+        return args;
+    }
+
+    private static int[] toIntArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static boolean isDebuggable(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
     }
 
@@ -149,7 +2323,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return COLUMN_TIME;
     }
 
+    public String getColumnStartAt() {
+        return COLUMN_START_AT;
+    }
+
+    public String getColumnEndAt() {
+        return COLUMN_END_AT;
+    }
+
     public String getColumnNotificationsEnabled() {
         return COLUMN_NOTIFICATIONS_ENABLED;
     }
+
+    public String getColumnTitleMatch() {
+        return COLUMN_TITLE_MATCH;
+    }
 }
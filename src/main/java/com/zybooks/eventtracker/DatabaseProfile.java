@@ -0,0 +1,59 @@
+package com.zybooks.eventtracker;
+
+// SQLite settings for DatabaseHelper: journal mode, durability, page cache, and how often routine
+// maintenance runs. Immutable; pick one of the presets or build a custom one for benchmarks.
+public final class DatabaseProfile {
+
+    // Write-ahead logging so readers never wait for the writer, NORMAL sync (safe against app crashes;
+    // a power loss may lose the last commits but never corrupts the file), a 4 MB page cache, a WAL
+    // checkpoint every 1000 writes and fresh query planner statistics every 10000 writes
+    public static final DatabaseProfile DEFAULT = new DatabaseProfile(true, "NORMAL", 4096, 1000, 10_000);
+
+    // The SQLiteOpenHelper defaults: rollback journal, default sync and cache, no maintenance.
+    // Kept as the baseline for benchmarks.
+    public static final DatabaseProfile LEGACY = new DatabaseProfile(false, null, 0, 0, 0);
+
+    private final boolean writeAheadLogging;
+    private final String synchronousMode;
+    private final int cacheSizeKib;
+    private final int checkpointInterval;
+    private final int analyzeInterval;
+
+    // A null synchronous mode or a cache size or interval of 0 leaves that setting at the SQLite default
+    public DatabaseProfile(boolean writeAheadLogging, String synchronousMode, int cacheSizeKib,
+                           int checkpointInterval, int analyzeInterval) {
+        if (synchronousMode != null && !synchronousMode.matches("OFF|NORMAL|FULL|EXTRA")) {
+            throw new IllegalArgumentException("Unknown synchronous mode: " + synchronousMode);
+        }
+        if (cacheSizeKib < 0 || checkpointInterval < 0 || analyzeInterval < 0) {
+            throw new IllegalArgumentException("Sizes and intervals cannot be negative");
+        }
+        this.writeAheadLogging = writeAheadLogging;
+        this.synchronousMode = synchronousMode;
+        this.cacheSizeKib = cacheSizeKib;
+        this.checkpointInterval = checkpointInterval;
+        this.analyzeInterval = analyzeInterval;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    public String getSynchronousMode() {
+        return synchronousMode;
+    }
+
+    public int getCacheSizeKib() {
+        return cacheSizeKib;
+    }
+
+    // Number of writes between passive WAL checkpoints
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    // Number of writes between ANALYZE runs
+    public int getAnalyzeInterval() {
+        return analyzeInterval;
+    }
+}
@@ -0,0 +1,235 @@
+package com.zybooks.eventtracker;
+
+import java.util.TimeZone;
+
+// Allocation-free parsing and formatting of the fixed-width date and time text used by the app.
+// Dates are packed into a single int as yyyyMMdd and times into minutes of the day. Bad input is
+// reported with INVALID instead of an exception. Holds no state, so it is safe on any thread.
+public final class DateTimeCodec {
+
+    // Returned by the parse methods when the input is not valid
+    public static final int INVALID = -1;
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private DateTimeCodec() {
+    }
+
+    // Parses a date entered as MM-dd-yyyy, the format the dialogs ask for
+    public static int parseEntryDate(CharSequence text) {
+        if (text == null || text.length() != 10 || text.charAt(2) != '-' || text.charAt(5) != '-') {
+            return INVALID;
+        }
+        return pack(digits(text, 6, 4), digits(text, 0, 2), digits(text, 3, 2));
+    }
+
+    // Parses a date stored as yyyy-MM-dd
+    public static int parseStoredDate(CharSequence text) {
+        if (text == null || text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return INVALID;
+        }
+        return pack(digits(text, 0, 4), digits(text, 5, 2), digits(text, 8, 2));
+    }
+
+    // Parses a date in either the entry or the stored format
+    public static int parseDate(CharSequence text) {
+        int packed = parseEntryDate(text);
+        return packed != INVALID ? packed : parseStoredDate(text);
+    }
+
+    // Parses a time as H:mm or HH:mm in 24-hour form, or h:mm AM/PM in 12-hour form, into minutes
+    // of the day. Surrounding spaces and the case of the AM/PM marker are ignored.
+    public static int parseTime(CharSequence text) {
+        if (text == null) {
+            return INVALID;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) == ' ') start++;
+        while (end > start && text.charAt(end - 1) == ' ') end--;
+
+        // Optional AM/PM marker, separated from the time by any number of spaces
+        int marker = 0;
+        if (end - start >= 2 && Character.toUpperCase(text.charAt(end - 1)) == 'M') {
+            char c = Character.toUpperCase(text.charAt(end - 2));
+            if (c == 'A' || c == 'P') {
+                marker = c;
+                end -= 2;
+                while (end > start && text.charAt(end - 1) == ' ') end--;
+            }
+        }
+
+        // H:mm or HH:mm
+        int length = end - start;
+        if ((length != 4 && length != 5) || text.charAt(end - 3) != ':') {
+            return INVALID;
+        }
+        int hour = digits(text, start, length - 3);
+        int minute = digits(text, end - 2, 2);
+        if (hour < 0 || minute < 0 || minute > 59) {
+            return INVALID;
+        }
+
+        if (marker == 0) {
+            return hour <= 23 ? hour * 60 + minute : INVALID;
+        }
+        if (hour < 1 || hour > 12) {
+            return INVALID;
+        }
+        // 12 AM is midnight and 12 PM is noon
+        int hour24 = hour % 12 + (marker == 'P' ? 12 : 0);
+        return hour24 * 60 + minute;
+    }
+
+    // Returns true if the text is a real calendar date in MM-dd-yyyy form
+    public static boolean isValidEntryDate(CharSequence text) {
+        return parseEntryDate(text) != INVALID;
+    }
+
+    // Formats a packed date as yyyy-MM-dd
+    public static String formatStoredDate(int packedDate) {
+        int year = packedDate / 10000;
+        int month = packedDate / 100 % 100;
+        int day = packedDate % 100;
+        char[] chars = {
+                digit(year / 1000), digit(year / 100), digit(year / 10), digit(year), '-',
+                digit(month / 10), digit(month), '-',
+                digit(day / 10), digit(day)
+        };
+        return new String(chars);
+    }
+
+    // Formats a packed date as MM-dd-yyyy, the format the dialogs ask for
+    public static String formatEntryDate(int packedDate) {
+        int year = packedDate / 10000;
+        int month = packedDate / 100 % 100;
+        int day = packedDate % 100;
+        char[] chars = {
+                digit(month / 10), digit(month), '-',
+                digit(day / 10), digit(day), '-',
+                digit(year / 1000), digit(year / 100), digit(year / 10), digit(year)
+        };
+        return new String(chars);
+    }
+
+    // Formats minutes of the day as h:mm AM/PM, the format the dialogs suggest
+    public static String formatTime(int minuteOfDay) {
+        int hour24 = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        int hour12 = hour24 % 12 == 0 ? 12 : hour24 % 12;
+        char[] chars = hour12 >= 10
+                ? new char[]{digit(hour12 / 10), digit(hour12), ':', digit(minute / 10), digit(minute), ' ', hour24 < 12 ? 'A' : 'P', 'M'}
+                : new char[]{digit(hour12), ':', digit(minute / 10), digit(minute), ' ', hour24 < 12 ? 'A' : 'P', 'M'};
+        return new String(chars);
+    }
+
+    // Returns the packed local date of an instant in the given time zone
+    public static int packedDateOf(long epochMillis, TimeZone zone) {
+        long localDays = Math.floorDiv(epochMillis + zone.getOffset(epochMillis), MILLIS_PER_DAY);
+        return civilFromDays(localDays);
+    }
+
+    // Returns the local minutes of the day of an instant in the given time zone
+    public static int minuteOfDayOf(long epochMillis, TimeZone zone) {
+        long localMillis = Math.floorMod(epochMillis + zone.getOffset(epochMillis), MILLIS_PER_DAY);
+        return (int) (localMillis / MILLIS_PER_MINUTE);
+    }
+
+    // Converts a packed date and minutes of the day in the given time zone to epoch milliseconds.
+    // An INVALID time means the start of the day.
+    public static long toEpochMillis(int packedDate, int minuteOfDay, TimeZone zone) {
+        long localMillis = daysFromCivil(packedDate / 10000, packedDate / 100 % 100, packedDate % 100) * MILLIS_PER_DAY
+                + (minuteOfDay == INVALID ? 0 : minuteOfDay * MILLIS_PER_MINUTE);
+        // Look up the offset in effect at that wall-clock time, starting from the standard offset.
+        // The second lookup moves times that fall in a daylight-saving gap forward, like Calendar does.
+        int offset = zone.getOffset(localMillis - zone.getRawOffset());
+        offset = zone.getOffset(localMillis - offset);
+        return localMillis - offset;
+    }
+
+    // Returns the number of days since 1970-01-01 of a packed date
+    public static long toEpochDay(int packedDate) {
+        return daysFromCivil(packedDate / 10000, packedDate / 100 % 100, packedDate % 100);
+    }
+
+    // Returns the packed date a number of days after 1970-01-01
+    public static int fromEpochDay(long epochDay) {
+        return civilFromDays(epochDay);
+    }
+
+    // Returns the day of the week of a day since 1970-01-01, from 0 for Monday to 6 for Sunday
+    public static int dayOfWeek(long epochDay) {
+        // 1970-01-01 was a Thursday
+        return (int) Math.floorMod(epochDay + 3, 7L);
+    }
+
+    // Returns the number of days in a month, taking leap years into account
+    public static int lengthOfMonth(int year, int month) {
+        return daysInMonth(year, month);
+    }
+
+    // Packs and validates a date, including month lengths and leap years
+    private static int pack(int year, int month, int day) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    // Packed yyyyMMdd date for a number of days since 1970-01-01
+    private static int civilFromDays(long days) {
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) year * 10000 + month * 100 + day;
+    }
+
+    // Reads `count` ASCII digits starting at `offset`, or INVALID if any of them is not a digit
+    private static int digits(CharSequence text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static char digit(int value) {
+        return (char) ('0' + value % 10);
+    }
+}
@@ -0,0 +1,42 @@
+package com.zybooks.eventtracker;
+
+// Immutable copy of an event removed by DatabaseHelper.deleteEvents(), with the sync columns of its row,
+// so undoing the deletion puts back the same event the sync server knows rather than a new one
+public final class DeletedEvent {
+
+    private final Event event;
+    private final String syncId;
+    private final long updatedAt;
+    private final long version;
+    private final long syncedVersion;
+
+    DeletedEvent(Event event, String syncId, long updatedAt, long version, long syncedVersion) {
+        this.event = event;
+        this.syncId = syncId;
+        this.updatedAt = updatedAt;
+        this.version = version;
+        this.syncedVersion = syncedVersion;
+    }
+
+    // The event as it was shown, with its full description
+    public Event getEvent() {
+        return event;
+    }
+
+    String getSyncId() {
+        return syncId;
+    }
+
+    long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    // Version last pushed or pulled; 0 if the server never had the event
+    long getSyncedVersion() {
+        return syncedVersion;
+    }
+}
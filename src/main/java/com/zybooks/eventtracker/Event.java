@@ -0,0 +1,148 @@
+package com.zybooks.eventtracker;
+
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+// Immutable snapshot of a single row in the events table, or of one occurrence of a recurring event
+public final class Event {
+
+    private final int id;
+    private final String title;
+    private final String description;
+    private final String date;
+    private final String time;
+    private final long startAt;
+    // Instant the event is over; equal to startAt for an event without a duration
+    private final long endAt;
+    private final boolean notificationsEnabled;
+    // Series and original packed date of an occurrence; 0 for a stored event
+    private final long seriesId;
+    private final int occurrenceDate;
+    // Whether a search result matched on its title, which is part of its place in the results
+    private final boolean titleMatch;
+
+    public Event(int id, String title, String description, String date, String time, long startAt,
+                 boolean notificationsEnabled) {
+        this(id, title, description, date, time, startAt, startAt, notificationsEnabled, 0, 0);
+    }
+
+    public Event(int id, String title, String description, String date, String time, long startAt, long endAt,
+                 boolean notificationsEnabled) {
+        this(id, title, description, date, time, startAt, endAt, notificationsEnabled, 0, 0);
+    }
+
+    // Creates an occurrence of a recurring event; its ID comes from EventSeries.occurrenceId()
+    public Event(int id, String title, String description, String date, String time, long startAt,
+                 boolean notificationsEnabled, long seriesId, int occurrenceDate) {
+        this(id, title, description, date, time, startAt, startAt, notificationsEnabled, seriesId, occurrenceDate);
+    }
+
+    // Every field, for EventSnapshot
+    Event(int id, String title, String description, String date, String time, long startAt, long endAt,
+          boolean notificationsEnabled, long seriesId, int occurrenceDate) {
+        this(id, title, description, date, time, startAt, endAt, notificationsEnabled, seriesId, occurrenceDate, false);
+    }
+
+    private Event(int id, String title, String description, String date, String time, long startAt, long endAt,
+                  boolean notificationsEnabled, long seriesId, int occurrenceDate, boolean titleMatch) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.date = date;
+        this.time = time;
+        this.startAt = startAt;
+        this.endAt = endAt;
+        this.notificationsEnabled = notificationsEnabled;
+        this.seriesId = seriesId;
+        this.occurrenceDate = occurrenceDate;
+        this.titleMatch = titleMatch;
+    }
+
+    // Returns this event as a search result whose title did or did not match
+    Event asSearchResult(boolean titleMatch) {
+        return new Event(id, title, description, date, time, startAt, endAt, notificationsEnabled, seriesId,
+                occurrenceDate, titleMatch);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    // Event instant in epoch milliseconds, the sort key of the list
+    public long getStartAt() {
+        return startAt;
+    }
+
+    public long getEndAt() {
+        return endAt;
+    }
+
+    // Length of the event in whole minutes, 0 when it has none
+    public int getDurationMinutes() {
+        return (int) ((endAt - startAt) / 60000L);
+    }
+
+    public boolean isNotificationsEnabled() {
+        return notificationsEnabled;
+    }
+
+    // True for an occurrence of a recurring event, which has no row of its own
+    public boolean isOccurrence() {
+        return seriesId != 0;
+    }
+
+    public long getSeriesId() {
+        return seriesId;
+    }
+
+    // Packed date the occurrence was originally due, which identifies it within its series
+    public int getOccurrenceDate() {
+        return occurrenceDate;
+    }
+
+    // True for a search result that matched on its title; such results come before the others
+    public boolean isTitleMatch() {
+        return titleMatch;
+    }
+
+    // Two events are equal when every displayed field matches, which lets the list diff skip unchanged rows
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Event)) return false;
+        Event other = (Event) o;
+        return id == other.id
+                && startAt == other.startAt
+                && endAt == other.endAt
+                && notificationsEnabled == other.notificationsEnabled
+                && seriesId == other.seriesId
+                && occurrenceDate == other.occurrenceDate
+                && Objects.equals(title, other.title)
+                && Objects.equals(description, other.description)
+                && Objects.equals(date, other.date)
+                && Objects.equals(time, other.time);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, description, date, time, startAt, endAt, notificationsEnabled, seriesId,
+                occurrenceDate);
+    }
+}
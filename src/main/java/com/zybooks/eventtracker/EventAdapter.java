@@ -0,0 +1,180 @@
+package com.zybooks.eventtracker;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Recycled adapter for the event list. Rows are diffed by event ID so a single
+// insert, update or delete only rebinds the rows it touched. Rows can be selected for batch
+// operations; selecting one only redraws its background.
+public class EventAdapter extends ListAdapter<Event, EventAdapter.EventViewHolder> {
+
+    // Callback for when a row in the list is pressed
+    public interface OnEventClickListener {
+        void onEventClick(Event event);
+    }
+
+    // Callback for when a row in the list is long-pressed
+    public interface OnEventLongClickListener {
+        void onEventLongClick(Event event);
+    }
+
+    // Change payload for rows whose selection changed, so only their activated state is rebound
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    // Identity is the event ID, contents are every displayed field
+    static final DiffUtil.ItemCallback<Event> DIFF_CALLBACK = new DiffUtil.ItemCallback<Event>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Event oldItem, @NonNull Event newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Event oldItem, @NonNull Event newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    private final OnEventClickListener clickListener;
+    private final OnEventLongClickListener longClickListener;
+    // IDs of the selected events
+    private final Set<Integer> selectedIds = new HashSet<>();
+
+    public EventAdapter(OnEventClickListener clickListener) {
+        this(clickListener, null);
+    }
+
+    public EventAdapter(OnEventClickListener clickListener, OnEventLongClickListener longClickListener) {
+        super(DIFF_CALLBACK);
+        this.clickListener = clickListener;
+        this.longClickListener = longClickListener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
+    @NonNull
+    @Override
+    public EventViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_event, parent, false);
+        EventViewHolder holder = new EventViewHolder(itemView);
+
+        // The listener is attached once per holder and resolves the bound event on click
+        itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                clickListener.onEventClick(getItem(position));
+            }
+        });
+        if (longClickListener != null) {
+            itemView.setOnLongClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) {
+                    return false;
+                }
+                longClickListener.onEventLongClick(getItem(position));
+                return true;
+            });
+        }
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull EventViewHolder holder, int position) {
+        Event event = getItem(position);
+        holder.bind(event);
+        holder.itemView.setActivated(selectedIds.contains(event.getId()));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull EventViewHolder holder, int position, @NonNull List<Object> payloads) {
+        // The only payload is PAYLOAD_SELECTION; list diffs rebind the whole row
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            holder.itemView.setActivated(selectedIds.contains(getItem(position).getId()));
+        }
+    }
+
+    // Selects the event if it is not selected, and the other way round
+    public void toggleSelection(Event event) {
+        int eventId = event.getId();
+        if (!selectedIds.remove(eventId)) {
+            selectedIds.add(eventId);
+        }
+        List<Event> events = getCurrentList();
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i).getId() == eventId) {
+                notifyItemChanged(i, PAYLOAD_SELECTION);
+                break;
+            }
+        }
+    }
+
+    // Selects every loaded event, except occurrences of recurring events
+    public void selectAll() {
+        for (Event event : getCurrentList()) {
+            if (!event.isOccurrence()) {
+                selectedIds.add(event.getId());
+            }
+        }
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    public void clearSelection() {
+        if (!selectedIds.isEmpty()) {
+            selectedIds.clear();
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        }
+    }
+
+    public int getSelectedCount() {
+        return selectedIds.size();
+    }
+
+    // IDs of the selected events, in no particular order
+    public int[] getSelectedIds() {
+        int[] ids = new int[selectedIds.size()];
+        int i = 0;
+        for (int eventId : selectedIds) {
+            ids[i++] = eventId;
+        }
+        return ids;
+    }
+
+    // Holds the column views of a single row so they are looked up once per inflation
+    static class EventViewHolder extends RecyclerView.ViewHolder {
+        private final TextView titleTextView;
+        private final TextView descriptionTextView;
+        private final TextView dateTextView;
+        private final TextView timeTextView;
+
+        EventViewHolder(@NonNull View itemView) {
+            super(itemView);
+            titleTextView = itemView.findViewById(R.id.eventTitleTextView);
+            descriptionTextView = itemView.findViewById(R.id.eventDescriptionTextView);
+            dateTextView = itemView.findViewById(R.id.eventDateTextView);
+            timeTextView = itemView.findViewById(R.id.eventTimeTextView);
+        }
+
+        void bind(Event event) {
+            titleTextView.setText(event.getTitle());
+            descriptionTextView.setText(event.getDescription());
+            dateTextView.setText(event.getDate());
+            timeTextView.setText(event.getTime());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.zybooks.eventtracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+// In-memory copy of the first events of one user, in (start time, event ID) order and indexed by
+// event ID. It always holds a prefix of the full list with no gaps, so any page inside it can be
+// served without a query. Writes go through to it after they reach the database, and listeners get
+// one notification per changed event. Memory use is capped; when the cap is reached the latest events
+// are dropped and read from the database again when needed. Safe to call from any thread.
+public final class EventCache {
+
+    // Default memory cap, enough for tens of thousands of rows with description previews
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+    // Notified of changes on the executor given to the cache
+    public interface Listener {
+        // Called when an event was added or updated, or deleted, in which case event is null
+        void onEventChanged(int eventId, Event event);
+
+        // Called when the cache was cleared, for example after a bulk import
+        void onInvalidated();
+    }
+
+    // List order of the event grid
+    static final Comparator<Event> ORDER = (a, b) -> {
+        int byStart = Long.compare(a.getStartAt(), b.getStartAt());
+        return byStart != 0 ? byStart : Integer.compare(a.getId(), b.getId());
+    };
+
+    private final Executor notifier;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final List<Event> events = new ArrayList<>();
+    private final Map<Integer, Event> byId = new HashMap<>();
+    private long maxBytes;
+    private long bytes;
+    // True when the prefix is the whole list
+    private boolean complete;
+    // Bumped by every write, so results of queries that overlapped a write are not stored
+    private long version;
+
+    public EventCache(long maxBytes, Executor notifier) {
+        this.maxBytes = maxBytes;
+        this.notifier = notifier;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Changes the memory cap, dropping the latest events if the cache is now over it
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    // Version to pass to putPrefix/appendPage for a query that is about to start
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    // Returns the first `count` events, or null if the cache does not hold them
+    public synchronized List<Event> getPrefix(int count) {
+        if (events.size() < count && !complete) {
+            return null;
+        }
+        return new ArrayList<>(events.subList(0, Math.min(count, events.size())));
+    }
+
+    // Returns up to `limit` events that follow the given one, or null if the cache does not hold them
+    public synchronized List<Event> getPageAfter(Event after, int limit) {
+        int index = Collections.binarySearch(events, after, ORDER);
+        if (index < 0) {
+            return null;
+        }
+        int start = index + 1;
+        if (events.size() - start < limit && !complete) {
+            return null;
+        }
+        return new ArrayList<>(events.subList(start, Math.min(start + limit, events.size())));
+    }
+
+    // Stores the first events of the list as read from the database, unless a write happened since
+    // the query started
+    public synchronized void putPrefix(long queryVersion, List<Event> prefix, boolean isComplete) {
+        if (queryVersion != version) {
+            return;
+        }
+        clear();
+        for (Event event : prefix) {
+            append(event);
+        }
+        complete = isComplete;
+        trim();
+    }
+
+    // Stores a page read from the database if it continues the cached prefix, unless a write happened
+    // since the query started
+    public synchronized void appendPage(long queryVersion, Event after, List<Event> page, boolean isComplete) {
+        if (queryVersion != version || complete || events.isEmpty()
+                || events.get(events.size() - 1).getId() != after.getId()) {
+            return;
+        }
+        for (Event event : page) {
+            append(event);
+        }
+        complete = isComplete;
+        trim();
+    }
+
+    // Writes an added or updated event through to the cache. It is only kept if it falls inside the
+    // cached prefix; listeners are told either way.
+    public void put(Event event) {
+        synchronized (this) {
+            version++;
+            removeCached(event.getId());
+            if (complete || (!events.isEmpty() && ORDER.compare(event, events.get(events.size() - 1)) < 0)) {
+                int index = insertionPoint(events, event);
+                events.add(index, event);
+                byId.put(event.getId(), event);
+                bytes += sizeOf(event);
+                trim();
+            }
+        }
+        notifyChanged(event.getId(), event);
+    }
+
+    // Writes a deleted event through to the cache
+    public void remove(int eventId) {
+        synchronized (this) {
+            version++;
+            removeCached(eventId);
+        }
+        notifyChanged(eventId, null);
+    }
+
+    // Drops everything, after changes too large to apply one by one
+    public void invalidate() {
+        synchronized (this) {
+            version++;
+            clear();
+        }
+        for (Listener listener : listeners) {
+            notifier.execute(listener::onInvalidated);
+        }
+    }
+
+    public synchronized int size() {
+        return events.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    // Position at which an event belongs in a list sorted in grid order
+    static int insertionPoint(List<Event> sorted, Event event) {
+        int index = Collections.binarySearch(sorted, event, ORDER);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // Rough heap size of an event: object headers and fields plus two bytes per character
+    static long sizeOf(Event event) {
+        return 96 + 2L * (length(event.getTitle()) + length(event.getDescription())
+                + length(event.getDate()) + length(event.getTime()));
+    }
+
+    private void notifyChanged(int eventId, Event event) {
+        for (Listener listener : listeners) {
+            notifier.execute(() -> listener.onEventChanged(eventId, event));
+        }
+    }
+
+    private void append(Event event) {
+        events.add(event);
+        byId.put(event.getId(), event);
+        bytes += sizeOf(event);
+    }
+
+    private void removeCached(int eventId) {
+        Event cached = byId.remove(eventId);
+        if (cached != null) {
+            events.remove(Collections.binarySearch(events, cached, ORDER));
+            bytes -= sizeOf(cached);
+        }
+    }
+
+    private void clear() {
+        events.clear();
+        byId.clear();
+        bytes = 0;
+        complete = false;
+    }
+
+    // Drops the latest events until the cache fits its cap, keeping the prefix free of gaps
+    private void trim() {
+        while (bytes > maxBytes && !events.isEmpty()) {
+            Event last = events.remove(events.size() - 1);
+            byId.remove(last.getId());
+            bytes -= sizeOf(last);
+            complete = false;
+        }
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
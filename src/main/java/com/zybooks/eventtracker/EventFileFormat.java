@@ -0,0 +1,63 @@
+package com.zybooks.eventtracker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+// File formats supported for bulk import and export of events
+public enum EventFileFormat {
+
+    CSV("text/csv", "events.csv") {
+        @Override
+        public EventRecordReader newReader(InputStream in) {
+            return CsvEventFormat.newReader(in);
+        }
+
+        @Override
+        public EventRecordWriter newWriter(OutputStream out) throws IOException {
+            return CsvEventFormat.newWriter(out);
+        }
+    },
+
+    ICS("text/calendar", "events.ics") {
+        @Override
+        public EventRecordReader newReader(InputStream in) {
+            return IcsEventFormat.newReader(in);
+        }
+
+        @Override
+        public EventRecordWriter newWriter(OutputStream out) throws IOException {
+            return IcsEventFormat.newWriter(out);
+        }
+    };
+
+    private final String mimeType;
+    private final String defaultFileName;
+
+    EventFileFormat(String mimeType, String defaultFileName) {
+        this.mimeType = mimeType;
+        this.defaultFileName = defaultFileName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getDefaultFileName() {
+        return defaultFileName;
+    }
+
+    public abstract EventRecordReader newReader(InputStream in);
+
+    public abstract EventRecordWriter newWriter(OutputStream out) throws IOException;
+
+    // Picks the format of a file from its MIME type or name, defaulting to CSV
+    public static EventFileFormat detect(String mimeType, String fileName) {
+        if ((mimeType != null && mimeType.contains("calendar"))
+                || (fileName != null && fileName.toLowerCase(Locale.US).endsWith(".ics"))) {
+            return ICS;
+        }
+        return CSV;
+    }
+}
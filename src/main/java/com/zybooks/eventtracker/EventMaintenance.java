@@ -0,0 +1,83 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+// Daily upkeep of one user's events: events that ended before the archive horizon are moved to the
+// archive table in batches, then the freed pages are returned to the file system. A database that
+// cannot return them yet is left to VacuumJob to convert while the device is idle and charging.
+final class EventMaintenance {
+
+    // Events archived per write transaction, and pages of free space returned per run
+    private static final int ARCHIVE_BATCH_SIZE = 500;
+    private static final int COMPACT_MAX_PAGES = 2048;
+    private static final long MAINTENANCE_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final String MAINTENANCE_PREFS_NAME = "maintenance";
+    // Followed by the user ID; when maintenance last ran for that user
+    private static final String KEY_LAST_RUN = "last_run_";
+
+    private final Context appContext;
+    private final DatabaseHelper dbHelper;
+    private final AppExecutors executors;
+    private final SharedPreferences prefs;
+    // Events that ended longer ago than this are archived; 0 keeps every event live
+    private final long archiveAfterMillis;
+    private final long userId;
+    // Run on the write thread after events were archived, so the lists can reload
+    private final Runnable onArchived;
+
+    EventMaintenance(Context context, DatabaseHelper dbHelper, AppExecutors executors, long userId, Runnable onArchived) {
+        appContext = context.getApplicationContext();
+        this.dbHelper = dbHelper;
+        this.executors = executors;
+        prefs = appContext.getSharedPreferences(MAINTENANCE_PREFS_NAME, Context.MODE_PRIVATE);
+        archiveAfterMillis = context.getResources().getInteger(R.integer.archive_after_days) * MILLIS_PER_DAY;
+        this.userId = userId;
+        this.onArchived = onArchived;
+    }
+
+    // Method to archive and compact, at most once per MAINTENANCE_INTERVAL_MILLIS. Each batch is its own
+    // task on the write thread, so an edit made meanwhile waits for one batch at most.
+    void run() {
+        long now = System.currentTimeMillis();
+        String key = KEY_LAST_RUN + userId;
+        if (Math.abs(now - prefs.getLong(key, 0)) < MAINTENANCE_INTERVAL_MILLIS) {
+            return;
+        }
+        prefs.edit().putLong(key, now).apply();
+        if (archiveAfterMillis > 0) {
+            archiveBatch(now - archiveAfterMillis, 0);
+        } else {
+            finish(0);
+        }
+    }
+
+    // Archives one batch on the write thread, then queues the next until a short batch shows none are left
+    private void archiveBatch(long beforeMillis, int archived) {
+        executors.execute(executors.diskWrite(), () -> dbHelper.archiveEvents(userId, beforeMillis, ARCHIVE_BATCH_SIZE),
+                moved -> {
+                    if (moved == ARCHIVE_BATCH_SIZE) {
+                        archiveBatch(beforeMillis, archived + moved);
+                    } else {
+                        finish(archived + moved);
+                    }
+                });
+    }
+
+    // Reports archived events, then returns free pages to the file system
+    private void finish(int archived) {
+        executors.execute(executors.diskWrite(), () -> {
+            if (archived > 0) {
+                Log.d("EventMaintenance", "Archived " + archived + " events.");
+                onArchived.run();
+            }
+            if (!dbHelper.isIncrementalVacuum()) {
+                VacuumJob.schedule(appContext);
+                return 0;
+            }
+            return dbHelper.compact(COMPACT_MAX_PAGES);
+        }, freed -> Log.d("EventMaintenance", "Compacted " + freed + " pages."));
+    }
+}
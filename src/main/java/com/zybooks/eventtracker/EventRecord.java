@@ -0,0 +1,52 @@
+package com.zybooks.eventtracker;
+
+// One event as it appears in an import or export file, independent of any database row
+public final class EventRecord {
+
+    private final String title;
+    private final String description;
+    private final String date;
+    private final String time;
+    private final boolean notificationsEnabled;
+    private final int durationMinutes;
+
+    public EventRecord(String title, String description, String date, String time, boolean notificationsEnabled) {
+        this(title, description, date, time, notificationsEnabled, 0);
+    }
+
+    public EventRecord(String title, String description, String date, String time, boolean notificationsEnabled,
+                       int durationMinutes) {
+        this.title = title;
+        this.description = description;
+        this.date = date;
+        this.time = time;
+        this.notificationsEnabled = notificationsEnabled;
+        this.durationMinutes = Math.max(durationMinutes, 0);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    // Date as MM-dd-yyyy or yyyy-MM-dd
+    public String getDate() {
+        return date;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    public boolean isNotificationsEnabled() {
+        return notificationsEnabled;
+    }
+
+    // Length of the event in whole minutes, 0 when it has none
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+}
@@ -0,0 +1,11 @@
+package com.zybooks.eventtracker;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Streams events out of an import file one record at a time
+public interface EventRecordReader extends Closeable {
+
+    // Returns the next event, or null at the end of the file
+    EventRecord read() throws IOException;
+}
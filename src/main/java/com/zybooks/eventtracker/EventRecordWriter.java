@@ -0,0 +1,10 @@
+package com.zybooks.eventtracker;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Streams events into an export file one record at a time
+public interface EventRecordWriter extends Closeable {
+
+    void write(EventRecord record) throws IOException;
+}
@@ -0,0 +1,731 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Asynchronous access to the events of one user. All DatabaseHelper calls run on background executors
+// and results are delivered on the UI thread. The repository lives as long as the process while the same
+// user is logged in. Pages are served from an EventCache and calendar ranges from a RangeCache; writes go
+// through to both, and bulk writes drop them so listeners reload once. Overlapping refresh requests are
+// coalesced into one reload. Recurring events are kept in memory as EventSeries and expanded into each
+// page or range. Archiving, conflict checks and statistics are left to EventMaintenance, ConflictIndex
+// and EventStatsLoader.
+public class EventRepository {
+
+    // Number of events read per page
+    public static final int PAGE_SIZE = 50;
+
+    // Number of imported events committed per transaction
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
+    // Occurrences of recurring events are listed up to this far ahead; the list would never end otherwise
+    private static final long SERIES_LIST_HORIZON_MILLIS = 366L * 24 * 60 * 60 * 1000;
+
+    // Calendar ranges kept in memory: the one on screen, its neighbours, and a few viewed before
+    private static final int RANGE_CACHE_SIZE = 12;
+
+    // Events in the snapshot: more than fit on one screen of the list
+    static final int SNAPSHOT_SIZE = 20;
+    private static final String SNAPSHOT_FILE = "first_screen.snapshot";
+
+    // Background halves of loading the list: running the query, then turning its rows into events
+    static final Metrics.Timer TIMER_LOAD_QUERY = Metrics.timer("loadEvents.query");
+    static final Metrics.Timer TIMER_LOAD_CURSOR_WALK = Metrics.timer("loadEvents.cursorWalk");
+    static final Metrics.Timer TIMER_EXPAND_SERIES = Metrics.timer("loadEvents.expandSeries");
+    static final Metrics.Timer TIMER_RANGE_QUERY = Metrics.timer("loadRange.query");
+    static final Metrics.Timer TIMER_SNAPSHOT_LOAD = Metrics.timer("snapshot.load");
+    static final Metrics.Timer TIMER_SNAPSHOT_SAVE = Metrics.timer("snapshot.save");
+
+    private static EventRepository instance;
+
+    private final DatabaseHelper dbHelper;
+    private final AppExecutors executors;
+    private final ReminderScheduler reminders;
+    private final SyncScheduler sync;
+    private final EventCache cache;
+    private final RangeCache rangeCache = new RangeCache(RANGE_CACHE_SIZE);
+    private final EventSnapshot snapshot;
+    // Set while a snapshot save is queued, so a burst of writes saves it once
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+    private final ConflictIndex conflictIndex;
+    private final EventStatsLoader statsLoader;
+    private final EventMaintenance maintenance;
+    private final long userId;
+    // Recurring events of the user, read once and replaced after every series write; guarded by this
+    private List<EventSeries> series;
+
+    // Refresh bookkeeping, only touched on the UI thread
+    private boolean refreshRunning;
+    private List<RepositoryCallback<List<Event>>> runningCallbacks = new ArrayList<>();
+    private List<RepositoryCallback<List<Event>>> pendingCallbacks = new ArrayList<>();
+    private int pendingCount;
+
+    private EventRepository(Context context, long userId) {
+        dbHelper = DatabaseHelper.getInstance(context);
+        executors = AppExecutors.getInstance();
+        reminders = ReminderScheduler.getInstance(context);
+        sync = SyncScheduler.getInstance(context);
+        cache = new EventCache(EventCache.DEFAULT_MAX_BYTES, executors.mainThread());
+        snapshot = new EventSnapshot(new File(context.getApplicationContext().getNoBackupFilesDir(), SNAPSHOT_FILE));
+        conflictIndex = new ConflictIndex(dbHelper, userId);
+        statsLoader = new EventStatsLoader(dbHelper, userId);
+        maintenance = new EventMaintenance(context, dbHelper, executors, userId, this::eventsChanged);
+        this.userId = userId;
+    }
+
+    // Returns the repository for the given user, replacing the previous one when a different user logs in
+    public static EventRepository getInstance(Context context, long userId) {
+        synchronized (EventRepository.class) {
+            if (instance == null || instance.userId != userId) {
+                instance = new EventRepository(context, userId);
+            }
+            return instance;
+        }
+    }
+
+    // Method to add an event lasting `durationMinutes`, or none for 0, delivering the new event ID or -1 on failure
+    public void addEvent(String title, String description, String date, String time, int durationMinutes,
+                         boolean enableNotifications, RepositoryCallback<Long> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            long eventId = dbHelper.addEvent(userId, title, description, date, time, durationMinutes, enableNotifications);
+            if (eventId != -1) {
+                reminders.onEventSaved((int) eventId, title, date, time, enableNotifications);
+                rangeCache.invalidate();
+                cacheEvent((int) eventId);
+                sync.requestSync();
+                saveSnapshot();
+            }
+            return eventId;
+        }, callback);
+    }
+
+    // Method to update an event, delivering the number of rows changed
+    public void updateEvent(int eventId, String title, String description, String date, String time, int durationMinutes,
+                            boolean enableNotifications, RepositoryCallback<Integer> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            int updated = dbHelper.updateEvent(userId, eventId, title, description, date, time, durationMinutes,
+                    enableNotifications);
+            if (updated > 0) {
+                reminders.onEventSaved(eventId, title, date, time, enableNotifications);
+                rangeCache.invalidate();
+                cacheEvent(eventId);
+                sync.requestSync();
+                saveSnapshot();
+            }
+            return updated;
+        }, callback);
+    }
+
+    // Method to delete an event, delivering the number of rows removed
+    public void deleteEvent(int eventId, RepositoryCallback<Integer> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            int deleted = dbHelper.deleteEvent(userId, eventId);
+            if (deleted > 0) {
+                reminders.onEventDeleted(eventId);
+                rangeCache.invalidate();
+                cache.remove(eventId);
+                conflictIndex.remove(eventId);
+                sync.requestSync();
+                saveSnapshot();
+            }
+            return deleted;
+        }, callback);
+    }
+
+    // Method to delete several events in one transaction, delivering the deleted events so the deletion can
+    // be undone with restoreEvents(). The list is reloaded once afterwards instead of once per event.
+    public void deleteEvents(int[] eventIds, RepositoryCallback<List<DeletedEvent>> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            List<DeletedEvent> deleted = dbHelper.deleteEvents(userId, eventIds);
+            if (!deleted.isEmpty()) {
+                eventsChanged();
+                sync.requestSync();
+            }
+            return deleted;
+        }, callback);
+    }
+
+    // Method to put back events removed by deleteEvents(), delivering the number restored
+    public void restoreEvents(List<DeletedEvent> events, RepositoryCallback<Integer> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            int restored = dbHelper.restoreEvents(userId, events);
+            if (restored > 0) {
+                eventsChanged();
+                sync.requestSync();
+            }
+            return restored;
+        }, callback);
+    }
+
+    // Method to turn notifications on or off for several events in one transaction, delivering the IDs
+    // of the events that changed
+    public void setNotificationsEnabled(int[] eventIds, boolean enabled, RepositoryCallback<int[]> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            int[] changed = dbHelper.setNotificationsEnabled(userId, eventIds, enabled);
+            if (changed.length > 0) {
+                eventsChanged();
+                sync.requestSync();
+            }
+            return changed;
+        }, callback);
+    }
+
+    // Method to move several events by a number of days in one transaction, delivering the IDs of the
+    // events moved
+    public void shiftEvents(int[] eventIds, int days, RepositoryCallback<int[]> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            int[] moved = dbHelper.shiftEvents(userId, eventIds, days);
+            if (moved.length > 0) {
+                eventsChanged();
+                sync.requestSync();
+            }
+            return moved;
+        }, callback);
+    }
+
+    // Method to read the saved first screen of the list, or null if there is none for this user. Reads
+    // one small file and nothing else, so it may run on the UI thread before the first frame.
+    public List<Event> loadSnapshot() {
+        long start = TIMER_SNAPSHOT_LOAD.start();
+        List<Event> events = null;
+        try {
+            events = snapshot.load(userId);
+            return events;
+        } finally {
+            TIMER_SNAPSHOT_LOAD.stop(start, events != null ? events.size() : 0);
+        }
+    }
+
+    // Method to save the first screen of the list on the write thread, after any writes already queued.
+    // Several calls before the save starts cause a single save.
+    public void saveSnapshot() {
+        if (!snapshotQueued.compareAndSet(false, true)) {
+            return;
+        }
+        executors.execute(executors.diskWrite(), () -> {
+            snapshotQueued.set(false);
+            long start = TIMER_SNAPSHOT_SAVE.start();
+            List<Event> events = null;
+            try {
+                events = readFirstScreen();
+                snapshot.save(userId, events);
+            } finally {
+                TIMER_SNAPSHOT_SAVE.stop(start, events != null ? events.size() : 0);
+            }
+            return null;
+        }, new RepositoryCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // The next write saves it again; until then a cold start shows an older first screen
+                snapshotQueued.set(false);
+                Log.w("EventRepository", "Error saving snapshot", e);
+            }
+        });
+    }
+
+    // Method to remove the snapshot, on logout, after any save already queued
+    public void deleteSnapshot() {
+        executors.execute(executors.diskWrite(), () -> {
+            snapshot.delete();
+            return null;
+        }, result -> { });
+    }
+
+    // Method to start syncing the user's events with the server, if one is configured. Pulled changes
+    // reload the lists and reminders once per sync pass.
+    public void startSync() {
+        sync.start(userId, () -> executors.execute(executors.diskWrite(), () -> {
+            eventsChanged();
+            return null;
+        }, result -> { }));
+    }
+
+    // Method to stop syncing, on logout
+    public void stopSync() {
+        sync.stop();
+    }
+
+    // Method to archive the user's old events and return the freed space, at most once a day. The lists
+    // are reloaded once at the end if anything moved.
+    public void runMaintenance() {
+        maintenance.run();
+    }
+
+    // Method to load the page of archived events that follows the given event, newest first, or the first
+    // page if it is null. History is not cached; it is read rarely and never changes in place.
+    public void loadHistoryPage(Event after, int limit, RepositoryCallback<List<Event>> callback) {
+        executors.execute(executors.diskRead(), () -> {
+            long start = TIMER_LOAD_QUERY.start();
+            Cursor cursor = null;
+            try {
+                cursor = after == null
+                        ? dbHelper.getArchivedEventsPage(userId, 0, -1, limit)
+                        : dbHelper.getArchivedEventsPage(userId, after.getStartAt(), after.getId(), limit);
+            } finally {
+                TIMER_LOAD_QUERY.stop(start, cursor);
+            }
+            try (Cursor page = cursor) {
+                return readEvents(page, limit);
+            }
+        }, callback);
+    }
+
+    // Method to add a recurring event, delivering the new series ID or -1 on failure
+    public void addSeries(String title, String description, String date, String time, RecurrenceRule rule,
+                          boolean enableNotifications, RepositoryCallback<Long> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            long seriesId = dbHelper.addSeries(userId, title, description, date, time, rule, enableNotifications);
+            if (seriesId != -1) {
+                seriesChanged();
+            }
+            return seriesId;
+        }, callback);
+    }
+
+    // Method to delete a recurring event and all of its occurrences, delivering the number of series removed
+    public void deleteSeries(long seriesId, RepositoryCallback<Integer> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            int deleted = dbHelper.deleteSeries(userId, seriesId);
+            if (deleted > 0) {
+                seriesChanged();
+            }
+            return deleted;
+        }, callback);
+    }
+
+    // Method to remove one occurrence from its series, delivering the number of rows written
+    public void cancelOccurrence(Event occurrence, RepositoryCallback<Integer> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            int written = dbHelper.putOccurrenceChange(userId, occurrence.getSeriesId(), occurrence.getOccurrenceDate(),
+                    true, null, null, null, null);
+            if (written > 0) {
+                seriesChanged();
+            }
+            return written;
+        }, callback);
+    }
+
+    // Method to change one occurrence without touching the rest of its series, delivering the number of rows written
+    public void updateOccurrence(Event occurrence, String title, String description, String date, String time,
+                                 RepositoryCallback<Integer> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            int written = dbHelper.putOccurrenceChange(userId, occurrence.getSeriesId(), occurrence.getOccurrenceDate(),
+                    false, title, description, date, time);
+            if (written > 0) {
+                seriesChanged();
+            }
+            return written;
+        }, callback);
+    }
+
+    // Method to import events from a CSV or iCalendar stream in chunked transactions, reporting
+    // progress on the UI thread and delivering the number of events imported. The stream is closed.
+    public void importEvents(InputStream in, EventFileFormat format, ProgressListener progress,
+                             RepositoryCallback<Integer> callback) {
+        ProgressListener mainThreadProgress = processed -> executors.mainThread().execute(() -> progress.onProgress(processed));
+        executors.execute(executors.diskWrite(), () -> {
+            int imported;
+            try (EventRecordReader reader = format.newReader(in)) {
+                imported = dbHelper.insertEvents(userId, reader, IMPORT_CHUNK_SIZE, mainThreadProgress);
+            } finally {
+                // Chunks committed before a failure are kept, so the cached list is out of date either way
+                rangeCache.invalidate();
+                cache.invalidate();
+                conflictIndex.invalidate();
+                saveSnapshot();
+            }
+            if (imported > 0) {
+                // Bulk changes are picked up with one reload instead of one update per event
+                reminders.reload();
+                sync.requestSync();
+            }
+            return imported;
+        }, callback);
+    }
+
+    // Method to export every event to a CSV or iCalendar stream, delivering the number of events written.
+    // The stream is closed.
+    public void exportEvents(OutputStream out, EventFileFormat format, ProgressListener progress,
+                             RepositoryCallback<Integer> callback) {
+        ProgressListener mainThreadProgress = processed -> executors.mainThread().execute(() -> progress.onProgress(processed));
+        executors.execute(executors.diskRead(), () -> {
+            try (EventRecordWriter writer = format.newWriter(out)) {
+                return dbHelper.exportEvents(userId, writer, mainThreadProgress);
+            }
+        }, callback);
+    }
+
+    // Method to register for changes to this user's events; the listener is called on the UI thread
+    public void addChangeListener(EventCache.Listener listener) {
+        cache.addListener(listener);
+    }
+
+    public void removeChangeListener(EventCache.Listener listener) {
+        cache.removeListener(listener);
+    }
+
+    // Method to set how much memory the event cache may use
+    public void setCacheMaxBytes(long maxBytes) {
+        cache.setMaxBytes(maxBytes);
+    }
+
+    // Method to reload the first `count` events. Served from the cache when it holds them; otherwise,
+    // if a reload is already running, the request is folded into a single follow-up reload, sized for
+    // the largest request, that starts when the current one finishes.
+    public void refreshEvents(int count, RepositoryCallback<List<Event>> callback) {
+        List<Event> cached = cache.getPrefix(count);
+        if (cached != null) {
+            executors.mainThread().execute(() -> callback.onSuccess(cached));
+            return;
+        }
+        if (refreshRunning) {
+            pendingCallbacks.add(callback);
+            pendingCount = Math.max(pendingCount, count);
+            return;
+        }
+        runningCallbacks.add(callback);
+        startRefresh(count);
+    }
+
+    // Method to load the page of events that follows the given event, or the first page if it is null
+    public void loadEventsPage(Event after, int limit, RepositoryCallback<List<Event>> callback) {
+        List<Event> cached = after != null ? cache.getPageAfter(after, limit) : cache.getPrefix(limit);
+        if (cached != null) {
+            executors.mainThread().execute(() -> callback.onSuccess(cached));
+            return;
+        }
+        executors.execute(executors.diskRead(), () -> readEventsPage(after, limit), callback);
+    }
+
+    // Method to load every event, and occurrence of a recurring event, in a day, week or month of the
+    // calendar. Served from the range cache when it holds the range. The ranges before and after it are
+    // then read in the background, so paging to either one is served from memory.
+    public void loadRange(CalendarRange range, RepositoryCallback<List<Event>> callback) {
+        List<Event> cached = rangeCache.get(range);
+        if (cached != null) {
+            executors.mainThread().execute(() -> callback.onSuccess(cached));
+        } else {
+            executors.execute(executors.diskRead(), () -> readRange(range), callback);
+        }
+        prefetchRange(range.previous());
+        prefetchRange(range.next());
+    }
+
+    // Method to load the full description of an event for the details dialog
+    public void loadEventDescription(int eventId, RepositoryCallback<String> callback) {
+        executors.execute(executors.diskRead(), () -> dbHelper.getEventDescription(userId, eventId), callback);
+    }
+
+    // Method to find up to `limit` live events that overlap an event on `date` at `time` lasting
+    // `durationMinutes`, in start order, leaving out the event being edited (-1 when adding). Delivers an
+    // empty list when the date does not parse yet. Occurrences of recurring events and archived events
+    // are not checked.
+    public void findConflicts(int excludeEventId, String date, String time, int durationMinutes, int limit,
+                              RepositoryCallback<List<Event>> callback) {
+        executors.execute(executors.diskRead(), () -> {
+            int day = DateTimeCodec.parseDate(date);
+            if (day == DateTimeCodec.INVALID) {
+                return Collections.<Event>emptyList();
+            }
+            long startAt = DateTimeCodec.toEpochMillis(day, DateTimeCodec.parseTime(time), TimeZone.getDefault());
+            List<Integer> ids = conflictIndex.findOverlapping(startAt, startAt + durationMinutes * 60000L,
+                    excludeEventId, limit);
+            List<Event> conflicts = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                try (Cursor cursor = dbHelper.getEvent(userId, id)) {
+                    conflicts.addAll(readEvents(cursor, 1));
+                }
+            }
+            return conflicts;
+        }, callback);
+    }
+
+    // Method to load the statistics for the statistics dialog
+    public void loadStats(RepositoryCallback<EventStats> callback) {
+        executors.execute(executors.diskRead(), statsLoader::load, callback);
+    }
+
+    // Method to load the page of events matching a search query that follows the given result, or the
+    // first page if it is null, best matches first
+    public void searchEvents(String query, Event after, int limit, RepositoryCallback<List<Event>> callback) {
+        executors.execute(executors.diskRead(), () -> {
+            long start = TIMER_LOAD_QUERY.start();
+            Cursor cursor = null;
+            try {
+                cursor = after == null
+                        ? dbHelper.searchEvents(userId, query, false, 0, -1, limit)
+                        : dbHelper.searchEvents(userId, query, after.isTitleMatch(), after.getStartAt(), after.getId(), limit);
+            } finally {
+                TIMER_LOAD_QUERY.stop(start, cursor);
+            }
+            try (Cursor results = cursor) {
+                List<Event> events = readEvents(results, limit);
+                // Keep each result's rank, which the next page starts after
+                int titleMatchIndex = results.getColumnIndexOrThrow(dbHelper.getColumnTitleMatch());
+                for (int i = 0; i < events.size(); i++) {
+                    results.moveToPosition(i);
+                    events.set(i, events.get(i).asSearchResult(results.getInt(titleMatchIndex) == 1));
+                }
+                return events;
+            }
+        }, callback);
+    }
+
+    private void startRefresh(int count) {
+        refreshRunning = true;
+        executors.execute(executors.diskRead(), () -> readEventsPage(null, count), new RepositoryCallback<List<Event>>() {
+            @Override
+            public void onSuccess(List<Event> events) {
+                for (RepositoryCallback<List<Event>> waiting : finishRefresh()) {
+                    waiting.onSuccess(events);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                for (RepositoryCallback<List<Event>> waiting : finishRefresh()) {
+                    waiting.onError(e);
+                }
+            }
+        });
+    }
+
+    // Returns the callbacks served by the finished reload and starts one more if requests arrived meanwhile
+    private List<RepositoryCallback<List<Event>>> finishRefresh() {
+        List<RepositoryCallback<List<Event>>> finished = runningCallbacks;
+        runningCallbacks = pendingCallbacks;
+        pendingCallbacks = new ArrayList<>();
+        refreshRunning = false;
+        if (!runningCallbacks.isEmpty()) {
+            int count = pendingCount;
+            pendingCount = 0;
+            startRefresh(count);
+        }
+        return finished;
+    }
+
+    // Reads one page of events after the given key and adds it to the cache; runs on a background thread
+    private List<Event> readEventsPage(Event after, int limit) {
+        long version = cache.getVersion();
+        List<Event> events;
+        long start = TIMER_LOAD_QUERY.start();
+        Cursor cursor = null;
+        try {
+            cursor = after == null
+                    ? dbHelper.getEventsPage(userId, 0, -1, limit)
+                    : dbHelper.getEventsPage(userId, after.getStartAt(), after.getId(), limit);
+        } finally {
+            TIMER_LOAD_QUERY.stop(start, cursor);
+        }
+        try (Cursor page = cursor) {
+            events = readEvents(page, limit);
+        }
+        events = addOccurrences(after, events, limit);
+        if (after == null) {
+            cache.putPrefix(version, events, events.size() < limit);
+        } else {
+            cache.appendPage(version, after, events, events.size() < limit);
+        }
+        Log.d("EventRepository", "Loaded page of " + events.size() + " events.");
+        return events;
+    }
+
+    // Reads a range that is not cached yet in the background. Failures, including a full queue turning the
+    // read away, are only logged: the range is read when it is shown.
+    private void prefetchRange(CalendarRange range) {
+        if (rangeCache.contains(range)) {
+            return;
+        }
+        executors.execute(executors.diskRead(), () -> {
+            if (!rangeCache.contains(range)) {
+                readRange(range);
+            }
+            return null;
+        }, new RepositoryCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w("EventRepository", "Error prefetching " + range, e);
+            }
+        });
+    }
+
+    // Reads the events overlapping a range, adds the occurrences of recurring events that fall in it,
+    // and adds the result to the range cache; runs on a background thread
+    private List<Event> readRange(CalendarRange range) {
+        long version = rangeCache.getVersion();
+        TimeZone zone = TimeZone.getDefault();
+        long from = range.getStartMillis(zone);
+        long to = range.getEndMillis(zone);
+        long start = TIMER_RANGE_QUERY.start();
+        Cursor cursor = null;
+        try {
+            cursor = dbHelper.getEventsInRange(userId, from, to);
+        } finally {
+            TIMER_RANGE_QUERY.stop(start, cursor);
+        }
+        List<Event> events;
+        try (Cursor rows = cursor) {
+            events = readEvents(rows, rows.getCount());
+        }
+        List<EventSeries> userSeries = getSeries();
+        if (!userSeries.isEmpty()) {
+            long expandStart = TIMER_EXPAND_SERIES.start();
+            int stored = events.size();
+            try {
+                for (EventSeries each : userSeries) {
+                    each.expand(from, to - 1, zone, Integer.MAX_VALUE, events);
+                }
+                Collections.sort(events, EventCache.ORDER);
+            } finally {
+                TIMER_EXPAND_SERIES.stop(expandStart, events.size() - stored);
+            }
+        }
+        rangeCache.put(version, range, events);
+        return events;
+    }
+
+    // Merges into a page of stored events the occurrences of recurring events that belong in it: those
+    // after the `after` key and up to the last stored row, or up to the list horizon when the stored
+    // rows have run out. Only that window is expanded, and each series stops after `limit` occurrences.
+    private List<Event> addOccurrences(Event after, List<Event> events, int limit) {
+        List<EventSeries> userSeries = getSeries();
+        if (userSeries.isEmpty()) {
+            return events;
+        }
+        long start = TIMER_EXPAND_SERIES.start();
+        List<Event> merged = new ArrayList<>(events);
+        try {
+            long from = after != null ? after.getStartAt() : Long.MIN_VALUE;
+            long to = System.currentTimeMillis() + SERIES_LIST_HORIZON_MILLIS;
+            if (events.size() == limit) {
+                to = Math.min(to, events.get(events.size() - 1).getStartAt());
+            }
+            TimeZone zone = TimeZone.getDefault();
+            for (EventSeries each : userSeries) {
+                // One more than the limit, in case the first falls at the same instant as `after` but before it
+                each.expand(from, to, zone, limit + 1, merged);
+            }
+            if (after != null) {
+                for (int i = merged.size() - 1; i >= events.size(); i--) {
+                    if (EventCache.ORDER.compare(merged.get(i), after) <= 0) {
+                        merged.remove(i);
+                    }
+                }
+            }
+            Collections.sort(merged, EventCache.ORDER);
+            return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+        } finally {
+            TIMER_EXPAND_SERIES.stop(start, merged.size() - events.size());
+        }
+    }
+
+    // Returns the user's recurring events, reading them on first use; runs on a background thread
+    private synchronized List<EventSeries> getSeries() {
+        if (series == null) {
+            series = dbHelper.getSeries(userId);
+        }
+        return series;
+    }
+
+    // Re-reads the recurring events after a series write, then reloads the list and the reminders;
+    // runs on the write thread
+    private void seriesChanged() {
+        synchronized (this) {
+            series = dbHelper.getSeries(userId);
+        }
+        eventsChanged();
+    }
+
+    // Drops every cached list and reschedules reminders after a write that touched many events at once,
+    // so listeners reload once instead of hearing of each event; runs on the write thread
+    private void eventsChanged() {
+        rangeCache.invalidate();
+        cache.invalidate();
+        conflictIndex.invalidate();
+        reminders.reload();
+        saveSnapshot();
+    }
+
+    // Returns the first screen of the list for the snapshot, from the cache when it holds it; runs on
+    // the write thread. Unlike a refresh, this does not fill the cache, which may hold a longer prefix.
+    private List<Event> readFirstScreen() {
+        List<Event> events = cache.getPrefix(SNAPSHOT_SIZE);
+        if (events != null) {
+            return events;
+        }
+        try (Cursor cursor = dbHelper.getEventsPage(userId, 0, -1, SNAPSHOT_SIZE)) {
+            events = readEvents(cursor, SNAPSHOT_SIZE);
+        }
+        return addOccurrences(null, events, SNAPSHOT_SIZE);
+    }
+
+    // Re-reads one event after a write and passes it to the cache and the conflict index; runs on the
+    // write thread
+    private void cacheEvent(int eventId) {
+        Event event;
+        try (Cursor cursor = dbHelper.getEvent(userId, eventId)) {
+            List<Event> events = readEvents(cursor, 1);
+            event = events.isEmpty() ? null : events.get(0);
+        }
+        if (event == null) {
+            cache.remove(eventId);
+        } else {
+            cache.put(event);
+        }
+        conflictIndex.update(eventId, event);
+    }
+
+    // Maps the rows of an event page or search cursor to events
+    private List<Event> readEvents(Cursor cursor, int expected) {
+        long start = TIMER_LOAD_CURSOR_WALK.start();
+        int allocationsBefore = Metrics.threadAllocations();
+        List<Event> events = new ArrayList<>(expected);
+        try {
+            // Resolve column indexes once instead of once per row
+            int idIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnEventId());
+            int titleIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnTitle());
+            int descriptionIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnDescription());
+            int dateIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnDate());
+            int timeIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnTime());
+            int startAtIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnStartAt());
+            int endAtIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnEndAt());
+            int notificationsIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnNotificationsEnabled());
+
+            while (cursor.moveToNext()) {
+                events.add(new Event(
+                        cursor.getInt(idIndex),
+                        cursor.getString(titleIndex),
+                        cursor.getString(descriptionIndex),
+                        cursor.getString(dateIndex),
+                        cursor.getString(timeIndex),
+                        cursor.getLong(startAtIndex),
+                        cursor.getLong(endAtIndex),
+                        cursor.getInt(notificationsIndex) == 1));
+            }
+            return events;
+        } finally {
+            if (start != 0) {
+                TIMER_LOAD_CURSOR_WALK.recordAllocations(Metrics.threadAllocations() - allocationsBefore);
+            }
+            TIMER_LOAD_CURSOR_WALK.stop(start, events.size());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.zybooks.eventtracker;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+// Immutable recurring event: one stored row describing every occurrence, plus the occurrences that were
+// changed or cancelled. Occurrences are never stored as rows; expand() creates the ones inside a time
+// window, so only those on screen, or within the reminder horizon, ever exist as Events.
+public final class EventSeries {
+
+    // Occurrences more than this many days after the first one are not produced. Together with the
+    // series ID limit this keeps occurrence IDs unique within an int.
+    static final int MAX_DAY_OFFSET = (1 << 15) - 1;
+    static final long MAX_SERIES_ID = (1 << 16) - 1;
+
+    // Instants further from the epoch than this are treated as unbounded window ends
+    private static final long MAX_WINDOW_MILLIS = 1L << 50;
+
+    // A changed or cancelled occurrence, identified by the date it was originally due
+    public static final class OccurrenceChange {
+        private final int originalDate;
+        private final boolean cancelled;
+        private final String title;
+        private final String description;
+        private final int date;
+        private final String time;
+
+        // `originalDate` and `date` are packed dates; null fields and an INVALID date keep the series value
+        public OccurrenceChange(int originalDate, boolean cancelled, String title, String description, int date,
+                                String time) {
+            this.originalDate = originalDate;
+            this.cancelled = cancelled;
+            this.title = title;
+            this.description = description;
+            this.date = date;
+            this.time = time;
+        }
+
+        public int getOriginalDate() {
+            return originalDate;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long seriesId;
+    private final String title;
+    private final String description;
+    private final String time;
+    private final int minuteOfDay;
+    private final RecurrenceRule rule;
+    private final boolean notificationsEnabled;
+    private final Map<Integer, OccurrenceChange> changes;
+    // First and last possible occurrence days, as days since 1970-01-01
+    private final long startDay;
+    private final long lastDay;
+
+    // `startDate` is the packed date of the first occurrence and `time` its time of day as entered
+    public EventSeries(long seriesId, String title, String description, int startDate, String time,
+                       RecurrenceRule rule, boolean notificationsEnabled, Collection<OccurrenceChange> changes) {
+        if (seriesId < 1 || seriesId > MAX_SERIES_ID) {
+            throw new IllegalArgumentException("Series ID out of range: " + seriesId);
+        }
+        this.seriesId = seriesId;
+        this.title = title;
+        this.description = description;
+        this.time = time;
+        this.minuteOfDay = DateTimeCodec.parseTime(time);
+        this.rule = rule;
+        this.notificationsEnabled = notificationsEnabled;
+        if (changes.isEmpty()) {
+            this.changes = Collections.emptyMap();
+        } else {
+            this.changes = new HashMap<>();
+            for (OccurrenceChange change : changes) {
+                this.changes.put(change.originalDate, change);
+            }
+        }
+        startDay = DateTimeCodec.toEpochDay(startDate);
+        lastDay = findLastDay();
+    }
+
+    public long getSeriesId() {
+        return seriesId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public RecurrenceRule getRule() {
+        return rule;
+    }
+
+    public boolean isNotificationsEnabled() {
+        return notificationsEnabled;
+    }
+
+    // Adds to `out` the occurrences that start between `from` and `to` inclusive, in epoch milliseconds,
+    // and returns how many were added. Unchanged occurrences are added in start order and stop after
+    // `max`; changed ones are added after them, so the caller sorts the result. Either way `out` then
+    // holds the first `max` occurrences of the window. Jumps straight to the window with
+    // RecurrenceRule.nextOnOrAfter(), so the cost depends on the size of the window, not on its distance
+    // from the start of the series.
+    public int expand(long from, long to, TimeZone zone, int max, List<Event> out) {
+        int added = 0;
+        long fromDay = Math.max(startDay, localDay(from, zone) - 1);
+        long toDay = Math.min(lastDay, localDay(to, zone) + 1);
+        for (long day = rule.nextOnOrAfter(startDay, fromDay); day != RecurrenceRule.NONE && day <= toDay && added < max;
+             day = rule.nextOnOrAfter(startDay, day + 1)) {
+            int date = DateTimeCodec.fromEpochDay(day);
+            if (!changes.isEmpty() && changes.containsKey(date)) {
+                continue;
+            }
+            long startAt = DateTimeCodec.toEpochMillis(date, minuteOfDay, zone);
+            if (startAt >= from && startAt <= to) {
+                out.add(occurrence(day, date, title, description, date, time, startAt));
+                added++;
+            }
+        }
+        // Changed occurrences may have moved into or out of the window, so each is checked on its own
+        for (OccurrenceChange change : changes.values()) {
+            if (change.cancelled) {
+                continue;
+            }
+            long originalDay = DateTimeCodec.toEpochDay(change.originalDate);
+            if (originalDay < startDay || originalDay > lastDay) {
+                continue;
+            }
+            int date = change.date != DateTimeCodec.INVALID ? change.date : change.originalDate;
+            String changedTime = change.time != null ? change.time : time;
+            long startAt = DateTimeCodec.toEpochMillis(date, DateTimeCodec.parseTime(changedTime), zone);
+            if (startAt >= from && startAt <= to) {
+                out.add(occurrence(originalDay, change.originalDate,
+                        change.title != null ? change.title : title,
+                        change.description != null ? change.description : description,
+                        date, changedTime, startAt));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    // Returns the ID given to the occurrence of a series that falls `dayOffset` days after its first one.
+    // Occurrence IDs are negative, so they never collide with the IDs of stored events.
+    static int occurrenceId(long seriesId, long dayOffset) {
+        return Integer.MIN_VALUE | (int) (seriesId << 15) | (int) dayOffset;
+    }
+
+    private Event occurrence(long originalDay, int originalDate, String title, String description, int date,
+                             String time, long startAt) {
+        return new Event(occurrenceId(seriesId, originalDay - startDay), title, description,
+                DateTimeCodec.formatStoredDate(date), time, startAt, notificationsEnabled, seriesId, originalDate);
+    }
+
+    // The last day an occurrence can fall on, from UNTIL, from COUNT, or from the ID limit
+    private long findLastDay() {
+        long last = startDay + MAX_DAY_OFFSET;
+        if (rule.getUntil() != 0) {
+            last = Math.min(last, DateTimeCodec.toEpochDay(rule.getUntil()));
+        }
+        if (rule.getCount() > 0) {
+            // Cancelled occurrences still count, as EXDATE dates do in iCalendar
+            long day = rule.nextOnOrAfter(startDay, startDay);
+            for (int i = 1; i < rule.getCount() && day != RecurrenceRule.NONE && day < last; i++) {
+                day = rule.nextOnOrAfter(startDay, day + 1);
+            }
+            if (day != RecurrenceRule.NONE) {
+                last = Math.min(last, day);
+            }
+        }
+        return last;
+    }
+
+    private static long localDay(long millis, TimeZone zone) {
+        long clamped = Math.max(-MAX_WINDOW_MILLIS, Math.min(MAX_WINDOW_MILLIS, millis));
+        return DateTimeCodec.toEpochDay(DateTimeCodec.packedDateOf(clamped, zone));
+    }
+}
@@ -0,0 +1,115 @@
+package com.zybooks.eventtracker;
+
+import android.util.AtomicFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The first screen of the event list saved to a small binary file, so a cold start can draw it before
+// the database is opened; the live query then replaces it. The file starts with a magic number and a
+// format version, and holds the events of one user. AtomicFile replaces it whole, so a crash while
+// saving leaves the previous snapshot. A missing, foreign, outdated or damaged snapshot reads as none.
+// Safe to use from any thread.
+public final class EventSnapshot {
+
+    static final int MAGIC = 0x45565350; // "EVSP"
+    // Bump when the layout below changes; older files are then ignored until the next save
+    static final int FORMAT_VERSION = 2;
+
+    // Longer text is cut when saved; the rows show far less, and writeUTF() takes at most 64 KB
+    private static final int MAX_TEXT_LENGTH = 1000;
+    // Bounds a damaged count before anything is allocated
+    private static final int MAX_EVENTS = 1000;
+
+    private final AtomicFile file;
+
+    public EventSnapshot(File file) {
+        this.file = new AtomicFile(file);
+    }
+
+    // Method to replace the snapshot with the given events of a user
+    public synchronized void save(long userId, List<Event> events) throws IOException {
+        FileOutputStream stream = file.startWrite();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            write(out, userId, events);
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException | RuntimeException e) {
+            file.failWrite(stream);
+            throw e;
+        }
+    }
+
+    // Method to read the saved events of a user, or null if there is no usable snapshot for them
+    public synchronized List<Event> load(long userId) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            return read(in, userId);
+        } catch (IOException e) {
+            // Not saved yet, or damaged; the live query fills the list either way
+            return null;
+        }
+    }
+
+    // Method to remove the snapshot, on logout
+    public synchronized void delete() {
+        file.delete();
+    }
+
+    static void write(DataOutputStream out, long userId, List<Event> events) throws IOException {
+        int count = Math.min(events.size(), MAX_EVENTS);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(userId);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            Event event = events.get(i);
+            out.writeInt(event.getId());
+            writeText(out, event.getTitle());
+            writeText(out, event.getDescription());
+            writeText(out, event.getDate());
+            writeText(out, event.getTime());
+            out.writeLong(event.getStartAt());
+            out.writeLong(event.getEndAt());
+            out.writeBoolean(event.isNotificationsEnabled());
+            out.writeLong(event.getSeriesId());
+            out.writeInt(event.getOccurrenceDate());
+        }
+    }
+
+    // Returns null for another format or user; throws IOException if the file is cut short
+    static List<Event> read(DataInputStream in, long userId) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != userId) {
+            return null;
+        }
+        int count = in.readInt();
+        if (count < 0 || count > MAX_EVENTS) {
+            return null;
+        }
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(new Event(in.readInt(), readText(in), readText(in), readText(in), readText(in),
+                    in.readLong(), in.readLong(), in.readBoolean(), in.readLong(), in.readInt()));
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        out.writeBoolean(text != null);
+        if (text != null) {
+            out.writeUTF(text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text);
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
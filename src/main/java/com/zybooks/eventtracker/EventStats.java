@@ -0,0 +1,82 @@
+package com.zybooks.eventtracker;
+
+import java.util.Collections;
+import java.util.List;
+
+// Immutable summary of a user's events for the statistics dialog. Read from the per-day, week and month
+// counts the database keeps up to date as events change, so its cost depends on the number of buckets
+// shown rather than on the number of events. Covers live and archived events; recurring events are not
+// counted.
+public final class EventStats {
+
+    // Events in one day, week or month
+    public static final class Bucket {
+        private final int startDate;
+        private final int eventCount;
+        private final int reminderCount;
+
+        public Bucket(int startDate, int eventCount, int reminderCount) {
+            this.startDate = startDate;
+            this.eventCount = eventCount;
+            this.reminderCount = reminderCount;
+        }
+
+        // Packed date of the first day
+        public int getStartDate() {
+            return startDate;
+        }
+
+        public int getEventCount() {
+            return eventCount;
+        }
+
+        // Events of the bucket with notifications enabled
+        public int getReminderCount() {
+            return reminderCount;
+        }
+    }
+
+    private final int eventsToday;
+    private final int eventsThisWeek;
+    private final int eventsThisMonth;
+    private final int pendingReminders;
+    private final List<Bucket> recentMonths;
+    private final List<Bucket> busiestDays;
+
+    public EventStats(int eventsToday, int eventsThisWeek, int eventsThisMonth, int pendingReminders,
+                      List<Bucket> recentMonths, List<Bucket> busiestDays) {
+        this.eventsToday = eventsToday;
+        this.eventsThisWeek = eventsThisWeek;
+        this.eventsThisMonth = eventsThisMonth;
+        this.pendingReminders = pendingReminders;
+        this.recentMonths = Collections.unmodifiableList(recentMonths);
+        this.busiestDays = Collections.unmodifiableList(busiestDays);
+    }
+
+    public int getEventsToday() {
+        return eventsToday;
+    }
+
+    public int getEventsThisWeek() {
+        return eventsThisWeek;
+    }
+
+    public int getEventsThisMonth() {
+        return eventsThisMonth;
+    }
+
+    // Events still to come with notifications enabled
+    public int getPendingReminders() {
+        return pendingReminders;
+    }
+
+    // Every month up to the current one, oldest first, including those without events
+    public List<Bucket> getRecentMonths() {
+        return recentMonths;
+    }
+
+    // Days with the most events, busiest first, the latest first among days with as many
+    public List<Bucket> getBusiestDays() {
+        return busiestDays;
+    }
+}
@@ -0,0 +1,68 @@
+package com.zybooks.eventtracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+// Builds the EventStats of one user from the event counts the database keeps per day, week and month,
+// so the statistics dialog reads a few dozen summary rows however many events there are.
+final class EventStatsLoader {
+
+    // Months listed by the statistics, including the current one, and busiest days listed
+    private static final int STATS_MONTHS = 6;
+    private static final int STATS_BUSIEST_DAYS = 5;
+
+    static final Metrics.Timer TIMER_LOAD_STATS = Metrics.timer("stats.load");
+
+    private final DatabaseHelper dbHelper;
+    private final long userId;
+
+    EventStatsLoader(DatabaseHelper dbHelper, long userId) {
+        this.dbHelper = dbHelper;
+        this.userId = userId;
+    }
+
+    // Reads events today, this week and this month, pending reminders, the events of each recent month
+    // and the busiest days; runs on a background thread
+    EventStats load() {
+        long start = TIMER_LOAD_STATS.start();
+        try {
+            long now = System.currentTimeMillis();
+            int today = DateTimeCodec.packedDateOf(now, TimeZone.getDefault());
+            CalendarRange month = CalendarRange.containing(CalendarRange.Kind.MONTH, today);
+            CalendarRange firstMonth = month;
+            for (int i = 1; i < STATS_MONTHS; i++) {
+                firstMonth = firstMonth.previous();
+            }
+
+            // Months without events have no bucket, so fill them in
+            List<EventStats.Bucket> stored = dbHelper.getStatBuckets(userId, CalendarRange.Kind.MONTH,
+                    firstMonth.getStartDate(), month.getEndDate());
+            List<EventStats.Bucket> months = new ArrayList<>(STATS_MONTHS);
+            int next = 0;
+            for (CalendarRange each = firstMonth; months.size() < STATS_MONTHS; each = each.next()) {
+                if (next < stored.size() && stored.get(next).getStartDate() == each.getStartDate()) {
+                    months.add(stored.get(next++));
+                } else {
+                    months.add(new EventStats.Bucket(each.getStartDate(), 0, 0));
+                }
+            }
+            return new EventStats(
+                    countEvents(CalendarRange.containing(CalendarRange.Kind.DAY, today)),
+                    countEvents(CalendarRange.containing(CalendarRange.Kind.WEEK, today)),
+                    months.get(months.size() - 1).getEventCount(),
+                    dbHelper.countPendingReminders(userId, now),
+                    months,
+                    dbHelper.getBusiestDays(userId, STATS_BUSIEST_DAYS));
+        } finally {
+            TIMER_LOAD_STATS.stop(start, 1);
+        }
+    }
+
+    // Reads the number of events in a day or week from its summary bucket
+    private int countEvents(CalendarRange range) {
+        List<EventStats.Bucket> buckets = dbHelper.getStatBuckets(userId, range.getKind(), range.getStartDate(),
+                range.getEndDate());
+        return buckets.isEmpty() ? 0 : buckets.get(0).getEventCount();
+    }
+}
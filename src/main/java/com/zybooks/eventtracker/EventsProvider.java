@@ -0,0 +1,150 @@
+package com.zybooks.eventtracker;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Read-only access to a user's next events for the home-screen widget, without loading the event list.
+// content://com.zybooks.eventtracker.events/users/<id>/upcoming?limit=N returns at most MAX_LIMIT events
+// that have not ended, with only the columns asked for out of the few listed below. DatabaseHelper tells
+// content://com.zybooks.eventtracker.events/users/<id> of every write to that user's events, and the
+// cursors returned watch that URI, so observers are told of changes instead of querying again on a timer.
+// Not exported: only the app itself reads it.
+public class EventsProvider extends ContentProvider {
+
+    public static final String AUTHORITY = "com.zybooks.eventtracker.events";
+    public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY);
+
+    // Columns that can be asked for; _ID is the event ID
+    public static final String COLUMN_TITLE = "title";
+    public static final String COLUMN_DATE = "date";
+    public static final String COLUMN_TIME = "time";
+    public static final String COLUMN_START_AT = "start_at";
+    public static final String COLUMN_END_AT = "end_at";
+
+    public static final String QUERY_LIMIT = "limit";
+    static final int DEFAULT_LIMIT = 5;
+    static final int MAX_LIMIT = 20;
+
+    private static final String PATH_USERS = "users";
+    private static final String PATH_UPCOMING = "upcoming";
+    private static final String TYPE_UPCOMING = ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + AUTHORITY + ".event";
+
+    private static final int MATCH_UPCOMING = 1;
+    private static final UriMatcher MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        MATCHER.addURI(AUTHORITY, PATH_USERS + "/#/" + PATH_UPCOMING, MATCH_UPCOMING);
+    }
+
+    private static final String[] DEFAULT_PROJECTION =
+            {BaseColumns._ID, COLUMN_TITLE, COLUMN_DATE, COLUMN_TIME, COLUMN_START_AT, COLUMN_END_AT};
+
+    // Returns the URI every change to a user's events is reported on
+    public static Uri userUri(long userId) {
+        return CONTENT_URI.buildUpon().appendPath(PATH_USERS).appendPath(String.valueOf(userId)).build();
+    }
+
+    // Returns the URI of a user's next `limit` events
+    public static Uri upcomingUri(long userId, int limit) {
+        return userUri(userId).buildUpon().appendPath(PATH_UPCOMING)
+                .appendQueryParameter(QUERY_LIMIT, String.valueOf(limit)).build();
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        if (selection != null || sortOrder != null) {
+            throw new IllegalArgumentException("Selection and sort order are not supported: " + uri);
+        }
+        Context context = getContext();
+        Cursor cursor = queryUpcoming(DatabaseHelper.getInstance(context), uri, projection, System.currentTimeMillis());
+        cursor.setNotificationUri(context.getContentResolver(), userUri(Long.parseLong(uri.getPathSegments().get(1))));
+        return cursor;
+    }
+
+    // Runs an upcoming-events query against the given database; package-private for the tests
+    static Cursor queryUpcoming(DatabaseHelper dbHelper, Uri uri, String[] projection, long now) {
+        if (MATCHER.match(uri) != MATCH_UPCOMING) {
+            throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        long userId = Long.parseLong(uri.getPathSegments().get(1));
+        return dbHelper.getUpcomingEvents(userId, now, columns(dbHelper, projection), limit(uri));
+    }
+
+    // Maps the requested columns to SQL, rejecting any that are not offered
+    private static String[] columns(DatabaseHelper dbHelper, String[] projection) {
+        Map<String, String> offered = new HashMap<>();
+        offered.put(BaseColumns._ID, dbHelper.getColumnEventId() + " AS " + BaseColumns._ID);
+        offered.put(COLUMN_TITLE, dbHelper.getColumnTitle());
+        offered.put(COLUMN_DATE, dbHelper.getColumnDate());
+        offered.put(COLUMN_TIME, dbHelper.getColumnTime());
+        offered.put(COLUMN_START_AT, dbHelper.getColumnStartAt());
+        offered.put(COLUMN_END_AT, dbHelper.getColumnEndAt());
+
+        String[] requested = projection != null ? projection : DEFAULT_PROJECTION;
+        String[] columns = new String[requested.length];
+        for (int i = 0; i < requested.length; i++) {
+            columns[i] = offered.get(requested[i]);
+            if (columns[i] == null) {
+                throw new IllegalArgumentException("Unknown column: " + requested[i]);
+            }
+        }
+        return columns;
+    }
+
+    // The limit asked for, DEFAULT_LIMIT when there is none, and never more than MAX_LIMIT
+    private static int limit(Uri uri) {
+        String limit = uri.getQueryParameter(QUERY_LIMIT);
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            return Math.max(0, Math.min(MAX_LIMIT, Integer.parseInt(limit)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return MATCHER.match(uri) == MATCH_UPCOMING ? TYPE_UPCOMING : null;
+    }
+
+    // Events are written through EventRepository, never through the provider
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException("Read-only: " + uri);
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only: " + uri);
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only: " + uri);
+    }
+}
@@ -0,0 +1,351 @@
+package com.zybooks.eventtracker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+
+// Streaming iCalendar (RFC 5545) import and export. Each VEVENT maps to one event: SUMMARY is the
+// title, DESCRIPTION the description, DTSTART the date and time, DTEND or DURATION the length, and a
+// VALARM turns on notifications.
+public final class IcsEventFormat {
+
+    private static final int MAX_LINE_LENGTH = 73;
+
+    private IcsEventFormat() {
+    }
+
+    public static EventRecordReader newReader(InputStream in) {
+        return new RecordReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
+
+    public static EventRecordWriter newWriter(OutputStream out) throws IOException {
+        return new RecordWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    private static class RecordReader implements EventRecordReader {
+        private final BufferedReader in;
+        private final TimeZone zone = TimeZone.getDefault();
+        private String lookahead;
+
+        RecordReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public EventRecord read() throws IOException {
+            String line;
+            boolean inEvent = false;
+            int depth = 0;
+            String title = "";
+            String description = "";
+            String start = null;
+            String end = null;
+            String duration = null;
+            boolean alarm = false;
+
+            while ((line = readUnfoldedLine()) != null) {
+                if (!inEvent) {
+                    inEvent = line.equalsIgnoreCase("BEGIN:VEVENT");
+                    continue;
+                }
+                if (line.regionMatches(true, 0, "BEGIN:", 0, 6)) {
+                    // Nested components such as VALARM
+                    depth++;
+                    alarm |= line.equalsIgnoreCase("BEGIN:VALARM");
+                    continue;
+                }
+                if (line.regionMatches(true, 0, "END:", 0, 4)) {
+                    if (depth > 0) {
+                        depth--;
+                        continue;
+                    }
+                    if (start == null) {
+                        // An event without a start cannot be placed on the list; skip it
+                        inEvent = false;
+                        alarm = false;
+                        title = "";
+                        description = "";
+                        end = null;
+                        duration = null;
+                        continue;
+                    }
+                    return toRecord(title, description, start, end, duration, alarm);
+                }
+                if (depth > 0) {
+                    continue;
+                }
+
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                int nameEnd = line.indexOf(';');
+                String name = line.substring(0, nameEnd >= 0 && nameEnd < colon ? nameEnd : colon);
+                String value = line.substring(colon + 1);
+                if (name.equalsIgnoreCase("SUMMARY")) {
+                    title = unescape(value);
+                } else if (name.equalsIgnoreCase("DESCRIPTION")) {
+                    description = unescape(value);
+                } else if (name.equalsIgnoreCase("DTSTART")) {
+                    start = value.trim();
+                } else if (name.equalsIgnoreCase("DTEND")) {
+                    end = value.trim();
+                } else if (name.equalsIgnoreCase("DURATION")) {
+                    duration = value.trim();
+                }
+            }
+            return null;
+        }
+
+        // Converts DTSTART to local date and time text, and DTEND or DURATION to a length in minutes.
+        // All-day events, and ends that are not after the start, get no duration.
+        private EventRecord toRecord(String title, String description, String start, String end, String duration,
+                                     boolean alarm) {
+            int[] startAt = parseDateTime(start);
+            int date = startAt[0];
+            int minute = startAt[1];
+            int durationMinutes = 0;
+            if (minute != DateTimeCodec.INVALID) {
+                if (end != null) {
+                    int[] endAt = parseDateTime(end);
+                    if (endAt[1] != DateTimeCodec.INVALID) {
+                        // Wall-clock difference, so a daylight-saving change in between does not count
+                        TimeZone utc = TimeZone.getTimeZone("UTC");
+                        long millis = DateTimeCodec.toEpochMillis(endAt[0], endAt[1], utc)
+                                - DateTimeCodec.toEpochMillis(date, minute, utc);
+                        durationMinutes = (int) Math.min(Math.max(millis / 60000L, 0), Integer.MAX_VALUE);
+                    }
+                } else if (duration != null) {
+                    durationMinutes = parseDuration(duration);
+                }
+            }
+            String dateText = date != DateTimeCodec.INVALID ? DateTimeCodec.formatStoredDate(date) : start;
+            String timeText = minute != DateTimeCodec.INVALID ? DateTimeCodec.formatTime(minute) : "";
+            return new EventRecord(title, description, dateText, timeText, alarm, durationMinutes);
+        }
+
+        // Parses a DATE or DATE-TIME value (yyyyMMdd, yyyyMMddTHHmmss, or the same in UTC with a trailing Z)
+        // into a local packed date and minute of day, either of which may be INVALID
+        private int[] parseDateTime(String value) {
+            int date = value.length() >= 8 ? DateTimeCodec.parseStoredDate(
+                    value.substring(0, 4) + '-' + value.substring(4, 6) + '-' + value.substring(6, 8)) : DateTimeCodec.INVALID;
+            int minute = DateTimeCodec.INVALID;
+            if (date != DateTimeCodec.INVALID && value.length() >= 13 && value.charAt(8) == 'T') {
+                minute = DateTimeCodec.parseTime(value.substring(9, 11) + ':' + value.substring(11, 13));
+                if (minute != DateTimeCodec.INVALID && value.endsWith("Z")) {
+                    long instant = DateTimeCodec.toEpochMillis(date, minute, TimeZone.getTimeZone("UTC"));
+                    date = DateTimeCodec.packedDateOf(instant, zone);
+                    minute = DateTimeCodec.minuteOfDayOf(instant, zone);
+                }
+            }
+            return new int[]{date, minute};
+        }
+
+        // Parses a DURATION value such as PT1H30M, P1D or P1W into whole minutes; seconds are dropped,
+        // and negative or malformed values count as no duration
+        private static int parseDuration(String value) {
+            int i = 0;
+            if (i < value.length() && value.charAt(i) == '+') {
+                i++;
+            } else if (i < value.length() && value.charAt(i) == '-') {
+                return 0;
+            }
+            if (i >= value.length() || Character.toUpperCase(value.charAt(i)) != 'P') {
+                return 0;
+            }
+            i++;
+            long minutes = 0;
+            long number = -1;
+            boolean time = false;
+            for (; i < value.length(); i++) {
+                char c = Character.toUpperCase(value.charAt(i));
+                if (c >= '0' && c <= '9') {
+                    number = Math.min((number < 0 ? 0 : number) * 10 + (c - '0'), Integer.MAX_VALUE);
+                    continue;
+                }
+                if (c == 'T' && number < 0) {
+                    time = true;
+                    continue;
+                }
+                if (number < 0) {
+                    return 0;
+                }
+                if (c == 'W' && !time) {
+                    minutes += number * 7 * 24 * 60;
+                } else if (c == 'D' && !time) {
+                    minutes += number * 24 * 60;
+                } else if (c == 'H' && time) {
+                    minutes += number * 60;
+                } else if (c == 'M' && time) {
+                    minutes += number;
+                } else if (c != 'S' || !time) {
+                    return 0;
+                }
+                number = -1;
+            }
+            return number < 0 ? (int) Math.min(minutes, Integer.MAX_VALUE) : 0;
+        }
+
+        // Joins folded continuation lines, which start with a space or tab
+        private String readUnfoldedLine() throws IOException {
+            String line = lookahead != null ? lookahead : in.readLine();
+            lookahead = null;
+            if (line == null) {
+                return null;
+            }
+            StringBuilder unfolded = null;
+            String next;
+            while ((next = in.readLine()) != null && !next.isEmpty()
+                    && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+                if (unfolded == null) {
+                    unfolded = new StringBuilder(line);
+                }
+                unfolded.append(next, 1, next.length());
+            }
+            lookahead = next;
+            return unfolded != null ? unfolded.toString() : line;
+        }
+
+        private static String unescape(String value) {
+            if (value.indexOf('\\') < 0) {
+                return value;
+            }
+            StringBuilder builder = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' && i + 1 < value.length()) {
+                    char next = value.charAt(++i);
+                    builder.append(next == 'n' || next == 'N' ? '\n' : next);
+                } else {
+                    builder.append(c);
+                }
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static class RecordWriter implements EventRecordWriter {
+        private final Writer out;
+        private final String stamp;
+        private int count;
+
+        RecordWriter(Writer out) throws IOException {
+            this.out = out;
+            long now = System.currentTimeMillis();
+            TimeZone utc = TimeZone.getTimeZone("UTC");
+            stamp = compactDate(DateTimeCodec.packedDateOf(now, utc)) + 'T'
+                    + compactTime(DateTimeCodec.minuteOfDayOf(now, utc)) + 'Z';
+            writeLine("BEGIN:VCALENDAR");
+            writeLine("VERSION:2.0");
+            writeLine("PRODID:-//Eventify//EventTracker//EN");
+        }
+
+        @Override
+        public void write(EventRecord record) throws IOException {
+            int date = DateTimeCodec.parseDate(record.getDate());
+            if (date == DateTimeCodec.INVALID) {
+                return; // DTSTART is required, so events without a usable date are left out
+            }
+            int minute = DateTimeCodec.parseTime(record.getTime());
+
+            writeLine("BEGIN:VEVENT");
+            writeLine("UID:" + stamp + "-" + (++count) + "@eventtracker");
+            writeLine("DTSTAMP:" + stamp);
+            // Floating local time, matching how the app stores events
+            writeLine(minute != DateTimeCodec.INVALID
+                    ? "DTSTART:" + compactDate(date) + 'T' + compactTime(minute)
+                    : "DTSTART;VALUE=DATE:" + compactDate(date));
+            if (minute != DateTimeCodec.INVALID && record.getDurationMinutes() > 0) {
+                // Counted in wall-clock minutes, the same way the reader measures it
+                TimeZone utc = TimeZone.getTimeZone("UTC");
+                long end = DateTimeCodec.toEpochMillis(date, minute, utc) + record.getDurationMinutes() * 60000L;
+                writeLine("DTEND:" + compactDate(DateTimeCodec.packedDateOf(end, utc)) + 'T'
+                        + compactTime(DateTimeCodec.minuteOfDayOf(end, utc)));
+            }
+            writeLine("SUMMARY:" + escape(record.getTitle()));
+            if (record.getDescription() != null && !record.getDescription().isEmpty()) {
+                writeLine("DESCRIPTION:" + escape(record.getDescription()));
+            }
+            if (record.isNotificationsEnabled()) {
+                writeLine("BEGIN:VALARM");
+                writeLine("ACTION:DISPLAY");
+                writeLine("DESCRIPTION:Reminder");
+                writeLine("TRIGGER:PT0M");
+                writeLine("END:VALARM");
+            }
+            writeLine("END:VEVENT");
+        }
+
+        // Writes a content line, folding it so no physical line exceeds the RFC 5545 limit
+        private void writeLine(String line) throws IOException {
+            int start = 0;
+            while (line.length() - start > MAX_LINE_LENGTH) {
+                int end = start + MAX_LINE_LENGTH;
+                if (Character.isHighSurrogate(line.charAt(end - 1))) {
+                    end--; // Keep surrogate pairs on one line
+                }
+                out.write(line, start, end - start);
+                out.write("\r\n ");
+                start = end;
+            }
+            out.write(line, start, line.length() - start);
+            out.write("\r\n");
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            StringBuilder builder = new StringBuilder(value.length() + 8);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\':
+                    case ',':
+                    case ';':
+                        builder.append('\\').append(c);
+                        break;
+                    case '\n':
+                        builder.append("\\n");
+                        break;
+                    case '\r':
+                        break;
+                    default:
+                        builder.append(c);
+                }
+            }
+            return builder.toString();
+        }
+
+        private static String compactDate(int packedDate) {
+            return DateTimeCodec.formatStoredDate(packedDate).replace("-", "");
+        }
+
+        private static String compactTime(int minuteOfDay) {
+            int hour = minuteOfDay / 60;
+            int minute = minuteOfDay % 60;
+            return "" + (hour / 10) + (hour % 10) + (minute / 10) + (minute % 10) + "00";
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writeLine("END:VCALENDAR");
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
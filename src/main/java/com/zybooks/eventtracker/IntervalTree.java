@@ -0,0 +1,203 @@
+package com.zybooks.eventtracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Index of events by the time they take up, which finds the events overlapping a span in O(log n + k)
+// time for k results. An AVL tree ordered by (start, id) in which every node also holds the latest end in
+// its subtree, so subtrees that end before the span are skipped whole. A map from event ID to node makes
+// replacing and removing an event O(log n) as well. Spans are half-open, and an event without a length
+// takes up the millisecond it starts in: two events at the same instant overlap, back-to-back ones do not.
+// Not thread-safe.
+public final class IntervalTree {
+
+    private static final class Node {
+        final int id;
+        final long start;
+        final long end;
+        long maxEnd;
+        int height = 1;
+        Node left;
+        Node right;
+
+        Node(int id, long start, long end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private Node root;
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // Method to add an event, or move it if it is already in the tree
+    public void put(int id, long start, long end) {
+        remove(id);
+        Node node = new Node(id, start, Math.max(end, start + 1));
+        root = insert(root, node);
+        nodes.put(id, node);
+    }
+
+    // Method to remove an event, returning false if it is not in the tree
+    public boolean remove(int id) {
+        Node node = nodes.remove(id);
+        if (node == null) {
+            return false;
+        }
+        root = delete(root, node.start, node.id);
+        return true;
+    }
+
+    public void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    // Method to find up to `limit` events that overlap the span from `start` to `end`, in start order,
+    // leaving out `excludeId`, the event being edited. A span without a length is taken as its first
+    // millisecond, as for stored events.
+    public List<Integer> findOverlapping(long start, long end, int excludeId, int limit) {
+        List<Integer> ids = new ArrayList<>(Math.min(limit, 16));
+        if (limit > 0) {
+            collect(root, start, Math.max(end, start + 1), excludeId, limit, ids);
+        }
+        return ids;
+    }
+
+    // Height of the tree, for the tests
+    int height() {
+        return height(root);
+    }
+
+    private static void collect(Node node, long start, long end, int excludeId, int limit, List<Integer> ids) {
+        // Nothing below this node ends after the span starts
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        collect(node.left, start, end, excludeId, limit, ids);
+        // This node and everything to its right start after the span ends
+        if (ids.size() == limit || node.start >= end) {
+            return;
+        }
+        if (node.end > start && node.id != excludeId) {
+            ids.add(node.id);
+            if (ids.size() == limit) {
+                return;
+            }
+        }
+        collect(node.right, start, end, excludeId, limit, ids);
+    }
+
+    private static int compare(long start, int id, Node node) {
+        int byStart = Long.compare(start, node.start);
+        return byStart != 0 ? byStart : Integer.compare(id, node.id);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private static Node delete(Node node, long start, int id) {
+        if (node == null) {
+            return null;
+        }
+        int order = compare(start, id, node);
+        if (order < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (order > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Replace the node with the first one of its right subtree
+            Node next = node.right;
+            while (next.left != null) {
+                next = next.left;
+            }
+            next.right = deleteFirst(node.right);
+            next.left = node.left;
+            return rebalance(next);
+        }
+        return rebalance(node);
+    }
+
+    private static Node deleteFirst(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteFirst(node.left);
+        return rebalance(node);
+    }
+
+    // Restores the AVL balance at a node whose subtrees changed, and its height and latest end
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node top = node.left;
+        node.left = top.right;
+        top.right = node;
+        update(node);
+        update(top);
+        return top;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node top = node.right;
+        node.right = top.left;
+        top.left = node;
+        update(node);
+        update(top);
+        return top;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node != null ? node.height : 0;
+    }
+}
@@ -1,10 +1,7 @@
 package com.zybooks.eventtracker;
 
 import androidx.appcompat.app.AppCompatActivity;
-import android.content.ContentValues;
 import android.content.Intent;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import android.widget.Button;
 import android.widget.EditText;
@@ -16,16 +13,30 @@ public class MainActivity extends AppCompatActivity {
     private EditText usernameEditText;
     private EditText passwordEditText;
 
-    // Database helper object
-    private DatabaseHelper dbHelper;
+    // Repository for login and registration
+    private UserRepository userRepository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
+        Metrics.init(this);
+
+        // Initialize the user repository; the database itself is opened lazily off the UI thread
+        userRepository = UserRepository.getInstance(this);
+
+        // With a saved session, go straight to the events without drawing the login screen;
+        // the event grid checks the session in the background
+        long sessionUserId = userRepository.getSavedSessionUserId();
+        if (sessionUserId != -1) {
+            Intent intent = new Intent(this, DataGridActivity.class);
+            intent.putExtra(DataGridActivity.EXTRA_USER_ID, sessionUserId);
+            intent.putExtra(DataGridActivity.EXTRA_RESUMED_SESSION, true);
+            startActivity(intent);
+            finish();
+            return;
+        }
 
-        // Initialize database helper
-        dbHelper = new DatabaseHelper(this);
+        setContentView(R.layout.activity_main);
 
         // Initialize UI elements
         usernameEditText = findViewById(R.id.usernameEditText);
@@ -52,23 +63,31 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // Open database for reading
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        // Query the database to check if the user exists
-        Cursor cursor = db.rawQuery("SELECT * FROM users WHERE username=? AND password=?", new String[]{username, password});
+        // Query the database off the UI thread to check if the user exists
+        userRepository.login(username, password, new RepositoryCallback<Long>() {
+            @Override
+            public void onSuccess(Long userId) {
+                if (isFinishing()) {
+                    return;
+                }
+                // Check if a match was found
+                if (userId != -1) {
+                    // Successful login, navigate to DataGridActivity with the authenticated user
+                    Intent intent = new Intent(MainActivity.this, DataGridActivity.class);
+                    intent.putExtra(DataGridActivity.EXTRA_USER_ID, (long) userId);
+                    startActivity(intent);
+                    finish();
+                } else {
+                    // Invalid login, show error message
+                    Toast.makeText(MainActivity.this, "Invalid username or password", Toast.LENGTH_SHORT).show();
+                }
+            }
 
-        // Check if a match was found
-        if (cursor != null && cursor.moveToFirst()) {
-            cursor.close();
-            // Successful login, navigate to DataGridActivity
-            Intent intent = new Intent(MainActivity.this, DataGridActivity.class);
-            startActivity(intent);
-            finish();
-        } else {
-            // Invalid login, show error message
-            Toast.makeText(this, "Invalid username or password", Toast.LENGTH_SHORT).show();
-        }
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(MainActivity.this, "Error logging in: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     // Method to handle user registration
@@ -83,37 +102,33 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // Open database for writing
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-
-        // Query the database to check if the username already exists
-        Cursor cursor = db.rawQuery("SELECT * FROM users WHERE username=?", new String[]{username});
-
-        // Check if a match was found
-        if (cursor != null && cursor.moveToFirst()) {
-            cursor.close();
-            // Username already exists, show error message
-            Toast.makeText(this, "Username already exists", Toast.LENGTH_SHORT).show();
-        } else {
-            // Username does not exist, create new user
-            ContentValues values = new ContentValues();
-            values.put("username", username);
-            values.put("password", password);
-
-            // Insert new user into database
-            long newRowId = db.insert("users", null, values);
-
-            // Check if the insert was successful
-            if (newRowId != -1) {
-                Toast.makeText(this, "Account created successfully", Toast.LENGTH_SHORT).show();
-                // Successful registration, navigate to DataGridActivity
-                Intent intent = new Intent(MainActivity.this, DataGridActivity.class);
-                startActivity(intent);
-                finish();
-            } else {
-                // Error occurred during registration, show error message
-                Toast.makeText(this, "Error creating account", Toast.LENGTH_SHORT).show();
+        // Check the username and insert the new user off the UI thread
+        userRepository.register(username, password, new RepositoryCallback<Long>() {
+            @Override
+            public void onSuccess(Long newRowId) {
+                if (isFinishing()) {
+                    return;
+                }
+                if (newRowId == UserRepository.USERNAME_TAKEN) {
+                    // Username already exists, show error message
+                    Toast.makeText(MainActivity.this, "Username already exists", Toast.LENGTH_SHORT).show();
+                } else if (newRowId != -1) {
+                    Toast.makeText(MainActivity.this, "Account created successfully", Toast.LENGTH_SHORT).show();
+                    // Successful registration, navigate to DataGridActivity as the new user
+                    Intent intent = new Intent(MainActivity.this, DataGridActivity.class);
+                    intent.putExtra(DataGridActivity.EXTRA_USER_ID, (long) newRowId);
+                    startActivity(intent);
+                    finish();
+                } else {
+                    // Error occurred during registration, show error message
+                    Toast.makeText(MainActivity.this, "Error creating account", Toast.LENGTH_SHORT).show();
+                }
             }
-        }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(MainActivity.this, "Error creating account: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
     }
 }
@@ -0,0 +1,262 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Process-wide timing metrics. Each instrumented operation has a named Timer that records a latency
+// histogram, the number of rows it handled and, where measured, the objects it allocated. While
+// recording, synchronous timers also mark a trace section so they show up in system traces.
+//
+// Recording is off unless enabled (it starts on in debuggable builds). When off, start() is one
+// volatile read and stop() one comparison, with no allocation, so the calls can stay in release
+// builds. The report is available from the event grid (long-press the list title) and through
+// `adb shell dumpsys activity com.zybooks.eventtracker/.DataGridActivity metrics [enable|disable|reset]`.
+public final class Metrics {
+
+    private static final List<Timer> TIMERS = new ArrayList<>();
+    private static volatile boolean enabled;
+    private static boolean initialized;
+    private static long enabledAt;
+
+    private Metrics() {
+    }
+
+    // Returns the timer with the given name, creating it on first use. Timers are meant to be kept
+    // in static fields rather than looked up on every call.
+    public static Timer timer(String name) {
+        synchronized (TIMERS) {
+            for (Timer timer : TIMERS) {
+                if (timer.name.equals(name)) {
+                    return timer;
+                }
+            }
+            Timer timer = new Timer(name);
+            TIMERS.add(timer);
+            return timer;
+        }
+    }
+
+    // Method to turn recording on for debuggable builds, the first time it is called
+    public static synchronized void init(Context context) {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            setEnabled(true);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Method to turn recording on or off. Allocation counting is a runtime-wide setting, so it
+    // only runs while recording.
+    @SuppressWarnings("deprecation")
+    public static synchronized void setEnabled(boolean enable) {
+        initialized = true;
+        if (enable == enabled) {
+            return;
+        }
+        if (enable) {
+            Debug.startAllocCounting();
+            enabledAt = SystemClock.elapsedRealtime();
+        } else {
+            Debug.stopAllocCounting();
+        }
+        enabled = enable;
+    }
+
+    // Method to clear every timer
+    public static void reset() {
+        synchronized (TIMERS) {
+            for (Timer timer : TIMERS) {
+                timer.reset();
+            }
+        }
+        enabledAt = SystemClock.elapsedRealtime();
+    }
+
+    // Number of objects allocated so far by the calling thread while recording, or 0 when not
+    // recording. The difference between two calls is what the code in between allocated.
+    @SuppressWarnings("deprecation")
+    public static int threadAllocations() {
+        return enabled ? Debug.getThreadAllocCount() : 0;
+    }
+
+    // Records the time from `startNanos` (from startAsync()) until the view next draws, such as a
+    // dialog appearing or the list showing new rows. The view is invalidated so a frame is drawn
+    // even if nothing in it changed.
+    public static void stopOnNextDraw(View view, Timer timer, long startNanos, int rows) {
+        if (startNanos == 0) {
+            return;
+        }
+        ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                timer.stopAsync(startNanos, rows);
+                // Listeners cannot be removed while the draw is being dispatched
+                ViewTreeObserver.OnDrawListener self = this;
+                view.post(() -> view.getViewTreeObserver().removeOnDrawListener(self));
+            }
+        };
+        view.getViewTreeObserver().addOnDrawListener(listener);
+        view.invalidate();
+    }
+
+    // Method to write a table of every timer that has recorded something
+    public static void dump(PrintWriter writer) {
+        long seconds = enabled ? (SystemClock.elapsedRealtime() - enabledAt) / 1000 : 0;
+        writer.println("Metrics: " + (enabled ? "recording for " + seconds + " s" : "not recording"));
+        writer.println(String.format(Locale.US, "%-26s %7s %9s %9s %9s %9s %9s %9s %9s",
+                "timer", "count", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms", "rows", "allocs/op"));
+        List<Timer> timers;
+        synchronized (TIMERS) {
+            timers = new ArrayList<>(TIMERS);
+        }
+        for (Timer timer : timers) {
+            Histogram latency = timer.latency;
+            long count = latency.getCount();
+            if (count == 0) {
+                continue;
+            }
+            long allocationSamples = timer.allocationSamples.get();
+            writer.println(String.format(Locale.US, "%-26s %7d %9.2f %9.2f %9.2f %9.2f %9.2f %9d %9s",
+                    timer.name, count,
+                    latency.getMean() / 1e6,
+                    latency.getPercentile(0.5) / 1e6,
+                    latency.getPercentile(0.9) / 1e6,
+                    latency.getPercentile(0.99) / 1e6,
+                    latency.getMax() / 1e6,
+                    timer.rows.get(),
+                    allocationSamples == 0 ? "-" : String.valueOf(timer.allocations.get() / allocationSamples)));
+        }
+        writer.flush();
+    }
+
+    // Returns the report written by dump() as text
+    public static String report() {
+        StringWriter text = new StringWriter();
+        dump(new PrintWriter(text));
+        return text.toString();
+    }
+
+    // Latency, row and allocation counts for one named operation
+    public static final class Timer {
+        private final String name;
+        private final Histogram latency = new Histogram();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong allocations = new AtomicLong();
+        private final AtomicLong allocationSamples = new AtomicLong();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        // Starts timing on the calling thread and opens a trace section. Returns 0 when not
+        // recording; pass the result to stop() on the same thread, in a finally block.
+        public long start() {
+            if (!enabled) {
+                return 0;
+            }
+            Trace.beginSection(name);
+            return System.nanoTime();
+        }
+
+        public void stop(long startNanos) {
+            stop(startNanos, 0);
+        }
+
+        // Records the time since start() and the number of rows handled, and closes the trace section
+        public void stop(long startNanos, int rowCount) {
+            if (startNanos == 0) {
+                return;
+            }
+            latency.record(System.nanoTime() - startNanos);
+            rows.addAndGet(rowCount);
+            Trace.endSection();
+        }
+
+        // Like stop(), counting the rows of a query. Asking for the count runs the query, so the time
+        // includes executing it and not just preparing it.
+        public void stop(long startNanos, Cursor cursor) {
+            if (startNanos == 0) {
+                return;
+            }
+            stop(startNanos, cursor != null ? cursor.getCount() : 0);
+        }
+
+        // Starts timing an operation that finishes on another thread or in a later frame. Returns 0
+        // when not recording; pass the result to stopAsync().
+        public long startAsync() {
+            if (!enabled) {
+                return 0;
+            }
+            long startNanos = System.nanoTime();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.beginAsyncSection(name, (int) startNanos);
+            }
+            return startNanos;
+        }
+
+        public void stopAsync(long startNanos, int rowCount) {
+            if (startNanos == 0) {
+                return;
+            }
+            latency.record(System.nanoTime() - startNanos);
+            rows.addAndGet(rowCount);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(name, (int) startNanos);
+            }
+        }
+
+        // Records the objects allocated during one operation, measured with threadAllocations()
+        public void recordAllocations(int count) {
+            if (!enabled) {
+                return;
+            }
+            allocations.addAndGet(count);
+            allocationSamples.incrementAndGet();
+        }
+
+        private void reset() {
+            latency.reset();
+            rows.set(0);
+            allocations.set(0);
+            allocationSamples.set(0);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.zybooks.eventtracker;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Salted PBKDF2 password hashes. A hash is stored as "pbkdf2-<prf>$<iterations>$<salt hex>$<hash hex>",
+// so hashes made with an older cost or function still verify after the settings change. HMAC-SHA256
+// is used where the platform has it (API 26 and later) and HMAC-SHA1 otherwise. Comparisons take
+// the same time however many bytes match. Also makes the random tokens of login sessions, which are
+// stored only as a plain SHA-256: with 256 random bits there is nothing to guess, so no slow hash is
+// needed. Safe to use from any thread.
+public final class PasswordHasher {
+
+    // Bounds for the iteration count chosen by calibrate()
+    public static final int MIN_ITERATIONS = 10_000;
+    public static final int MAX_ITERATIONS = 1_000_000;
+
+    private static final int SALT_BYTES = 16;
+    private static final int TOKEN_BYTES = 32;
+    private static final int HASH_BITS = 256;
+    private static final String PREFIX = "pbkdf2-";
+    private static final String SHA256 = "sha256";
+    private static final String SHA1 = "sha1";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+    private final String prf;
+    // Hash of a random password, checked against when a username is unknown so that the reply
+    // takes as long as for a real user
+    private volatile String dummyHash;
+
+    public PasswordHasher(int iterations) {
+        this.iterations = iterations;
+        this.prf = isAvailable(SHA256) ? SHA256 : SHA1;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // Returns a new salted hash of the password in the stored format
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = derive(prf, password, salt, iterations, HASH_BITS);
+        return PREFIX + prf + '$' + iterations + '$' + toHex(salt) + '$' + toHex(hash);
+    }
+
+    // Returns a new random session token as hex
+    public static String newSessionToken() {
+        byte[] token = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(token);
+        return toHex(token);
+    }
+
+    // Returns the form of a session token that is stored in the database
+    public static String hashSessionToken(String token) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android and Java platform must provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Returns true if the password matches a stored hash; malformed hashes never match
+    public static boolean verify(String password, String encoded) {
+        if (password == null || encoded == null || !encoded.startsWith(PREFIX)) {
+            return false;
+        }
+        String[] parts = encoded.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 4 || !(parts[0].equals(SHA256) || parts[0].equals(SHA1))) {
+            return false;
+        }
+        int storedIterations;
+        try {
+            storedIterations = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        byte[] salt = fromHex(parts[2]);
+        byte[] expected = fromHex(parts[3]);
+        if (storedIterations < 1 || salt == null || expected == null || expected.length == 0) {
+            return false;
+        }
+        byte[] actual = derive(parts[0], password, salt, storedIterations, expected.length * 8);
+        return constantTimeEquals(actual, expected);
+    }
+
+    // Spends the same time as verifying a real hash, for usernames that do not exist
+    public void verifyUnknownUser(String password) {
+        String dummy = dummyHash;
+        if (dummy == null) {
+            dummy = hash(Long.toHexString(RANDOM.nextLong()));
+            dummyHash = dummy;
+        }
+        verify(password == null ? "" : password, dummy);
+    }
+
+    // Returns true if a stored value is not a hash made with the current settings, including
+    // legacy plaintext passwords
+    public boolean needsRehash(String encoded) {
+        return encoded == null || !encoded.startsWith(PREFIX + prf + '$' + iterations + '$');
+    }
+
+    // Compares two byte arrays in time that depends only on their lengths
+    public static boolean constantTimeEquals(byte[] a, byte[] b) {
+        if (a == null || b == null) {
+            return false;
+        }
+        int difference = a.length ^ b.length;
+        for (int i = 0; i < a.length && i < b.length; i++) {
+            difference |= a[i] ^ b[i];
+        }
+        return difference == 0;
+    }
+
+    // Compares a legacy plaintext password without leaking how much of it matched
+    public static boolean plaintextEquals(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        return constantTimeEquals(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Measures this device and returns the iteration count whose hash takes about targetMillis,
+    // within MIN_ITERATIONS and MAX_ITERATIONS
+    public static int calibrate(long targetMillis) {
+        String prf = isAvailable(SHA256) ? SHA256 : SHA1;
+        byte[] salt = new byte[SALT_BYTES];
+        int trial = MIN_ITERATIONS;
+        // Warm up once, then time the best of a few runs so a slow first run does not skew the result
+        derive(prf, "calibrate", salt, trial, HASH_BITS);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            derive(prf, "calibrate", salt, trial, HASH_BITS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long scaled = trial * (targetMillis * 1_000_000L) / Math.max(best, 1);
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, scaled));
+    }
+
+    private static byte[] derive(String prf, String password, byte[] salt, int iterations, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance(algorithmName(prf)).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 unavailable", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static boolean isAvailable(String prf) {
+        try {
+            SecretKeyFactory.getInstance(algorithmName(prf));
+            return true;
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    private static String algorithmName(String prf) {
+        return prf.equals(SHA256) ? "PBKDF2WithHmacSHA256" : "PBKDF2WithHmacSHA1";
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    // Returns null if the text is not valid hex
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,7 @@
+package com.zybooks.eventtracker;
+
+// Reports how many events a long-running import or export has processed so far
+public interface ProgressListener {
+
+    void onProgress(int processed);
+}
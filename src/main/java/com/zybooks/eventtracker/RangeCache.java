@@ -0,0 +1,58 @@
+package com.zybooks.eventtracker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Small least-recently-used cache of the events in calendar ranges, so paging back and forth between
+// neighbouring days, weeks or months is served from memory. Any write clears it; like EventCache, a
+// version stops results of queries that overlapped a write from being stored. Safe to call from any thread.
+public final class RangeCache {
+
+    private final Map<CalendarRange, List<Event>> ranges;
+    // Bumped by every write, so results of queries that overlapped a write are not stored
+    private long version;
+
+    public RangeCache(int maxRanges) {
+        ranges = new LinkedHashMap<CalendarRange, List<Event>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CalendarRange, List<Event>> eldest) {
+                return size() > maxRanges;
+            }
+        };
+    }
+
+    // Version to pass to put() for a query that is about to start
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    // Returns a copy of the events of a range, marking it as recently used, or null if it is not cached
+    public synchronized List<Event> get(CalendarRange range) {
+        List<Event> events = ranges.get(range);
+        return events != null ? new ArrayList<>(events) : null;
+    }
+
+    // Returns true if the range is cached, without marking it as recently used
+    public synchronized boolean contains(CalendarRange range) {
+        return ranges.containsKey(range);
+    }
+
+    // Stores the events of a range as read from the database, unless a write happened since the query started
+    public synchronized void put(long queryVersion, CalendarRange range, List<Event> events) {
+        if (queryVersion == version) {
+            ranges.put(range, new ArrayList<>(events));
+        }
+    }
+
+    // Drops every cached range after a write
+    public synchronized void invalidate() {
+        version++;
+        ranges.clear();
+    }
+
+    public synchronized int size() {
+        return ranges.size();
+    }
+}
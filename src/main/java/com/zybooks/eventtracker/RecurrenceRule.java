@@ -0,0 +1,285 @@
+package com.zybooks.eventtracker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+// Immutable repeat pattern of a recurring event: the subset of the iCalendar RRULE made of FREQ (DAILY,
+// WEEKLY or MONTHLY), INTERVAL, BYDAY for weekly rules, and COUNT or UNTIL. Stored as its RRULE text.
+// The rule only decides which days an occurrence falls on; the time of day comes from the series.
+// Weeks start on Monday, and a monthly rule repeats on the day of the month of the first occurrence,
+// skipping months that are too short, as RFC 5545 does.
+public final class RecurrenceRule {
+
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY
+    }
+
+    // Returned by nextOnOrAfter() when no day matches
+    public static final long NONE = Long.MIN_VALUE;
+
+    // BYDAY codes, in the bit order of the day mask: bit 0 is Monday
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+    private static final int ALL_DAYS = (1 << 7) - 1;
+
+    private final Frequency frequency;
+    private final int interval;
+    private final int dayMask;
+    private final int count;
+    private final int until;
+
+    // `dayMask` selects weekdays for weekly rules (0 means the weekday of the first occurrence), `count`
+    // limits the number of occurrences (0 for no limit), and `until` is the packed last date (0 for none)
+    public RecurrenceRule(Frequency frequency, int interval, int dayMask, int count, int until) {
+        if (frequency == null) {
+            throw new IllegalArgumentException("Missing FREQ");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("INTERVAL must be at least 1: " + interval);
+        }
+        if (dayMask < 0 || dayMask > ALL_DAYS || (dayMask != 0 && frequency != Frequency.WEEKLY)) {
+            throw new IllegalArgumentException("BYDAY is only supported for weekly rules");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("COUNT must not be negative: " + count);
+        }
+        if (count > 0 && until != 0) {
+            throw new IllegalArgumentException("COUNT and UNTIL cannot both be set");
+        }
+        if (until != 0 && DateTimeCodec.fromEpochDay(DateTimeCodec.toEpochDay(until)) != until) {
+            throw new IllegalArgumentException("Invalid UNTIL date: " + until);
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.dayMask = dayMask;
+        this.count = count;
+        this.until = until;
+    }
+
+    // Returns a rule that repeats every day, week or month with no end
+    public static RecurrenceRule every(Frequency frequency) {
+        return new RecurrenceRule(frequency, 1, 0, 0, 0);
+    }
+
+    // Parses RRULE text such as FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE;UNTIL=20251231. An optional RRULE:
+    // prefix is accepted, and UNTIL may carry a time, which is ignored. Throws IllegalArgumentException
+    // for anything outside the supported subset.
+    public static RecurrenceRule parse(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Missing rule");
+        }
+        String rule = text.trim();
+        if (rule.regionMatches(true, 0, "RRULE:", 0, 6)) {
+            rule = rule.substring(6);
+        }
+        Frequency frequency = null;
+        int interval = 1;
+        int dayMask = 0;
+        int count = 0;
+        int until = 0;
+        for (String part : rule.split(";")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            int equals = part.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Malformed rule part: " + part);
+            }
+            String name = part.substring(0, equals).toUpperCase(Locale.US);
+            String value = part.substring(equals + 1).toUpperCase(Locale.US);
+            switch (name) {
+                case "FREQ":
+                    try {
+                        frequency = Frequency.valueOf(value);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unsupported FREQ: " + value);
+                    }
+                    break;
+                case "INTERVAL":
+                    interval = parseNumber(name, value);
+                    break;
+                case "COUNT":
+                    count = parseNumber(name, value);
+                    break;
+                case "UNTIL":
+                    until = parseUntil(value);
+                    break;
+                case "BYDAY":
+                    for (String day : value.split(",")) {
+                        int index = indexOfDay(day);
+                        if (index < 0) {
+                            throw new IllegalArgumentException("Unsupported BYDAY value: " + day);
+                        }
+                        dayMask |= 1 << index;
+                    }
+                    break;
+                case "WKST":
+                    // Only Monday, the default, is supported
+                    if (!value.equals("MO")) {
+                        throw new IllegalArgumentException("Unsupported WKST: " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported rule part: " + name);
+            }
+        }
+        return new RecurrenceRule(frequency, interval, dayMask, count, until);
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    // Weekdays of a weekly rule, bit 0 for Monday to bit 6 for Sunday; 0 means the weekday of the first occurrence
+    public int getDayMask() {
+        return dayMask;
+    }
+
+    // Maximum number of occurrences, or 0 for no limit
+    public int getCount() {
+        return count;
+    }
+
+    // Packed date of the last possible occurrence, or 0 for no end date
+    public int getUntil() {
+        return until;
+    }
+
+    // Returns the first day on or after `fromDay` that the pattern selects for a series whose first
+    // occurrence is on `startDay`, ignoring COUNT and UNTIL. Days are days since 1970-01-01. Runs in
+    // constant time, however far `fromDay` is from the start, so a window can be expanded without
+    // walking the series from its beginning.
+    public long nextOnOrAfter(long startDay, long fromDay) {
+        long day = Math.max(startDay, fromDay);
+        switch (frequency) {
+            case DAILY:
+                return startDay + ceilDiv(day - startDay, interval) * interval;
+            case WEEKLY:
+                return nextWeekly(startDay, day);
+            default:
+                return nextMonthly(startDay, day);
+        }
+    }
+
+    // RRULE text of the rule, with INTERVAL left out when it is 1
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("FREQ=").append(frequency.name());
+        if (interval != 1) {
+            text.append(";INTERVAL=").append(interval);
+        }
+        if (dayMask != 0) {
+            text.append(";BYDAY=");
+            for (int i = 0, written = 0; i < DAY_CODES.length; i++) {
+                if ((dayMask & (1 << i)) != 0) {
+                    text.append(written++ > 0 ? "," : "").append(DAY_CODES[i]);
+                }
+            }
+        }
+        if (count != 0) {
+            text.append(";COUNT=").append(count);
+        }
+        if (until != 0) {
+            text.append(";UNTIL=").append(until);
+        }
+        return text.toString();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RecurrenceRule)) return false;
+        RecurrenceRule other = (RecurrenceRule) o;
+        return frequency == other.frequency && interval == other.interval && dayMask == other.dayMask
+                && count == other.count && until == other.until;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((((frequency.hashCode() * 31) + interval) * 31 + dayMask) * 31 + count) * 31 + until;
+    }
+
+    private long nextWeekly(long startDay, long day) {
+        int mask = dayMask != 0 ? dayMask : 1 << DateTimeCodec.dayOfWeek(startDay);
+        long firstWeek = startDay - DateTimeCodec.dayOfWeek(startDay);
+        // At most two passes: the rest of the current active week, then the next active week
+        while (true) {
+            long week = day - DateTimeCodec.dayOfWeek(day);
+            long weeks = (week - firstWeek) / 7;
+            if (weeks % interval != 0) {
+                day = firstWeek + ceilDiv(weeks, interval) * interval * 7;
+                week = day;
+            }
+            for (; day < week + 7; day++) {
+                if ((mask & (1 << DateTimeCodec.dayOfWeek(day))) != 0) {
+                    return day;
+                }
+            }
+        }
+    }
+
+    private long nextMonthly(long startDay, long day) {
+        int start = DateTimeCodec.fromEpochDay(startDay);
+        int from = DateTimeCodec.fromEpochDay(day);
+        int dayOfMonth = start % 100;
+        long firstMonth = monthIndex(start);
+        long month = monthIndex(from) + (from % 100 > dayOfMonth ? 1 : 0);
+        // Months too short for the day are skipped; the start month always has it, and so does the same
+        // month of a later year, or at worst the next leap year for the 29th of February
+        long first = ceilDiv(month - firstMonth, interval);
+        for (long k = first; k < first + 12 * 400; k++) {
+            long candidate = firstMonth + k * interval;
+            int year = (int) Math.floorDiv(candidate, 12L);
+            int monthOfYear = (int) Math.floorMod(candidate, 12L) + 1;
+            if (dayOfMonth <= DateTimeCodec.lengthOfMonth(year, monthOfYear)) {
+                return DateTimeCodec.toEpochDay(year * 10000 + monthOfYear * 100 + dayOfMonth);
+            }
+        }
+        return NONE;
+    }
+
+    private static long monthIndex(int packedDate) {
+        return (packedDate / 10000) * 12L + packedDate / 100 % 100 - 1;
+    }
+
+    // Division rounding up, for non-negative numerators
+    private static long ceilDiv(long numerator, long denominator) {
+        return (numerator + denominator - 1) / denominator;
+    }
+
+    private static int parseNumber(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    // UNTIL is yyyyMMdd, optionally followed by a time, which is ignored
+    private static int parseUntil(String value) {
+        String date = value.length() > 8 && value.charAt(8) == 'T' ? value.substring(0, 8) : value;
+        if (date.length() != 8) {
+            throw new IllegalArgumentException("Invalid UNTIL: " + value);
+        }
+        int packed = DateTimeCodec.parseStoredDate(date.substring(0, 4) + "-" + date.substring(4, 6) + "-" + date.substring(6));
+        if (packed == DateTimeCodec.INVALID) {
+            throw new IllegalArgumentException("Invalid UNTIL: " + value);
+        }
+        return packed;
+    }
+
+    private static int indexOfDay(String code) {
+        for (int i = 0; i < DAY_CODES.length; i++) {
+            if (DAY_CODES[i].equals(code)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,56 @@
+package com.zybooks.eventtracker;
+
+// Immutable reminder for one event with notifications enabled, due at the event's start. A reminder
+// whose text could not be sent is retried later as a copy that keeps the original due time.
+public final class Reminder {
+
+    private final int eventId;
+    private final long dueAt;
+    private final long firstDueAt;
+    private final String title;
+    private final String time;
+
+    public Reminder(int eventId, long dueAt, String title, String time) {
+        this(eventId, dueAt, dueAt, title, time);
+    }
+
+    private Reminder(int eventId, long dueAt, long firstDueAt, String title, String time) {
+        this.eventId = eventId;
+        this.dueAt = dueAt;
+        this.firstDueAt = firstDueAt;
+        this.title = title;
+        this.time = time;
+    }
+
+    // Returns a copy of this reminder that is due again at the given time
+    public Reminder retryAt(long dueAt) {
+        return new Reminder(eventId, dueAt, firstDueAt, title, time);
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    // Epoch milliseconds at which the reminder is sent
+    public long getDueAt() {
+        return dueAt;
+    }
+
+    // Epoch milliseconds at which the reminder was first due, before any retry
+    public long getFirstDueAt() {
+        return firstDueAt;
+    }
+
+    // Whether an earlier attempt to send this reminder failed
+    public boolean isRetry() {
+        return dueAt != firstDueAt;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getTime() {
+        return time;
+    }
+}
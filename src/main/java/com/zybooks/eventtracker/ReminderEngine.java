@@ -0,0 +1,206 @@
+package com.zybooks.eventtracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Time-ordered queue of pending reminders. Only the earliest reminder is armed with the Waker, so the
+// app is woken once per due minute instead of polling, and adding, moving, or removing a reminder
+// is a logarithmic update that re-arms the Waker only when the earliest reminder changes.
+// Reminders due in the same minute are sent as one message, and a message that fails is tried again
+// a few minutes later until its reminders are too late to send. Nothing is sent while there is no
+// destination. Safe to call from any thread.
+public final class ReminderEngine {
+
+    // Wakes the app at a given time so deliverDue() can run
+    public interface Waker {
+        void wakeAt(long timeMillis);
+
+        void cancel();
+    }
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long NOT_ARMED = Long.MIN_VALUE;
+    // How long after a failed send its reminders are tried again
+    static final long RETRY_DELAY_MILLIS = 5 * MILLIS_PER_MINUTE;
+
+    // Due time first, event ID to keep reminders at the same time distinct
+    private static final Comparator<Reminder> DUE_ORDER = (a, b) -> {
+        int byTime = Long.compare(a.getDueAt(), b.getDueAt());
+        return byTime != 0 ? byTime : Integer.compare(a.getEventId(), b.getEventId());
+    };
+
+    private final SmsSender sender;
+    private final Waker waker;
+    private final long maxLateness;
+    // Number the texts go to, or null while there is none
+    private String destination;
+
+    private final TreeSet<Reminder> queue = new TreeSet<>(DUE_ORDER);
+    private final Map<Integer, Reminder> byEvent = new HashMap<>();
+    private long armedAt = NOT_ARMED;
+
+    // Reminders more than maxLateness past their first due time when delivery runs are dropped instead
+    // of sent
+    public ReminderEngine(SmsSender sender, Waker waker, String destination, long maxLateness) {
+        this.sender = sender;
+        this.waker = waker;
+        this.destination = destination;
+        this.maxLateness = maxLateness;
+    }
+
+    // Changes the number later texts go to; null stops sending until a number is set again
+    public synchronized void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public synchronized String getDestination() {
+        return destination;
+    }
+
+    // Adds the reminder, replacing any earlier reminder for the same event
+    public synchronized void schedule(Reminder reminder) {
+        Reminder previous = byEvent.put(reminder.getEventId(), reminder);
+        if (previous != null) {
+            queue.remove(previous);
+        }
+        queue.add(reminder);
+        rearm();
+    }
+
+    // Removes the reminder of an event, if there is one
+    public synchronized void cancel(int eventId) {
+        Reminder previous = byEvent.remove(eventId);
+        if (previous != null) {
+            queue.remove(previous);
+            rearm();
+        }
+    }
+
+    // Replaces the whole queue, used when reminders are loaded from the database
+    public synchronized void replaceAll(Collection<Reminder> reminders) {
+        queue.clear();
+        byEvent.clear();
+        for (Reminder reminder : reminders) {
+            Reminder previous = byEvent.put(reminder.getEventId(), reminder);
+            if (previous != null) {
+                queue.remove(previous);
+            }
+            queue.add(reminder);
+        }
+        rearm();
+    }
+
+    // Sends every reminder due by the end of the current minute, one message per minute, and arms the
+    // Waker for the next one. Reminders in a message that fails are queued again RETRY_DELAY_MILLIS
+    // later. Returns the number of reminders sent.
+    public int deliverDue(long now) {
+        List<Reminder> due = new ArrayList<>();
+        String destination;
+        synchronized (this) {
+            destination = this.destination;
+            if (destination == null) {
+                return 0;
+            }
+            long endOfMinute = (Math.floorDiv(now, MILLIS_PER_MINUTE) + 1) * MILLIS_PER_MINUTE;
+            while (!queue.isEmpty() && queue.first().getDueAt() < endOfMinute) {
+                Reminder reminder = queue.pollFirst();
+                byEvent.remove(reminder.getEventId());
+                if (now - reminder.getFirstDueAt() <= maxLateness) {
+                    due.add(reminder);
+                }
+            }
+            rearm();
+        }
+
+        // Send outside the lock so slow sends do not hold up scheduling
+        int sent = 0;
+        int start = 0;
+        while (start < due.size()) {
+            long minute = Math.floorDiv(due.get(start).getDueAt(), MILLIS_PER_MINUTE);
+            int end = start + 1;
+            while (end < due.size() && Math.floorDiv(due.get(end).getDueAt(), MILLIS_PER_MINUTE) == minute) {
+                end++;
+            }
+            List<Reminder> batch = due.subList(start, end);
+            try {
+                sender.send(destination, formatMessage(batch));
+                sent += batch.size();
+            } catch (RuntimeException e) {
+                // The remaining batches still go out, and this one is tried again later
+                retry(batch, now + RETRY_DELAY_MILLIS);
+            }
+            start = end;
+        }
+        return sent;
+    }
+
+    // First due time of the earliest reminder waiting to be retried after a failed send, or -1 if
+    // there is none
+    public synchronized long oldestRetryDueAt() {
+        long oldest = -1;
+        for (Reminder reminder : queue) {
+            if (reminder.isRetry() && (oldest == -1 || reminder.getFirstDueAt() < oldest)) {
+                oldest = reminder.getFirstDueAt();
+            }
+        }
+        return oldest;
+    }
+
+    // Due time of the earliest pending reminder, or -1 if there is none
+    public synchronized long nextDueAt() {
+        return queue.isEmpty() ? -1 : queue.first().getDueAt();
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    // Builds the text of one message for reminders due in the same minute
+    static String formatMessage(List<Reminder> batch) {
+        if (batch.size() == 1) {
+            return "Event reminder: " + describe(batch.get(0));
+        }
+        StringBuilder message = new StringBuilder("Event reminders:");
+        for (Reminder reminder : batch) {
+            message.append('\n').append(describe(reminder));
+        }
+        return message.toString();
+    }
+
+    private static String describe(Reminder reminder) {
+        String time = reminder.getTime();
+        return time == null || time.isEmpty() ? reminder.getTitle() : reminder.getTitle() + " at " + time;
+    }
+
+    // Queues the reminders of a failed message again, unless their events were given a new reminder
+    // while it was being sent
+    private synchronized void retry(List<Reminder> batch, long dueAt) {
+        for (Reminder reminder : batch) {
+            if (!byEvent.containsKey(reminder.getEventId())) {
+                Reminder again = reminder.retryAt(dueAt);
+                byEvent.put(again.getEventId(), again);
+                queue.add(again);
+            }
+        }
+        rearm();
+    }
+
+    // Points the Waker at the earliest reminder, touching it only when that time changes
+    private void rearm() {
+        long next = queue.isEmpty() ? NOT_ARMED : queue.first().getDueAt();
+        if (next == armedAt) {
+            return;
+        }
+        armedAt = next;
+        if (next == NOT_ARMED) {
+            waker.cancel();
+        } else {
+            waker.wakeAt(next);
+        }
+    }
+}
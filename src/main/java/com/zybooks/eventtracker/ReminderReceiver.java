@@ -0,0 +1,39 @@
+package com.zybooks.eventtracker;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.util.concurrent.RejectedExecutionException;
+
+// Receives the reminder alarm, and the boot broadcast that clears all alarms, and hands the work
+// to a background thread while keeping the broadcast alive until it is done
+public class ReminderReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Context appContext = context.getApplicationContext();
+        boolean booted = Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction());
+        PendingResult result = goAsync();
+        try {
+            AppExecutors.getInstance().diskRead().execute(() -> {
+                try {
+                    ReminderScheduler scheduler = ReminderScheduler.getInstance(appContext);
+                    if (booted) {
+                        scheduler.reload();
+                    } else {
+                        scheduler.onAlarm();
+                    }
+                } catch (RuntimeException e) {
+                    Log.e("ReminderReceiver", "Error handling reminders", e);
+                } finally {
+                    result.finish();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e("ReminderReceiver", "Reminder work rejected", e);
+            result.finish();
+        }
+    }
+}
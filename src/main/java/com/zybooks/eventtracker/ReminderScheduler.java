@@ -0,0 +1,271 @@
+package com.zybooks.eventtracker;
+
+import android.Manifest;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.os.Build;
+import android.telephony.SmsManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+// Connects the ReminderEngine to the app: loads pending reminders from the database, keeps them in
+// step with event edits, wakes the app with a single AlarmManager alarm for the next due reminder,
+// and sends the texts with SmsManager. Only the events of the user with a saved session get reminders,
+// texted to the number that user set; until one is set nothing is scheduled or sent. Methods that
+// touch the database run on a background thread.
+// Occurrences of recurring events are expanded only up to a horizon a week ahead; the alarm also wakes
+// the app halfway there, and the reminders are reloaded with the horizon moved forward.
+public final class ReminderScheduler {
+
+    private static final String PREFS_NAME = "reminders";
+    // Reminders due at or before this instant have already been handled
+    private static final String KEY_DELIVERED_THROUGH = "delivered_through";
+
+    // Reminders missed by more than this, for example while the phone was off, are not sent late
+    private static final long MAX_LATENESS_MILLIS = 60 * 60 * 1000L;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    // How far ahead reminders for occurrences of recurring events are created
+    private static final long SERIES_HORIZON_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
+    private static volatile ReminderScheduler instance;
+
+    private final DatabaseHelper dbHelper;
+    private final SharedPreferences prefs;
+    private final AlarmWaker waker;
+    private final ReminderEngine engine;
+    private final UserRepository userRepository;
+    private boolean loaded;
+    // User whose reminders are loaded, or -1 if nobody is logged in
+    private long loadedUserId = -1;
+    // When the series horizon must be moved forward, or 0 if no recurring event has notifications
+    private volatile long refreshAt;
+
+    private ReminderScheduler(Context context) {
+        Context appContext = context.getApplicationContext();
+        dbHelper = DatabaseHelper.getInstance(appContext);
+        prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        waker = new AlarmWaker(appContext);
+        engine = new ReminderEngine(new SmsManagerSender(appContext), waker, null, MAX_LATENESS_MILLIS);
+        userRepository = UserRepository.getInstance(appContext);
+    }
+
+    public static ReminderScheduler getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ReminderScheduler.class) {
+                if (instance == null) {
+                    instance = new ReminderScheduler(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Method to load pending reminders and arm the alarm on a background thread, if that has not
+    // happened yet in this process for the user who is logged in
+    public void start() {
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.execute(executors.diskRead(), () -> {
+            ensureLoaded();
+            return null;
+        }, result -> { });
+    }
+
+    // Method to reload the reminders on a background thread after the user logs in or out, or changes
+    // the number reminders are texted to
+    public void restart() {
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.execute(executors.diskRead(), () -> {
+            reload();
+            return null;
+        }, result -> { });
+    }
+
+    // Method to re-read every pending reminder, used after bulk changes and after a reboot clears alarms
+    public synchronized void reload() {
+        loaded = true;
+        loadedUserId = userRepository.getSavedSessionUserId();
+        String destination = loadedUserId == -1 ? null : dbHelper.getReminderPhone(loadedUserId);
+        engine.setDestination(destination);
+        if (destination == null) {
+            // Nobody to send to: nothing is armed until a user with a number is logged in
+            engine.replaceAll(new ArrayList<>());
+            refreshAt = 0;
+            waker.setRefreshAt(0);
+            Log.d("ReminderScheduler", "No reminder number set, reminders are off.");
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long after = Math.max(prefs.getLong(KEY_DELIVERED_THROUGH, now), now - MAX_LATENESS_MILLIS);
+        List<Reminder> reminders = new ArrayList<>();
+        try (Cursor cursor = dbHelper.getPendingReminders(loadedUserId, after)) {
+            int idIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnEventId());
+            int titleIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnTitle());
+            int timeIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnTime());
+            int startAtIndex = cursor.getColumnIndexOrThrow(dbHelper.getColumnStartAt());
+            while (cursor.moveToNext()) {
+                reminders.add(new Reminder(cursor.getInt(idIndex), cursor.getLong(startAtIndex),
+                        cursor.getString(titleIndex), cursor.getString(timeIndex)));
+            }
+        }
+
+        // Occurrences of recurring events, only as far as the horizon
+        List<EventSeries> series = dbHelper.getNotifiedSeries(loadedUserId);
+        List<Event> occurrences = new ArrayList<>();
+        TimeZone zone = TimeZone.getDefault();
+        for (EventSeries each : series) {
+            each.expand(after + 1, now + SERIES_HORIZON_MILLIS, zone, Integer.MAX_VALUE, occurrences);
+        }
+        for (Event occurrence : occurrences) {
+            reminders.add(new Reminder(occurrence.getId(), occurrence.getStartAt(), occurrence.getTitle(),
+                    occurrence.getTime()));
+        }
+        refreshAt = series.isEmpty() ? 0 : now + SERIES_HORIZON_MILLIS / 2;
+        waker.setRefreshAt(refreshAt);
+
+        engine.replaceAll(reminders);
+        Log.d("ReminderScheduler", "Loaded " + reminders.size() + " pending reminders.");
+    }
+
+    // Method to schedule, move, or cancel the reminder of an event that was just added or updated
+    public void onEventSaved(int eventId, String title, String date, String time, boolean notificationsEnabled) {
+        ensureLoaded();
+        if (engine.getDestination() == null) {
+            // Reminders are off until a number is set
+            return;
+        }
+        int day = DateTimeCodec.parseDate(date);
+        if (!notificationsEnabled || day == DateTimeCodec.INVALID) {
+            engine.cancel(eventId);
+            return;
+        }
+        long startAt = DateTimeCodec.toEpochMillis(day, DateTimeCodec.parseTime(time), TimeZone.getDefault());
+        if (startAt <= System.currentTimeMillis()) {
+            // Events moved into the past get no reminder
+            engine.cancel(eventId);
+        } else {
+            engine.schedule(new Reminder(eventId, startAt, title, time));
+        }
+    }
+
+    // Method to cancel the reminder of a deleted event
+    public void onEventDeleted(int eventId) {
+        ensureLoaded();
+        engine.cancel(eventId);
+    }
+
+    // Method called when the alarm fires: sends the reminders that are due and arms the next alarm
+    public void onAlarm() {
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        int sent = engine.deliverDue(now);
+        // Everything up to the end of this minute has now been handled, except reminders whose text
+        // failed: they stay after the mark so a reload, for example after a reboot, still finds them
+        long deliveredThrough = (Math.floorDiv(now, MILLIS_PER_MINUTE) + 1) * MILLIS_PER_MINUTE - 1;
+        long oldestRetry = engine.oldestRetryDueAt();
+        if (oldestRetry != -1) {
+            deliveredThrough = Math.min(deliveredThrough, oldestRetry - 1);
+        }
+        prefs.edit().putLong(KEY_DELIVERED_THROUGH, deliveredThrough).apply();
+        Log.d("ReminderScheduler", "Sent " + sent + " reminders, " + engine.size() + " pending.");
+        if (refreshAt != 0 && now >= refreshAt) {
+            // Create the reminders of occurrences that are now inside the horizon
+            reload();
+        }
+    }
+
+    private synchronized void ensureLoaded() {
+        if (!loaded || loadedUserId != userRepository.getSavedSessionUserId()) {
+            reload();
+        }
+    }
+
+    // Arms one exact alarm for the next due reminder, or for the series refresh if that comes first;
+    // each call replaces the previous alarm
+    private static class AlarmWaker implements ReminderEngine.Waker {
+        private final Context context;
+        private final AlarmManager alarmManager;
+        // Times to wake at, 0 for none
+        private long nextDueAt;
+        private long refreshAt;
+
+        AlarmWaker(Context context) {
+            this.context = context;
+            alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        }
+
+        @Override
+        public synchronized void wakeAt(long timeMillis) {
+            nextDueAt = timeMillis;
+            arm();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            nextDueAt = 0;
+            arm();
+        }
+
+        synchronized void setRefreshAt(long timeMillis) {
+            refreshAt = timeMillis;
+            arm();
+        }
+
+        private void arm() {
+            long timeMillis = nextDueAt == 0 ? refreshAt : refreshAt == 0 ? nextDueAt : Math.min(nextDueAt, refreshAt);
+            if (timeMillis == 0) {
+                alarmManager.cancel(pendingIntent());
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+                // Without the exact alarm permission the system may deliver a little late
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, timeMillis, pendingIntent());
+            } else {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, timeMillis, pendingIntent());
+            }
+        }
+
+        private PendingIntent pendingIntent() {
+            Intent intent = new Intent(context, ReminderReceiver.class);
+            return PendingIntent.getBroadcast(context, 0, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        }
+    }
+
+    // Sends reminders as SMS, split into parts when a batched message is long
+    private static class SmsManagerSender implements SmsSender {
+        private final Context context;
+
+        SmsManagerSender(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public void send(String destination, String message) {
+            if (ContextCompat.checkSelfPermission(context, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+                Log.w("ReminderScheduler", "SMS permission not granted, reminder not sent.");
+                throw new IllegalStateException("SEND_SMS permission not granted");
+            }
+            try {
+                SmsManager smsManager = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                        ? context.getSystemService(SmsManager.class)
+                        : SmsManager.getDefault();
+                ArrayList<String> parts = smsManager.divideMessage(message);
+                smsManager.sendMultipartTextMessage(destination, null, parts, null, null);
+            } catch (RuntimeException e) {
+                Log.e("ReminderScheduler", "Failed to send reminder", e);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.zybooks.eventtracker;
+
+import android.util.Log;
+
+// Receives the result of an asynchronous repository call on the UI thread
+public interface RepositoryCallback<T> {
+
+    void onSuccess(T result);
+
+    // Called instead of onSuccess when the background work throws
+    default void onError(Exception e) {
+        Log.e("RepositoryCallback", "Repository call failed", e);
+    }
+}
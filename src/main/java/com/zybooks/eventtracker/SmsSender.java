@@ -0,0 +1,6 @@
+package com.zybooks.eventtracker;
+
+// Sends a text message. Kept behind an interface so tests can record messages instead of sending them.
+public interface SmsSender {
+    void send(String destination, String message);
+}
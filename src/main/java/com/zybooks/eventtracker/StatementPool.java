@@ -0,0 +1,32 @@
+package com.zybooks.eventtracker;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Compiled statements for the hot write paths, compiled once per SQL string and reused instead of
+// being parsed and planned on every call. A statement holds its bindings, so callers must
+// synchronize on it while binding and executing.
+final class StatementPool {
+
+    private final Map<String, SQLiteStatement> statements = new HashMap<>();
+
+    // Returns the compiled statement for the SQL, compiling it on first use
+    synchronized SQLiteStatement get(SQLiteDatabase db, String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    synchronized void closeAll() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+}
@@ -0,0 +1,134 @@
+package com.zybooks.eventtracker;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// Immutable change to one event as exchanged with the sync server: the event's current fields, or a
+// tombstone once it is deleted. Events are identified by their sync ID, which is the same on every
+// device; local event IDs never leave the device. Conflicts are settled by `updatedAt`, the time of the
+// change in epoch milliseconds, and the later change wins.
+public final class SyncChange {
+
+    private final String syncId;
+    private final String title;
+    private final String description;
+    private final String date;
+    private final String time;
+    private final boolean notificationsEnabled;
+    // Length of the event in minutes; -1 when a change from an older app left it out
+    private final int durationMinutes;
+    private final long updatedAt;
+    private final boolean deleted;
+    // Local row version the change was read at, used to mark it as pushed; never sent
+    private final long localVersion;
+
+    // `date` is in the stored format and `time` as entered
+    public SyncChange(String syncId, String title, String description, String date, String time,
+                      boolean notificationsEnabled, int durationMinutes, long updatedAt, long localVersion) {
+        this(syncId, title, description, date, time, notificationsEnabled, durationMinutes, updatedAt, false,
+                localVersion);
+    }
+
+    private SyncChange(String syncId, String title, String description, String date, String time,
+                       boolean notificationsEnabled, int durationMinutes, long updatedAt, boolean deleted,
+                       long localVersion) {
+        this.syncId = syncId;
+        this.title = title;
+        this.description = description;
+        this.date = date;
+        this.time = time;
+        this.notificationsEnabled = notificationsEnabled;
+        this.durationMinutes = durationMinutes;
+        this.updatedAt = updatedAt;
+        this.deleted = deleted;
+        this.localVersion = localVersion;
+    }
+
+    // Returns the tombstone of an event deleted at `deletedAt`
+    public static SyncChange deletion(String syncId, long deletedAt) {
+        return new SyncChange(syncId, null, null, null, null, false, 0, deletedAt, true, 0);
+    }
+
+    public String getSyncId() {
+        return syncId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    public boolean isNotificationsEnabled() {
+        return notificationsEnabled;
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    long getLocalVersion() {
+        return localVersion;
+    }
+
+    // Wire form; tombstones carry only the ID and the deletion time
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("id", syncId);
+        json.put("updatedAt", updatedAt);
+        if (deleted) {
+            json.put("deleted", true);
+        } else {
+            json.put("title", title);
+            json.put("description", description);
+            json.put("date", date);
+            json.put("time", time);
+            json.put("notifications", notificationsEnabled);
+            json.put("duration", durationMinutes);
+        }
+        return json;
+    }
+
+    // Reads the wire form; throws JSONException if the ID or change time is missing
+    public static SyncChange fromJson(JSONObject json) throws JSONException {
+        String syncId = json.getString("id");
+        long updatedAt = json.getLong("updatedAt");
+        if (json.optBoolean("deleted")) {
+            return deletion(syncId, updatedAt);
+        }
+        return new SyncChange(syncId, optString(json, "title"), optString(json, "description"),
+                optString(json, "date"), optString(json, "time"), json.optBoolean("notifications"),
+                json.optInt("duration", -1), updatedAt, 0);
+    }
+
+    // Like JSONObject.optString(), but missing and null values stay null instead of becoming text
+    private static String optString(JSONObject json, String name) {
+        return json.isNull(name) ? null : json.optString(name);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return (deleted ? "Deletion " : "Change ") + syncId + " at " + updatedAt;
+    }
+}
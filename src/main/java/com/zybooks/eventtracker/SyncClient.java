@@ -0,0 +1,197 @@
+package com.zybooks.eventtracker;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// HTTP client for the sync server. Changes travel as JSON, gzip-compressed both ways:
+//   POST {base}/accounts/{account}/events/push      body {"changes": [...]}
+//   GET  {base}/accounts/{account}/events/changes?since={cursor}&limit={n}
+//        answer {"changes": [...], "cursor": "...", "hasMore": true|false}
+// The cursor is opaque to the app; it is only stored and sent back. Calls block, so they must run
+// off the main thread.
+public final class SyncClient {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+
+    // One page of pulled changes
+    public static final class Page {
+        private final List<SyncChange> changes;
+        private final String cursor;
+        private final boolean hasMore;
+
+        Page(List<SyncChange> changes, String cursor, boolean hasMore) {
+            this.changes = changes;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+
+        public List<SyncChange> getChanges() {
+            return changes;
+        }
+
+        // Position to pull the next page from
+        public String getCursor() {
+            return cursor;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+
+    // Thrown for answers other than 2xx
+    public static final class HttpException extends IOException {
+        private final int status;
+        private final long retryAfterMillis;
+
+        HttpException(int status, long retryAfterMillis) {
+            super("Sync server answered " + status);
+            this.status = status;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        // True for timeouts, throttling and server errors, which are worth retrying later
+        public boolean isRetryable() {
+            return status == 408 || status == 429 || status >= 500;
+        }
+
+        // Delay asked for by the server's Retry-After header, or 0 if it sent none
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+
+    private final String baseUrl;
+
+    public SyncClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    // Method to send local changes to the server, which keeps the later of its own and each sent change
+    public void push(String account, List<SyncChange> changes) throws IOException {
+        JSONObject body = new JSONObject();
+        try {
+            JSONArray array = new JSONArray();
+            for (SyncChange change : changes) {
+                array.put(change.toJson());
+            }
+            body.put("changes", array);
+        } catch (JSONException e) {
+            throw new IOException("Could not encode changes", e);
+        }
+
+        HttpURLConnection connection = open(accountUrl(account) + "/events/push");
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            byte[] compressed = gzip(body.toString().getBytes(StandardCharsets.UTF_8));
+            connection.setFixedLengthStreamingMode(compressed.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(compressed);
+            }
+            checkStatus(connection);
+            // Drain the answer so the connection can be reused
+            read(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Method to get up to `limit` changes made on the server after `cursor`, or from the start if it is null
+    public Page pull(String account, String cursor, int limit) throws IOException {
+        String url = accountUrl(account) + "/events/changes?limit=" + limit +
+                (cursor != null ? "&since=" + URLEncoder.encode(cursor, "UTF-8") : "");
+        HttpURLConnection connection = open(url);
+        try {
+            checkStatus(connection);
+            JSONObject json = new JSONObject(new String(read(connection), StandardCharsets.UTF_8));
+            JSONArray array = json.getJSONArray("changes");
+            List<SyncChange> changes = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                changes.add(SyncChange.fromJson(array.getJSONObject(i)));
+            }
+            return new Page(Collections.unmodifiableList(changes), json.getString("cursor"),
+                    json.optBoolean("hasMore"));
+        } catch (JSONException e) {
+            throw new IOException("Malformed answer from the sync server", e);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private String accountUrl(String account) throws IOException {
+        return baseUrl + "/accounts/" + URLEncoder.encode(account, "UTF-8");
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        // Asking for gzip explicitly turns off HttpURLConnection's transparent decoding, so read() decodes it
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return connection;
+    }
+
+    private static void checkStatus(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (status / 100 != 2) {
+            long retryAfterMillis = 0;
+            String retryAfter = connection.getHeaderField("Retry-After");
+            if (retryAfter != null) {
+                try {
+                    retryAfterMillis = Long.parseLong(retryAfter.trim()) * 1000;
+                } catch (NumberFormatException e) {
+                    // HTTP dates are not worth parsing here; the backoff delay applies instead
+                }
+            }
+            throw new HttpException(status, retryAfterMillis);
+        }
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getInputStream();
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            in = new GZIPInputStream(in);
+        }
+        try (InputStream body = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,73 @@
+package com.zybooks.eventtracker;
+
+import java.io.IOException;
+import java.util.List;
+
+// One sync pass for one user: pushes local changes in batches, then pulls the server's changes page by
+// page until it has no more. Only rows changed since the last pass travel either way. Each pulled page is
+// applied in one transaction together with the position after it, so a pass cut short by a network error
+// resumes where it stopped. Blocks, so it must run off the main thread.
+public final class SyncEngine {
+
+    static final int PUSH_BATCH_SIZE = 200;
+    static final int PULL_PAGE_SIZE = 200;
+
+    // Counts of one pass
+    public static final class Result {
+        private final int pushed;
+        private final int applied;
+
+        Result(int pushed, int applied) {
+            this.pushed = pushed;
+            this.applied = applied;
+        }
+
+        // Local changes the server accepted
+        public int getPushed() {
+            return pushed;
+        }
+
+        // Events added, changed or deleted locally by pulled changes
+        public int getApplied() {
+            return applied;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final SyncClient client;
+
+    public SyncEngine(DatabaseHelper dbHelper, SyncClient client) {
+        this.dbHelper = dbHelper;
+        this.client = client;
+    }
+
+    // Method to push, then pull, the changes of a user; the server knows them by their username
+    public Result sync(long userId) throws IOException {
+        String account = dbHelper.getUsername(userId);
+        if (account == null) {
+            throw new IOException("No user " + userId);
+        }
+
+        int pushed = 0;
+        List<SyncChange> changes;
+        do {
+            changes = dbHelper.getPendingChanges(userId, PUSH_BATCH_SIZE);
+            if (!changes.isEmpty()) {
+                client.push(account, changes);
+                dbHelper.markPushed(userId, changes);
+                pushed += changes.size();
+            }
+            // A short batch means nothing is left, apart from edits made meanwhile, which the next pass pushes
+        } while (changes.size() == PUSH_BATCH_SIZE);
+
+        int applied = 0;
+        String cursor = dbHelper.getPullCursor(userId);
+        SyncClient.Page page;
+        do {
+            page = client.pull(account, cursor, PULL_PAGE_SIZE);
+            cursor = page.getCursor();
+            applied += dbHelper.applyRemoteChanges(userId, page.getChanges(), cursor);
+        } while (page.hasMore());
+        return new Result(pushed, applied);
+    }
+}
@@ -0,0 +1,172 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Runs SyncEngine passes for the logged-in user on a thread of its own, so sync never waits for or
+// holds up the database executors the event grid uses. A pass runs shortly after local edits, with
+// quick edits coalesced into one pass, and periodically to pick up changes made on other devices.
+// Failed passes are retried with exponential backoff, or after the delay the server asks for.
+// Sync is off when no server URL is configured.
+public final class SyncScheduler {
+
+    // Told on the sync thread after a pass changed local events
+    public interface Listener {
+        void onRemoteChanges();
+    }
+
+    // Edits within this long of each other are pushed together
+    private static final long DEBOUNCE_MILLIS = 5_000L;
+    // Pull interval while there are no local edits
+    private static final long PERIOD_MILLIS = 15 * 60_000L;
+    private static final long BACKOFF_BASE_MILLIS = 30_000L;
+    private static final long BACKOFF_MAX_MILLIS = 60 * 60_000L;
+
+    private static volatile SyncScheduler instance;
+
+    // Null when sync is off
+    private final SyncEngine engine;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this
+    private final Backoff backoff = new Backoff(BACKOFF_BASE_MILLIS, BACKOFF_MAX_MILLIS, new Random());
+    private long userId = -1;
+    private Listener listener;
+    private ScheduledFuture<?> nextPass;
+    private boolean running;
+    private boolean requestedWhileRunning;
+
+    private SyncScheduler(Context context) {
+        Context appContext = context.getApplicationContext();
+        String serverUrl = appContext.getString(R.string.sync_server_url).trim();
+        engine = serverUrl.isEmpty()
+                ? null
+                : new SyncEngine(DatabaseHelper.getInstance(appContext), new SyncClient(serverUrl));
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(() -> {
+                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static SyncScheduler getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SyncScheduler.class) {
+                if (instance == null) {
+                    instance = new SyncScheduler(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return engine != null;
+    }
+
+    // Method to start syncing a user's events now and then periodically, replacing any user synced before
+    public synchronized void start(long userId, Listener listener) {
+        if (engine == null || (userId == this.userId && nextPass != null)) {
+            return;
+        }
+        this.userId = userId;
+        this.listener = listener;
+        backoff.reset();
+        schedule(0);
+    }
+
+    // Method to stop syncing, after logout; a pass already running finishes on its own
+    public synchronized void stop() {
+        userId = -1;
+        listener = null;
+        if (nextPass != null) {
+            nextPass.cancel(false);
+            nextPass = null;
+        }
+    }
+
+    // Method to ask for a pass after a local edit. Waits for quiet, and does not cut short a backoff
+    // after failures, so edits made while offline do not hammer the network.
+    public synchronized void requestSync() {
+        if (userId == -1) {
+            return;
+        }
+        if (running) {
+            requestedWhileRunning = true;
+        } else if (backoff.getFailures() == 0) {
+            schedule(DEBOUNCE_MILLIS);
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        if (nextPass != null) {
+            nextPass.cancel(false);
+        }
+        nextPass = executor.schedule(this::runPass, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs one pass on the sync thread and schedules the next
+    private void runPass() {
+        long user;
+        Listener passListener;
+        synchronized (this) {
+            if (userId == -1) {
+                return;
+            }
+            user = userId;
+            passListener = listener;
+            running = true;
+            requestedWhileRunning = false;
+        }
+
+        long delayMillis;
+        boolean failed = false;
+        try {
+            SyncEngine.Result result = engine.sync(user);
+            Log.d("SyncScheduler", "Pushed " + result.getPushed() + ", applied " + result.getApplied());
+            if (result.getApplied() > 0 && passListener != null) {
+                passListener.onRemoteChanges();
+            }
+            delayMillis = PERIOD_MILLIS;
+        } catch (SyncClient.HttpException e) {
+            Log.w("SyncScheduler", "Sync failed", e);
+            failed = e.isRetryable();
+            delayMillis = Math.max(e.getRetryAfterMillis(), failed ? 0 : PERIOD_MILLIS);
+        } catch (IOException e) {
+            // Offline, timed out or cut off; the passes resume where they stopped
+            Log.w("SyncScheduler", "Sync failed", e);
+            failed = true;
+            delayMillis = 0;
+        } catch (RuntimeException e) {
+            // A database error will not go away by retrying soon
+            Log.e("SyncScheduler", "Sync failed", e);
+            delayMillis = PERIOD_MILLIS;
+        }
+
+        synchronized (this) {
+            running = false;
+            if (userId != user) {
+                return;
+            }
+            if (failed) {
+                delayMillis = Math.max(delayMillis, backoff.nextDelayMillis());
+            } else {
+                backoff.reset();
+                if (requestedWhileRunning) {
+                    delayMillis = DEBOUNCE_MILLIS;
+                }
+            }
+            schedule(delayMillis);
+        }
+    }
+}
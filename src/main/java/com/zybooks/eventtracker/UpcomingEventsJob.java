@@ -0,0 +1,55 @@
+package com.zybooks.eventtracker;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+
+// Redraws the UpcomingEventsWidget after events change. The job waits on a content trigger for the
+// EventsProvider URIs that DatabaseHelper reports writes on, so the system starts it when there has been
+// a change, even if the app is not running, and a burst of writes leads to one redraw. A content-triggered
+// job runs once, so every run schedules the next one.
+public class UpcomingEventsJob extends JobService {
+
+    private static final int JOB_ID = 1;
+    // Writes this close together are redrawn once, and none waits longer than the maximum
+    private static final long UPDATE_DELAY_MILLIS = 1_000L;
+    private static final long MAX_DELAY_MILLIS = 5_000L;
+
+    // Method to start waiting for changes, if the job is not waiting already
+    static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler.getPendingJob(JOB_ID) == null) {
+            scheduler.schedule(jobInfo(context));
+        }
+    }
+
+    // Method to stop waiting for changes, once there are no widgets left
+    static void cancel(Context context) {
+        context.getSystemService(JobScheduler.class).cancel(JOB_ID);
+    }
+
+    private static JobInfo jobInfo(Context context) {
+        return new JobInfo.Builder(JOB_ID, new ComponentName(context, UpcomingEventsJob.class))
+                .addTriggerContentUri(new JobInfo.TriggerContentUri(EventsProvider.CONTENT_URI,
+                        JobInfo.TriggerContentUri.FLAG_NOTIFY_FOR_DESCENDANTS))
+                .setTriggerContentUpdateDelay(UPDATE_DELAY_MILLIS)
+                .setTriggerContentMaxDelay(MAX_DELAY_MILLIS)
+                .build();
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        // The widget reads its events on a background thread of its own
+        UpcomingEventsWidget.refresh(this);
+        getSystemService(JobScheduler.class).schedule(jobInfo(this));
+        return false;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+package com.zybooks.eventtracker;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.text.format.DateUtils;
+import android.util.Log;
+import android.widget.RemoteViews;
+
+import java.util.concurrent.RejectedExecutionException;
+
+// Home-screen widget listing the next events of the user with a saved session, read through
+// EventsProvider a few rows at a time. It never redraws on a timer (updatePeriodMillis is 0): after
+// events change, UpcomingEventsJob is started by the provider's change notification and redraws it;
+// login and logout redraw it; and one alarm that does not wake the device redraws it when the first
+// event shown ends and leaves the list.
+public class UpcomingEventsWidget extends AppWidgetProvider {
+
+    // Events listed, which is all the widget ever reads
+    private static final int EVENT_COUNT = 5;
+    private static final String[] PROJECTION =
+            {EventsProvider.COLUMN_TITLE, EventsProvider.COLUMN_START_AT, EventsProvider.COLUMN_END_AT};
+    private static final int DATE_FORMAT = DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_SHOW_DATE |
+            DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_ABBREV_ALL;
+
+    // Method to redraw every widget on the home screen; does nothing if there are none
+    public static void refresh(Context context) {
+        int[] appWidgetIds = AppWidgetManager.getInstance(context)
+                .getAppWidgetIds(new ComponentName(context, UpcomingEventsWidget.class));
+        if (appWidgetIds.length > 0) {
+            context.sendBroadcast(updateIntent(context, appWidgetIds));
+        }
+    }
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        Context appContext = context.getApplicationContext();
+        // Content-triggered jobs do not survive a reboot, and the system sends this after one
+        UpcomingEventsJob.schedule(appContext);
+        PendingResult result = goAsync();
+        try {
+            AppExecutors.getInstance().diskRead().execute(() -> {
+                try {
+                    appWidgetManager.updateAppWidget(appWidgetIds, render(appContext, appWidgetIds));
+                } catch (RuntimeException e) {
+                    Log.e("UpcomingEventsWidget", "Error drawing widget", e);
+                } finally {
+                    result.finish();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e("UpcomingEventsWidget", "Widget update rejected", e);
+            result.finish();
+        }
+    }
+
+    @Override
+    public void onDisabled(Context context) {
+        // The last widget was removed
+        UpcomingEventsJob.cancel(context);
+        alarmManager(context).cancel(expiryIntent(context, new int[0]));
+    }
+
+    // Reads the events and builds the widget; runs on a background thread
+    private static RemoteViews render(Context context, int[] appWidgetIds) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_upcoming_events);
+        views.setOnClickPendingIntent(R.id.widgetRoot, PendingIntent.getActivity(context, 0,
+                new Intent(context, MainActivity.class), PendingIntent.FLAG_IMMUTABLE));
+
+        long userId = UserRepository.getInstance(context).getSavedSessionUserId();
+        if (userId == -1) {
+            views.setTextViewText(R.id.upcomingEventsText, context.getString(R.string.log_in_to_see_events));
+            scheduleExpiry(context, appWidgetIds, 0);
+            return views;
+        }
+
+        StringBuilder text = new StringBuilder();
+        // When the first of the events shown ends, or 0 if there are none
+        long firstEndAt = 0;
+        try (Cursor cursor = context.getContentResolver().query(EventsProvider.upcomingUri(userId, EVENT_COUNT),
+                PROJECTION, null, null, null)) {
+            if (cursor != null) {
+                int titleIndex = cursor.getColumnIndexOrThrow(EventsProvider.COLUMN_TITLE);
+                int startAtIndex = cursor.getColumnIndexOrThrow(EventsProvider.COLUMN_START_AT);
+                int endAtIndex = cursor.getColumnIndexOrThrow(EventsProvider.COLUMN_END_AT);
+                while (cursor.moveToNext()) {
+                    if (text.length() > 0) {
+                        text.append('\n');
+                    }
+                    text.append(DateUtils.formatDateTime(context, cursor.getLong(startAtIndex), DATE_FORMAT))
+                            .append("  ").append(cursor.getString(titleIndex));
+                    long endAt = cursor.getLong(endAtIndex);
+                    firstEndAt = firstEndAt == 0 ? endAt : Math.min(firstEndAt, endAt);
+                }
+            }
+        }
+        views.setTextViewText(R.id.upcomingEventsText,
+                text.length() > 0 ? text : context.getString(R.string.no_upcoming_events));
+        scheduleExpiry(context, appWidgetIds, firstEndAt);
+        return views;
+    }
+
+    // Arms the alarm that redraws the widgets once an event shown has ended, replacing the previous one.
+    // It does not wake the device, so a widget nobody can see is redrawn when the screen next comes on.
+    private static void scheduleExpiry(Context context, int[] appWidgetIds, long timeMillis) {
+        PendingIntent expiry = expiryIntent(context, appWidgetIds);
+        if (timeMillis == 0) {
+            alarmManager(context).cancel(expiry);
+        } else {
+            alarmManager(context).set(AlarmManager.RTC, timeMillis, expiry);
+        }
+    }
+
+    private static PendingIntent expiryIntent(Context context, int[] appWidgetIds) {
+        return PendingIntent.getBroadcast(context, 0, updateIntent(context, appWidgetIds),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private static Intent updateIntent(Context context, int[] appWidgetIds) {
+        Intent intent = new Intent(context, UpcomingEventsWidget.class);
+        intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+        intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, appWidgetIds);
+        return intent;
+    }
+
+    private static AlarmManager alarmManager(Context context) {
+        return (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+    }
+}
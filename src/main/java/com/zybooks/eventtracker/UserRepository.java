@@ -0,0 +1,209 @@
+package com.zybooks.eventtracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteConstraintException;
+import android.util.Log;
+
+// Asynchronous login and registration. Queries and password hashing run on background executors
+// and results are delivered on the UI thread. A successful login or registration starts a session
+// that lets later launches skip the login screen: its random token is kept in private preferences
+// and only a hash of it in the database, so a copy of the database alone cannot resume a session.
+// Sessions expire after SESSION_LIFETIME_MILLIS without use, and logout ends them. The home-screen
+// widget and the reminders follow the saved session's user, so both are refreshed whenever it changes.
+public class UserRepository {
+
+    // Returned by register() when the username is already in use
+    public static final long USERNAME_TAKEN = -2;
+
+    // Time one password hash should take on this device. Login is one indexed lookup plus one hash,
+    // so this keeps it well inside a quarter of a second.
+    static final long HASH_TARGET_MILLIS = 100;
+
+    private static final String PREFS_NAME = "credentials";
+    private static final String KEY_ITERATIONS = "pbkdf2_iterations";
+    private static final String SESSION_PREFS_NAME = "session";
+    private static final String KEY_SESSION_USER_ID = "user_id";
+    private static final String KEY_SESSION_TOKEN = "token";
+    private static final String KEY_SESSION_EXPIRES_AT = "expires_at";
+
+    static final long SESSION_LIFETIME_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    private static volatile UserRepository instance;
+
+    private final Context appContext;
+    private final DatabaseHelper dbHelper;
+    private final AppExecutors executors;
+    private final SharedPreferences prefs;
+    private final SharedPreferences sessionPrefs;
+    private PasswordHasher hasher;
+
+    private UserRepository(Context context) {
+        appContext = context.getApplicationContext();
+        dbHelper = DatabaseHelper.getInstance(context);
+        executors = AppExecutors.getInstance();
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        sessionPrefs = context.getApplicationContext().getSharedPreferences(SESSION_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static UserRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (UserRepository.class) {
+                if (instance == null) {
+                    instance = new UserRepository(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Method to log in, delivering the user's ID or -1 if the credentials do not match. The session is
+    // stored, and a legacy plaintext password or a hash made with older settings re-hashed, afterwards
+    // on the write thread.
+    public void login(String username, String password, RepositoryCallback<Long> callback) {
+        executors.execute(executors.diskRead(), () -> {
+            PasswordHasher current = getHasher();
+            long userId = dbHelper.checkUser(username, password, current);
+            if (userId != -1) {
+                executors.diskWrite().execute(() -> {
+                    startSession(userId);
+                    try {
+                        if (dbHelper.upgradePassword(userId, password, current)) {
+                            Log.d("UserRepository", "Re-hashed password for user " + userId);
+                        }
+                    } catch (RuntimeException e) {
+                        Log.e("UserRepository", "Error re-hashing password", e);
+                    }
+                });
+            }
+            return userId;
+        }, callback);
+    }
+
+    // Method to register, delivering the new user's ID, USERNAME_TAKEN, or -1 on failure. The insert
+    // either creates the user or fails on the unique username index, so two registrations for the
+    // same name cannot both succeed.
+    public void register(String username, String password, RepositoryCallback<Long> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            String passwordHash = getHasher().hash(password);
+            long userId;
+            try {
+                userId = dbHelper.addUser(username, passwordHash);
+            } catch (SQLiteConstraintException e) {
+                return USERNAME_TAKEN;
+            }
+            if (userId != -1) {
+                startSession(userId);
+            }
+            return userId;
+        }, callback);
+    }
+
+    // Returns the user of the saved session, or -1 if there is none or it has expired. Reads only the
+    // small preferences file, so the launcher can decide on the login screen before drawing anything;
+    // resumeSession() then checks the session against the database.
+    public long getSavedSessionUserId() {
+        if (sessionPrefs.getString(KEY_SESSION_TOKEN, null) == null
+                || sessionPrefs.getLong(KEY_SESSION_EXPIRES_AT, 0) <= System.currentTimeMillis()) {
+            return -1;
+        }
+        return sessionPrefs.getLong(KEY_SESSION_USER_ID, -1);
+    }
+
+    // Method to check the saved session against the database, delivering true if it is still valid
+    // for the given user. A valid session is extended; an invalid one is forgotten.
+    public void resumeSession(long userId, RepositoryCallback<Boolean> callback) {
+        String token = sessionPrefs.getString(KEY_SESSION_TOKEN, null);
+        executors.execute(executors.diskRead(), () -> {
+            if (token == null) {
+                return false;
+            }
+            String tokenHash = PasswordHasher.hashSessionToken(token);
+            long now = System.currentTimeMillis();
+            if (dbHelper.getSessionUser(tokenHash, now) != userId) {
+                sessionPrefs.edit().clear().apply();
+                onSessionChanged();
+                return false;
+            }
+            long expiresAt = now + SESSION_LIFETIME_MILLIS;
+            sessionPrefs.edit().putLong(KEY_SESSION_EXPIRES_AT, expiresAt).apply();
+            executors.diskWrite().execute(() -> {
+                try {
+                    dbHelper.extendSession(tokenHash, expiresAt);
+                } catch (RuntimeException e) {
+                    Log.e("UserRepository", "Error extending session", e);
+                }
+            });
+            return true;
+        }, callback);
+    }
+
+    // Method to end the saved session, on logout. The next launch shows the login screen even if
+    // removing the session from the database fails.
+    public void endSession() {
+        String token = sessionPrefs.getString(KEY_SESSION_TOKEN, null);
+        sessionPrefs.edit().clear().apply();
+        onSessionChanged();
+        if (token != null) {
+            executors.execute(executors.diskWrite(), () -> dbHelper.deleteSession(PasswordHasher.hashSessionToken(token)),
+                    result -> { });
+        }
+    }
+
+    // Method to load the number a user's reminders are texted to, delivering null if none is set
+    public void loadReminderPhone(long userId, RepositoryCallback<String> callback) {
+        executors.execute(executors.diskRead(), () -> dbHelper.getReminderPhone(userId), callback);
+    }
+
+    // Method to set the number a user's reminders are texted to, or turn the texts off with null, then
+    // reload the reminders for it. Delivers true if the user was found.
+    public void saveReminderPhone(long userId, String phone, RepositoryCallback<Boolean> callback) {
+        executors.execute(executors.diskWrite(), () -> {
+            boolean saved = dbHelper.setReminderPhone(userId, phone) > 0;
+            if (saved) {
+                ReminderScheduler.getInstance(appContext).restart();
+            }
+            return saved;
+        }, callback);
+    }
+
+    // Stores a new session for a user who just logged in or registered; runs on a background thread.
+    // A failure only costs the next launch its shortcut past the login screen.
+    private void startSession(long userId) {
+        String token = PasswordHasher.newSessionToken();
+        long expiresAt = System.currentTimeMillis() + SESSION_LIFETIME_MILLIS;
+        try {
+            dbHelper.addSession(userId, PasswordHasher.hashSessionToken(token), expiresAt);
+        } catch (RuntimeException e) {
+            Log.e("UserRepository", "Error starting session", e);
+            return;
+        }
+        sessionPrefs.edit()
+                .putLong(KEY_SESSION_USER_ID, userId)
+                .putString(KEY_SESSION_TOKEN, token)
+                .putLong(KEY_SESSION_EXPIRES_AT, expiresAt)
+                .apply();
+        onSessionChanged();
+    }
+
+    // Redraws the widget and reloads the reminders for whoever is now logged in
+    private void onSessionChanged() {
+        UpcomingEventsWidget.refresh(appContext);
+        ReminderScheduler.getInstance(appContext).restart();
+    }
+
+    // Returns the hasher, measuring this device the first time to choose an iteration count that
+    // meets HASH_TARGET_MILLIS; runs on a background thread
+    private synchronized PasswordHasher getHasher() {
+        if (hasher == null) {
+            int iterations = prefs.getInt(KEY_ITERATIONS, 0);
+            if (iterations < PasswordHasher.MIN_ITERATIONS) {
+                iterations = PasswordHasher.calibrate(HASH_TARGET_MILLIS);
+                prefs.edit().putInt(KEY_ITERATIONS, iterations).apply();
+                Log.d("UserRepository", "Calibrated password hashing to " + iterations + " iterations");
+            }
+            hasher = new PasswordHasher(iterations);
+        }
+        return hasher;
+    }
+}
@@ -0,0 +1,56 @@
+package com.zybooks.eventtracker;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+// Converts a database created by an older version of the app to incremental auto-vacuum, which lets the
+// daily maintenance return free pages a few at a time. The conversion is one full VACUUM that rewrites
+// the file and blocks every write while it runs, so it waits for the device to be idle and charging
+// instead of running inline in the maintenance. It is needed once; new databases are created converted.
+public class VacuumJob extends JobService {
+
+    // UpcomingEventsJob uses 1
+    private static final int JOB_ID = 2;
+
+    // Method to schedule the conversion, if it is not scheduled already
+    static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler.getPendingJob(JOB_ID) == null) {
+            scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, VacuumJob.class))
+                    .setRequiresDeviceIdle(true)
+                    .setRequiresCharging(true)
+                    .build());
+        }
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        AppExecutors executors = AppExecutors.getInstance();
+        DatabaseHelper dbHelper = DatabaseHelper.getInstance(this);
+        executors.execute(executors.diskWrite(), dbHelper::convertToIncrementalVacuum, new RepositoryCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean converted) {
+                Log.d("VacuumJob", converted ? "Converted to incremental auto-vacuum." : "Already converted.");
+                jobFinished(params, false);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e("VacuumJob", "Error converting to incremental auto-vacuum", e);
+                jobFinished(params, true);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // A VACUUM cannot be cut short; if it did not finish, the next idle window tries again
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the exponential backoff with jitter used between failed sync passes.
+ */
+public class BackoffTest {
+
+    private static final long BASE = 30_000L;
+    private static final long MAX = 3_600_000L;
+
+    @Test
+    public void delaysDoubleWithinHalfToAllOfTheCeiling() {
+        Backoff backoff = new Backoff(BASE, MAX, new Random(42));
+        long ceiling = BASE;
+        for (int failure = 0; failure < 8; failure++) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue("Delay " + delay + " below half of " + ceiling, delay >= ceiling / 2);
+            assertTrue("Delay " + delay + " above " + ceiling, delay <= ceiling);
+            ceiling = Math.min(MAX, ceiling * 2);
+        }
+        assertEquals(8, backoff.getFailures());
+    }
+
+    @Test
+    public void delaysStopGrowingAtTheMaximum() {
+        Backoff backoff = new Backoff(BASE, MAX, new Random(7));
+        for (int failure = 0; failure < 100; failure++) {
+            long delay = backoff.nextDelayMillis();
+            if (failure >= 7) {
+                assertTrue(delay >= MAX / 2);
+            }
+            assertTrue(delay <= MAX);
+        }
+    }
+
+    @Test
+    public void jitterSpreadsTheDelays() {
+        Backoff first = new Backoff(BASE, MAX, new Random(1));
+        Backoff second = new Backoff(BASE, MAX, new Random(2));
+        boolean differ = false;
+        for (int failure = 0; failure < 5; failure++) {
+            differ |= first.nextDelayMillis() != second.nextDelayMillis();
+        }
+        assertTrue(differ);
+    }
+
+    @Test
+    public void resetStartsAgainFromTheBase() {
+        Backoff backoff = new Backoff(BASE, MAX, new Random(3));
+        for (int failure = 0; failure < 5; failure++) {
+            backoff.nextDelayMillis();
+        }
+        backoff.reset();
+        assertEquals(0, backoff.getFailures());
+        assertTrue(backoff.nextDelayMillis() <= BASE);
+    }
+
+    @Test
+    public void rejectsAMaximumBelowTheBase() {
+        try {
+            new Backoff(BASE, BASE - 1, new Random());
+            fail("Accepted a maximum below the base");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
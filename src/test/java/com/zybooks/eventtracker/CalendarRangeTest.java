@@ -0,0 +1,77 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the days, weeks and months the calendar views page through.
+ */
+public class CalendarRangeTest {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    @Test
+    public void containingFindsTheFirstDay() {
+        // 2024-03-06 is a Wednesday
+        assertEquals(20240306, CalendarRange.containing(CalendarRange.Kind.DAY, 20240306).getStartDate());
+        assertEquals(20240304, CalendarRange.containing(CalendarRange.Kind.WEEK, 20240306).getStartDate());
+        assertEquals(20240304, CalendarRange.containing(CalendarRange.Kind.WEEK, 20240304).getStartDate());
+        assertEquals(20240304, CalendarRange.containing(CalendarRange.Kind.WEEK, 20240310).getStartDate());
+        assertEquals(20240301, CalendarRange.containing(CalendarRange.Kind.MONTH, 20240331).getStartDate());
+    }
+
+    @Test
+    public void pagesAcrossMonthAndYearEnds() {
+        CalendarRange day = CalendarRange.containing(CalendarRange.Kind.DAY, 20240228);
+        assertEquals(20240229, day.next().getStartDate());
+        assertEquals(20240301, day.next().next().getStartDate());
+
+        CalendarRange week = CalendarRange.containing(CalendarRange.Kind.WEEK, 20231230);
+        assertEquals(20231225, week.getStartDate());
+        assertEquals(20240101, week.getEndDate());
+        assertEquals(week, week.next().previous());
+
+        CalendarRange month = CalendarRange.containing(CalendarRange.Kind.MONTH, 20241215);
+        assertEquals(20250101, month.getEndDate());
+        assertEquals(20241101, month.previous().getStartDate());
+        assertEquals(20231201, CalendarRange.containing(CalendarRange.Kind.MONTH, 20240110).previous().getStartDate());
+    }
+
+    @Test
+    public void consecutiveRangesMeetAcrossDaylightSaving() {
+        // The clocks go forward on 2024-03-10 and back on 2024-11-03 in New York
+        CalendarRange spring = CalendarRange.containing(CalendarRange.Kind.DAY, 20240310);
+        assertEquals(23 * MILLIS_PER_HOUR, spring.getEndMillis(NEW_YORK) - spring.getStartMillis(NEW_YORK));
+        CalendarRange fall = CalendarRange.containing(CalendarRange.Kind.DAY, 20241103);
+        assertEquals(25 * MILLIS_PER_HOUR, fall.getEndMillis(NEW_YORK) - fall.getStartMillis(NEW_YORK));
+
+        CalendarRange month = CalendarRange.containing(CalendarRange.Kind.MONTH, 20240301);
+        assertEquals(month.getEndMillis(NEW_YORK), month.next().getStartMillis(NEW_YORK));
+        assertEquals(31 * 24 * MILLIS_PER_HOUR - MILLIS_PER_HOUR,
+                month.getEndMillis(NEW_YORK) - month.getStartMillis(NEW_YORK));
+    }
+
+    @Test
+    public void titlesNameTheRange() {
+        assertEquals("2024-03-05", CalendarRange.containing(CalendarRange.Kind.DAY, 20240305).getTitle());
+        assertEquals("Week of 2024-03-04", CalendarRange.containing(CalendarRange.Kind.WEEK, 20240305).getTitle());
+        assertEquals("March 2024", CalendarRange.containing(CalendarRange.Kind.MONTH, 20240305).getTitle());
+    }
+
+    @Test
+    public void rangesAreMapKeys() {
+        Map<CalendarRange, String> map = new HashMap<>();
+        map.put(CalendarRange.containing(CalendarRange.Kind.WEEK, 20240305), "week");
+        map.put(CalendarRange.containing(CalendarRange.Kind.DAY, 20240304), "day");
+
+        assertEquals("week", map.get(CalendarRange.containing(CalendarRange.Kind.WEEK, 20240308)));
+        assertEquals("day", map.get(CalendarRange.containing(CalendarRange.Kind.DAY, 20240304)));
+        assertNull(map.get(CalendarRange.containing(CalendarRange.Kind.MONTH, 20240304)));
+    }
+}
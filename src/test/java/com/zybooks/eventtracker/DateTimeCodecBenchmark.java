@@ -0,0 +1,103 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Microbenchmark comparing DateTimeCodec with the SimpleDateFormat code it replaced, for the
+ * date conversion done on every insert/update and the validation done in the dialogs.
+ * Follows the JMH pattern of warmup iterations followed by measured iterations, and reports
+ * the average time per operation. Results are printed, not asserted, so the class is ignored
+ * in normal test runs; remove the annotation locally to compare the two implementations.
+ */
+@Ignore("Benchmark; run by hand to compare with the SimpleDateFormat code it replaced")
+public class DateTimeCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final int OPERATIONS_PER_ITERATION = 20_000;
+
+    // Mix of valid and invalid input, since invalid input was the exception path before
+    private static final String[] DATES = {"03-05-2024", "12-31-1999", "02-30-2024", "2024-03-05", "07-04-2025"};
+
+    // Keeps results alive so the work cannot be optimized away
+    private long sink;
+
+    @Test
+    public void convertDateToSortableFormat() {
+        report("legacy convertDateToSortableFormat", measure(() -> {
+            for (int i = 0; i < OPERATIONS_PER_ITERATION; i++) {
+                sink += legacyConvert(DATES[i % DATES.length]).length();
+            }
+        }));
+        report("codec  convertDateToSortableFormat", measure(() -> {
+            for (int i = 0; i < OPERATIONS_PER_ITERATION; i++) {
+                sink += codecConvert(DATES[i % DATES.length]).length();
+            }
+        }));
+    }
+
+    @Test
+    public void isValidDate() {
+        report("legacy isValidDate", measure(() -> {
+            for (int i = 0; i < OPERATIONS_PER_ITERATION; i++) {
+                sink += legacyIsValid(DATES[i % DATES.length]) ? 1 : 0;
+            }
+        }));
+        report("codec  isValidDate", measure(() -> {
+            for (int i = 0; i < OPERATIONS_PER_ITERATION; i++) {
+                sink += DateTimeCodec.isValidEntryDate(DATES[i % DATES.length]) ? 1 : 0;
+            }
+        }));
+    }
+
+    // The conversion DatabaseHelper performed before the codec
+    private static String legacyConvert(String date) {
+        try {
+            SimpleDateFormat sdfSource = new SimpleDateFormat("MM-dd-yyyy", Locale.US);
+            SimpleDateFormat sdfTarget = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+            return sdfTarget.format(sdfSource.parse(date));
+        } catch (ParseException e) {
+            return date;
+        }
+    }
+
+    // The validation DataGridActivity performed before the codec
+    private static boolean legacyIsValid(String date) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd-yyyy", Locale.US);
+        dateFormat.setLenient(false);
+        try {
+            dateFormat.parse(date);
+            return true;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    private static String codecConvert(String date) {
+        int day = DateTimeCodec.parseEntryDate(date);
+        return day != DateTimeCodec.INVALID ? DateTimeCodec.formatStoredDate(day) : date;
+    }
+
+    // Returns the average nanoseconds per operation over the measured iterations
+    private static double measure(Runnable iteration) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration.run();
+        }
+        long total = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            iteration.run();
+            total += System.nanoTime() - start;
+        }
+        return (double) total / ((long) MEASURED_ITERATIONS * OPERATIONS_PER_ITERATION);
+    }
+
+    private void report(String name, double nanosPerOperation) {
+        System.out.printf(Locale.US, "%-40s %10.1f ns/op%n", name, nanosPerOperation);
+    }
+}
@@ -0,0 +1,95 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the fixed-width date and time parser.
+ */
+public class DateTimeCodecTest {
+
+    @Test
+    public void parsesEntryAndStoredDates() {
+        assertEquals(20240305, DateTimeCodec.parseEntryDate("03-05-2024"));
+        assertEquals(20240305, DateTimeCodec.parseStoredDate("2024-03-05"));
+        assertEquals(20240305, DateTimeCodec.parseDate("03-05-2024"));
+        assertEquals(20240305, DateTimeCodec.parseDate("2024-03-05"));
+    }
+
+    @Test
+    public void rejectsInvalidDatesWithoutThrowing() {
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseEntryDate("02-30-2024"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseEntryDate("02-29-2023"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseEntryDate("13-01-2024"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseEntryDate("3-5-2024"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseEntryDate("2024-03-05"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseEntryDate("ab-cd-efgh"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseEntryDate(""));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseEntryDate(null));
+        assertEquals(20240229, DateTimeCodec.parseEntryDate("02-29-2024"));
+    }
+
+    @Test
+    public void parsesTwelveAndTwentyFourHourTimes() {
+        assertEquals(14 * 60 + 30, DateTimeCodec.parseTime("2:30 PM"));
+        assertEquals(14 * 60 + 30, DateTimeCodec.parseTime("02:30pm"));
+        assertEquals(5, DateTimeCodec.parseTime("12:05 AM"));
+        assertEquals(12 * 60 + 5, DateTimeCodec.parseTime("12:05 PM"));
+        assertEquals(9 * 60 + 15, DateTimeCodec.parseTime("09:15"));
+        assertEquals(9 * 60 + 15, DateTimeCodec.parseTime(" 9:15 "));
+        assertEquals(23 * 60 + 59, DateTimeCodec.parseTime("23:59"));
+    }
+
+    @Test
+    public void rejectsInvalidTimesWithoutThrowing() {
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("24:00"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("13:00 PM"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("0:30 AM"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("9:60"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime("noon"));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime(""));
+        assertEquals(DateTimeCodec.INVALID, DateTimeCodec.parseTime(null));
+    }
+
+    @Test
+    public void formatsStoredDate() {
+        assertEquals("2024-03-05", DateTimeCodec.formatStoredDate(20240305));
+        assertEquals("0999-12-31", DateTimeCodec.formatStoredDate(9991231));
+    }
+
+    @Test
+    public void formatsEntryDateThatParsesBack() {
+        assertEquals("03-05-2024", DateTimeCodec.formatEntryDate(20240305));
+        assertEquals(20240305, DateTimeCodec.parseEntryDate(DateTimeCodec.formatEntryDate(20240305)));
+    }
+
+    @Test
+    public void epochMillisMatchesCalendar() {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int year = 1970 + random.nextInt(100);
+            int month = 1 + random.nextInt(12);
+            int day = 1 + random.nextInt(28);
+            int minute = random.nextInt(24 * 60);
+
+            Calendar calendar = Calendar.getInstance(zone);
+            calendar.clear();
+            calendar.set(year, month - 1, day, minute / 60, minute % 60);
+
+            assertEquals(calendar.getTimeInMillis(),
+                    DateTimeCodec.toEpochMillis(year * 10000 + month * 100 + day, minute, zone));
+        }
+    }
+
+    @Test
+    public void missingTimeMeansStartOfDay() {
+        TimeZone zone = TimeZone.getTimeZone("UTC");
+        assertEquals(1709596800000L, DateTimeCodec.toEpochMillis(20240305, DateTimeCodec.INVALID, zone));
+    }
+}
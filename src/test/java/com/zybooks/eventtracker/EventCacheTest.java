@@ -0,0 +1,144 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the in-memory event cache. Listeners run on the calling thread.
+ */
+public class EventCacheTest {
+
+    private final EventCache cache = new EventCache(EventCache.DEFAULT_MAX_BYTES, Runnable::run);
+    private final List<String> changes = new ArrayList<>();
+
+    {
+        cache.addListener(new EventCache.Listener() {
+            @Override
+            public void onEventChanged(int eventId, Event event) {
+                changes.add(event == null ? "removed " + eventId : "put " + eventId);
+            }
+
+            @Override
+            public void onInvalidated() {
+                changes.add("invalidated");
+            }
+        });
+    }
+
+    @Test
+    public void servesPrefixAndPagesItHolds() {
+        cache.putPrefix(cache.getVersion(), events(1, 2, 3, 4), false);
+
+        assertEquals(ids(1, 2), ids(cache.getPrefix(2)));
+        assertEquals(ids(3, 4), ids(cache.getPageAfter(event(2, 2), 2)));
+        // Not enough rows cached, and the list may go on in the database
+        assertNull(cache.getPrefix(5));
+        assertNull(cache.getPageAfter(event(3, 3), 2));
+    }
+
+    @Test
+    public void completeListServesShortPages() {
+        cache.putPrefix(cache.getVersion(), events(1, 2), true);
+
+        assertEquals(ids(1, 2), ids(cache.getPrefix(50)));
+        assertEquals(ids(), ids(cache.getPageAfter(event(2, 2), 50)));
+    }
+
+    @Test
+    public void appendsOnlyPagesThatContinueThePrefix() {
+        cache.putPrefix(cache.getVersion(), events(1, 2), false);
+
+        cache.appendPage(cache.getVersion(), event(5, 5), events(6, 7), false);
+        assertEquals(2, cache.size());
+
+        cache.appendPage(cache.getVersion(), event(2, 2), events(3, 4), true);
+        assertEquals(ids(1, 2, 3, 4), ids(cache.getPrefix(10)));
+    }
+
+    @Test
+    public void writesThroughInOrderAndNotifies() {
+        cache.putPrefix(cache.getVersion(), events(10, 20, 30), false);
+
+        cache.put(event(15, 15));
+        cache.put(event(20, 5)); // Moved to the front
+        cache.put(event(40, 40)); // Past the cached prefix, so not kept
+        cache.remove(10);
+
+        assertEquals(ids(20, 15, 30), ids(cache.getPrefix(3)));
+        assertNull(cache.getPrefix(4));
+        assertEquals(Arrays.asList("put 15", "put 20", "put 40", "removed 10"), changes);
+    }
+
+    @Test
+    public void dropsQueryResultsThatOverlappedAWrite() {
+        long version = cache.getVersion();
+        cache.put(event(1, 1));
+
+        cache.putPrefix(version, events(2, 3), true);
+
+        assertNull(cache.getPrefix(1));
+    }
+
+    @Test
+    public void invalidateClearsAndNotifies() {
+        cache.putPrefix(cache.getVersion(), events(1, 2), true);
+
+        cache.invalidate();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.getPrefix(1));
+        assertEquals(Arrays.asList("invalidated"), changes);
+    }
+
+    @Test
+    public void memoryCapDropsLatestEventsFirst() {
+        long perEvent = EventCache.sizeOf(event(1, 1));
+        cache.setMaxBytes(perEvent * 3);
+
+        cache.putPrefix(cache.getVersion(), events(1, 2, 3, 4, 5), true);
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.getBytes() <= perEvent * 3);
+        assertEquals(ids(1, 2, 3), ids(cache.getPrefix(3)));
+        // No longer complete, so the rest comes from the database
+        assertNull(cache.getPageAfter(event(3, 3), 2));
+
+        cache.put(event(0, 0));
+        assertEquals(ids(0, 1, 2), ids(cache.getPrefix(3)));
+    }
+
+    private static Event event(int id, long startAt) {
+        return new Event(id, "Event " + id, "", "2024-03-05", "", startAt, false);
+    }
+
+    // Events whose start time equals their ID
+    private static List<Event> events(int... ids) {
+        List<Event> events = new ArrayList<>();
+        for (int id : ids) {
+            events.add(event(id, id));
+        }
+        return events;
+    }
+
+    private static List<Integer> ids(int... ids) {
+        List<Integer> list = new ArrayList<>();
+        for (int id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static List<Integer> ids(List<Event> events) {
+        assertNotNull(events);
+        List<Integer> list = new ArrayList<>();
+        for (Event event : events) {
+            list.add(event.getId());
+        }
+        return list;
+    }
+}
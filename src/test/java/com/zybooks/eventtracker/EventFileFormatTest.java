@@ -0,0 +1,148 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the streaming CSV and iCalendar readers and writers.
+ */
+public class EventFileFormatTest {
+
+    @Test
+    public void csvRoundTripKeepsQuotedFields() throws IOException {
+        EventRecord original = new EventRecord("Lunch, with \"Sam\"", "Line one\nLine two", "2024-03-05", "12:30 PM", true, 45);
+
+        List<EventRecord> read = roundTrip(EventFileFormat.CSV, original);
+
+        assertEquals(1, read.size());
+        assertRecord(original, read.get(0));
+    }
+
+    @Test
+    public void csvReaderSkipsHeaderAndBlankLinesAndFillsMissingColumns() throws IOException {
+        String csv = "Title,Description,Date,Time,Notifications\r\n\r\nStandup,,03-05-2024\r\nReview,Notes,2024-03-06,9:00,yes\r\n";
+
+        List<EventRecord> read = readAll(EventFileFormat.CSV, csv);
+
+        assertEquals(2, read.size());
+        assertEquals("Standup", read.get(0).getTitle());
+        assertEquals("03-05-2024", read.get(0).getDate());
+        assertEquals("", read.get(0).getTime());
+        assertFalse(read.get(0).isNotificationsEnabled());
+        assertTrue(read.get(1).isNotificationsEnabled());
+        // Files written before the duration column import without one
+        assertEquals(0, read.get(1).getDurationMinutes());
+    }
+
+    @Test
+    public void icsRoundTripKeepsEscapedTextAndAlarm() throws IOException {
+        EventRecord original = new EventRecord("Plan; review, etc", "Bring\\notes\nand laptop", "2024-03-05", "2:30 PM", true, 90);
+
+        List<EventRecord> read = roundTrip(EventFileFormat.ICS, original);
+
+        assertEquals(1, read.size());
+        assertRecord(original, read.get(0));
+    }
+
+    @Test
+    public void icsReaderUnfoldsLinesAndReadsAllDayEvents() throws IOException {
+        String ics = "BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nSUMMARY:A very long\r\n  title\r\nDTSTART;VALUE=DATE:20240307\r\n" +
+                "END:VEVENT\r\nBEGIN:VEVENT\r\nSUMMARY:No start\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n";
+
+        List<EventRecord> read = readAll(EventFileFormat.ICS, ics);
+
+        assertEquals(1, read.size());
+        assertEquals("A very long title", read.get(0).getTitle());
+        assertEquals("2024-03-07", read.get(0).getDate());
+        assertEquals("", read.get(0).getTime());
+        assertFalse(read.get(0).isNotificationsEnabled());
+    }
+
+    @Test
+    public void icsDurationRunsPastMidnightAndReadsFromDuration() throws IOException {
+        EventRecord late = new EventRecord("Late show", "", "2024-03-05", "11:30 PM", false, 150);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (EventRecordWriter writer = EventFileFormat.ICS.newWriter(out)) {
+            writer.write(late);
+        }
+        assertTrue(out.toString("UTF-8").contains("DTEND:20240306T020000\r\n"));
+        assertEquals(150, readAll(EventFileFormat.ICS, out.toString("UTF-8")).get(0).getDurationMinutes());
+
+        String ics = "BEGIN:VCALENDAR\r\n" +
+                "BEGIN:VEVENT\r\nSUMMARY:Workshop\r\nDTSTART:20240305T090000\r\nDURATION:P1DT1H30M\r\nEND:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\nSUMMARY:Week\r\nDTSTART:20240305T090000\r\nDURATION:P1W\r\nEND:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\nSUMMARY:Bad\r\nDTSTART:20240305T090000\r\nDURATION:-PT15M\r\nEND:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\nSUMMARY:All day\r\nDTSTART;VALUE=DATE:20240305\r\nDTEND;VALUE=DATE:20240306\r\nEND:VEVENT\r\n" +
+                "END:VCALENDAR\r\n";
+
+        List<EventRecord> read = readAll(EventFileFormat.ICS, ics);
+
+        assertEquals(4, read.size());
+        assertEquals(24 * 60 + 90, read.get(0).getDurationMinutes());
+        assertEquals(7 * 24 * 60, read.get(1).getDurationMinutes());
+        assertEquals(0, read.get(2).getDurationMinutes());
+        assertEquals(0, read.get(3).getDurationMinutes());
+    }
+
+    @Test
+    public void icsWriterFoldsLongLines() throws IOException {
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            title.append("word ");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (EventRecordWriter writer = EventFileFormat.ICS.newWriter(out)) {
+            writer.write(new EventRecord(title.toString().trim(), "", "2024-03-05", "", false));
+        }
+
+        for (String line : out.toString("UTF-8").split("\r\n")) {
+            assertTrue(line, line.length() <= 75);
+        }
+        assertEquals(title.toString().trim(), readAll(EventFileFormat.ICS, out.toString("UTF-8")).get(0).getTitle());
+    }
+
+    @Test
+    public void detectsFormatFromMimeTypeOrName() {
+        assertEquals(EventFileFormat.ICS, EventFileFormat.detect("text/calendar", null));
+        assertEquals(EventFileFormat.ICS, EventFileFormat.detect("application/octet-stream", "Work.ICS"));
+        assertEquals(EventFileFormat.CSV, EventFileFormat.detect("text/csv", "events.csv"));
+        assertEquals(EventFileFormat.CSV, EventFileFormat.detect(null, null));
+    }
+
+    private static List<EventRecord> roundTrip(EventFileFormat format, EventRecord record) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (EventRecordWriter writer = format.newWriter(out)) {
+            writer.write(record);
+        }
+        return readAll(format, out.toString("UTF-8"));
+    }
+
+    private static List<EventRecord> readAll(EventFileFormat format, String text) throws IOException {
+        List<EventRecord> records = new ArrayList<>();
+        try (EventRecordReader reader = format.newReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))) {
+            EventRecord record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static void assertRecord(EventRecord expected, EventRecord actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getTime(), actual.getTime());
+        assertEquals(expected.isNotificationsEnabled(), actual.isNotificationsEnabled());
+        assertEquals(expected.getDurationMinutes(), actual.getDurationMinutes());
+    }
+}
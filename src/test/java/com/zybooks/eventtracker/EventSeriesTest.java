@@ -0,0 +1,155 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for expanding the occurrences of a recurring event inside a time window.
+ */
+public class EventSeriesTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    @Test
+    public void expandsOnlyTheWindow() {
+        EventSeries series = series("FREQ=DAILY", 20200101, "9:00 AM");
+        List<Event> march = expand(series, at(20240301, 0), at(20240331, 23 * 60), 1000, UTC);
+
+        assertEquals(31, march.size());
+        assertEquals("2024-03-01", march.get(0).getDate());
+        assertEquals("9:00 AM", march.get(0).getTime());
+        assertEquals(at(20240301, 9 * 60), march.get(0).getStartAt());
+        assertEquals(20240331, march.get(30).getOccurrenceDate());
+        for (Event occurrence : march) {
+            assertTrue(occurrence.isOccurrence());
+            assertEquals(1, occurrence.getSeriesId());
+        }
+    }
+
+    @Test
+    public void windowBoundsAreInclusiveAndMaxIsRespected() {
+        EventSeries series = series("FREQ=DAILY", 20240101, "10:00");
+        assertEquals(2, expand(series, at(20240105, 600), at(20240106, 600), 10, UTC).size());
+        assertEquals(0, expand(series, at(20240105, 601), at(20240106, 599), 10, UTC).size());
+
+        List<Event> first = expand(series, Long.MIN_VALUE, Long.MAX_VALUE, 3, UTC);
+        assertEquals(3, first.size());
+        assertEquals("2024-01-01", first.get(0).getDate());
+    }
+
+    @Test
+    public void keepsTheWallClockTimeAcrossDaylightSaving() {
+        EventSeries series = series("FREQ=WEEKLY", 20240303, "9:30 AM");
+        List<Event> occurrences = expand(series, Long.MIN_VALUE, Long.MAX_VALUE, 2, NEW_YORK);
+        assertEquals(9 * 60 + 30, DateTimeCodec.minuteOfDayOf(occurrences.get(0).getStartAt(), NEW_YORK));
+        assertEquals(9 * 60 + 30, DateTimeCodec.minuteOfDayOf(occurrences.get(1).getStartAt(), NEW_YORK));
+        // The clocks went forward in between, so the week was an hour short
+        assertEquals(7 * MILLIS_PER_DAY - 3_600_000L,
+                occurrences.get(1).getStartAt() - occurrences.get(0).getStartAt());
+    }
+
+    @Test
+    public void countAndUntilEndTheSeries() {
+        assertEquals(5, expand(series("FREQ=WEEKLY;BYDAY=TU,TH;COUNT=5", 20240102, "8:00"),
+                Long.MIN_VALUE, Long.MAX_VALUE, 100, UTC).size());
+        List<Event> until = expand(series("FREQ=DAILY;UNTIL=20240110", 20240101, "8:00"),
+                Long.MIN_VALUE, Long.MAX_VALUE, 100, UTC);
+        assertEquals(10, until.size());
+        assertEquals("2024-01-10", until.get(9).getDate());
+    }
+
+    @Test
+    public void changedOccurrencesAreCancelledOrMoved() {
+        List<EventSeries.OccurrenceChange> changes = Arrays.asList(
+                // Cancelled
+                new EventSeries.OccurrenceChange(20240103, true, null, null, DateTimeCodec.INVALID, null),
+                // Renamed and moved to a later time the same day
+                new EventSeries.OccurrenceChange(20240104, false, "Moved", null, DateTimeCodec.INVALID, "15:00"),
+                // Moved out of the window
+                new EventSeries.OccurrenceChange(20240105, false, null, null, 20240220, null),
+                // Moved into the window from outside it
+                new EventSeries.OccurrenceChange(20240301, false, null, "Pulled in", 20240106, "7:00"));
+        EventSeries series = new EventSeries(2, "Standup", "Daily standup", 20240101, "9:00",
+                RecurrenceRule.parse("FREQ=DAILY"), false, changes);
+
+        List<Event> week = expand(series, at(20240101, 0), at(20240107, 24 * 60 - 1), 100, UTC);
+        Collections.sort(week, EventCache.ORDER);
+        List<String> summary = new ArrayList<>();
+        for (Event occurrence : week) {
+            summary.add(occurrence.getDate() + " " + occurrence.getTime() + " " + occurrence.getTitle());
+        }
+        assertEquals(Arrays.asList(
+                "2024-01-01 9:00 Standup",
+                "2024-01-02 9:00 Standup",
+                "2024-01-04 15:00 Moved",
+                "2024-01-06 7:00 Standup",
+                "2024-01-06 9:00 Standup",
+                "2024-01-07 9:00 Standup"), summary);
+        assertEquals("Pulled in", week.get(3).getDescription());
+        assertEquals(20240301, week.get(3).getOccurrenceDate());
+    }
+
+    @Test
+    public void occurrenceIdsAreStableUniqueAndNegative() {
+        EventSeries first = series("FREQ=DAILY", 20240101, "9:00");
+        EventSeries second = new EventSeries(EventSeries.MAX_SERIES_ID, "Other", null, 20240101, "9:00",
+                RecurrenceRule.parse("FREQ=DAILY"), false, Collections.emptyList());
+
+        Set<Integer> ids = new HashSet<>();
+        for (Event occurrence : expand(first, Long.MIN_VALUE, Long.MAX_VALUE, 400, UTC)) {
+            assertTrue(occurrence.getId() < 0);
+            assertTrue(ids.add(occurrence.getId()));
+        }
+        for (Event occurrence : expand(second, Long.MIN_VALUE, Long.MAX_VALUE, 400, UTC)) {
+            assertTrue(occurrence.getId() < 0);
+            assertTrue(ids.add(occurrence.getId()));
+        }
+
+        // The same occurrence keeps its ID whichever window it was expanded in
+        Event fromWide = expand(first, Long.MIN_VALUE, Long.MAX_VALUE, 100, UTC).get(40);
+        Event fromNarrow = expand(first, fromWide.getStartAt(), fromWide.getStartAt(), 1, UTC).get(0);
+        assertEquals(fromWide, fromNarrow);
+    }
+
+    @Test
+    public void expandingAYearOfADailySeriesYieldsEachDayOnce() {
+        EventSeries series = series("FREQ=DAILY", 20100101, "9:00 AM");
+        List<Event> year = expand(series, at(20240101, 0), at(20241231, 24 * 60 - 1), Integer.MAX_VALUE, NEW_YORK);
+
+        // Fourteen years after the start, across both daylight-saving changes, nothing is skipped or doubled
+        assertEquals(366, year.size());
+        assertEquals("2024-01-01", year.get(0).getDate());
+        assertEquals("2024-12-31", year.get(year.size() - 1).getDate());
+        Set<String> dates = new HashSet<>();
+        for (Event occurrence : year) {
+            assertTrue(dates.add(occurrence.getDate()));
+            assertEquals("9:00 AM", occurrence.getTime());
+        }
+    }
+
+    private static EventSeries series(String rule, int startDate, String time) {
+        return new EventSeries(1, "Series", "Description", startDate, time, RecurrenceRule.parse(rule), true,
+                Collections.emptyList());
+    }
+
+    private static List<Event> expand(EventSeries series, long from, long to, int max, TimeZone zone) {
+        List<Event> out = new ArrayList<>();
+        series.expand(from, to, zone, max, out);
+        return out;
+    }
+
+    private static long at(int packedDate, int minuteOfDay) {
+        return DateTimeCodec.toEpochMillis(packedDate, minuteOfDay, UTC);
+    }
+}
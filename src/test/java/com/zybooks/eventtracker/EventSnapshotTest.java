@@ -0,0 +1,104 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the binary format of the first-screen snapshot.
+ */
+public class EventSnapshotTest {
+
+    private static final long USER_ID = 7;
+
+    @Test
+    public void roundTripsEventsAndOccurrences() throws IOException {
+        List<Event> events = Arrays.asList(
+                new Event(1, "Dentist", "Bring the form", "2024-03-05", "9:30 AM", 1709631000000L, true),
+                new Event(-5, "Standup", null, "2024-03-06", null, 1709715600000L, false, 3, 20240306),
+                new Event(2, "Workshop", "", "2024-03-07", "1:00 PM", 1709816400000L, 1709827200000L, false));
+
+        List<Event> read = read(write(USER_ID, events), USER_ID);
+
+        assertEquals(events, read);
+        assertTrue(read.get(1).isOccurrence());
+        assertEquals(20240306, read.get(1).getOccurrenceDate());
+        assertNull(read.get(1).getDescription());
+        assertEquals(180, read.get(2).getDurationMinutes());
+    }
+
+    @Test
+    public void emptyListRoundTrips() throws IOException {
+        assertEquals(Collections.emptyList(), read(write(USER_ID, Collections.emptyList()), USER_ID));
+    }
+
+    @Test
+    public void anotherUsersSnapshotReadsAsNone() throws IOException {
+        byte[] data = write(USER_ID, Collections.singletonList(event(1)));
+
+        assertNull(read(data, USER_ID + 1));
+    }
+
+    @Test
+    public void otherFormatVersionsReadAsNone() throws IOException {
+        byte[] data = write(USER_ID, Collections.singletonList(event(1)));
+        // The version follows the four-byte magic number
+        data[7]++;
+        assertNull(read(data, USER_ID));
+
+        byte[] notASnapshot = "title,date\n".getBytes("UTF-8");
+        assertNull(read(notASnapshot, USER_ID));
+    }
+
+    @Test
+    public void truncatedSnapshotFails() throws IOException {
+        byte[] data = write(USER_ID, Arrays.asList(event(1), event(2)));
+
+        try {
+            read(Arrays.copyOf(data, data.length - 3), USER_ID);
+            fail("Read a truncated snapshot");
+        } catch (EOFException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void longTextIsCut() throws IOException {
+        char[] longTitle = new char[30_000];
+        // Three bytes each in modified UTF-8, more than writeUTF() takes uncut
+        Arrays.fill(longTitle, '\u20ac');
+        Event event = new Event(1, new String(longTitle), "", "2024-03-05", "9:30 AM", 0, false);
+
+        List<Event> read = read(write(USER_ID, Collections.singletonList(event)), USER_ID);
+
+        assertTrue(read.get(0).getTitle().length() < longTitle.length);
+        assertTrue(new String(longTitle).startsWith(read.get(0).getTitle()));
+    }
+
+    private static Event event(int id) {
+        return new Event(id, "Event " + id, "Description " + id, "2024-03-0" + id, "10:00 AM", id * 1000L, id % 2 == 0);
+    }
+
+    private static byte[] write(long userId, List<Event> events) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        EventSnapshot.write(out, userId, new ArrayList<>(events));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<Event> read(byte[] data, long userId) throws IOException {
+        return EventSnapshot.read(new DataInputStream(new ByteArrayInputStream(data)), userId);
+    }
+}
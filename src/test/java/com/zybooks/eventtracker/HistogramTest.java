@@ -0,0 +1,95 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the lock-free latency histogram.
+ */
+public class HistogramTest {
+
+    @Test
+    public void everyValueFallsInsideItsBucket() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789L, 1L << 40, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(value + " above its bucket", value <= Histogram.upperBoundOf(bucket));
+            if (bucket > 0) {
+                assertTrue(value + " below its bucket", value > Histogram.upperBoundOf(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int bucket = 1; bucket < Histogram.bucketOf(Long.MAX_VALUE); bucket++) {
+            long first = Histogram.upperBoundOf(bucket - 1) + 1;
+            assertEquals(bucket, Histogram.bucketOf(first));
+            assertEquals(bucket, Histogram.bucketOf(Histogram.upperBoundOf(bucket)));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketError() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(50_000_500.0, histogram.getMean(), 1.0);
+        assertWithin(50_000_000L, histogram.getPercentile(0.5));
+        assertWithin(90_000_000L, histogram.getPercentile(0.9));
+        assertWithin(99_000_000L, histogram.getPercentile(0.99));
+        assertEquals(100_000_000L, histogram.getPercentile(1.0));
+    }
+
+    @Test
+    public void emptyAndResetHistogramsReportZero() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        assertEquals(0.0, histogram.getMean(), 0.0);
+
+        histogram.record(42);
+        histogram.record(-5);
+        assertEquals(2, histogram.getCount());
+        assertEquals(42, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(random.nextInt(1_000_000));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(200_000, histogram.getCount());
+        assertTrue(histogram.getMax() < 1_000_000);
+    }
+
+    // Buckets split each power of two eight ways, so estimates are within 12.5% of the true value
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / 8);
+    }
+}
@@ -0,0 +1,146 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the interval tree behind the scheduling-conflict warnings.
+ */
+public class IntervalTreeTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Test
+    public void findsOverlappingEventsInStartOrder() {
+        IntervalTree tree = new IntervalTree();
+        tree.put(1, 10 * HOUR, 12 * HOUR);
+        tree.put(2, 9 * HOUR, 11 * HOUR);
+        tree.put(3, 13 * HOUR, 14 * HOUR);
+        tree.put(4, 8 * HOUR, 20 * HOUR);
+
+        assertEquals(Arrays.asList(4, 2, 1), tree.findOverlapping(10 * HOUR + 30, 11 * HOUR + 30, -1, 10));
+        assertEquals(Arrays.asList(4, 3), tree.findOverlapping(13 * HOUR, 13 * HOUR, -1, 10));
+        assertEquals(Collections.emptyList(), tree.findOverlapping(20 * HOUR, 21 * HOUR, -1, 10));
+    }
+
+    @Test
+    public void backToBackEventsDoNotOverlap() {
+        IntervalTree tree = new IntervalTree();
+        tree.put(1, 9 * HOUR, 10 * HOUR);
+
+        assertEquals(Collections.emptyList(), tree.findOverlapping(10 * HOUR, 11 * HOUR, -1, 10));
+        assertEquals(Collections.emptyList(), tree.findOverlapping(8 * HOUR, 9 * HOUR, -1, 10));
+        assertEquals(Collections.singletonList(1), tree.findOverlapping(8 * HOUR, 9 * HOUR + 1, -1, 10));
+    }
+
+    @Test
+    public void eventsWithoutLengthOverlapAtTheSameInstant() {
+        IntervalTree tree = new IntervalTree();
+        tree.put(1, 9 * HOUR, 9 * HOUR);
+
+        assertEquals(Collections.singletonList(1), tree.findOverlapping(9 * HOUR, 9 * HOUR, -1, 10));
+        assertEquals(Collections.singletonList(1), tree.findOverlapping(8 * HOUR, 10 * HOUR, -1, 10));
+        assertEquals(Collections.emptyList(), tree.findOverlapping(9 * HOUR + 1, 9 * HOUR + 1, -1, 10));
+    }
+
+    @Test
+    public void leavesOutTheEditedEventAndStopsAtTheLimit() {
+        IntervalTree tree = new IntervalTree();
+        for (int id = 1; id <= 5; id++) {
+            tree.put(id, id * HOUR, 10 * HOUR);
+        }
+
+        assertEquals(Arrays.asList(1, 3), tree.findOverlapping(5 * HOUR, 6 * HOUR, 2, 2));
+        assertEquals(Collections.emptyList(), tree.findOverlapping(5 * HOUR, 6 * HOUR, -1, 0));
+    }
+
+    @Test
+    public void putMovesAndRemoveDrops() {
+        IntervalTree tree = new IntervalTree();
+        tree.put(1, 9 * HOUR, 10 * HOUR);
+        tree.put(1, 15 * HOUR, 16 * HOUR);
+
+        assertEquals(1, tree.size());
+        assertEquals(Collections.emptyList(), tree.findOverlapping(9 * HOUR, 10 * HOUR, -1, 10));
+        assertEquals(Collections.singletonList(1), tree.findOverlapping(15 * HOUR, 16 * HOUR, -1, 10));
+
+        assertTrue(tree.remove(1));
+        assertFalse(tree.remove(1));
+        assertEquals(0, tree.size());
+        assertEquals(Collections.emptyList(), tree.findOverlapping(15 * HOUR, 16 * HOUR, -1, 10));
+    }
+
+    @Test
+    public void matchesBruteForceUnderRandomWrites() {
+        Random random = new Random(42);
+        IntervalTree tree = new IntervalTree();
+        Map<Integer, long[]> spans = new HashMap<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            int id = random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                assertEquals(spans.remove(id) != null, tree.remove(id));
+            } else {
+                long start = random.nextInt(10_000);
+                long end = start + (random.nextInt(3) == 0 ? 0 : random.nextInt(300));
+                tree.put(id, start, end);
+                spans.put(id, new long[]{start, end});
+            }
+            if (step % 50 == 0) {
+                long start = random.nextInt(10_000);
+                long end = start + random.nextInt(500);
+                int exclude = random.nextInt(500);
+                assertEquals(bruteForce(spans, start, end, exclude), tree.findOverlapping(start, end, exclude, Integer.MAX_VALUE));
+            }
+        }
+        assertEquals(spans.size(), tree.size());
+    }
+
+    @Test
+    public void staysBalancedForSortedInserts() {
+        IntervalTree tree = new IntervalTree();
+        int count = 100_000;
+        for (int id = 0; id < count; id++) {
+            tree.put(id, id * HOUR, id * HOUR + 2 * HOUR);
+        }
+
+        // An AVL tree is at most about 1.44 log2(n) high
+        assertTrue("Height " + tree.height(), tree.height() <= 1.45 * (Math.log(count) / Math.log(2)));
+        assertEquals(Arrays.asList(49_999, 50_000), tree.findOverlapping(50_000 * HOUR, 50_000 * HOUR + 1, -1, 10));
+
+        for (int id = 0; id < count; id += 2) {
+            tree.remove(id);
+        }
+        assertEquals(count / 2, tree.size());
+        assertTrue("Height " + tree.height(), tree.height() <= 1.45 * (Math.log(count / 2.0) / Math.log(2)));
+        assertEquals(Collections.singletonList(49_999), tree.findOverlapping(50_000 * HOUR, 50_000 * HOUR + 1, -1, 10));
+    }
+
+    // Every span overlapping [start, end) in (start, id) order, with the same rules as the tree
+    private static List<Integer> bruteForce(Map<Integer, long[]> spans, long start, long end, int exclude) {
+        long queryEnd = Math.max(end, start + 1);
+        List<long[]> matches = new ArrayList<>();
+        for (Map.Entry<Integer, long[]> entry : spans.entrySet()) {
+            long[] span = entry.getValue();
+            long spanEnd = Math.max(span[1], span[0] + 1);
+            if (entry.getKey() != exclude && span[0] < queryEnd && spanEnd > start) {
+                matches.add(new long[]{span[0], entry.getKey()});
+            }
+        }
+        Collections.sort(matches, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        List<Integer> ids = new ArrayList<>();
+        for (long[] match : matches) {
+            ids.add((int) match[1]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,81 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for salted PBKDF2 password hashes.
+ */
+public class PasswordHasherTest {
+
+    private final PasswordHasher hasher = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+
+    @Test
+    public void verifiesOnlyTheRightPassword() {
+        String hash = hasher.hash("correct horse");
+
+        assertTrue(PasswordHasher.verify("correct horse", hash));
+        assertFalse(PasswordHasher.verify("correct horsE", hash));
+        assertFalse(PasswordHasher.verify("", hash));
+    }
+
+    @Test
+    public void saltsEveryHash() {
+        assertNotEquals(hasher.hash("secret"), hasher.hash("secret"));
+    }
+
+    @Test
+    public void storesCostSoOlderHashesStillVerify() {
+        String older = hasher.hash("secret");
+        PasswordHasher stronger = new PasswordHasher(PasswordHasher.MIN_ITERATIONS * 2);
+
+        assertTrue(older.contains("$" + PasswordHasher.MIN_ITERATIONS + "$"));
+        assertTrue(PasswordHasher.verify("secret", older));
+        assertTrue(stronger.needsRehash(older));
+        assertFalse(stronger.needsRehash(stronger.hash("secret")));
+    }
+
+    @Test
+    public void treatsPlaintextAndMalformedValuesAsNonMatching() {
+        assertTrue(hasher.needsRehash("secret"));
+        assertTrue(hasher.needsRehash(null));
+        assertFalse(PasswordHasher.verify("secret", "secret"));
+        assertFalse(PasswordHasher.verify("secret", "pbkdf2-sha256$x$00$00"));
+        assertFalse(PasswordHasher.verify("secret", "pbkdf2-sha256$1000$zz$00"));
+        assertFalse(PasswordHasher.verify("secret", "pbkdf2-md5$1000$00$00"));
+        assertFalse(PasswordHasher.verify("secret", null));
+    }
+
+    @Test
+    public void comparesPlaintextAndBytes() {
+        assertTrue(PasswordHasher.plaintextEquals("secret", "secret"));
+        assertFalse(PasswordHasher.plaintextEquals("secret", "secreT"));
+        assertFalse(PasswordHasher.plaintextEquals("secret", "secret1"));
+        assertFalse(PasswordHasher.plaintextEquals("secret", null));
+        assertFalse(PasswordHasher.constantTimeEquals(new byte[]{1, 2}, new byte[]{1, 2, 0}));
+        assertTrue(PasswordHasher.constantTimeEquals(new byte[]{1, 2}, new byte[]{1, 2}));
+    }
+
+    @Test
+    public void calibrationStaysWithinBounds() {
+        int iterations = PasswordHasher.calibrate(50);
+
+        assertTrue(iterations >= PasswordHasher.MIN_ITERATIONS);
+        assertTrue(iterations <= PasswordHasher.MAX_ITERATIONS);
+        assertEquals(PasswordHasher.MIN_ITERATIONS, PasswordHasher.calibrate(0));
+    }
+
+    @Test
+    public void sessionTokensAreRandomAndHashedStably() {
+        String token = PasswordHasher.newSessionToken();
+
+        assertEquals(64, token.length());
+        assertNotEquals(token, PasswordHasher.newSessionToken());
+        assertEquals(PasswordHasher.hashSessionToken(token), PasswordHasher.hashSessionToken(token));
+        assertNotEquals(token, PasswordHasher.hashSessionToken(token));
+        // SHA-256 of "abc"
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                PasswordHasher.hashSessionToken("abc"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the cache of events in calendar ranges.
+ */
+public class RangeCacheTest {
+
+    @Test
+    public void evictsTheLeastRecentlyUsedRange() {
+        RangeCache cache = new RangeCache(2);
+        CalendarRange january = month(20240101);
+        CalendarRange february = month(20240201);
+        CalendarRange march = month(20240301);
+
+        cache.put(cache.getVersion(), january, events(1));
+        cache.put(cache.getVersion(), february, events(2));
+        // Using January makes February the oldest
+        assertNotNull(cache.get(january));
+        cache.put(cache.getVersion(), march, events(3));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.contains(january));
+        assertFalse(cache.contains(february));
+        assertTrue(cache.contains(march));
+    }
+
+    @Test
+    public void dropsResultsOfQueriesThatOverlappedAWrite() {
+        RangeCache cache = new RangeCache(4);
+        CalendarRange january = month(20240101);
+        long version = cache.getVersion();
+
+        cache.invalidate();
+        cache.put(version, january, events(1));
+
+        assertNull(cache.get(january));
+        cache.put(cache.getVersion(), january, events(1));
+        assertEquals(1, cache.get(january).size());
+    }
+
+    @Test
+    public void invalidateClearsEveryRange() {
+        RangeCache cache = new RangeCache(4);
+        cache.put(cache.getVersion(), month(20240101), events(1));
+        cache.put(cache.getVersion(), month(20240201), events(1));
+
+        cache.invalidate();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void returnsCopies() {
+        RangeCache cache = new RangeCache(4);
+        CalendarRange january = month(20240101);
+        List<Event> stored = events(2);
+        cache.put(cache.getVersion(), january, stored);
+
+        stored.clear();
+        cache.get(january).clear();
+
+        assertEquals(2, cache.get(january).size());
+    }
+
+    private static CalendarRange month(int packedDate) {
+        return CalendarRange.containing(CalendarRange.Kind.MONTH, packedDate);
+    }
+
+    private static List<Event> events(int count) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            events.add(new Event(i, "Event " + i, "", "2024-01-0" + i, "9:00 AM", i, false));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,130 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for parsing recurrence rules and finding the days they select.
+ */
+public class RecurrenceRuleTest {
+
+    @Test
+    public void formatsWhatItParses() {
+        String[] rules = {
+                "FREQ=DAILY",
+                "FREQ=DAILY;INTERVAL=3;COUNT=10",
+                "FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE,SU",
+                "FREQ=MONTHLY;UNTIL=20251231"
+        };
+        for (String rule : rules) {
+            assertEquals(rule, RecurrenceRule.parse(rule).toString());
+        }
+    }
+
+    @Test
+    public void parsesPrefixLowerCaseAndUntilTime() {
+        RecurrenceRule rule = RecurrenceRule.parse("RRULE:freq=weekly;byday=fr,mo;until=20240630T235959Z");
+        assertEquals(RecurrenceRule.Frequency.WEEKLY, rule.getFrequency());
+        assertEquals(1 | 1 << 4, rule.getDayMask());
+        assertEquals(20240630, rule.getUntil());
+        assertEquals(RecurrenceRule.every(RecurrenceRule.Frequency.DAILY), RecurrenceRule.parse("FREQ=DAILY;INTERVAL=1"));
+    }
+
+    @Test
+    public void rejectsRulesOutsideTheSubset() {
+        String[] rules = {
+                "",
+                "INTERVAL=2",
+                "FREQ=YEARLY",
+                "FREQ=DAILY;INTERVAL=0",
+                "FREQ=DAILY;BYDAY=MO",
+                "FREQ=WEEKLY;BYDAY=1MO",
+                "FREQ=MONTHLY;BYMONTHDAY=15",
+                "FREQ=DAILY;COUNT=5;UNTIL=20250101",
+                "FREQ=DAILY;UNTIL=20250230",
+                "FREQ=DAILY;COUNT=x"
+        };
+        for (String rule : rules) {
+            try {
+                RecurrenceRule.parse(rule);
+                fail("Accepted " + rule);
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void dailyRuleJumpsToTheWindow() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;INTERVAL=3");
+        long start = day(20240101);
+        assertEquals(day(20240101), rule.nextOnOrAfter(start, day(20231201)));
+        assertEquals(day(20240107), rule.nextOnOrAfter(start, day(20240105)));
+        assertEquals(day(20240107), rule.nextOnOrAfter(start, day(20240107)));
+        // Far from the start, without walking there
+        assertEquals(start + 3 * 100_000L, rule.nextOnOrAfter(start, start + 3 * 100_000L - 2));
+    }
+
+    @Test
+    public void weeklyRuleUsesSelectedDaysOfEveryIntervalWeek() {
+        // 2024-01-01 is a Monday
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE");
+        assertEquals(listOf(20240101, 20240103, 20240115, 20240117, 20240129),
+                days(rule, 20240101, 20240101, 5));
+        // Starting mid-week skips the selected days before the start
+        assertEquals(listOf(20240103, 20240115, 20240117), days(rule, 20240103, 20240102, 3));
+    }
+
+    @Test
+    public void weeklyRuleWithoutDaysRepeatsTheStartDay() {
+        RecurrenceRule rule = RecurrenceRule.every(RecurrenceRule.Frequency.WEEKLY);
+        assertEquals(listOf(20240103, 20240110, 20240117), days(rule, 20240103, 20240101, 3));
+        assertEquals(listOf(20240306), days(rule, 20240103, 20240301, 1));
+    }
+
+    @Test
+    public void monthlyRuleSkipsMonthsTooShort() {
+        RecurrenceRule rule = RecurrenceRule.every(RecurrenceRule.Frequency.MONTHLY);
+        assertEquals(listOf(20240131, 20240331, 20240531, 20240731, 20240831),
+                days(rule, 20240131, 20240101, 5));
+        assertEquals(listOf(20240415), days(rule, 20240115, 20240316, 1));
+
+        RecurrenceRule leapDay = RecurrenceRule.parse("FREQ=MONTHLY;INTERVAL=12");
+        assertEquals(listOf(20240229, 20280229, 20320229), days(leapDay, 20240229, 20240101, 3));
+    }
+
+    @Test
+    public void dayOfWeekMatchesTheCalendar() {
+        assertEquals(3, DateTimeCodec.dayOfWeek(0)); // 1970-01-01, a Thursday
+        assertEquals(0, DateTimeCodec.dayOfWeek(day(20240101)));
+        assertEquals(6, DateTimeCodec.dayOfWeek(day(19691228)));
+        assertEquals(20240229, DateTimeCodec.fromEpochDay(day(20240229)));
+    }
+
+    // The first `count` days the rule selects on or after `from`, as packed dates
+    private static List<Integer> days(RecurrenceRule rule, int start, int from, int count) {
+        List<Integer> days = new ArrayList<>();
+        long day = rule.nextOnOrAfter(day(start), day(from));
+        while (days.size() < count) {
+            days.add(DateTimeCodec.fromEpochDay(day));
+            day = rule.nextOnOrAfter(day(start), day + 1);
+        }
+        return days;
+    }
+
+    private static List<Integer> listOf(int... dates) {
+        List<Integer> list = new ArrayList<>();
+        for (int date : dates) {
+            list.add(date);
+        }
+        return list;
+    }
+
+    private static long day(int packedDate) {
+        return DateTimeCodec.toEpochDay(packedDate);
+    }
+}
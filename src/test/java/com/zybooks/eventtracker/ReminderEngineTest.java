@@ -0,0 +1,224 @@
+package com.zybooks.eventtracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the reminder queue, using a fake SMS sender and waker.
+ */
+public class ReminderEngineTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long BASE = 1_700_000_040_000L; // Start of a minute
+    private static final long MAX_LATENESS = 60 * MINUTE;
+
+    private final FakeSender sender = new FakeSender();
+    private final FakeWaker waker = new FakeWaker();
+    private final ReminderEngine engine = new ReminderEngine(sender, waker, "5551234", MAX_LATENESS);
+
+    @Test
+    public void armsOnlyForEarliestReminder() {
+        engine.schedule(new Reminder(1, BASE + 10 * MINUTE, "Later", "10:10 AM"));
+        engine.schedule(new Reminder(2, BASE + 5 * MINUTE, "Sooner", "10:05 AM"));
+        engine.schedule(new Reminder(3, BASE + 20 * MINUTE, "Last", "10:20 AM"));
+
+        assertEquals(BASE + 5 * MINUTE, waker.armedAt);
+        // The third reminder did not change the earliest time, so the waker was not touched again
+        assertEquals(2, waker.calls);
+    }
+
+    @Test
+    public void rescheduleAndCancelMoveTheWaker() {
+        engine.schedule(new Reminder(1, BASE + 5 * MINUTE, "A", ""));
+        engine.schedule(new Reminder(2, BASE + 10 * MINUTE, "B", ""));
+
+        engine.schedule(new Reminder(1, BASE + 15 * MINUTE, "A", ""));
+        assertEquals(BASE + 10 * MINUTE, waker.armedAt);
+        assertEquals(2, engine.size());
+
+        engine.cancel(2);
+        assertEquals(BASE + 15 * MINUTE, waker.armedAt);
+
+        engine.cancel(1);
+        assertTrue(waker.cancelled);
+        assertEquals(-1, engine.nextDueAt());
+    }
+
+    @Test
+    public void batchesRemindersDueInTheSameMinute() {
+        engine.schedule(new Reminder(1, BASE, "Standup", "9:00 AM"));
+        engine.schedule(new Reminder(2, BASE + 30_000, "Coffee", ""));
+        engine.schedule(new Reminder(3, BASE + MINUTE, "Review", "9:01 AM"));
+
+        assertEquals(2, engine.deliverDue(BASE + 1_000));
+
+        assertEquals(1, sender.messages.size());
+        assertEquals("Event reminders:\nStandup at 9:00 AM\nCoffee", sender.messages.get(0));
+        assertEquals("5551234", sender.destination);
+        assertEquals(BASE + MINUTE, waker.armedAt);
+    }
+
+    @Test
+    public void lateDeliverySendsOneMessagePerMinuteAndDropsStaleReminders() {
+        engine.schedule(new Reminder(1, BASE - 2 * MAX_LATENESS, "Stale", ""));
+        engine.schedule(new Reminder(2, BASE, "First", ""));
+        engine.schedule(new Reminder(3, BASE + MINUTE, "Second", ""));
+
+        assertEquals(2, engine.deliverDue(BASE + 2 * MINUTE));
+
+        assertEquals(2, sender.messages.size());
+        assertEquals("Event reminder: First", sender.messages.get(0));
+        assertEquals("Event reminder: Second", sender.messages.get(1));
+        assertEquals(0, engine.size());
+        assertTrue(waker.cancelled);
+    }
+
+    @Test
+    public void failedSendDoesNotStopOtherBatches() {
+        sender.failNext = true;
+        engine.schedule(new Reminder(1, BASE, "First", ""));
+        engine.schedule(new Reminder(2, BASE + MINUTE, "Second", ""));
+
+        assertEquals(1, engine.deliverDue(BASE + MINUTE));
+        assertEquals(1, sender.messages.size());
+        // The failed reminder waits for its retry
+        assertEquals(1, engine.size());
+    }
+
+    @Test
+    public void failedSendIsRetriedUntilTooLate() {
+        sender.failNext = true;
+        engine.schedule(new Reminder(1, BASE, "Standup", "9:00 AM"));
+
+        assertEquals(0, engine.deliverDue(BASE));
+        long retryAt = BASE + ReminderEngine.RETRY_DELAY_MILLIS;
+        assertEquals(retryAt, waker.armedAt);
+        assertEquals(BASE, engine.oldestRetryDueAt());
+
+        assertEquals(1, engine.deliverDue(retryAt));
+        assertEquals("Event reminder: Standup at 9:00 AM", sender.messages.get(0));
+        assertEquals(-1, engine.oldestRetryDueAt());
+
+        // Lateness counts from the first due time, so a send that keeps failing is given up on
+        sender.failAlways = true;
+        engine.schedule(new Reminder(2, BASE + MINUTE, "Review", ""));
+        long now = BASE + MINUTE;
+        while (engine.size() > 0) {
+            engine.deliverDue(now);
+            now = engine.nextDueAt();
+        }
+        assertEquals(1, sender.messages.size());
+        assertTrue(waker.cancelled);
+    }
+
+    @Test
+    public void rescheduleDuringFailedSendWins() {
+        engine.schedule(new Reminder(1, BASE, "Old", ""));
+        sender.onSend = () -> engine.schedule(new Reminder(1, BASE + 30 * MINUTE, "New", ""));
+        sender.failNext = true;
+
+        assertEquals(0, engine.deliverDue(BASE));
+        assertEquals(1, engine.size());
+        assertEquals(BASE + 30 * MINUTE, engine.nextDueAt());
+    }
+
+    @Test
+    public void nothingIsSentWithoutDestination() {
+        engine.setDestination(null);
+        engine.schedule(new Reminder(1, BASE, "Standup", ""));
+
+        assertEquals(0, engine.deliverDue(BASE));
+        assertTrue(sender.messages.isEmpty());
+
+        engine.setDestination("5550000");
+        assertEquals(1, engine.deliverDue(BASE));
+        assertEquals("5550000", sender.destination);
+    }
+
+    @Test
+    public void reschedulingWithTenThousandPendingReminders() {
+        int count = 10_000;
+        // Deliver everything at the end without dropping anything as stale
+        ReminderEngine engine = new ReminderEngine(sender, waker, "5551234", Long.MAX_VALUE);
+        Random random = new Random(42);
+        List<Reminder> reminders = new ArrayList<>(count);
+        for (int id = 0; id < count; id++) {
+            reminders.add(new Reminder(id, BASE + MINUTE + random.nextInt(count) * MINUTE, "Event " + id, ""));
+        }
+        engine.replaceAll(reminders);
+        assertEquals(count, engine.size());
+
+        // Move every reminder once, then cancel half of them
+        Set<Long> keptMinutes = new HashSet<>();
+        long start = System.nanoTime();
+        for (int id = 0; id < count; id++) {
+            long dueAt = BASE + MINUTE + random.nextInt(count) * MINUTE;
+            engine.schedule(new Reminder(id, dueAt, "Event " + id, ""));
+            if (id % 2 == 1) {
+                keptMinutes.add(dueAt);
+            }
+        }
+        for (int id = 0; id < count; id += 2) {
+            engine.cancel(id);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(count / 2, engine.size());
+        assertTrue("Rescheduling took " + elapsedMillis + " ms", elapsedMillis < 1_000);
+        // The waker is only touched when the earliest reminder changes, not on every update
+        assertTrue("Waker called " + waker.calls + " times", waker.calls < 100);
+
+        // Delivering everything sends one message per distinct minute
+        assertEquals(count / 2, engine.deliverDue(BASE + (count + 1) * MINUTE));
+        assertEquals(keptMinutes.size(), sender.messages.size());
+        assertEquals(0, engine.size());
+    }
+
+    private static class FakeSender implements SmsSender {
+        final List<String> messages = new ArrayList<>();
+        String destination;
+        boolean failNext;
+        boolean failAlways;
+        // Runs at the start of each send, standing in for work done while a text is going out
+        Runnable onSend;
+
+        @Override
+        public void send(String destination, String message) {
+            if (onSend != null) {
+                onSend.run();
+            }
+            if (failNext || failAlways) {
+                failNext = false;
+                throw new IllegalStateException("No service");
+            }
+            this.destination = destination;
+            messages.add(message);
+        }
+    }
+
+    private static class FakeWaker implements ReminderEngine.Waker {
+        long armedAt = -1;
+        boolean cancelled;
+        int calls;
+
+        @Override
+        public void wakeAt(long timeMillis) {
+            armedAt = timeMillis;
+            cancelled = false;
+            calls++;
+        }
+
+        @Override
+        public void cancel() {
+            armedAt = -1;
+            cancelled = true;
+            calls++;
+        }
+    }
+}